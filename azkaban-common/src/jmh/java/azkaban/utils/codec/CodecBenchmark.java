@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutableNode;
+import azkaban.executor.Status;
+import azkaban.utils.JSONUtils;
+import azkaban.utils.TestUtils;
+
+/**
+ * <pre>
+ * Compares the codecs on the flow_data of the test executions, as it is
+ * stored while the flow runs. "legacy" is the stream based gzip GZIPUtils
+ * used before the codecs, as a baseline.
+ *
+ * Run from azkaban-common with: ../gradlew jmh
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+  @Param({ "exec1", "exec2", "exec3", "exec4-retry" })
+  private String flowName;
+
+  @Param({ "legacy", "GZIP", "SNAPPY", "XZ" })
+  private String codecName;
+
+  private Codec codec;
+  private byte[] flowData;
+  private byte[] encoded;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", flowName);
+    flow.setExecutionId(1);
+    flow.setStatus(Status.RUNNING);
+    long now = System.currentTimeMillis();
+    for (ExecutableNode node : flow.getExecutableNodes()) {
+      node.setStatus(Status.SUCCEEDED);
+      node.setStartTime(now);
+      node.setEndTime(now);
+      node.setUpdateTime(now);
+    }
+    flowData = JSONUtils.toJSON(flow.toObject()).getBytes("UTF-8");
+
+    if ("legacy".equals(codecName)) {
+      codec = new LegacyGzipCodec();
+    } else {
+      codec = azkaban.database.AbstractJdbcLoader.EncodingType.valueOf(
+          codecName).getCodec();
+    }
+    encoded = codec.encode(flowData, 0, flowData.length);
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    return codec.encode(flowData, 0, flowData.length);
+  }
+
+  @Benchmark
+  public byte[] decode() throws IOException {
+    return codec.decode(encoded);
+  }
+
+  /**
+   * GZIPUtils before the codecs: new streams and growing buffers per call
+   */
+  private static class LegacyGzipCodec implements Codec {
+    @Override
+    public byte[] encode(byte[] data, int offset, int length)
+        throws IOException {
+      ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
+      GZIPOutputStream gzipStream = new GZIPOutputStream(byteOutputStream);
+      gzipStream.write(data, offset, length);
+      gzipStream.close();
+      return byteOutputStream.toByteArray();
+    }
+
+    @Override
+    public byte[] decode(byte[] data) throws IOException {
+      GZIPInputStream gzipInputStream =
+          new GZIPInputStream(new ByteArrayInputStream(data));
+      ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
+      IOUtils.copy(gzipInputStream, byteOutputStream);
+      return byteOutputStream.toByteArray();
+    }
+
+    @Override
+    public byte[] decode(byte[] data, int offset, int length) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -18,39 +18,82 @@ package azkaban.database;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
 
 import azkaban.utils.Props;
+import azkaban.utils.codec.Codec;
+import azkaban.utils.codec.GzipCodec;
+import azkaban.utils.codec.PlainCodec;
+import azkaban.utils.codec.SnappyCodec;
+import azkaban.utils.codec.XzCodec;
 
 public abstract class AbstractJdbcLoader {
+  /**
+   * Rows sent per executeBatch by batchUpdate
+   */
+  public static final int BATCH_SIZE = 100;
+
+  /**
+   * Prefix of the properties choosing the encoding of each kind of blob, such
+   * as azkaban.encoding.flow=snappy
+   */
+  public static final String ENCODING_PREFIX = "azkaban.encoding.";
+
   /**
    * Used for when we store text data. Plain uses UTF8 encoding.
+   *
+   * Rows record the encoding they were written with, so the encoding of new
+   * rows can be changed at any time. Servers reading the rows must know the
+   * encoding though, so upgrade every server before switching to SNAPPY or
+   * XZ.
    */
   public static enum EncodingType {
-    PLAIN(1), GZIP(2);
+    PLAIN(1, new PlainCodec()), GZIP(2, new GzipCodec()), SNAPPY(3,
+        new SnappyCodec()), XZ(4, new XzCodec());
 
     private int numVal;
+    private Codec codec;
 
-    EncodingType(int numVal) {
+    EncodingType(int numVal, Codec codec) {
       this.numVal = numVal;
+      this.codec = codec;
     }
 
     public int getNumVal() {
       return numVal;
     }
 
+    public Codec getCodec() {
+      return codec;
+    }
+
+    public byte[] encode(byte[] data) throws IOException {
+      return codec.encode(data, 0, data.length);
+    }
+
+    public byte[] decode(byte[] data) throws IOException {
+      return codec.decode(data);
+    }
+
     public static EncodingType fromInteger(int x) {
       switch (x) {
       case 1:
         return PLAIN;
       case 2:
         return GZIP;
+      case 3:
+        return SNAPPY;
+      case 4:
+        return XZ;
       default:
         return PLAIN;
       }
@@ -63,6 +106,28 @@ public abstract class AbstractJdbcLoader {
     dataSource = DataSourceUtils.getDataSource(props);
   }
 
+  /**
+   * Reads the encoding of a kind of blob from azkaban.encoding.[kind]
+   *
+   * @param props
+   * @param kind
+   * @param defaultType
+   * @return
+   */
+  protected static EncodingType getEncodingType(Props props, String kind,
+      EncodingType defaultType) {
+    String name = props.getString(ENCODING_PREFIX + kind, null);
+    if (name == null) {
+      return defaultType;
+    }
+    try {
+      return EncodingType.valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown encoding " + name + " for "
+          + ENCODING_PREFIX + kind, e);
+    }
+  }
+
   protected Connection getDBConnection(boolean autoCommit) throws IOException {
     Connection connection = null;
     try {
@@ -84,6 +149,105 @@ public abstract class AbstractJdbcLoader {
     return dataSource.allowsOnDuplicateKey();
   }
 
+  /**
+   * Runs the statement once per row of params, sending them in batches of
+   * BATCH_SIZE. The data sources prepare the statement once per connection,
+   * and MySQL rewrites a batch of inserts into a single multi-row insert.
+   * Doesn't commit.
+   *
+   * @param connection
+   * @param sql
+   * @param params
+   * @return the update counts, which may be Statement.SUCCESS_NO_INFO for
+   *         rewritten batches
+   * @throws SQLException
+   */
+  protected int[] batchUpdate(Connection connection, String sql,
+      List<Object[]> params) throws SQLException {
+    int[] counts = new int[params.size()];
+    if (params.isEmpty()) {
+      return counts;
+    }
+
+    QueryRunner runner = new QueryRunner();
+    PreparedStatement statement = connection.prepareStatement(sql);
+    try {
+      for (int start = 0; start < params.size(); start += BATCH_SIZE) {
+        int end = Math.min(start + BATCH_SIZE, params.size());
+        for (int i = start; i < end; ++i) {
+          runner.fillStatement(statement, params.get(i));
+          statement.addBatch();
+        }
+        int[] batchCounts = statement.executeBatch();
+        System.arraycopy(batchCounts, 0, counts, start, batchCounts.length);
+      }
+    } finally {
+      statement.clearBatch();
+      DbUtils.closeQuietly(statement);
+    }
+    return counts;
+  }
+
+  /**
+   * Runs an insert and returns the key the database generated for the row,
+   * in the same round trip. Doesn't commit.
+   *
+   * @param connection
+   * @param sql
+   * @param params
+   * @return the generated key
+   * @throws SQLException if no key was generated
+   */
+  protected long insertReturningKey(Connection connection, String sql,
+      Object... params) throws SQLException {
+    PreparedStatement statement =
+        connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+    ResultSet keys = null;
+    try {
+      new QueryRunner().fillStatement(statement, params);
+      statement.executeUpdate();
+      keys = statement.getGeneratedKeys();
+      if (!keys.next()) {
+        throw new SQLException("No key generated by " + sql);
+      }
+      return keys.getLong(1);
+    } finally {
+      DbUtils.closeQuietly(keys);
+      DbUtils.closeQuietly(statement);
+    }
+  }
+
+  /**
+   * Runs a query with the rows streamed to the handler as they are read,
+   * instead of the whole result being buffered by the driver first. No
+   * other statement can run on the connection until this returns.
+   *
+   * @param connection
+   * @param sql
+   * @param handler
+   * @param params
+   * @return what the handler returns
+   * @throws SQLException
+   */
+  protected <T> T streamQuery(Connection connection, String sql,
+      ResultSetHandler<T> handler, Object... params) throws SQLException {
+    PreparedStatement statement =
+        connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY);
+    ResultSet rs = null;
+    try {
+      // MySQL only streams with this fetch size, others take it as a hint
+      statement.setFetchSize("mysql".equals(dataSource.getDBType())
+          ? Integer.MIN_VALUE : BATCH_SIZE);
+      new QueryRunner().fillStatement(statement, params);
+      rs = statement.executeQuery();
+      return handler.handle(rs);
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(statement);
+    }
+  }
+
   public static class IntHandler implements ResultSetHandler<Integer> {
     @Override
     public Integer handle(ResultSet rs) throws SQLException {
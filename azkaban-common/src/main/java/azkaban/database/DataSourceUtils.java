@@ -33,6 +33,11 @@ public class DataSourceUtils {
 
   private static Logger logger = Logger.getLogger(DataSourceUtils.class);
 
+  /**
+   * Prepared statements kept open per pooled connection
+   */
+  private static final int MAX_OPEN_PREPARED_STATEMENTS = 100;
+
   /**
    * Property types
    */
@@ -138,6 +143,9 @@ public class DataSourceUtils {
       url = "jdbc:mysql://" + (host + ":" + port + "/" + dbName);
       addConnectionProperty("useUnicode", "yes");
       addConnectionProperty("characterEncoding", "UTF-8");
+      // sends a batch of inserts as one multi-row insert
+      addConnectionProperty("rewriteBatchedStatements", "true");
+      addConnectionProperty("cachePrepStmts", "true");
       setDriverClassName("com.mysql.jdbc.Driver");
       setUsername(user);
       setPassword(password);
@@ -145,6 +153,8 @@ public class DataSourceUtils {
       setMaxActive(numConnections);
       setValidationQuery("/* ping */ select 1");
       setTestOnBorrow(true);
+      setPoolPreparedStatements(true);
+      setMaxOpenPreparedStatements(MAX_OPEN_PREPARED_STATEMENTS);
 
       if (monitorThread == null) {
         monitorThread = new MonitorThread(this);
@@ -217,6 +227,8 @@ public class DataSourceUtils {
       String url = "jdbc:h2:file:" + filePath;
       setDriverClassName("org.h2.Driver");
       setUrl(url);
+      setPoolPreparedStatements(true);
+      setMaxOpenPreparedStatements(MAX_OPEN_PREPARED_STATEMENTS);
     }
 
     @Override
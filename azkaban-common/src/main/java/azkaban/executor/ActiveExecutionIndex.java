@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import azkaban.utils.Pair;
+
+/**
+ * <pre>
+ * Index of active (queued or dispatched) executions keyed by
+ * (projectId, flowId), used to answer "is this flow running" style checks
+ * without scanning all the active executions.
+ *
+ * Reads are lock free. Writes are serialized so that empty entries can be
+ * dropped without racing a concurrent add for the same flow.
+ * </pre>
+ */
+public class ActiveExecutionIndex {
+  final private ConcurrentHashMap<Pair<Integer, String>, NavigableSet<Integer>> index =
+    new ConcurrentHashMap<Pair<Integer, String>, NavigableSet<Integer>>();
+
+  /**
+   * Adds an execution to the index
+   *
+   * @param exflow
+   */
+  public synchronized void add(ExecutableFlow exflow) {
+    Pair<Integer, String> key = getKey(exflow);
+    NavigableSet<Integer> executionIds = index.get(key);
+    if (executionIds == null) {
+      executionIds = new ConcurrentSkipListSet<Integer>();
+      index.put(key, executionIds);
+    }
+    executionIds.add(exflow.getExecutionId());
+  }
+
+  /**
+   * Removes an execution from the index, no-op if it isn't indexed
+   *
+   * @param exflow
+   */
+  public synchronized void remove(ExecutableFlow exflow) {
+    Pair<Integer, String> key = getKey(exflow);
+    NavigableSet<Integer> executionIds = index.get(key);
+    if (executionIds != null) {
+      executionIds.remove(exflow.getExecutionId());
+      if (executionIds.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Returns the sorted execution ids of all the active executions of a flow
+   *
+   * @param projectId
+   * @param flowId
+   * @return
+   */
+  public List<Integer> getExecutionIds(int projectId, String flowId) {
+    NavigableSet<Integer> executionIds =
+      index.get(new Pair<Integer, String>(projectId, flowId));
+    if (executionIds == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<Integer>(executionIds);
+  }
+
+  /**
+   * Checks if a flow has any active execution
+   *
+   * @param projectId
+   * @param flowId
+   * @return
+   */
+  public boolean hasExecution(int projectId, String flowId) {
+    NavigableSet<Integer> executionIds =
+      index.get(new Pair<Integer, String>(projectId, flowId));
+    return executionIds != null && !executionIds.isEmpty();
+  }
+
+  /**
+   * Empties the index
+   */
+  public synchronized void clear() {
+    index.clear();
+  }
+
+  private Pair<Integer, String> getKey(ExecutableFlow exflow) {
+    return new Pair<Integer, String>(exflow.getProjectId(), exflow.getFlowId());
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+/**
+ * <pre>
+ * Picks how long to wait before polling a running flow again.
+ *
+ * A flow that just changed is polled every minInterval. The longer a flow
+ * goes without a change the less often it is polled, up to maxInterval. The
+ * interval grows with a fraction (1 / backoffDivisor) of the time since the
+ * last change, and shrinks with the number of jobs running in the flow,
+ * since each of them can finish independently. A long running single job
+ * flow therefore backs off the fastest.
+ * </pre>
+ */
+public class AdaptivePollInterval {
+  public static final int DEFAULT_BACKOFF_DIVISOR = 4;
+
+  private final long minIntervalMs;
+  private final long maxIntervalMs;
+  private final int backoffDivisor;
+
+  public AdaptivePollInterval(long minIntervalMs, long maxIntervalMs) {
+    this(minIntervalMs, maxIntervalMs, DEFAULT_BACKOFF_DIVISOR);
+  }
+
+  public AdaptivePollInterval(long minIntervalMs, long maxIntervalMs,
+    int backoffDivisor) {
+    if (minIntervalMs < 0 || maxIntervalMs < minIntervalMs
+      || backoffDivisor < 1) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid poll intervals min: %d ms, max: %d ms, divisor: %d",
+        minIntervalMs, maxIntervalMs, backoffDivisor));
+    }
+    this.minIntervalMs = minIntervalMs;
+    this.maxIntervalMs = maxIntervalMs;
+    this.backoffDivisor = backoffDivisor;
+  }
+
+  /**
+   * Returns the time to wait before the next poll
+   *
+   * @param idleTimeMs time since the flow last changed
+   * @param runningJobs number of jobs currently running in the flow
+   * @return
+   */
+  public long getInterval(long idleTimeMs, int runningJobs) {
+    long interval =
+      Math.max(0, idleTimeMs) / ((long) backoffDivisor * Math.max(1, runningJobs));
+    return Math.min(maxIntervalMs, Math.max(minIntervalMs, interval));
+  }
+
+  public long getMinInterval() {
+    return minIntervalMs;
+  }
+
+  public long getMaxInterval() {
+    return maxIntervalMs;
+  }
+
+  /**
+   * Counts the jobs in RUNNING state, including the ones of embedded flows
+   *
+   * @param flow
+   * @return
+   */
+  public static int countRunningJobs(ExecutableFlowBase flow) {
+    int count = 0;
+    for (ExecutableNode node : flow.getExecutableNodes()) {
+      if (node instanceof ExecutableFlowBase) {
+        count += countRunningJobs((ExecutableFlowBase) node);
+      } else if (node.getStatus() == Status.RUNNING) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
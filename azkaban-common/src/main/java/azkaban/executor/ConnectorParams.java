@@ -34,6 +34,7 @@ public interface ConnectorParams {
   public static final String ATTACHMENTS_ACTION = "attachments";
   public static final String METADATA_ACTION = "metadata";
   public static final String RELOAD_JOBTYPE_PLUGINS_ACTION = "reloadJobTypePlugins";
+  public static final String PREFETCH_PROJECT_ACTION = "prefetchProject";
 
   public static final String MODIFY_EXECUTION_ACTION = "modifyExecution";
   public static final String MODIFY_EXECUTION_ACTION_TYPE = "modifyType";
@@ -51,6 +52,8 @@ public interface ConnectorParams {
   public static final String STATUS_PARAM = "status";
   public static final String NODES_PARAM = "nodes";
   public static final String EXECPATH_PARAM = "execpath";
+  public static final String PROJECT_ID_PARAM = "projectId";
+  public static final String PROJECT_VERSION_PARAM = "projectVersion";
 
   public static final String RESPONSE_NOTFOUND = "notfound";
   public static final String RESPONSE_ERROR = "error";
@@ -58,6 +61,7 @@ public interface ConnectorParams {
   public static final String RESPONSE_ALIVE = "alive";
   public static final String RESPONSE_UPDATETIME = "lasttime";
   public static final String RESPONSE_UPDATED_FLOWS = "updated";
+  public static final String RESPONSE_UPDATE_WAIT_TIME = "waittime";
 
   public static final int NODE_NAME_INDEX = 0;
   public static final int NODE_STATUS_INDEX = 1;
@@ -66,6 +70,7 @@ public interface ConnectorParams {
 
   public static final String UPDATE_TIME_LIST_PARAM = "updatetime";
   public static final String EXEC_ID_LIST_PARAM = "executionId";
+  public static final String UPDATE_WAIT_TIME_PARAM = "waittime";
 
   public static final String FORCED_FAILED_MARKER = ".failed";
 
@@ -94,6 +99,7 @@ public interface ConnectorParams {
   public static final String STATS_SET_MAXREPORTERPOINTS = "changeEmitterPoints";
   public static final String STATS_SET_ENABLEMETRICS = "enableMetrics";
   public static final String STATS_SET_DISABLEMETRICS = "disableMetrics";
+  public static final String STATS_GET_DISPATCHMETRICS = "getDispatchMetrics";
   public static final String STATS_MAP_METRICNAMEPARAM = "metricName";
 
   /**
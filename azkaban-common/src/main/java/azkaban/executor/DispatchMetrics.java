@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import azkaban.metric.LatencyHistogram;
+
+/**
+ * Latency of each stage between a flow submission and the executor reporting
+ * on it, plus dispatch errors per executor.
+ *
+ * <pre>
+ *  queued      : submit time till the flow is dispatched
+ *  selection   : time spent choosing an executor
+ *  dispatch    : execute call to the chosen executor
+ *  firstUpdate : successful dispatch till the first status update
+ * </pre>
+ */
+public class DispatchMetrics {
+  private final LatencyHistogram queuedTime = new LatencyHistogram();
+  private final LatencyHistogram selectionTime = new LatencyHistogram();
+  private final LatencyHistogram dispatchTime = new LatencyHistogram();
+  private final LatencyHistogram firstUpdateTime = new LatencyHistogram();
+
+  /* executor host:port to number of failed dispatch calls */
+  private final ConcurrentHashMap<String, AtomicLong> dispatchErrors =
+      new ConcurrentHashMap<String, AtomicLong>();
+  /* execution id to time it was dispatched, till its first update */
+  private final ConcurrentHashMap<Integer, Long> awaitingFirstUpdate =
+      new ConcurrentHashMap<Integer, Long>();
+
+  public LatencyHistogram getQueuedTime() {
+    return queuedTime;
+  }
+
+  public LatencyHistogram getSelectionTime() {
+    return selectionTime;
+  }
+
+  public LatencyHistogram getDispatchTime() {
+    return dispatchTime;
+  }
+
+  public LatencyHistogram getFirstUpdateTime() {
+    return firstUpdateTime;
+  }
+
+  public void recordDispatchError(Executor executor) {
+    String key = executor.getHost() + ":" + executor.getPort();
+    AtomicLong errors = dispatchErrors.get(key);
+    if (errors == null) {
+      dispatchErrors.putIfAbsent(key, new AtomicLong());
+      errors = dispatchErrors.get(key);
+    }
+    errors.incrementAndGet();
+  }
+
+  /**
+   * Returns number of failed dispatch calls keyed by executor host:port
+   */
+  public Map<String, Long> getDispatchErrors() {
+    Map<String, Long> errors = new TreeMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> entry : dispatchErrors.entrySet()) {
+      errors.put(entry.getKey(), entry.getValue().get());
+    }
+    return errors;
+  }
+
+  /* Marks a flow as dispatched, to time its first status update */
+  void markDispatched(int execId, long dispatchedTime) {
+    awaitingFirstUpdate.put(execId, dispatchedTime);
+  }
+
+  /* Records the first status update of a dispatched flow */
+  void markUpdated(int execId) {
+    Long dispatchedTime = awaitingFirstUpdate.remove(execId);
+    if (dispatchedTime != null) {
+      firstUpdateTime.record(System.currentTimeMillis() - dispatchedTime);
+    }
+  }
+
+  /* Stops tracking a flow which is done without any update */
+  void markFinished(int execId) {
+    awaitingFirstUpdate.remove(execId);
+  }
+
+  public Map<String, Object> toObject() {
+    Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+    metrics.put("queuedTime", queuedTime.toObject());
+    metrics.put("selectionTime", selectionTime.toObject());
+    metrics.put("dispatchTime", dispatchTime.toObject());
+    metrics.put("firstUpdateTime", firstUpdateTime.toObject());
+    metrics.put("dispatchErrors", getDispatchErrors());
+    return metrics;
+  }
+}
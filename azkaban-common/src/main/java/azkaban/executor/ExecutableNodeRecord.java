@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import azkaban.utils.Props;
+import azkaban.utils.PropsUtils;
+
+/**
+ * <pre>
+ * Snapshot of the execution_jobs columns of a node, taken when the write is
+ * requested.
+ *
+ * Writes that are deferred and batched must not read the live node, which
+ * may have moved on to its next attempt by the time the batch is flushed.
+ * The props are copied too, as the job keeps adding to its input props while
+ * it is set up.
+ * </pre>
+ */
+public class ExecutableNodeRecord {
+  private final int execId;
+  private final int projectId;
+  private final int version;
+  private final String flowPath;
+  private final String jobId;
+  private final int attempt;
+  private final long startTime;
+  private final long endTime;
+  private final Status status;
+  // input props of an upload, output props of an update
+  private final Props props;
+
+  public ExecutableNodeRecord(int execId, int projectId, int version,
+      String flowPath, String jobId, int attempt, long startTime,
+      long endTime, Status status, Props props) {
+    this.execId = execId;
+    this.projectId = projectId;
+    this.version = version;
+    this.flowPath = flowPath;
+    this.jobId = jobId;
+    this.attempt = attempt;
+    this.startTime = startTime;
+    this.endTime = endTime;
+    this.status = status;
+    this.props = props;
+  }
+
+  /**
+   * Record for the first write of a node attempt
+   *
+   * @param node
+   * @param inputProps
+   * @return
+   */
+  public static ExecutableNodeRecord forUpload(ExecutableNode node,
+      Props inputProps) {
+    ExecutableFlow flow = node.getExecutableFlow();
+    return new ExecutableNodeRecord(flow.getExecutionId(),
+        flow.getProjectId(), flow.getVersion(), node.getParentFlow()
+            .getFlowPath(), node.getId(), node.getAttempt(),
+        node.getStartTime(), node.getEndTime(), node.getStatus(),
+        copyProps(inputProps));
+  }
+
+  /**
+   * Record for a status update of an uploaded node attempt
+   *
+   * @param node
+   * @return
+   */
+  public static ExecutableNodeRecord forUpdate(ExecutableNode node) {
+    ExecutableFlow flow = node.getExecutableFlow();
+    return new ExecutableNodeRecord(flow.getExecutionId(),
+        flow.getProjectId(), flow.getVersion(), node.getParentFlow()
+            .getFlowPath(), node.getId(), node.getAttempt(),
+        node.getStartTime(), node.getEndTime(), node.getStatus(),
+        copyProps(node.getOutputProps()));
+  }
+
+  /* copies the props and their parents, which are written out as well */
+  private static Props copyProps(Props props) {
+    if (props == null) {
+      return null;
+    }
+    return PropsUtils.fromHierarchicalMap(PropsUtils.toHierarchicalMap(props));
+  }
+
+  /**
+   * Identifies the execution_jobs row written
+   *
+   * @return
+   */
+  public String getKey() {
+    return execId + ":" + flowPath + ":" + jobId + ":" + attempt;
+  }
+
+  public int getExecId() {
+    return execId;
+  }
+
+  public int getProjectId() {
+    return projectId;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  public String getFlowPath() {
+    return flowPath;
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public int getAttempt() {
+    return attempt;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public long getEndTime() {
+    return endTime;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public Props getProps() {
+    return props;
+  }
+}
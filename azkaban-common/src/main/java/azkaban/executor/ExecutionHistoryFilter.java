@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.Collection;
+
+/**
+ * <pre>
+ * Filters of an execution history search.
+ *
+ * Project, flow and user are given as substrings. Once resolved by an
+ * ExecutionSearchIndex, a substring may be replaced by the exact values it
+ * matches, which the loader turns into indexed IN lookups instead of
+ * LIKE '%term%' scans. A null value means no filter.
+ * </pre>
+ */
+public class ExecutionHistoryFilter {
+  private final String projectContains;
+  private final String flowContains;
+  private final String userContains;
+  private final int status;
+  private final long beginTime;
+  private final long endTime;
+
+  private Collection<Integer> projectIds;
+  private Collection<String> flowIds;
+  private Collection<String> submitUsers;
+
+  /**
+   * @param projectContains substring of the project name
+   * @param flowContains substring of the flow id
+   * @param userContains substring of the submit user
+   * @param status status value, 0 for any status
+   * @param beginTime only executions started after, -1 for none
+   * @param endTime only executions ended before, -1 for none
+   */
+  public ExecutionHistoryFilter(String projectContains, String flowContains,
+    String userContains, int status, long beginTime, long endTime) {
+    this.projectContains = emptyToNull(projectContains);
+    this.flowContains = emptyToNull(flowContains);
+    this.userContains = emptyToNull(userContains);
+    this.status = status;
+    this.beginTime = beginTime;
+    this.endTime = endTime;
+  }
+
+  private static String emptyToNull(String term) {
+    return term == null || term.isEmpty() ? null : term;
+  }
+
+  public String getProjectContains() {
+    return projectContains;
+  }
+
+  public String getFlowContains() {
+    return flowContains;
+  }
+
+  public String getUserContains() {
+    return userContains;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public long getBeginTime() {
+    return beginTime;
+  }
+
+  public long getEndTime() {
+    return endTime;
+  }
+
+  public Collection<Integer> getProjectIds() {
+    return projectIds;
+  }
+
+  public void setProjectIds(Collection<Integer> projectIds) {
+    this.projectIds = projectIds;
+  }
+
+  public Collection<String> getFlowIds() {
+    return flowIds;
+  }
+
+  public void setFlowIds(Collection<String> flowIds) {
+    this.flowIds = flowIds;
+  }
+
+  public Collection<String> getSubmitUsers() {
+    return submitUsers;
+  }
+
+  public void setSubmitUsers(Collection<String> submitUsers) {
+    this.submitUsers = submitUsers;
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+/**
+ * A contiguous, not yet encoded piece of a log, stored as one execution_logs
+ * row covering [startByte, startByte + length).
+ */
+public class ExecutionLogChunk {
+  private final int execId;
+  private final String name;
+  private final int attempt;
+  private final long startByte;
+  private final byte[] data;
+
+  public ExecutionLogChunk(int execId, String name, int attempt,
+      long startByte, byte[] data) {
+    this.execId = execId;
+    this.name = name;
+    this.attempt = attempt;
+    this.startByte = startByte;
+    this.data = data;
+  }
+
+  public int getExecId() {
+    return execId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getAttempt() {
+    return attempt;
+  }
+
+  public long getStartByte() {
+    return startByte;
+  }
+
+  public long getEndByte() {
+    return startByte + data.length;
+  }
+
+  public byte[] getData() {
+    return data;
+  }
+}
@@ -22,7 +22,8 @@ public class ExecutionReference {
   private long updateTime;
   private long nextCheckTime = -1;
   private int numErrors = 0;
-
+  // local time of the last status change seen for the execution
+  private long lastChangeTime = System.currentTimeMillis();
 
   public ExecutionReference(int execId) {
     this.execId = execId;
@@ -73,6 +74,14 @@ public class ExecutionReference {
     this.numErrors = numErrors;
   }
 
+  public long getLastChangeTime() {
+    return lastChangeTime;
+  }
+
+  public void setLastChangeTime(long lastChangeTime) {
+    this.lastChangeTime = lastChangeTime;
+  }
+
   public void setExecutor(Executor executor) {
     this.executor = executor;
   }
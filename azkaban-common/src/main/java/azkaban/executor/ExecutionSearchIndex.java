@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <pre>
+ * Resolves history search terms against the distinct project names, flow ids
+ * and submit users found in the execution history.
+ *
+ * There are far fewer distinct values than executions, so a substring search
+ * over them is cheap. It lets history searches filter execution_flows with
+ * indexed IN lookups on the matching values, instead of LIKE '%term%'
+ * predicates that scan the whole table.
+ *
+ * The values are read again for every search, so flows submitted on any web
+ * server are found. The projects table is small, and the distinct flow ids
+ * and submit users are read from their indexes. A term matching more than
+ * maxMatches values is left to the LIKE predicate: such a term matches most
+ * rows, so the scan finds a page of results early.
+ * </pre>
+ */
+public class ExecutionSearchIndex {
+  private final ExecutorLoader loader;
+  private final int maxMatches;
+
+  public ExecutionSearchIndex(ExecutorLoader loader, int maxMatches) {
+    this.loader = loader;
+    this.maxMatches = maxMatches;
+  }
+
+  /**
+   * Replaces the substring terms of the filter by the exact values they
+   * match, where there are at most maxMatches of them
+   *
+   * @param filter
+   * @return false if a term matches nothing, so no execution can match
+   * @throws ExecutorManagerException
+   */
+  public boolean resolve(ExecutionHistoryFilter filter)
+    throws ExecutorManagerException {
+    if (filter.getProjectContains() != null) {
+      String term = filter.getProjectContains().toLowerCase();
+      Set<Integer> matches = new HashSet<Integer>();
+      for (Map.Entry<Integer, String> entry : loader.fetchProjectNames()
+        .entrySet()) {
+        if (entry.getValue().toLowerCase().contains(term)) {
+          matches.add(entry.getKey());
+        }
+      }
+      if (matches.isEmpty()) {
+        return false;
+      }
+      if (matches.size() <= maxMatches) {
+        filter.setProjectIds(matches);
+      }
+    }
+
+    if (filter.getFlowContains() != null) {
+      Set<String> matches =
+        match(loader.fetchDistinctFlowIds(), filter.getFlowContains());
+      if (matches.isEmpty()) {
+        return false;
+      }
+      if (matches.size() <= maxMatches) {
+        filter.setFlowIds(matches);
+      }
+    }
+
+    if (filter.getUserContains() != null) {
+      Set<String> matches =
+        match(loader.fetchDistinctSubmitUsers(), filter.getUserContains());
+      if (matches.isEmpty()) {
+        return false;
+      }
+      if (matches.size() <= maxMatches) {
+        filter.setSubmitUsers(matches);
+      }
+    }
+    return true;
+  }
+
+  /* case insensitive, like the LIKE predicate it replaces */
+  private static Set<String> match(Collection<String> values, String term) {
+    String lowerTerm = term.toLowerCase();
+    Set<String> matches = new HashSet<String>();
+    for (String value : values) {
+      if (value.toLowerCase().contains(lowerTerm)) {
+        matches.add(value);
+      }
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+/**
+ * <pre>
+ * Read only view of a flow execution, built from the columns of the
+ * execution_flows table alone.
+ *
+ * Listing pages only show these fields, so fetching summaries avoids reading
+ * and inflating the flow_data blob of every execution in the page.
+ * </pre>
+ */
+public class ExecutionSummary {
+  private final int executionId;
+  private final int projectId;
+  private final int version;
+  private final String flowId;
+  private final Status status;
+  private final String submitUser;
+  private final long submitTime;
+  private final long updateTime;
+  private final long startTime;
+  private final long endTime;
+
+  public ExecutionSummary(int executionId, int projectId, int version,
+    String flowId, Status status, String submitUser, long submitTime,
+    long updateTime, long startTime, long endTime) {
+    this.executionId = executionId;
+    this.projectId = projectId;
+    this.version = version;
+    this.flowId = flowId;
+    this.status = status;
+    this.submitUser = submitUser;
+    this.submitTime = submitTime;
+    this.updateTime = updateTime;
+    this.startTime = startTime;
+    this.endTime = endTime;
+  }
+
+  public static ExecutionSummary fromExecutableFlow(ExecutableFlow flow) {
+    return new ExecutionSummary(flow.getExecutionId(), flow.getProjectId(),
+      flow.getVersion(), flow.getFlowId(), flow.getStatus(),
+      flow.getSubmitUser(), flow.getSubmitTime(), flow.getUpdateTime(),
+      flow.getStartTime(), flow.getEndTime());
+  }
+
+  public int getExecutionId() {
+    return executionId;
+  }
+
+  public int getProjectId() {
+    return projectId;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  public String getFlowId() {
+    return flowId;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public String getSubmitUser() {
+    return submitUser;
+  }
+
+  public long getSubmitTime() {
+    return submitTime;
+  }
+
+  public long getUpdateTime() {
+    return updateTime;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public long getEndTime() {
+    return endTime;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ExecutionSummary %d of %s, status %s", executionId,
+      flowId, status);
+  }
+}
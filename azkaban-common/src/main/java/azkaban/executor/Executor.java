@@ -120,6 +120,10 @@ public class Executor implements Comparable<Executor> {
     return clusterGroup;
   }
 
+  public void setClusterGroup(String clusterGroup) {
+    this.clusterGroup = clusterGroup;
+  }
+
   public ExecutorInfo getExecutorInfo() {
     return this.cachedExecutorStats;
   }
@@ -17,29 +17,177 @@
 package azkaban.executor;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
+
+import azkaban.utils.Props;
 import azkaban.utils.RestfulApiClient;
 
 /** Client class that will be used to handle all Restful API calls between Executor and the host application.
+ *  All calls share a single pooled, keep-alive connection manager so that the frequent
+ *  dispatch / update / log / stats calls to the same executors reuse their TCP connections.
  * */
 public class ExecutorApiClient extends RestfulApiClient<String> {
+  public static final String EXECUTOR_CLIENT_MAX_CONNECTIONS =
+      "azkaban.executor.client.maxConnections";
+  public static final String EXECUTOR_CLIENT_MAX_CONNECTIONS_PER_ROUTE =
+      "azkaban.executor.client.maxConnectionsPerRoute";
+  public static final String EXECUTOR_CLIENT_CONNECTION_REQUEST_TIMEOUT =
+      "azkaban.executor.client.connection.request.timeout.ms";
+  public static final String EXECUTOR_CLIENT_CONNECTION_TIMEOUT =
+      "azkaban.executor.client.connection.timeout.ms";
+  public static final String EXECUTOR_CLIENT_SOCKET_TIMEOUT =
+      "azkaban.executor.client.socket.timeout.ms";
+  public static final String EXECUTOR_CLIENT_KEEPALIVE =
+      "azkaban.executor.client.keepalive.ms";
+
+  private static final int DEFAULT_MAX_CONNECTIONS = 100;
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+  private static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS = 10000;
+  private static final int DEFAULT_CONNECTION_TIMEOUT_MS = 10000;
+  // dispatch calls wait on project setup in the executor, so reads get a
+  // generous bound by default. Calls with a known response time set their own.
+  private static final int DEFAULT_SOCKET_TIMEOUT_MS = 5 * 60 * 1000;
+  private static final long DEFAULT_KEEPALIVE_MS = 60000;
+
   private static ExecutorApiClient instance = null;
-  private ExecutorApiClient(){}
+
+  private final InstrumentedConnectionManager connectionManager;
+  private final CloseableHttpClient client;
+  private final RequestConfig requestConfig;
+
+  private ExecutorApiClient(Props props) {
+    connectionManager = new InstrumentedConnectionManager();
+    connectionManager.setMaxTotal(props.getInt(EXECUTOR_CLIENT_MAX_CONNECTIONS,
+        DEFAULT_MAX_CONNECTIONS));
+    connectionManager.setDefaultMaxPerRoute(props.getInt(
+        EXECUTOR_CLIENT_MAX_CONNECTIONS_PER_ROUTE,
+        DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+
+    requestConfig =
+        RequestConfig.custom()
+            .setConnectionRequestTimeout(props.getInt(
+                EXECUTOR_CLIENT_CONNECTION_REQUEST_TIMEOUT,
+                DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS))
+            .setConnectTimeout(props.getInt(EXECUTOR_CLIENT_CONNECTION_TIMEOUT,
+                DEFAULT_CONNECTION_TIMEOUT_MS))
+            .setSocketTimeout(props.getInt(EXECUTOR_CLIENT_SOCKET_TIMEOUT,
+                DEFAULT_SOCKET_TIMEOUT_MS))
+            .setStaleConnectionCheckEnabled(true).build();
+
+    final long keepAliveMs =
+        props.getLong(EXECUTOR_CLIENT_KEEPALIVE, DEFAULT_KEEPALIVE_MS);
+    ConnectionKeepAliveStrategy keepAliveStrategy =
+        new DefaultConnectionKeepAliveStrategy() {
+          @Override
+          public long getKeepAliveDuration(HttpResponse response,
+              HttpContext context) {
+            // honor a shorter server side keep-alive, but never keep idle
+            // connections longer than configured
+            long duration = super.getKeepAliveDuration(response, context);
+            return duration > 0 ? Math.min(duration, keepAliveMs) : keepAliveMs;
+          }
+        };
+
+    logger.info("Executor client configuration " + requestConfig.toString()
+        + ", maxConnections " + connectionManager.getMaxTotal()
+        + ", maxConnectionsPerRoute " + connectionManager.getDefaultMaxPerRoute()
+        + ", keepAliveMs " + keepAliveMs);
+
+    client =
+        HttpClients.custom().setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setKeepAliveStrategy(keepAliveStrategy).build();
+  }
+
+  /**
+   * Sets up the shared instance from azkaban properties. Subsequent calls are
+   * no-ops.
+   * */
+  public static synchronized void initialize(Props props) {
+    if (props == null) {
+      throw new NullPointerException("props argument can't be null");
+    }
+
+    if (null == instance) {
+      instance = new ExecutorApiClient(props);
+    }
+  }
 
   /**
    * Singleton method to return the instance of the current object.
+   * Falls back to default settings if {@link #initialize(Props)} wasn't called.
    * */
-  public static ExecutorApiClient getInstance(){
+  public static synchronized ExecutorApiClient getInstance(){
     if (null == instance){
-      instance = new ExecutorApiClient();
+      instance = new ExecutorApiClient(new Props());
     }
 
     return instance;
   }
 
+  /**
+   * Performs a Get http request that fails once no data is read from the
+   * socket for socketTimeoutMs, so a hung executor can't hold the calling
+   * thread.
+   *
+   * @param uri the URI of the request.
+   * @param headerEntries extra entries to be added to request header.
+   * @param socketTimeoutMs the longest wait for data, in ms.
+   * @return the response body.
+   * @throws IOException
+   */
+  public String httpGet(URI uri, List<NameValuePair> headerEntries,
+      long socketTimeoutMs) throws IOException {
+    if (null == uri) {
+      logger.error(" unable to perform httpGet as the passed uri is null");
+      return null;
+    }
+
+    HttpGet get = new HttpGet(uri);
+    get.setConfig(RequestConfig.copy(requestConfig)
+        .setSocketTimeout((int) Math.min(socketTimeoutMs, Integer.MAX_VALUE))
+        .build());
+    return sendAndReturn((HttpGet) completeRequest(get, headerEntries));
+  }
+
+  /** Dispatches the request over the shared pooled client. Only the response
+   * is closed so that the underlying connection goes back to the pool.
+   * */
+  @Override
+  protected String sendAndReturn(HttpUriRequest request) throws IOException {
+    CloseableHttpResponse response = client.execute(request);
+    try {
+      return this.parseResponse(response);
+    } finally {
+      response.close();
+    }
+  }
+
   /**Implementing the parseResponse function to return de-serialized Json object.
    * @param response  the returned response from the HttpClient.
    * @return de-serialized object from Json or null if the response doesn't have a body.
@@ -61,4 +209,77 @@ public class ExecutorApiClient extends RestfulApiClient<String> {
 
     return responseBody;
   }
+
+  /** Current usage of the connection pool across all executors. */
+  public PoolStats getPoolStats() {
+    return connectionManager.getTotalStats();
+  }
+
+  /** Number of connections handed out by the pool so far. */
+  public long getConnectionLeaseCount() {
+    return connectionManager.leaseCount.get();
+  }
+
+  /** Total time callers spent waiting for a pooled connection. */
+  public long getTotalConnectionLeaseWaitMs() {
+    return connectionManager.totalLeaseWaitMs.get();
+  }
+
+  /** Longest time a caller had to wait for a pooled connection. */
+  public long getMaxConnectionLeaseWaitMs() {
+    return connectionManager.maxLeaseWaitMs.get();
+  }
+
+  /** Number of requests that timed out waiting for a pooled connection. */
+  public long getConnectionLeaseTimeoutCount() {
+    return connectionManager.leaseTimeouts.get();
+  }
+
+  /**
+   * Connection manager that records how long callers wait to lease a
+   * connection from the pool.
+   */
+  private static class InstrumentedConnectionManager extends
+      PoolingHttpClientConnectionManager {
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong leaseTimeouts = new AtomicLong();
+    private final AtomicLong totalLeaseWaitMs = new AtomicLong();
+    private final AtomicLong maxLeaseWaitMs = new AtomicLong();
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+      final ConnectionRequest request = super.requestConnection(route, state);
+      return new ConnectionRequest() {
+        @Override
+        public HttpClientConnection get(long timeout, TimeUnit tunit)
+            throws InterruptedException, ExecutionException,
+            ConnectionPoolTimeoutException {
+          long start = System.currentTimeMillis();
+          try {
+            HttpClientConnection conn = request.get(timeout, tunit);
+            leaseCount.incrementAndGet();
+            return conn;
+          } catch (ConnectionPoolTimeoutException e) {
+            leaseTimeouts.incrementAndGet();
+            throw e;
+          } finally {
+            recordLeaseWait(System.currentTimeMillis() - start);
+          }
+        }
+
+        @Override
+        public boolean cancel() {
+          return request.cancel();
+        }
+      };
+    }
+
+    private void recordLeaseWait(long waited) {
+      totalLeaseWaitMs.addAndGet(waited);
+      long max = maxLeaseWaitMs.get();
+      while (waited > max && !maxLeaseWaitMs.compareAndSet(max, waited)) {
+        max = maxLeaseWaitMs.get();
+      }
+    }
+  }
 }
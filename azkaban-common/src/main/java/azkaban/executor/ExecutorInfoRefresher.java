@@ -0,0 +1,386 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.log4j.Logger;
+
+import azkaban.utils.Pair;
+
+/**
+ * <pre>
+ * Keeps the cached ExecutorInfo of the active executors fresh in the
+ * background, so that dispatching never waits on an executor.
+ *
+ * Every executor is refreshed once per refresh interval on the given thread
+ * pool. A cached ExecutorInfo older than the ttl is dropped, which makes
+ * the executor ineligible for dispatch until its next successful refresh.
+ *
+ * Each executor has a circuit breaker. After failureThreshold consecutive
+ * failed refreshes the circuit opens: the executor is skipped for dispatch
+ * and only probed again after a backoff, which doubles on every failed
+ * probe up to maxBackoffMs. A successful probe closes the circuit.
+ * </pre>
+ */
+public class ExecutorInfoRefresher {
+  private static final Logger logger = Logger
+    .getLogger(ExecutorInfoRefresher.class);
+  private static final long TICK_MS = 1000;
+
+  private final ExecutorService refresherService;
+  private final long refreshIntervalMs;
+  private final long ttlMs;
+  private final long fetchTimeoutMs;
+  private final int failureThreshold;
+  private final long maxBackoffMs;
+
+  // executor id -> executor currently being tracked
+  private volatile Map<Integer, Executor> executors =
+    new HashMap<Integer, Executor>();
+  private final ConcurrentHashMap<Integer, RefreshState> states =
+    new ConcurrentHashMap<Integer, RefreshState>();
+  private Runnable capacityListener;
+  private RefresherThread thread;
+
+  public ExecutorInfoRefresher(ExecutorService refresherService,
+    long refreshIntervalMs, long ttlMs, long fetchTimeoutMs,
+    int failureThreshold, long maxBackoffMs) {
+    this.refresherService = refresherService;
+    this.refreshIntervalMs = refreshIntervalMs;
+    this.ttlMs = ttlMs;
+    this.fetchTimeoutMs = fetchTimeoutMs;
+    this.failureThreshold = failureThreshold;
+    this.maxBackoffMs = maxBackoffMs;
+  }
+
+  /**
+   * Sets a callback run after a refresh found more capacity on an executor,
+   * or brought an unavailable executor back
+   *
+   * @param listener
+   */
+  public void setCapacityListener(Runnable listener) {
+    this.capacityListener = listener;
+  }
+
+  /**
+   * Replaces the set of executors to keep refreshed. The cached ExecutorInfo
+   * of executors already tracked is carried over to the new objects.
+   *
+   * @param newExecutors
+   */
+  public synchronized void setExecutors(Collection<Executor> newExecutors) {
+    Map<Integer, Executor> updated = new HashMap<Integer, Executor>();
+    for (Executor executor : newExecutors) {
+      Executor old = executors.get(executor.getId());
+      if (old != null && old != executor && executor.getExecutorInfo() == null) {
+        executor.setExecutorInfo(old.getExecutorInfo());
+      }
+      updated.put(executor.getId(), executor);
+      states.putIfAbsent(executor.getId(), new RefreshState());
+    }
+    states.keySet().retainAll(updated.keySet());
+    executors = updated;
+    requestRefresh(newExecutors);
+  }
+
+  public synchronized void start() {
+    if (thread == null) {
+      thread = new RefresherThread();
+      thread.start();
+    }
+  }
+
+  public synchronized void shutdown() {
+    if (thread != null) {
+      thread.shutdown();
+    }
+  }
+
+  /**
+   * Starts a refresh of every given executor that is not being refreshed
+   * already and whose circuit allows it. Does not wait for the refreshes.
+   *
+   * @param toRefresh
+   */
+  public void requestRefresh(Collection<Executor> toRefresh) {
+    long currentTime = System.currentTimeMillis();
+    for (Executor executor : toRefresh) {
+      RefreshState state = states.get(executor.getId());
+      if (state != null) {
+        startRefresh(executor, state, currentTime, false);
+      }
+    }
+  }
+
+  /**
+   * Verify, if an executor has a closed circuit and a cached ExecutorInfo
+   *
+   * @param executor
+   * @return
+   */
+  public boolean isAvailable(Executor executor) {
+    RefreshState state = states.get(executor.getId());
+    if (state == null) {
+      return executor.getExecutorInfo() != null;
+    }
+    synchronized (state) {
+      return state.consecutiveFailures < failureThreshold
+        && executor.getExecutorInfo() != null;
+    }
+  }
+
+  /**
+   * Returns the time by which every tracked executor had last been refreshed
+   * successfully, 0 if one of them never was
+   *
+   * @return
+   */
+  public long getLastSuccessfulRefreshTime() {
+    long oldest = Long.MAX_VALUE;
+    for (Integer id : executors.keySet()) {
+      RefreshState state = states.get(id);
+      if (state == null) {
+        return 0;
+      }
+      synchronized (state) {
+        oldest = Math.min(oldest, state.lastSuccessTime);
+      }
+    }
+    return oldest == Long.MAX_VALUE ? 0 : oldest;
+  }
+
+  /**
+   * Returns the executors whose circuit is open, with the number of
+   * consecutive failed refreshes
+   *
+   * @return
+   */
+  public List<Pair<Executor, Integer>> getOpenCircuits() {
+    List<Pair<Executor, Integer>> open = new ArrayList<Pair<Executor, Integer>>();
+    for (Executor executor : executors.values()) {
+      RefreshState state = states.get(executor.getId());
+      if (state != null) {
+        synchronized (state) {
+          if (state.consecutiveFailures >= failureThreshold) {
+            open.add(new Pair<Executor, Integer>(executor,
+              state.consecutiveFailures));
+          }
+        }
+      }
+    }
+    return open;
+  }
+
+  /**
+   * Fetches the current ExecutorInfo of an executor
+   *
+   * @param executor
+   * @return
+   * @throws Exception
+   */
+  @SuppressWarnings("unchecked")
+  protected ExecutorInfo fetchExecutorInfo(Executor executor) throws Exception {
+    URI uri =
+      ExecutorApiClient.buildUri(executor.getHost(), executor.getPort(),
+        "/serverStatistics", true);
+    return ExecutorInfo.fromJSONString(ExecutorApiClient.getInstance().httpGet(
+      uri, null, fetchTimeoutMs));
+  }
+
+  /*
+   * One round of the background thread: expires stale infos, times out hung
+   * refreshes and starts the refreshes that are due.
+   */
+  void refreshDue() {
+    long currentTime = System.currentTimeMillis();
+    for (Executor executor : executors.values()) {
+      RefreshState state = states.get(executor.getId());
+      if (state == null) {
+        continue;
+      }
+      synchronized (state) {
+        if (state.inFlight != null
+          && currentTime - state.lastAttemptTime > fetchTimeoutMs) {
+          state.inFlight.cancel(true);
+          state.inFlight = null;
+          // a late result of the cancelled refresh is ignored
+          state.attempt++;
+          logger.error("Timed out while waiting for ExecutorInfo refresh "
+            + executor);
+          recordFailure(executor, state, currentTime);
+        }
+        if (executor.getExecutorInfo() != null && state.lastSuccessTime > 0
+          && currentTime - state.lastSuccessTime > ttlMs) {
+          logger.warn(String.format(
+            "ExecutorInfo of executor %s is stale, last refreshed %d ms ago",
+            executor, currentTime - state.lastSuccessTime));
+          executor.setExecutorInfo(null);
+        }
+      }
+      startRefresh(executor, state, currentTime, true);
+    }
+  }
+
+  private void startRefresh(final Executor executor, final RefreshState state,
+    long currentTime, boolean onlyIfDue) {
+    synchronized (state) {
+      if (state.inFlight != null || currentTime < state.nextAttemptTime) {
+        return;
+      }
+      if (onlyIfDue && currentTime - state.lastAttemptTime < refreshIntervalMs) {
+        return;
+      }
+      state.lastAttemptTime = currentTime;
+      final long attempt = ++state.attempt;
+      try {
+        state.inFlight = refresherService.submit(new Runnable() {
+          @Override
+          public void run() {
+            refresh(executor, state, attempt);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        logger.error("Failed to schedule ExecutorInfo refresh for executor "
+          + executor, e);
+      }
+    }
+  }
+
+  private void refresh(Executor executor, RefreshState state, long attempt) {
+    ExecutorInfo info = null;
+    Exception error = null;
+    try {
+      info = fetchExecutorInfo(executor);
+    } catch (Exception e) {
+      error = e;
+    }
+
+    boolean moreCapacity = false;
+    long currentTime = System.currentTimeMillis();
+    synchronized (state) {
+      if (state.attempt != attempt) {
+        // already charged as timed out
+        return;
+      }
+      state.inFlight = null;
+      if (error != null) {
+        logger.error("Failed to update ExecutorInfo for executor : "
+          + executor, error);
+        recordFailure(executor, state, currentTime);
+        return;
+      }
+
+      ExecutorInfo previous = executor.getExecutorInfo();
+      moreCapacity =
+        previous == null || state.consecutiveFailures >= failureThreshold
+          || info.getRemainingFlowCapacity() > previous
+            .getRemainingFlowCapacity();
+      if (state.consecutiveFailures >= failureThreshold) {
+        logger.info("Closing circuit of executor " + executor);
+      }
+      state.consecutiveFailures = 0;
+      state.nextAttemptTime = 0;
+      state.lastSuccessTime = currentTime;
+      executor.setExecutorInfo(info);
+    }
+    logger.debug(String.format(
+      "Successfully refreshed executor: %s with executor info : %s", executor,
+      info));
+
+    Runnable listener = capacityListener;
+    if (moreCapacity && listener != null) {
+      listener.run();
+    }
+  }
+
+  /* caller holds the lock on state */
+  private void recordFailure(Executor executor, RefreshState state,
+    long currentTime) {
+    state.consecutiveFailures++;
+    if (state.consecutiveFailures >= failureThreshold) {
+      // an unreachable executor must not be picked on its last known stats
+      executor.setExecutorInfo(null);
+      int exponent =
+        Math.min(30, state.consecutiveFailures - failureThreshold);
+      long backoff = Math.min(maxBackoffMs, refreshIntervalMs << exponent);
+      state.nextAttemptTime = currentTime + backoff;
+      logger.warn(String.format(
+        "Circuit of executor %s open after %d failed refreshes, next probe in %d ms",
+        executor, state.consecutiveFailures, backoff));
+    }
+  }
+
+  private static class RefreshState {
+    private long lastSuccessTime;
+    private long lastAttemptTime;
+    // circuit breaker, no attempt before this time
+    private long nextAttemptTime;
+    private int consecutiveFailures;
+    private long attempt;
+    private Future<?> inFlight;
+  }
+
+  private class RefresherThread extends Thread {
+    private boolean shutdown = false;
+
+    private RefresherThread() {
+      this.setName("AzkabanWebServer-ExecutorInfoRefresher-Thread");
+      this.setDaemon(true);
+    }
+
+    private synchronized void shutdown() {
+      shutdown = true;
+      notify();
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        synchronized (this) {
+          if (shutdown) {
+            return;
+          }
+        }
+        try {
+          refreshDue();
+        } catch (Exception e) {
+          logger.error("Failed to refresh executor infos", e);
+        }
+        synchronized (this) {
+          try {
+            if (!shutdown) {
+              wait(TICK_MS);
+            }
+          } catch (InterruptedException e) {
+            logger.info("Interrupted. Probably to shut down.");
+          }
+        }
+      }
+    }
+  }
+}
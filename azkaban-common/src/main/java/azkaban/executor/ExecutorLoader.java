@@ -35,6 +35,15 @@ public interface ExecutorLoader {
   public Map<Integer, Pair<ExecutionReference, ExecutableFlow>> fetchActiveFlows()
       throws ExecutorManagerException;
 
+  /**
+   * <pre>
+   * The history reads return flow_data as last written in full, without the
+   * pending deltas of execution_flow_updates. A finished flow ends with a
+   * full write, so it has no deltas. A running flow is at most one
+   * compaction interval behind, which the listing pages accept; the flow
+   * page reads it with fetchExecutableFlow, which applies the deltas.
+   * </pre>
+   */
   public List<ExecutableFlow> fetchFlowHistory(int skip, int num)
       throws ExecutorManagerException;
 
@@ -48,6 +57,61 @@ public interface ExecutorLoader {
       String flowContains, String userNameContains, int status, long startData,
       long endData, int skip, int num) throws ExecutorManagerException;
 
+  /**
+   * <pre>
+   * Same as fetchFlowHistory, but only reads the columns of execution_flows
+   * and never the flow_data blob. Meant for listing pages.
+   * </pre>
+   */
+  public List<ExecutionSummary> fetchFlowHistorySummaries(int skip, int num)
+      throws ExecutorManagerException;
+
+  public List<ExecutionSummary> fetchFlowHistorySummaries(int projectId,
+      String flowId, int skip, int num) throws ExecutorManagerException;
+
+  public List<ExecutionSummary> fetchFlowHistorySummaries(int projectId,
+      String flowId, int skip, int num, Status status)
+      throws ExecutorManagerException;
+
+  public List<ExecutionSummary> fetchFlowHistorySummaries(String projContain,
+      String flowContains, String userNameContains, int status, long startData,
+      long endData, int skip, int num) throws ExecutorManagerException;
+
+  /**
+   * <pre>
+   * Fetch the summaries of the executions matching a filter, newest first.
+   * With beforeExecId > 0 only executions older than it are returned, which
+   * lets callers page by seeking on exec_id instead of skipping rows.
+   * </pre>
+   *
+   * @param filter
+   * @param beforeExecId 0 or less for no lower bound
+   * @param skip
+   * @param num
+   * @return
+   * @throws ExecutorManagerException
+   */
+  public List<ExecutionSummary> fetchFlowHistorySummaries(
+      ExecutionHistoryFilter filter, int beforeExecId, int skip, int num)
+      throws ExecutorManagerException;
+
+  /**
+   * Fetch the id and name of every project, for the execution search index
+   */
+  public Map<Integer, String> fetchProjectNames()
+      throws ExecutorManagerException;
+
+  /**
+   * Fetch the distinct flow ids of the execution history
+   */
+  public List<String> fetchDistinctFlowIds() throws ExecutorManagerException;
+
+  /**
+   * Fetch the distinct submit users of the execution history
+   */
+  public List<String> fetchDistinctSubmitUsers()
+      throws ExecutorManagerException;
+
   /**
    * <pre>
    * Fetch all executors from executors table
@@ -255,12 +319,51 @@ public interface ExecutorLoader {
   public void uploadLogFile(int execId, String name, int attempt, File... files)
       throws ExecutorManagerException;
 
+  /**
+   * <pre>
+   * Appends pieces of logs that are still being written, as one batch in one
+   * transaction. Consecutive chunks of a log must be appended in order and
+   * without gaps, so that fetchLogs can read the log while it grows.
+   * </pre>
+   *
+   * @param chunks
+   * @throws ExecutorManagerException
+   */
+  public void appendLogChunks(List<ExecutionLogChunk> chunks)
+      throws ExecutorManagerException;
+
+  /**
+   * Removes every chunk stored for a log, before it is uploaded again
+   *
+   * @param execId
+   * @param name
+   * @param attempt
+   * @throws ExecutorManagerException
+   */
+  public void removeExecutionLogs(int execId, String name, int attempt)
+      throws ExecutorManagerException;
+
   public void uploadAttachmentFile(ExecutableNode node, File file)
       throws ExecutorManagerException;
 
   public void updateExecutableFlow(ExecutableFlow flow)
       throws ExecutorManagerException;
 
+  /**
+   * <pre>
+   * Persists the status of a running flow and the nodes changed since
+   * lastUpdateTime, without rewriting the whole flow. The changes are folded
+   * into the stored flow by the next updateExecutableFlow call, and
+   * fetchExecutableFlow returns the flow with the changes applied.
+   * </pre>
+   *
+   * @param flow
+   * @param lastUpdateTime
+   * @throws ExecutorManagerException
+   */
+  public void updateExecutableFlowDelta(ExecutableFlow flow,
+      long lastUpdateTime) throws ExecutorManagerException;
+
   public void uploadExecutableNode(ExecutableNode node, Props inputParams)
       throws ExecutorManagerException;
 
@@ -276,6 +379,19 @@ public interface ExecutorLoader {
   public void updateExecutableNode(ExecutableNode node)
       throws ExecutorManagerException;
 
+  /**
+   * <pre>
+   * Writes a batch of execution_jobs rows in one transaction, the uploads
+   * (inserts) before the updates. Either all rows are written or none.
+   * </pre>
+   *
+   * @param uploads
+   * @param updates
+   * @throws ExecutorManagerException
+   */
+  public void writeExecutableNodes(List<ExecutableNodeRecord> uploads,
+      List<ExecutableNodeRecord> updates) throws ExecutorManagerException;
+
   public int fetchNumExecutableFlows(int projectId, String flowId)
       throws ExecutorManagerException;
 
@@ -295,4 +411,21 @@ public interface ExecutorLoader {
 
   public int removeExecutionLogsByTime(long millis)
       throws ExecutorManagerException;
+
+  /**
+   * <pre>
+   * Moves up to limit finished executions that ended before endTimeBefore to
+   * the execution archive, oldest first. Their execution_flows rows stay,
+   * without flow_data, and their jobs and logs are removed. The fetches of
+   * an execution, its jobs and logs fall back to the archive.
+   * Does nothing if there's no archive.
+   * </pre>
+   *
+   * @param endTimeBefore
+   * @param limit
+   * @return the number of executions archived
+   * @throws ExecutorManagerException
+   */
+  public int archiveExecutions(long endTimeBefore, int limit)
+      throws ExecutorManagerException;
 }
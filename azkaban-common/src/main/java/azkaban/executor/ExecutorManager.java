@@ -26,17 +26,26 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,6 +53,9 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import azkaban.alert.Alerter;
 import azkaban.event.Event;
 import azkaban.event.Event.Type;
@@ -76,14 +88,50 @@ public class ExecutorManager extends EventHandler implements
     "azkaban.use.multiple.executors";
   private static final String AZKABAN_WEBSERVER_QUEUE_SIZE =
     "azkaban.webserver.queue.size";
-  private static final String AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_MS =
+  static final String AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_MS =
     "azkaban.activeexecutor.refresh.milisecinterval";
-  private static final String AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_NUM_FLOW =
+  static final String AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_NUM_FLOW =
     "azkaban.activeexecutor.refresh.flowinterval";
   private static final String AZKABAN_EXECUTORINFO_REFRESH_MAX_THREADS =
       "azkaban.executorinfo.refresh.maxThreads";
+  static final String AZKABAN_EXECUTORINFO_REFRESH_INTERVAL_IN_MS =
+      "azkaban.executorinfo.refresh.interval.ms";
+  private static final String AZKABAN_EXECUTORINFO_TTL_IN_MS =
+      "azkaban.executorinfo.ttl.ms";
+  static final String AZKABAN_EXECUTORINFO_REFRESH_TIMEOUT_IN_MS =
+      "azkaban.executorinfo.refresh.timeout.ms";
+  private static final String AZKABAN_EXECUTORINFO_CIRCUIT_FAILURES =
+      "azkaban.executorinfo.circuit.failures";
+  private static final String AZKABAN_EXECUTORINFO_CIRCUIT_MAX_BACKOFF_IN_MS =
+      "azkaban.executorinfo.circuit.maxBackoff.ms";
   private static final String AZKABAN_MAX_DISPATCHING_ERRORS_PERMITTED =
     "azkaban.maxDispatchingErrors";
+  private static final String AZKABAN_DISPATCH_FLOW_MEMORY_ESTIMATE_IN_MB =
+    "azkaban.dispatch.flow.memory.estimate.mb";
+  private static final String AZKABAN_RECENTLY_FINISHED_MAX_SIZE =
+    "azkaban.executor.recentlyfinished.maxSize";
+  private static final String AZKABAN_RECENTLY_FINISHED_SUMMARY_ONLY =
+    "azkaban.executor.recentlyfinished.summaryOnly";
+  private static final String AZKABAN_FINISHED_EXECUTION_CACHE_MAX_BYTES =
+    "azkaban.executor.finished.cache.max.bytes";
+  private static final String AZKABAN_EXECUTOR_UPDATE_MAX_THREADS =
+    "azkaban.executor.update.maxThreads";
+  static final String AZKABAN_EXECUTOR_UPDATE_TIMEOUT_IN_MS =
+    "azkaban.executor.update.timeout.ms";
+  static final String AZKABAN_EXECUTOR_UPDATE_LONGPOLL_IN_MS =
+    "azkaban.executor.update.longpoll.ms";
+  static final String AZKABAN_EXECUTOR_UPDATE_MIN_INTERVAL_IN_MS =
+    "azkaban.executor.update.min.interval.ms";
+  private static final String AZKABAN_EXECUTOR_UPDATE_MAX_INTERVAL_IN_MS =
+    "azkaban.executor.update.max.interval.ms";
+  // the executor answers a prefetch right away and downloads in the background
+  private static final long PREFETCH_SOCKET_TIMEOUT_MS = 30000;
+  // a project version is prefetched at most once in this long, however many
+  // triggers of its flows fire
+  private static final long PREFETCH_DEDUP_MS = 30 * 60 * 1000;
+  private static final int PREFETCH_QUEUE_SIZE = 100;
+  private static final String AZKABAN_EXECUTION_SEARCH_INDEX_MAX_MATCHES =
+    "azkaban.execution.search.index.max.matches";
 
   private static Logger logger = Logger.getLogger(ExecutorManager.class);
   private ExecutorLoader executorLoader;
@@ -92,18 +140,33 @@ public class ExecutorManager extends EventHandler implements
 
   private ConcurrentHashMap<Integer, Pair<ExecutionReference, ExecutableFlow>> runningFlows =
       new ConcurrentHashMap<Integer, Pair<ExecutionReference, ExecutableFlow>>();
-  private ConcurrentHashMap<Integer, ExecutableFlow> recentlyFinished =
-      new ConcurrentHashMap<Integer, ExecutableFlow>();
+  // 10 mins recently finished threshold.
+  private static final long RECENTLY_FINISHED_LIFETIME_MS = 600000;
+  private final RecentlyFinishedFlows recentlyFinished;
+  private final FinishedExecutionCache finishedExecutions;
 
-  QueuedExecutions queuedFlows;
+  PartitionedQueuedExecutions queuedFlows;
+  /* queued and running flows by (projectId, flowId) */
+  final private ActiveExecutionIndex activeExecutionIndex =
+      new ActiveExecutionIndex();
 
   final private Set<Executor> activeExecutors = new HashSet<Executor>();
-  private QueueProcessorThread queueProcessor;
+  /* one queue processor per cluster group partition of queuedFlows */
+  private final ConcurrentHashMap<String, QueueProcessorThread> queueProcessors =
+      new ConcurrentHashMap<String, QueueProcessorThread>();
+  private volatile boolean queueProcessingActive;
 
   private ExecutingManagerUpdaterThread executingManager;
+  private final ConcurrentHashMap<String, Long> executorPollLatencies =
+      new ConcurrentHashMap<String, Long>();
+  private final DispatchMetrics dispatchMetrics = new DispatchMetrics();
+  private final ExecutionSearchIndex executionSearchIndex;
   // 12 weeks
   private static final long DEFAULT_EXECUTION_LOGS_RETENTION_MS = 3 * 4 * 7
       * 24 * 60 * 60 * 1000L;
+  // 4 weeks, before the logs are cleaned
+  private static final long DEFAULT_EXECUTION_ARCHIVE_AFTER_MS = 4 * 7 * 24
+      * 60 * 60 * 1000L;
   private long lastCleanerThreadCheckTime = -1;
 
   private long lastThreadCheckTime = -1;
@@ -116,24 +179,50 @@ public class ExecutorManager extends EventHandler implements
   private final Props azkProps;
   private List<String> filterList;
   private Map<String, Integer> comparatorWeightsMap;
-  private long lastSuccessfulExecutorInfoRefresh;
   private ExecutorService executorInforRefresherService;
+  private final ExecutorService prefetchService = new ThreadPoolExecutor(1, 1,
+      0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(
+          PREFETCH_QUEUE_SIZE));
+  // project id and version of the recent prefetches
+  private final Cache<Pair<Integer, Integer>, Boolean> prefetchedVersions =
+      CacheBuilder.newBuilder().maximumSize(10000)
+          .expireAfterWrite(PREFETCH_DEDUP_MS, TimeUnit.MILLISECONDS).build();
+  private ExecutorInfoRefresher executorInfoRefresher;
 
   public ExecutorManager(Props azkProps, ExecutorLoader loader,
       Map<String, Alerter> alerters) throws ExecutorManagerException {
     this.alerters = alerters;
     this.azkProps = azkProps;
     this.executorLoader = loader;
+    ExecutorApiClient.initialize(azkProps);
+    this.recentlyFinished =
+        new RecentlyFinishedFlows(RECENTLY_FINISHED_LIFETIME_MS,
+          azkProps.getInt(AZKABAN_RECENTLY_FINISHED_MAX_SIZE, 1000),
+          azkProps.getBoolean(AZKABAN_RECENTLY_FINISHED_SUMMARY_ONLY, true));
+    this.finishedExecutions =
+        new FinishedExecutionCache(azkProps.getLong(
+          AZKABAN_FINISHED_EXECUTION_CACHE_MAX_BYTES, 64 * 1024 * 1024L));
+    this.executionSearchIndex =
+        new ExecutionSearchIndex(loader, azkProps.getInt(
+          AZKABAN_EXECUTION_SEARCH_INDEX_MAX_MATCHES, 1000));
+    queuedFlows =
+        new PartitionedQueuedExecutions(azkProps.getLong(
+          AZKABAN_WEBSERVER_QUEUE_SIZE, 100000));
     this.setupExecutors();
     this.loadRunningFlows();
-
-    queuedFlows =
-        new QueuedExecutions(azkProps.getLong(AZKABAN_WEBSERVER_QUEUE_SIZE, 100000));
     this.loadQueuedFlows();
 
     cacheDir = new File(azkProps.getString("cache.directory", "cache"));
 
-    executingManager = new ExecutingManagerUpdaterThread();
+    executingManager =
+        new ExecutingManagerUpdaterThread(azkProps.getInt(
+          AZKABAN_EXECUTOR_UPDATE_MAX_THREADS, 10), azkProps.getLong(
+          AZKABAN_EXECUTOR_UPDATE_TIMEOUT_IN_MS, 5000), azkProps.getLong(
+          AZKABAN_EXECUTOR_UPDATE_LONGPOLL_IN_MS, 0),
+          new AdaptivePollInterval(azkProps.getLong(
+            AZKABAN_EXECUTOR_UPDATE_MIN_INTERVAL_IN_MS, 500), azkProps.getLong(
+            AZKABAN_EXECUTOR_UPDATE_MAX_INTERVAL_IN_MS, 5000)));
+    executingManager.resizeUpdaterPool(activeExecutors.size());
     executingManager.start();
 
     if(isMultiExecutorMode()) {
@@ -144,7 +233,12 @@ public class ExecutorManager extends EventHandler implements
         azkProps.getLong("execution.logs.retention.ms",
         DEFAULT_EXECUTION_LOGS_RETENTION_MS);
 
-    cleanerThread = new CleanerThread(executionLogsRetentionMs);
+    long executionArchiveAfterMs =
+        azkProps.getLong("execution.archive.after.ms",
+        DEFAULT_EXECUTION_ARCHIVE_AFTER_MS);
+
+    cleanerThread =
+        new CleanerThread(executionLogsRetentionMs, executionArchiveAfterMs);
     cleanerThread.start();
 
   }
@@ -170,16 +264,107 @@ public class ExecutorManager extends EventHandler implements
     executorInforRefresherService =
         Executors.newFixedThreadPool(azkProps.getInt(
           AZKABAN_EXECUTORINFO_REFRESH_MAX_THREADS, 5));
+    executorInfoRefresher =
+        new ExecutorInfoRefresher(executorInforRefresherService,
+          azkProps.getLong(AZKABAN_EXECUTORINFO_REFRESH_INTERVAL_IN_MS, 10000),
+          azkProps.getLong(AZKABAN_EXECUTORINFO_TTL_IN_MS, 60000),
+          azkProps.getLong(AZKABAN_EXECUTORINFO_REFRESH_TIMEOUT_IN_MS, 5000),
+          azkProps.getInt(AZKABAN_EXECUTORINFO_CIRCUIT_FAILURES, 3),
+          azkProps.getLong(AZKABAN_EXECUTORINFO_CIRCUIT_MAX_BACKOFF_IN_MS,
+            300000));
+    executorInfoRefresher.setCapacityListener(new Runnable() {
+      @Override
+      public void run() {
+        signalCapacityChange();
+      }
+    });
+    synchronized (activeExecutors) {
+      executorInfoRefresher.setExecutors(new HashSet<Executor>(activeExecutors));
+    }
+    executorInfoRefresher.start();
+
+    // configure queue processors, setupExecutors starts and stops them as
+    // cluster groups come and go
+    queueProcessingActive =
+      azkProps.getBoolean(AZKABAN_QUEUEPROCESSING_ENABLED, true);
+    updateQueueProcessors();
+  }
+
+  /*
+   * Starts a queue processor for every known cluster group, and stops the
+   * ones of cluster groups that are gone once their queue is empty.
+   */
+  private void updateQueueProcessors() {
+    getQueueProcessor(PartitionedQueuedExecutions.DEFAULT_PARTITION);
+    for (String clusterGroup : queuedFlows.getClusterGroups()) {
+      getQueueProcessor(clusterGroup);
+    }
+    for (Map.Entry<String, QueueProcessorThread> entry : queueProcessors
+      .entrySet()) {
+      if (queuedFlows.removeIdlePartition(entry.getKey())) {
+        logger.info("Stopping the queue processor of cluster group "
+          + entry.getKey());
+        queueProcessors.remove(entry.getKey(), entry.getValue());
+        entry.getValue().shutdown();
+      }
+    }
+  }
+
+  /*
+   * Returns the queue processor of a cluster group, starting it if needed.
+   * Returns null in local mode.
+   */
+  private QueueProcessorThread getQueueProcessor(String clusterGroup) {
+    if (!isMultiExecutorMode()) {
+      return null;
+    }
+    QueueProcessorThread processor = queueProcessors.get(clusterGroup);
+    if (processor == null) {
+      synchronized (queueProcessors) {
+        processor = queueProcessors.get(clusterGroup);
+        QueuedExecutions queue = queuedFlows.getQueue(clusterGroup);
+        if (processor == null && queue != null) {
+          processor =
+            new QueueProcessorThread(clusterGroup, queue, queueProcessingActive,
+              azkProps.getLong(AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_MS, 50000),
+              azkProps.getInt(AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_NUM_FLOW, 5),
+              azkProps.getInt(AZKABAN_MAX_DISPATCHING_ERRORS_PERMITTED,
+                activeExecutors.size()),
+              azkProps.getLong(AZKABAN_DISPATCH_FLOW_MEMORY_ESTIMATE_IN_MB, 0));
+          queueProcessors.put(clusterGroup, processor);
+          processor.start();
+        }
+      }
+    }
+    return processor;
+  }
 
-    // configure queue processor
-    queueProcessor =
-      new QueueProcessorThread(azkProps.getBoolean(
-        AZKABAN_QUEUEPROCESSING_ENABLED, true), azkProps.getLong(
-        AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_MS, 50000), azkProps.getInt(
-        AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_NUM_FLOW, 5), azkProps.getInt(
-        AZKABAN_MAX_DISPATCHING_ERRORS_PERMITTED, activeExecutors.size()));
+  /* Wakes up all queue processors waiting for executor capacity */
+  private void signalCapacityChange() {
+    for (QueueProcessorThread processor : queueProcessors.values()) {
+      processor.signalCapacityChange();
+    }
+  }
 
-    queueProcessor.start();
+  /*
+   * Snapshot of the active executors serving a cluster group. The default
+   * group uses all active executors. A group without active executors gets
+   * none, so its flows stay queued until one of its executors is back.
+   */
+  private Set<Executor> getClusterGroupExecutors(String clusterGroup) {
+    Set<Executor> executors = new HashSet<Executor>();
+    synchronized (activeExecutors) {
+      if (PartitionedQueuedExecutions.DEFAULT_PARTITION.equals(clusterGroup)) {
+        executors.addAll(activeExecutors);
+      } else {
+        for (Executor executor : activeExecutors) {
+          if (clusterGroup.equalsIgnoreCase(executor.getClusterGroup())) {
+            executors.add(executor);
+          }
+        }
+      }
+    }
+    return executors;
   }
 
   /**
@@ -190,10 +375,14 @@ public class ExecutorManager extends EventHandler implements
   @Override
   public void setupExecutors() throws ExecutorManagerException {
     Set<Executor> newExecutors = new HashSet<Executor>();
+    Set<String> clusterGroups = new HashSet<String>();
 
     if (isMultiExecutorMode()) {
       logger.info("Initializing multi executors from database");
       newExecutors.addAll(executorLoader.fetchActiveExecutors());
+      for (Executor executor : executorLoader.fetchAllExecutors()) {
+        clusterGroups.add(executor.getClusterGroup());
+      }
     } else if (azkProps.containsKey("executor.port")) {
       // Add local executor, if specified as per properties
       String executorHost = azkProps.getString("executor.host", "localhost");
@@ -221,8 +410,21 @@ public class ExecutorManager extends EventHandler implements
     } else {
       // clear all active executors, only if we have at least one new active
       // executors
-      activeExecutors.clear();
-      activeExecutors.addAll(newExecutors);
+      synchronized (activeExecutors) {
+        activeExecutors.clear();
+        activeExecutors.addAll(newExecutors);
+        if (executorInfoRefresher != null) {
+          executorInfoRefresher.setExecutors(newExecutors);
+        }
+        if (executingManager != null) {
+          executingManager.resizeUpdaterPool(newExecutors.size());
+        }
+      }
+      queuedFlows.setClusterGroups(clusterGroups);
+      if (executorInfoRefresher != null) {
+        updateQueueProcessors();
+      }
+      signalCapacityChange();
     }
   }
 
@@ -234,57 +436,6 @@ public class ExecutorManager extends EventHandler implements
     return azkProps.getBoolean(AZKABAN_USE_MULTIPLE_EXECUTORS, false);
   }
 
-  /**
-   * Refresh Executor stats for all the active executors in this executorManager
-   */
-  private void refreshExecutors() {
-    synchronized (activeExecutors) {
-
-      List<Pair<Executor, Future<String>>> futures =
-        new ArrayList<Pair<Executor, Future<String>>>();
-      for (final Executor executor : activeExecutors) {
-        // execute each executorInfo refresh task to fetch
-        Future<String> fetchExecutionInfo =
-                executorInforRefresherService.submit(new Callable<String>() {
-                  @Override
-                  public String call() throws Exception {
-                    return callExecutorForJsonString(executor.getHost(),
-                            executor.getPort(), "/serverStatistics", null);
-                  }
-                });
-        futures.add(new Pair<Executor, Future<String>>(executor,
-                fetchExecutionInfo));
-      }
-
-      boolean wasSuccess = true;
-      for (Pair<Executor, Future<String>> refreshPair : futures) {
-        Executor executor = refreshPair.getFirst();
-        executor.setExecutorInfo(null); // invalidate cached EXecutorInfo
-        try {
-          // max 5 secs
-          String jsonString = refreshPair.getSecond().get(5, TimeUnit.SECONDS);
-          executor.setExecutorInfo(ExecutorInfo.fromJSONString(jsonString));
-          logger.info(String.format(
-            "Successfully refreshed executor: %s with executor info : %s",
-            executor, jsonString));
-        } catch (TimeoutException e) {
-          wasSuccess = false;
-          logger.error("Timed out while waiting for ExecutorInfo refresh"
-            + executor, e);
-        } catch (Exception e) {
-          wasSuccess = false;
-          logger.error("Failed to update ExecutorInfo for executor : "
-            + executor, e);
-        }
-      }
-
-      // update is successful for all executors
-      if (wasSuccess) {
-        lastSuccessfulExecutorInfoRefresh = System.currentTimeMillis();
-      }
-    }
-  }
-
   /**
    * Throws exception if running in local mode
    * {@inheritDoc}
@@ -293,7 +444,10 @@ public class ExecutorManager extends EventHandler implements
   @Override
   public void disableQueueProcessorThread() throws ExecutorManagerException {
     if (isMultiExecutorMode()) {
-      queueProcessor.setActive(false);
+      queueProcessingActive = false;
+      for (QueueProcessorThread processor : queueProcessors.values()) {
+        processor.setActive(false);
+      }
     } else {
       throw new ExecutorManagerException(
         "Cannot disable QueueProcessor in local mode");
@@ -308,7 +462,10 @@ public class ExecutorManager extends EventHandler implements
   @Override
   public void enableQueueProcessorThread() throws ExecutorManagerException {
     if (isMultiExecutorMode()) {
-      queueProcessor.setActive(true);
+      queueProcessingActive = true;
+      for (QueueProcessorThread processor : queueProcessors.values()) {
+        processor.setActive(true);
+      }
     } else {
       throw new ExecutorManagerException(
         "Cannot enable QueueProcessor in local mode");
@@ -317,7 +474,8 @@ public class ExecutorManager extends EventHandler implements
 
   public State getQueueProcessorThreadState() {
     if (isMultiExecutorMode())
-      return queueProcessor.getState();
+      return getQueueProcessor(PartitionedQueuedExecutions.DEFAULT_PARTITION)
+        .getState();
     else
       return State.NEW; // not started in local mode
   }
@@ -330,7 +488,7 @@ public class ExecutorManager extends EventHandler implements
    */
   public boolean isQueueProcessorThreadActive() {
     if (isMultiExecutorMode())
-      return queueProcessor.isActive();
+      return queueProcessingActive;
     else
       return false;
   }
@@ -341,7 +499,23 @@ public class ExecutorManager extends EventHandler implements
    * @return
    */
   public long getLastSuccessfulExecutorInfoRefresh() {
-    return this.lastSuccessfulExecutorInfoRefresh;
+    if (executorInfoRefresher == null) {
+      return 0;
+    }
+    return executorInfoRefresher.getLastSuccessfulRefreshTime();
+  }
+
+  /**
+   * Returns the executors skipped for dispatch after repeated failures to
+   * refresh their ExecutorInfo, with the number of consecutive failures
+   *
+   * @return
+   */
+  public List<Pair<Executor, Integer>> getUnreachableExecutors() {
+    if (executorInfoRefresher == null) {
+      return Collections.emptyList();
+    }
+    return executorInfoRefresher.getOpenCircuits();
   }
 
   /**
@@ -414,6 +588,8 @@ public class ExecutorManager extends EventHandler implements
       if (clusterGroup.equalsIgnoreCase(executor.getClusterGroup())) {
         executors.add(executor);
       }
+    }
+    if (!executors.isEmpty()) {
       return executors;
     }
     return executorLoader.fetchExecutor(clusterGroup);
@@ -447,6 +623,9 @@ public class ExecutorManager extends EventHandler implements
 
   private void loadRunningFlows() throws ExecutorManagerException {
     runningFlows.putAll(executorLoader.fetchActiveFlows());
+    for (Pair<ExecutionReference, ExecutableFlow> pair : runningFlows.values()) {
+      activeExecutionIndex.add(pair.getSecond());
+    }
   }
 
   /*
@@ -459,6 +638,7 @@ public class ExecutorManager extends EventHandler implements
     if (retrievedExecutions != null) {
       for (Pair<ExecutionReference, ExecutableFlow> pair : retrievedExecutions) {
         queuedFlows.enqueue(pair.getSecond(), pair.getFirst());
+        activeExecutionIndex.add(pair.getSecond());
       }
     }
   }
@@ -473,26 +653,7 @@ public class ExecutorManager extends EventHandler implements
    */
   @Override
   public List<Integer> getRunningFlows(int projectId, String flowId) {
-    List<Integer> executionIds = new ArrayList<Integer>();
-    executionIds.addAll(getRunningFlowsHelper(projectId, flowId,
-      queuedFlows.getAllEntries()));
-    executionIds.addAll(getRunningFlowsHelper(projectId, flowId,
-      runningFlows.values()));
-    Collections.sort(executionIds);
-    return executionIds;
-  }
-
-  /* Helper method for getRunningFlows */
-  private List<Integer> getRunningFlowsHelper(int projectId, String flowId,
-    Collection<Pair<ExecutionReference, ExecutableFlow>> collection) {
-    List<Integer> executionIds = new ArrayList<Integer>();
-    for (Pair<ExecutionReference, ExecutableFlow> ref : collection) {
-      if (ref.getSecond().getFlowId().equals(flowId)
-        && ref.getSecond().getProjectId() == projectId) {
-        executionIds.add(ref.getFirst().getExecId());
-      }
-    }
-    return executionIds;
+    return activeExecutionIndex.getExecutionIds(projectId, flowId);
   }
 
   /**
@@ -530,26 +691,7 @@ public class ExecutorManager extends EventHandler implements
    */
   @Override
   public boolean isFlowRunning(int projectId, String flowId) {
-    boolean isRunning = false;
-    isRunning =
-      isRunning
-        || isFlowRunningHelper(projectId, flowId, queuedFlows.getAllEntries());
-    isRunning =
-      isRunning
-        || isFlowRunningHelper(projectId, flowId, runningFlows.values());
-    return isRunning;
-  }
-
-  /* Search a running flow in a collection */
-  private boolean isFlowRunningHelper(int projectId, String flowId,
-    Collection<Pair<ExecutionReference, ExecutableFlow>> collection) {
-    for (Pair<ExecutionReference, ExecutableFlow> ref : collection) {
-      if (ref.getSecond().getProjectId() == projectId
-        && ref.getSecond().getFlowId().equals(flowId)) {
-        return true;
-      }
-    }
-    return false;
+    return activeExecutionIndex.hasExecution(projectId, flowId);
   }
 
   /**
@@ -566,7 +708,14 @@ public class ExecutorManager extends EventHandler implements
     } else if (queuedFlows.hasExecution(execId)) {
       return queuedFlows.getFlow(execId);
     } else {
-      return executorLoader.fetchExecutableFlow(execId);
+      ExecutableFlow flow = finishedExecutions.get(execId);
+      if (flow == null) {
+        flow = executorLoader.fetchExecutableFlow(execId);
+        if (flow != null) {
+          finishedExecutions.put(flow);
+        }
+      }
+      return flow;
     }
   }
 
@@ -634,7 +783,7 @@ public class ExecutorManager extends EventHandler implements
   }
 
   public List<ExecutableFlow> getRecentlyFinishedFlows() {
-    return new ArrayList<ExecutableFlow>(recentlyFinished.values());
+    return recentlyFinished.getAll();
   }
 
   @Override
@@ -814,6 +963,7 @@ public class ExecutorManager extends EventHandler implements
           runningFlows.get(exFlow.getExecutionId());
         callExecutorServer(pair.getFirst(), ConnectorParams.CANCEL_ACTION,
           userId);
+        pollSoon(pair.getFirst());
       } else if (queuedFlows.hasExecution(exFlow.getExecutionId())) {
         queuedFlows.dequeue(exFlow.getExecutionId());
         finalizeFlows(exFlow);
@@ -837,6 +987,7 @@ public class ExecutorManager extends EventHandler implements
             + " isn't running.");
       }
       callExecutorServer(pair.getFirst(), ConnectorParams.RESUME_ACTION, userId);
+      pollSoon(pair.getFirst());
     }
   }
 
@@ -852,6 +1003,7 @@ public class ExecutorManager extends EventHandler implements
             + " isn't running.");
       }
       callExecutorServer(pair.getFirst(), ConnectorParams.PAUSE_ACTION, userId);
+      pollSoon(pair.getFirst());
     }
   }
 
@@ -942,6 +1094,7 @@ public class ExecutorManager extends EventHandler implements
                 new Pair<String, String>(
                     ConnectorParams.MODIFY_EXECUTION_ACTION_TYPE, command));
       }
+      pollSoon(pair.getFirst());
 
       return response;
     }
@@ -1047,17 +1200,30 @@ public class ExecutorManager extends EventHandler implements
         ExecutionReference reference =
           new ExecutionReference(exflow.getExecutionId());
 
+        // indexed before it can run, so finalizing it always removes it
+        activeExecutionIndex.add(exflow);
         if (isMultiExecutorMode()) {
           //Take MultiExecutor route
-          executorLoader.addActiveExecutableReference(reference);
-          queuedFlows.enqueue(exflow, reference);
+          try {
+            executorLoader.addActiveExecutableReference(reference);
+            queuedFlows.enqueue(exflow, reference);
+          } catch (ExecutorManagerException e) {
+            activeExecutionIndex.remove(exflow);
+            throw e;
+          }
         } else {
           // assign only local executor we have
           Executor choosenExecutor = activeExecutors.iterator().next();
-          executorLoader.addActiveExecutableReference(reference);
+          try {
+            executorLoader.addActiveExecutableReference(reference);
+          } catch (ExecutorManagerException e) {
+            activeExecutionIndex.remove(exflow);
+            throw e;
+          }
           try {
             dispatch(reference, exflow, choosenExecutor);
           } catch (ExecutorManagerException e) {
+            activeExecutionIndex.remove(exflow);
             executorLoader.removeActiveExecutableReference(reference
               .getExecId());
             throw e;
@@ -1125,6 +1291,18 @@ public class ExecutorManager extends EventHandler implements
   private Map<String, Object> callExecutorServer(String host, int port,
       String action, Integer executionId, String user,
       Pair<String, String>... params) throws IOException {
+    return callExecutorServerWithTimeout(host, port, -1, action, executionId,
+        user, params);
+  }
+
+  /*
+   * Calls the executor, failing once it sends no data for socketTimeoutMs. A
+   * socketTimeoutMs of 0 or less uses the default of the client.
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> callExecutorServerWithTimeout(String host,
+      int port, long socketTimeoutMs, String action, Integer executionId,
+      String user, Pair<String, String>... params) throws IOException {
     List<Pair<String, String>> paramList = new ArrayList<Pair<String,String>>();
 
     // if params = null
@@ -1139,7 +1317,8 @@ public class ExecutorManager extends EventHandler implements
     paramList.add(new Pair<String, String>(ConnectorParams.USER_PARAM, user));
 
     Map<String, Object> jsonResponse =
-      callExecutorForJsonObject(host, port, "/executor", paramList);
+      callExecutorForJsonObject(host, port, "/executor", paramList,
+        socketTimeoutMs);
 
     return jsonResponse;
   }
@@ -1150,8 +1329,14 @@ public class ExecutorManager extends EventHandler implements
    */
   private Map<String, Object> callExecutorForJsonObject(String host, int port,
     String path, List<Pair<String, String>> paramList) throws IOException {
+    return callExecutorForJsonObject(host, port, path, paramList, -1);
+  }
+
+  private Map<String, Object> callExecutorForJsonObject(String host, int port,
+    String path, List<Pair<String, String>> paramList, long socketTimeoutMs)
+    throws IOException {
     String responseString =
-      callExecutorForJsonString(host, port, path, paramList);
+      callExecutorForJsonString(host, port, path, paramList, socketTimeoutMs);
 
     @SuppressWarnings("unchecked")
     Map<String, Object> jsonResponse =
@@ -1169,6 +1354,12 @@ public class ExecutorManager extends EventHandler implements
    */
   private String callExecutorForJsonString(String host, int port, String path,
     List<Pair<String, String>> paramList) throws IOException {
+    return callExecutorForJsonString(host, port, path, paramList, -1);
+  }
+
+  private String callExecutorForJsonString(String host, int port, String path,
+    List<Pair<String, String>> paramList, long socketTimeoutMs)
+    throws IOException {
     if (paramList == null) {
       paramList = new ArrayList<Pair<String, String>>();
     }
@@ -1179,6 +1370,9 @@ public class ExecutorManager extends EventHandler implements
       ExecutorApiClient.buildUri(host, port, path, true,
         paramList.toArray(new Pair[0]));
 
+    if (socketTimeoutMs > 0) {
+      return apiclient.httpGet(uri, null, socketTimeoutMs);
+    }
     return apiclient.httpGet(uri, null);
   }
 
@@ -1228,36 +1422,171 @@ public class ExecutorManager extends EventHandler implements
       Integer.valueOf(hostPortSplit[1]), "/jmx", paramList);
   }
 
+  /**
+   * The executor a flow runs on is only picked at dispatch, so the version is
+   * prefetched on every active executor, but once per PREFETCH_DEDUP_MS.
+   *
+   * {@inheritDoc}
+   * @see azkaban.executor.ExecutorManagerAdapter#prefetchProjectVersion(int,
+   *      int)
+   */
+  @Override
+  public void prefetchProjectVersion(final int projectId, final int version) {
+    Pair<Integer, Integer> key = new Pair<Integer, Integer>(projectId, version);
+    if (prefetchedVersions.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+      return;
+    }
+
+    for (final Executor executor : new ArrayList<Executor>(activeExecutors)) {
+      try {
+        submitPrefetch(executor, projectId, version);
+      } catch (RejectedExecutionException e) {
+        logger.warn("Too many prefetches queued, skipping project " + projectId
+            + " version " + version + " on " + executor.getHost() + ":"
+            + executor.getPort());
+        prefetchedVersions.invalidate(key);
+      }
+    }
+  }
+
+  private void submitPrefetch(final Executor executor, final int projectId,
+      final int version) {
+    prefetchService.submit(new Runnable() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public void run() {
+        try {
+          callExecutorServerWithTimeout(executor.getHost(),
+              executor.getPort(), PREFETCH_SOCKET_TIMEOUT_MS,
+              ConnectorParams.PREFETCH_PROJECT_ACTION, null, null,
+              new Pair<String, String>(ConnectorParams.PROJECT_ID_PARAM,
+                  String.valueOf(projectId)), new Pair<String, String>(
+                  ConnectorParams.PROJECT_VERSION_PARAM, String
+                      .valueOf(version)));
+        } catch (IOException e) {
+          logger.warn("Failed to prefetch project " + projectId
+              + " version " + version + " on " + executor.getHost() + ":"
+              + executor.getPort(), e);
+        }
+      }
+    });
+  }
+
   @Override
   public void shutdown() {
     if (isMultiExecutorMode()) {
-      queueProcessor.shutdown();
+      for (QueueProcessorThread processor : queueProcessors.values()) {
+        processor.shutdown();
+      }
+      executorInfoRefresher.shutdown();
     }
     executingManager.shutdown();
+    prefetchService.shutdown();
   }
 
   private class ExecutingManagerUpdaterThread extends Thread {
     private boolean shutdown = false;
 
-    public ExecutingManagerUpdaterThread() {
+    public ExecutingManagerUpdaterThread(int maxUpdaterThreads,
+      long executorUpdateTimeoutMs, long executorUpdateLongPollMs,
+      AdaptivePollInterval pollInterval) {
       this.setName("ExecutorManagerUpdaterThread");
-    }
-
-    // 10 mins recently finished threshold.
-    private long recentlyFinishedLifetimeMs = 600000;
-    private int waitTimeIdleMs = 2000;
-    private int waitTimeMs = 500;
+      this.executorUpdateTimeoutMs = executorUpdateTimeoutMs;
+      this.executorUpdateLongPollMs = executorUpdateLongPollMs;
+      this.pollInterval = pollInterval;
+      this.waitTimeMs = pollInterval.getMinInterval();
+      this.wakeUpSignal.run();
+      this.maxUpdaterThreads = maxUpdaterThreads;
+      this.executorUpdaterService =
+        new ThreadPoolExecutor(maxUpdaterThreads, maxUpdaterThreads, 0L,
+          TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+      this.updateCompletionService =
+        new ExecutorCompletionService<ExecutorUpdate>(executorUpdaterService,
+          completionQueue);
+    }
+
+    private long waitTimeIdleMs = 2000;
+    private final long waitTimeMs;
+    // Without long polling, each flow is polled on its own cadence: often
+    // while its jobs change, less often while nothing happens.
+    private final AdaptivePollInterval pollInterval;
 
     // When we have an http error, for that flow, we'll check every 10 secs, 6
     // times (1 mins) before we evict.
     private int numErrors = 6;
     private long errorThreshold = 10000;
 
+    // Each executor is polled on its own thread. A call that has not returned
+    // within this long (on top of the long poll wait) is charged as an error,
+    // so one hung executor cannot stall the others.
+    private final long executorUpdateTimeoutMs;
+    // When positive, executors hold the update call for up to this long until
+    // one of their flows changes, instead of being polled every waitTimeMs.
+    private final long executorUpdateLongPollMs;
+    private final int maxUpdaterThreads;
+    private final ThreadPoolExecutor executorUpdaterService;
+    private final CompletionService<ExecutorUpdate> updateCompletionService;
+    private final BlockingQueue<Future<ExecutorUpdate>> completionQueue =
+        new LinkedBlockingQueue<Future<ExecutorUpdate>>();
+    // Completed with a null update, put on the completion queue to cut the
+    // wait short when a flow has to be polled right away.
+    private final FutureTask<ExecutorUpdate> wakeUpSignal =
+        new FutureTask<ExecutorUpdate>(new Runnable() {
+          @Override
+          public void run() {
+          }
+        }, null);
+    // executors to poll on the next round, regardless of their cadence
+    private final Set<Integer> wokenExecutors =
+        Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    // executor id -> update call that has not been collected yet
+    private final Map<Integer, ExecutorUpdate> pendingUpdates =
+        new HashMap<Integer, ExecutorUpdate>();
+    // executor id -> earliest time the executor is polled again
+    private final Map<Integer, Long> nextPollTimes = new HashMap<Integer, Long>();
+
     private void shutdown() {
       shutdown = true;
+      executorUpdaterService.shutdownNow();
+    }
+
+    /*
+     * A long poll call holds its thread until the executor answers, so with
+     * long polling the pool gets a thread per executor. Otherwise executors
+     * beyond the pool size would wait for another executor's call to return.
+     */
+    private synchronized void resizeUpdaterPool(int executors) {
+      if (executorUpdateLongPollMs <= 0) {
+        return;
+      }
+      int size = Math.max(maxUpdaterThreads, executors);
+      if (size > executorUpdaterService.getMaximumPoolSize()) {
+        executorUpdaterService.setMaximumPoolSize(size);
+        executorUpdaterService.setCorePoolSize(size);
+      } else if (size < executorUpdaterService.getCorePoolSize()) {
+        executorUpdaterService.setCorePoolSize(size);
+        executorUpdaterService.setMaximumPoolSize(size);
+      }
+      logger.info("Executor update pool sized to " + size + " threads.");
+    }
+
+    /* Number of update calls that can run at the same time */
+    private int getUpdaterPoolSize() {
+      return executorUpdaterService.getCorePoolSize();
+    }
+
+    /*
+     * Makes the next round poll the execution right away, e.g. after it was
+     * dispatched or a user acted on it.
+     */
+    private void wakeUp(ExecutionReference ref) {
+      ref.setNextCheckTime(0);
+      if (ref.getExecutor() != null) {
+        wokenExecutors.add(ref.getExecutor().getId());
+      }
+      completionQueue.offer(wakeUpSignal);
     }
 
-    @SuppressWarnings("unchecked")
     public void run() {
       while (!shutdown) {
         try {
@@ -1271,95 +1600,22 @@ public class ExecutorManager extends EventHandler implements
           ArrayList<ExecutableFlow> finalizeFlows =
               new ArrayList<ExecutableFlow>();
 
-          if (exFlowMap.size() > 0) {
-            for (Map.Entry<Executor, List<ExecutableFlow>> entry : exFlowMap
-                .entrySet()) {
-              List<Long> updateTimesList = new ArrayList<Long>();
-              List<Integer> executionIdsList = new ArrayList<Integer>();
-
-              Executor executor = entry.getKey();
-
-              updaterStage =
-                  "Starting update flows on " + executor.getHost() + ":"
-                      + executor.getPort();
-
-              // We pack the parameters of the same host together before we
-              // query.
-              fillUpdateTimeAndExecId(entry.getValue(), executionIdsList,
-                  updateTimesList);
-
-              Pair<String, String> updateTimes =
-                  new Pair<String, String>(
-                      ConnectorParams.UPDATE_TIME_LIST_PARAM,
-                      JSONUtils.toJSON(updateTimesList));
-              Pair<String, String> executionIds =
-                  new Pair<String, String>(ConnectorParams.EXEC_ID_LIST_PARAM,
-                      JSONUtils.toJSON(executionIdsList));
-
-              Map<String, Object> results = null;
-              try {
-                results =
-                    callExecutorServer(executor.getHost(),
-                      executor.getPort(), ConnectorParams.UPDATE_ACTION,
-                        null, null, executionIds, updateTimes);
-              } catch (IOException e) {
-                logger.error(e);
-                for (ExecutableFlow flow : entry.getValue()) {
-                  Pair<ExecutionReference, ExecutableFlow> pair =
-                      runningFlows.get(flow.getExecutionId());
-
-                  updaterStage =
-                      "Failed to get update. Doing some clean up for flow "
-                          + pair.getSecond().getExecutionId();
-
-                  if (pair != null) {
-                    ExecutionReference ref = pair.getFirst();
-                    int numErrors = ref.getNumErrors();
-                    if (ref.getNumErrors() < this.numErrors) {
-                      ref.setNextCheckTime(System.currentTimeMillis()
-                          + errorThreshold);
-                      ref.setNumErrors(++numErrors);
-                    } else {
-                      logger.error("Evicting flow " + flow.getExecutionId()
-                          + ". The executor is unresponsive.");
-                      // TODO should send out an unresponsive email here.
-                      finalizeFlows.add(pair.getSecond());
-                    }
-                  }
-                }
-              }
+          submitUpdates(exFlowMap, finalizeFlows);
 
-              // We gets results
-              if (results != null) {
-                List<Map<String, Object>> executionUpdates =
-                    (List<Map<String, Object>>) results
-                        .get(ConnectorParams.RESPONSE_UPDATED_FLOWS);
-                for (Map<String, Object> updateMap : executionUpdates) {
-                  try {
-                    ExecutableFlow flow = updateExecution(updateMap);
-
-                    updaterStage = "Updated flow " + flow.getExecutionId();
-
-                    if (isFinished(flow)) {
-                      finishedFlows.add(flow);
-                      finalizeFlows.add(flow);
-                    }
-                  } catch (ExecutorManagerException e) {
-                    ExecutableFlow flow = e.getExecutableFlow();
-                    logger.error(e);
-
-                    if (flow != null) {
-                      logger.error("Finalizing flow " + flow.getExecutionId());
-                      finalizeFlows.add(flow);
-                    }
-                  }
-                }
-              }
-            }
+          updaterStage =
+              "Waiting for updates from " + pendingUpdates.size()
+                  + " executors.";
+          List<ExecutorUpdate> completedUpdates =
+              collectUpdates(getWaitTime(exFlowMap));
 
+          for (ExecutorUpdate update : completedUpdates) {
+            applyExecutorUpdate(update, finishedFlows, finalizeFlows);
+          }
+
+          if (exFlowMap.size() > 0 || completedUpdates.size() > 0) {
             updaterStage = "Evicting old recently finished flows.";
 
-            evictOldRecentlyFinished(recentlyFinishedLifetimeMs);
+            recentlyFinished.evictExpired();
             // Add new finished
             for (ExecutableFlow flow : finishedFlows) {
               if (flow.getScheduleId() >= 0
@@ -1368,7 +1624,8 @@ public class ExecutorManager extends EventHandler implements
                     cacheDir);
               }
               fireEventListeners(Event.create(flow, Type.FLOW_FINISHED));
-              recentlyFinished.put(flow.getExecutionId(), flow);
+              recentlyFinished.add(flow);
+              finishedExecutions.put(flow);
             }
 
             updaterStage =
@@ -1379,24 +1636,335 @@ public class ExecutorManager extends EventHandler implements
               finalizeFlows(flow);
             }
           }
+        } catch (Exception e) {
+          logger.error(e);
+        }
+      }
+    }
 
-          updaterStage = "Updated all active flows. Waiting for next round.";
+    /*
+     * Sends the update call to every executor that is due for one. An
+     * executor whose earlier call is still outstanding is not queried again.
+     * Once that call has run for too long, its flows are charged one error
+     * and the call is cancelled, so they still run down the error budget. A
+     * call still queued behind the others isn't charged.
+     */
+    private void submitUpdates(Map<Executor, List<ExecutableFlow>> exFlowMap,
+        List<ExecutableFlow> finalizeFlows) {
+      long currentTime = System.currentTimeMillis();
+      // flows may still run on executors that are no longer active
+      if (exFlowMap.size() > getUpdaterPoolSize()) {
+        resizeUpdaterPool(exFlowMap.size());
+      }
+      for (Map.Entry<Executor, List<ExecutableFlow>> entry : exFlowMap
+          .entrySet()) {
+        Executor executor = entry.getKey();
+        ExecutorUpdate pending = pendingUpdates.get(executor.getId());
+        if (pending != null) {
+          long startTime = pending.startTime;
+          long elapsed = currentTime - startTime;
+          if (startTime > 0
+              && elapsed > executorUpdateTimeoutMs + executorUpdateLongPollMs) {
+            logger.error("Update call to executor " + executor
+                + " has not returned in " + elapsed + " ms.");
+            recordPollLatency(executor, elapsed);
+            handleUpdateError(entry.getValue(), finalizeFlows);
+            pending.future.cancel(true);
+            pendingUpdates.remove(executor.getId());
+            nextPollTimes.put(executor.getId(), currentTime + errorThreshold);
+          }
+          continue;
+        }
 
-          synchronized (this) {
-            try {
-              if (runningFlows.size() > 0) {
-                this.wait(waitTimeMs);
-              } else {
-                this.wait(waitTimeIdleMs);
-              }
-            } catch (InterruptedException e) {
-            }
+        boolean woken = wokenExecutors.remove(executor.getId());
+        Long nextPollTime = nextPollTimes.get(executor.getId());
+        if (!woken && nextPollTime != null && nextPollTime > currentTime) {
+          continue;
+        }
+
+        updaterStage =
+            "Starting update flows on " + executor.getHost() + ":"
+                + executor.getPort();
+
+        ExecutorUpdate update = new ExecutorUpdate(executor, entry.getValue());
+        update.future = updateCompletionService.submit(update);
+        pendingUpdates.put(executor.getId(), update);
+      }
+    }
+
+    /*
+     * Waits up to waitMs for the first update call to return and then picks
+     * up every other call that has returned in the meantime.
+     */
+    private List<ExecutorUpdate> collectUpdates(long waitMs)
+        throws InterruptedException {
+      List<ExecutorUpdate> completedUpdates = new ArrayList<ExecutorUpdate>();
+      Future<ExecutorUpdate> future =
+          updateCompletionService.poll(waitMs, TimeUnit.MILLISECONDS);
+      while (future != null) {
+        try {
+          ExecutorUpdate update = future.get();
+          if (update == null) {
+            // woken up
+            future = updateCompletionService.poll();
+            continue;
           }
-        } catch (Exception e) {
+          int executorId = update.executor.getId();
+          if (pendingUpdates.get(executorId) == update) {
+            pendingUpdates.remove(executorId);
+          }
+          nextPollTimes.put(executorId, update.endTime
+              + (heldLongPoll(update) ? 0 : waitTimeMs));
+          completedUpdates.add(update);
+        } catch (ExecutionException e) {
+          logger.error(e.getCause());
+        } catch (CancellationException e) {
+          // an overdue call, already charged when it was cancelled
+        }
+        future = updateCompletionService.poll();
+      }
+      return completedUpdates;
+    }
+
+    /*
+     * Whether the executor held the call until something changed. Such an
+     * executor is asked again right away. Executors that don't support long
+     * polling answer at once, and are polled every waitTimeMs like without it.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean heldLongPoll(ExecutorUpdate update) {
+      if (executorUpdateLongPollMs <= 0 || update.results == null) {
+        return false;
+      }
+      Map<String, Object> results = update.results;
+      if (results.containsKey(ConnectorParams.RESPONSE_UPDATE_WAIT_TIME)) {
+        return true;
+      }
+      List<Map<String, Object>> executionUpdates =
+          (List<Map<String, Object>>) results
+              .get(ConnectorParams.RESPONSE_UPDATED_FLOWS);
+      return executionUpdates != null && !executionUpdates.isEmpty();
+    }
+
+    /*
+     * Sleeps until the next running flow is due for a poll, but never longer
+     * than the idle interval. Flows whose executor still has a call
+     * outstanding are picked up when that call returns.
+     */
+    private long getWaitTime(Map<Executor, List<ExecutableFlow>> exFlowMap) {
+      long waitTime = waitTimeIdleMs;
+      long currentTime = System.currentTimeMillis();
+      for (Pair<ExecutionReference, ExecutableFlow> runningFlow : runningFlows
+          .values()) {
+        Executor executor = runningFlow.getFirst().getExecutor();
+        if (executor == null || pendingUpdates.containsKey(executor.getId())) {
+          continue;
+        }
+        long dueTime = runningFlow.getFirst().getNextCheckTime();
+        Long nextPollTime = nextPollTimes.get(executor.getId());
+        if (nextPollTime != null) {
+          dueTime = Math.max(dueTime, nextPollTime);
+        }
+        waitTime = Math.min(waitTime, Math.max(0, dueTime - currentTime));
+      }
+      return waitTime;
+    }
+
+    /*
+     * Schedules the next poll of the flows of a successful update call, based
+     * on how recently each of them changed.
+     */
+    private void schedulePolls(List<ExecutableFlow> flows) {
+      if (executorUpdateLongPollMs > 0) {
+        // the executor holds the call until one of its flows changes
+        return;
+      }
+      long currentTime = System.currentTimeMillis();
+      for (ExecutableFlow flow : flows) {
+        Pair<ExecutionReference, ExecutableFlow> pair =
+            runningFlows.get(flow.getExecutionId());
+        if (pair == null || pair.getFirst().getNumErrors() > 0) {
+          continue;
+        }
+        ExecutionReference ref = pair.getFirst();
+        ref.setNextCheckTime(currentTime
+            + pollInterval.getInterval(currentTime - ref.getLastChangeTime(),
+                AdaptivePollInterval.countRunningJobs(pair.getSecond())));
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void applyExecutorUpdate(ExecutorUpdate update,
+        List<ExecutableFlow> finishedFlows, List<ExecutableFlow> finalizeFlows) {
+      Executor executor = update.executor;
+      long latency = update.endTime - update.startTime;
+      updaterStage =
+          "Applying update flows from " + executor.getHost() + ":"
+              + executor.getPort();
+
+      if (update.error != null) {
+        logger.error(update.error);
+        recordPollLatency(executor, latency);
+        handleUpdateError(update.flows, finalizeFlows);
+        return;
+      }
+
+      Map<String, Object> results = update.results;
+      // Time the executor held a long poll call is not latency.
+      if (results.containsKey(ConnectorParams.RESPONSE_UPDATE_WAIT_TIME)) {
+        latency -=
+            JSONUtils.getLongFromObject(results
+                .get(ConnectorParams.RESPONSE_UPDATE_WAIT_TIME));
+      }
+      recordPollLatency(executor, Math.max(0, latency));
+
+      List<Map<String, Object>> executionUpdates =
+          (List<Map<String, Object>>) results
+              .get(ConnectorParams.RESPONSE_UPDATED_FLOWS);
+      for (Map<String, Object> updateMap : executionUpdates) {
+        try {
+          ExecutableFlow flow = updateExecution(updateMap);
+
+          updaterStage = "Updated flow " + flow.getExecutionId();
+
+          if (isFinished(flow)) {
+            finishedFlows.add(flow);
+            finalizeFlows.add(flow);
+          }
+        } catch (ExecutorManagerException e) {
+          ExecutableFlow flow = e.getExecutableFlow();
           logger.error(e);
+
+          if (flow != null) {
+            logger.error("Finalizing flow " + flow.getExecutionId());
+            finalizeFlows.add(flow);
+          }
         }
       }
+      schedulePolls(update.flows);
     }
+
+    /*
+     * Charges one error against every flow of an executor that could not be
+     * updated. Flows that run out of their error budget are finalized.
+     */
+    private void handleUpdateError(List<ExecutableFlow> flows,
+        List<ExecutableFlow> finalizeFlows) {
+      for (ExecutableFlow flow : flows) {
+        Pair<ExecutionReference, ExecutableFlow> pair =
+            runningFlows.get(flow.getExecutionId());
+
+        if (pair != null) {
+          updaterStage =
+              "Failed to get update. Doing some clean up for flow "
+                  + pair.getSecond().getExecutionId();
+
+          ExecutionReference ref = pair.getFirst();
+          int numErrors = ref.getNumErrors();
+          if (ref.getNumErrors() < this.numErrors) {
+            ref.setNextCheckTime(System.currentTimeMillis() + errorThreshold);
+            ref.setNumErrors(++numErrors);
+          } else {
+            logger.error("Evicting flow " + flow.getExecutionId()
+                + ". The executor is unresponsive.");
+            // TODO should send out an unresponsive email here.
+            finalizeFlows.add(pair.getSecond());
+          }
+        }
+      }
+    }
+
+    /*
+     * A single update call to one executor. Failures are kept on the object
+     * rather than thrown so the updater thread knows which executor failed.
+     */
+    private class ExecutorUpdate implements Callable<ExecutorUpdate> {
+      private final Executor executor;
+      private final List<ExecutableFlow> flows;
+      // set once the call starts running, 0 while it's queued
+      private volatile long startTime = 0;
+      private volatile long endTime;
+      private volatile Map<String, Object> results;
+      private volatile Exception error;
+      private Future<ExecutorUpdate> future;
+
+      private ExecutorUpdate(Executor executor, List<ExecutableFlow> flows) {
+        this.executor = executor;
+        this.flows = flows;
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public ExecutorUpdate call() {
+        startTime = System.currentTimeMillis();
+        List<Long> updateTimesList = new ArrayList<Long>();
+        List<Integer> executionIdsList = new ArrayList<Integer>();
+        // We pack the parameters of the same host together before we
+        // query.
+        fillUpdateTimeAndExecId(flows, executionIdsList, updateTimesList);
+
+        Pair<String, String> updateTimes =
+            new Pair<String, String>(ConnectorParams.UPDATE_TIME_LIST_PARAM,
+                JSONUtils.toJSON(updateTimesList));
+        Pair<String, String> executionIds =
+            new Pair<String, String>(ConnectorParams.EXEC_ID_LIST_PARAM,
+                JSONUtils.toJSON(executionIdsList));
+        Pair<String, String> waitTime =
+            new Pair<String, String>(ConnectorParams.UPDATE_WAIT_TIME_PARAM,
+                String.valueOf(executorUpdateLongPollMs));
+
+        try {
+          // the executor holds a long poll open up to executorUpdateLongPollMs
+          results =
+              callExecutorServerWithTimeout(executor.getHost(),
+                  executor.getPort(), executorUpdateLongPollMs
+                      + executorUpdateTimeoutMs, ConnectorParams.UPDATE_ACTION,
+                  null, null, executionIds, updateTimes, waitTime);
+        } catch (Exception e) {
+          error = e;
+        }
+        endTime = System.currentTimeMillis();
+        return this;
+      }
+    }
+  }
+
+  /* Has the updater thread poll a running execution without waiting */
+  private void pollSoon(ExecutionReference ref) {
+    if (executingManager != null) {
+      executingManager.wakeUp(ref);
+    }
+  }
+
+  private void recordPollLatency(Executor executor, long latencyMs) {
+    executorPollLatencies.put(executor.getHost() + ":" + executor.getPort(),
+        latencyMs);
+  }
+
+  /**
+   * Latency histograms of the dispatch pipeline stages and dispatch errors by
+   * executor
+   */
+  public DispatchMetrics getDispatchMetrics() {
+    return dispatchMetrics;
+  }
+
+  /**
+   * Cache of the finished flows served by getExecutableFlow, with its hit
+   * and miss counts
+   */
+  public FinishedExecutionCache getFinishedExecutionCache() {
+    return finishedExecutions;
+  }
+
+  /**
+   * Returns the duration in milliseconds of the latest status update call to
+   * each executor, keyed by host:port.
+   *
+   * @return
+   */
+  public Map<String, Long> getExecutorPollLatencies() {
+    return new TreeMap<String, Long>(executorPollLatencies);
   }
 
   private void finalizeFlows(ExecutableFlow flow) {
@@ -1433,13 +2001,21 @@ public class ExecutorManager extends EventHandler implements
 
       updaterStage = "finalizing flow " + execId + " cleaning from memory";
       runningFlows.remove(execId);
+      signalCapacityChange();
       fireEventListeners(Event.create(dsFlow, Type.FLOW_FINISHED));
-      recentlyFinished.put(execId, dsFlow);
+      recentlyFinished.add(dsFlow);
+      finishedExecutions.put(dsFlow);
 
     } catch (ExecutorManagerException e) {
       logger.error(e);
     }
 
+    // flows still in runningFlows will be finalized again by the updater
+    if (!runningFlows.containsKey(execId)) {
+      activeExecutionIndex.remove(flow);
+      dispatchMetrics.markFinished(execId);
+    }
+
     // TODO append to the flow log that we forced killed this flow because the
     // target no longer had
     // the reference.
@@ -1543,20 +2119,6 @@ public class ExecutorManager extends EventHandler implements
     exFlow.setStatus(Status.FAILED);
   }
 
-  private void evictOldRecentlyFinished(long ageMs) {
-    ArrayList<Integer> recentlyFinishedKeys =
-        new ArrayList<Integer>(recentlyFinished.keySet());
-    long oldAgeThreshold = System.currentTimeMillis() - ageMs;
-    for (Integer key : recentlyFinishedKeys) {
-      ExecutableFlow flow = recentlyFinished.get(key);
-
-      if (flow.getEndTime() < oldAgeThreshold) {
-        // Evict
-        recentlyFinished.remove(key);
-      }
-    }
-  }
-
   private ExecutableFlow updateExecution(Map<String, Object> updateData)
       throws ExecutorManagerException {
 
@@ -1584,9 +2146,11 @@ public class ExecutorManager extends EventHandler implements
     // Reset errors.
     ref.setNextCheckTime(0);
     ref.setNumErrors(0);
+    ref.setLastChangeTime(System.currentTimeMillis());
     Status oldStatus = flow.getStatus();
     flow.applyUpdateObject(updateData);
     Status newStatus = flow.getStatus();
+    dispatchMetrics.markUpdated(execId);
 
     ExecutionOptions options = flow.getExecutionOptions();
     if (oldStatus != newStatus && newStatus.equals(Status.FAILED_FINISHING)) {
@@ -1686,6 +2250,82 @@ public class ExecutorManager extends EventHandler implements
         status);
   }
 
+  @Override
+  public List<ExecutionSummary> getExecutionSummaries(int skip, int size)
+      throws ExecutorManagerException {
+    return executorLoader.fetchFlowHistorySummaries(skip, size);
+  }
+
+  @Override
+  public List<ExecutionSummary> getExecutionSummaries(String flowIdContains,
+      int skip, int size) throws ExecutorManagerException {
+    return fetchExecutionSummaries(new ExecutionHistoryFilter(null,
+        flowIdContains, null, 0, -1, -1), 0, skip, size);
+  }
+
+  @Override
+  public List<ExecutionSummary> getExecutionSummaries(String projContain,
+      String flowContain, String userContain, int status, long begin, long end,
+      int skip, int size) throws ExecutorManagerException {
+    return fetchExecutionSummaries(new ExecutionHistoryFilter(projContain,
+        flowContain, userContain, status, begin, end), 0, skip, size);
+  }
+
+  @Override
+  public List<ExecutionSummary> getExecutionSummariesBefore(int beforeExecId,
+      int size) throws ExecutorManagerException {
+    return executorLoader.fetchFlowHistorySummaries(new ExecutionHistoryFilter(
+        null, null, null, 0, -1, -1), beforeExecId, 0, size);
+  }
+
+  @Override
+  public List<ExecutionSummary> getExecutionSummariesBefore(
+      String flowIdContains, int beforeExecId, int size)
+      throws ExecutorManagerException {
+    return fetchExecutionSummaries(new ExecutionHistoryFilter(null,
+        flowIdContains, null, 0, -1, -1), beforeExecId, 0, size);
+  }
+
+  @Override
+  public List<ExecutionSummary> getExecutionSummariesBefore(
+      String projContain, String flowContain, String userContain, int status,
+      long begin, long end, int beforeExecId, int size)
+      throws ExecutorManagerException {
+    return fetchExecutionSummaries(new ExecutionHistoryFilter(projContain,
+        flowContain, userContain, status, begin, end), beforeExecId, 0, size);
+  }
+
+  /*
+   * Resolves the substring filters through the search index before querying,
+   * so that the history table is searched by index instead of scanned
+   */
+  private List<ExecutionSummary> fetchExecutionSummaries(
+      ExecutionHistoryFilter filter, int beforeExecId, int skip, int size)
+      throws ExecutorManagerException {
+    if (!executionSearchIndex.resolve(filter)) {
+      return Collections.<ExecutionSummary> emptyList();
+    }
+    return executorLoader.fetchFlowHistorySummaries(filter, beforeExecId, skip,
+        size);
+  }
+
+  @Override
+  public int getExecutionSummaries(int projectId, String flowId, int from,
+      int length, List<ExecutionSummary> outputList)
+      throws ExecutorManagerException {
+    outputList.addAll(executorLoader.fetchFlowHistorySummaries(projectId,
+        flowId, from, length));
+    return executorLoader.fetchNumExecutableFlows(projectId, flowId);
+  }
+
+  @Override
+  public List<ExecutionSummary> getExecutionSummaries(int projectId,
+      String flowId, int from, int length, Status status)
+      throws ExecutorManagerException {
+    return executorLoader.fetchFlowHistorySummaries(projectId, flowId, from,
+        length, status);
+  }
+
   /*
    * cleaner thread to clean up execution_logs, etc in DB. Runs every day.
    */
@@ -1696,13 +2336,19 @@ public class ExecutorManager extends EventHandler implements
     private static final long CLEANER_THREAD_WAIT_INTERVAL_MS =
         24 * 60 * 60 * 1000;
 
+    // executions archived per transaction
+    private static final int ARCHIVE_BATCH_SIZE = 100;
+
     private final long executionLogsRetentionMs;
+    private final long executionArchiveAfterMs;
 
     private boolean shutdown = false;
     private long lastLogCleanTime = -1;
 
-    public CleanerThread(long executionLogsRetentionMs) {
+    public CleanerThread(long executionLogsRetentionMs,
+        long executionArchiveAfterMs) {
       this.executionLogsRetentionMs = executionLogsRetentionMs;
+      this.executionArchiveAfterMs = executionArchiveAfterMs;
       this.setName("AzkabanWebServer-Cleaner-Thread");
     }
 
@@ -1721,6 +2367,7 @@ public class ExecutorManager extends EventHandler implements
             // Cleanup old stuff.
             long currentTime = System.currentTimeMillis();
             if (currentTime - CLEANER_THREAD_WAIT_INTERVAL_MS > lastLogCleanTime) {
+              archiveExecutions();
               cleanExecutionLogs();
               lastLogCleanTime = currentTime;
             }
@@ -1733,6 +2380,24 @@ public class ExecutorManager extends EventHandler implements
       }
     }
 
+    private void archiveExecutions() {
+      long cutoff = DateTime.now().getMillis() - executionArchiveAfterMs;
+      int total = 0;
+      try {
+        int count;
+        do {
+          count = executorLoader.archiveExecutions(cutoff, ARCHIVE_BATCH_SIZE);
+          total += count;
+        } while (count == ARCHIVE_BATCH_SIZE && !shutdown);
+      } catch (ExecutorManagerException e) {
+        logger.error("Failed to archive executions", e);
+      }
+      if (total > 0) {
+        logger.info("Archived " + total + " executions finished before "
+            + new DateTime(cutoff).toString());
+      }
+    }
+
     private void cleanExecutionLogs() {
       logger.info("Cleaning old logs from execution_logs");
       long cutoff = DateTime.now().getMillis() - executionLogsRetentionMs;
@@ -1753,20 +2418,31 @@ public class ExecutorManager extends EventHandler implements
 
     executorLoader.assignExecutor(choosenExecutor.getId(),
       exflow.getExecutionId());
+    long dispatchStartTime = System.currentTimeMillis();
     try {
       callExecutorServer(exflow, choosenExecutor,
         ConnectorParams.EXECUTE_ACTION);
     } catch (ExecutorManagerException ex) {
+      dispatchMetrics.recordDispatchError(choosenExecutor);
       logger.error("Rolling back executor assignment for execution id:"
         + exflow.getExecutionId(), ex);
       executorLoader.unassignExecutor(exflow.getExecutionId());
       throw new ExecutorManagerException(ex);
-    }
+    } finally {
+      dispatchMetrics.getDispatchTime().record(
+        System.currentTimeMillis() - dispatchStartTime);
+    }
+    long dispatchedTime = System.currentTimeMillis();
+    dispatchMetrics.getQueuedTime().record(
+      dispatchStartTime - exflow.getSubmitTime());
+    dispatchMetrics.markDispatched(exflow.getExecutionId(), dispatchedTime);
     reference.setExecutor(choosenExecutor);
 
     // move from flow to running flows
+    reference.setLastChangeTime(dispatchedTime);
     runningFlows.put(exflow.getExecutionId(),
       new Pair<ExecutionReference, ExecutableFlow>(reference, exflow));
+    pollSoon(reference);
 
     logger.info(String.format(
       "Successfully dispatched exec %d with error count %d",
@@ -1779,29 +2455,46 @@ public class ExecutorManager extends EventHandler implements
    */
   private class QueueProcessorThread extends Thread {
     private static final long QUEUE_PROCESSOR_WAIT_IN_MS = 1000;
+    private final String clusterGroup;
+    private final QueuedExecutions queue;
     private final int maxDispatchingErrors;
     private final long activeExecutorRefreshWindowInMilisec;
     private final int activeExecutorRefreshWindowInFlows;
+    private final long flowMemoryEstimateInMB;
 
     private volatile boolean shutdown = false;
     private volatile boolean isActive = true;
 
-    public QueueProcessorThread(boolean isActive,
+    // signalled by other threads when executors may have free capacity or
+    // when new flows are queued
+    private final Object signalMonitor = new Object();
+    private boolean capacityChanged = false;
+
+    public QueueProcessorThread(String clusterGroup, QueuedExecutions queue,
+      boolean isActive,
       long activeExecutorRefreshWindowInTime,
       int activeExecutorRefreshWindowInFlows,
-      int maxDispatchingErrors) {
+      int maxDispatchingErrors,
+      long flowMemoryEstimateInMB) {
+      this.clusterGroup = clusterGroup;
+      this.queue = queue;
+      if (PartitionedQueuedExecutions.DEFAULT_PARTITION.equals(clusterGroup)) {
+        this.setName("AzkabanWebServer-QueueProcessor-Thread");
+      } else {
+        this.setName("AzkabanWebServer-QueueProcessor-Thread-" + clusterGroup);
+      }
       setActive(isActive);
       this.maxDispatchingErrors = maxDispatchingErrors;
+      this.flowMemoryEstimateInMB = flowMemoryEstimateInMB;
       this.activeExecutorRefreshWindowInFlows =
         activeExecutorRefreshWindowInFlows;
       this.activeExecutorRefreshWindowInMilisec =
         activeExecutorRefreshWindowInTime;
-      this.setName("AzkabanWebServer-QueueProcessor-Thread");
     }
 
     public void setActive(boolean isActive) {
       this.isActive = isActive;
-      logger.info("QueueProcessorThread active turned " + this.isActive);
+      logger.info(getName() + " active turned " + this.isActive);
     }
 
     public boolean isActive() {
@@ -1813,21 +2506,61 @@ public class ExecutorManager extends EventHandler implements
       this.interrupt();
     }
 
+    /* Wakes up the processor if it is waiting for executors to free up */
+    public void signalCapacityChange() {
+      synchronized (signalMonitor) {
+        capacityChanged = true;
+        signalMonitor.notifyAll();
+      }
+    }
+
+    /*
+     * Waits up to waitTimeInMs for a capacity change. Returns true if one was
+     * signalled.
+     */
+    private boolean waitForSignal(long waitTimeInMs)
+      throws InterruptedException {
+      synchronized (signalMonitor) {
+        if (waitTimeInMs > 0 && !capacityChanged) {
+          signalMonitor.wait(waitTimeInMs);
+        }
+        boolean changed = capacityChanged;
+        capacityChanged = false;
+        return changed;
+      }
+    }
+
     public void run() {
       // Loops till QueueProcessorThread is shutdown
       while (!shutdown) {
-        synchronized (this) {
-          try {
-            // start processing queue if active, other wait for sometime
-            if (isActive) {
-              processQueuedFlows(activeExecutorRefreshWindowInMilisec,
-                activeExecutorRefreshWindowInFlows);
-            }
-            wait(QUEUE_PROCESSOR_WAIT_IN_MS);
-          } catch (Exception e) {
-            logger.error(
-              "QueueProcessorThread Interrupted. Probably to shut down.", e);
+        try {
+          // start processing queue if active, other wait for sometime
+          if (isActive) {
+            processQueuedFlows(activeExecutorRefreshWindowInMilisec,
+              activeExecutorRefreshWindowInFlows);
           }
+          waitForSignal(QUEUE_PROCESSOR_WAIT_IN_MS);
+        } catch (Exception e) {
+          logger.error(
+            "QueueProcessorThread Interrupted. Probably to shut down.", e);
+        }
+      }
+      requeueLeftovers();
+    }
+
+    /*
+     * Hands flows still in the queue of a stopped processor, such as one it
+     * put back while being stopped, to the remaining partitions.
+     */
+    private void requeueLeftovers() {
+      for (Pair<ExecutionReference, ExecutableFlow> entry : queue
+        .getAllEntries()) {
+        queue.dequeue(entry.getSecond().getExecutionId());
+        try {
+          queuedFlows.enqueue(entry.getSecond(), entry.getFirst());
+        } catch (ExecutorManagerException e) {
+          logger.error("Failed to requeue execution "
+            + entry.getSecond().getExecutionId(), e);
         }
       }
     }
@@ -1840,7 +2573,8 @@ public class ExecutorManager extends EventHandler implements
       Pair<ExecutionReference, ExecutableFlow> runningCandidate;
       int currentContinuousFlowProcessed = 0;
 
-      while (isActive() && (runningCandidate = queuedFlows.fetchHead()) != null) {
+      while (!shutdown && isActive()
+        && (runningCandidate = queue.fetchHead()) != null) {
         ExecutionReference reference = runningCandidate.getFirst();
         ExecutableFlow exflow = runningCandidate.getSecond();
 
@@ -1851,8 +2585,10 @@ public class ExecutorManager extends EventHandler implements
         // refreshed
         if (currentTime - lastExecutorRefreshTime > activeExecutorsRefreshWindow
           || currentContinuousFlowProcessed >= maxContinuousFlowProcessed) {
-          // Refresh executorInfo for all activeExecutors
-          refreshExecutors();
+          // Refresh executorInfo for all executors of this cluster group in
+          // the background, dispatching goes on with the cached ones
+          executorInfoRefresher.requestRefresh(
+            getClusterGroupExecutors(clusterGroup));
           lastExecutorRefreshTime = currentTime;
           currentContinuousFlowProcessed = 0;
         }
@@ -1872,34 +2608,56 @@ public class ExecutorManager extends EventHandler implements
          */
         if(exflow.getUpdateTime() > lastExecutorRefreshTime) {
           // put back in the queue
-          queuedFlows.enqueue(exflow, reference);
+          queue.enqueue(exflow, reference);
           long sleepInterval =
             activeExecutorsRefreshWindow
               - (currentTime - lastExecutorRefreshTime);
-          // wait till next executor refresh
-          sleep(sleepInterval);
+          // wait till some executor frees up capacity or till next executor
+          // refresh, whichever comes first
+          if (waitForSignal(sleepInterval)) {
+            // force a refresh so the retry sees the freed capacity
+            lastExecutorRefreshTime = 0;
+          }
         } else {
           exflow.setUpdateTime(currentTime);
-          // process flow with current snapshot of activeExecutors
-          selectExecutorAndDispatchFlow(reference, exflow, new HashSet<Executor>(activeExecutors));
+          // process flow with current snapshot of this cluster group's
+          // reachable executors
+          selectExecutorAndDispatchFlow(reference, exflow,
+            getDispatchableExecutors());
         }
 
         // do not count failed flow processsing (flows still in queue)
-        if(queuedFlows.getFlow(exflow.getExecutionId()) == null) {
+        if(queue.getFlow(exflow.getExecutionId()) == null) {
           currentContinuousFlowProcessed++;
         }
       }
     }
 
+    /* Executors of the cluster group whose ExecutorInfo is available */
+    private Set<Executor> getDispatchableExecutors() {
+      Set<Executor> executors = getClusterGroupExecutors(clusterGroup);
+      Iterator<Executor> iterator = executors.iterator();
+      while (iterator.hasNext()) {
+        if (!executorInfoRefresher.isAvailable(iterator.next())) {
+          iterator.remove();
+        }
+      }
+      return executors;
+    }
+
     /* process flow with a snapshot of available Executors */
     private void selectExecutorAndDispatchFlow(ExecutionReference reference,
       ExecutableFlow exflow, Set<Executor> availableExecutors)
       throws ExecutorManagerException {
       synchronized (exflow) {
+        long selectionStartTime = System.currentTimeMillis();
         Executor selectedExecutor = selectExecutor(exflow, availableExecutors);
+        dispatchMetrics.getSelectionTime().record(
+          System.currentTimeMillis() - selectionStartTime);
         if (selectedExecutor != null) {
           try {
             dispatch(reference, exflow, selectedExecutor);
+            reserveCapacity(selectedExecutor);
           } catch (ExecutorManagerException e) {
             logger.warn(String.format(
                     "Executor %s responded with exception for exec: %d",
@@ -1912,6 +2670,26 @@ public class ExecutorManager extends EventHandler implements
       }
     }
 
+    /*
+     * Charges a dispatched flow against the cached ExecutorInfo of the
+     * executor, so that flows dispatched before the next refresh see the
+     * reduced capacity instead of a stale snapshot. The next refresh replaces
+     * the estimate with the executor's own numbers.
+     */
+    private void reserveCapacity(Executor executor) {
+      ExecutorInfo info = executor.getExecutorInfo();
+      if (info != null) {
+        // executors can be shared by the processors of several cluster groups
+        synchronized (info) {
+          info.setRemainingFlowCapacity(info.getRemainingFlowCapacity() - 1);
+          info.setNumberOfAssignedFlows(info.getNumberOfAssignedFlows() + 1);
+          info.setRemainingMemoryInMB(info.getRemainingMemoryInMB()
+            - flowMemoryEstimateInMB);
+          info.setLastDispatchedTime(System.currentTimeMillis());
+        }
+      }
+    }
+
     /* Helper method to fetch  overriding Executor, if a valid user has specifed otherwise return null */
     private Executor getUserSpecifiedExecutor(ExecutableFlow exflow, Set<Executor> availableExecutors) {
       Executor executor = null;
@@ -1947,21 +2725,23 @@ public class ExecutorManager extends EventHandler implements
                       "User specified executor for clusterGrop: %s for execution id: %d is not active, Looking up db.",
                       userExecutorOption, exflow.getExecutionId()));
               executors = executorLoader.fetchExecutor(userExecutorOption);
-              if (executors == null || executors.isEmpty()) {
-                logger.warn(String.format(
-                        "User specified executor for clusterGroup: %s for execution id: %d is missing from db. " +
-                                "Defaulting to availableExecutors",
-                        userExecutorOption, exflow.getExecutionId()));
-              } else {
-                Set<Executor> executorList = new HashSet<>();
-                for (Executor executor1 : executors) {
-                  for (Executor aliveExecutor : availableExecutors) {
-                    if (aliveExecutor.getId() == executor1.getId()) {
-                      executorList.add(aliveExecutor);
-                      break;
-                    }
+            }
+            if (executors == null || executors.isEmpty()) {
+              logger.warn(String.format(
+                      "User specified executor for clusterGroup: %s for execution id: %d is missing from db. " +
+                              "Defaulting to availableExecutors",
+                      userExecutorOption, exflow.getExecutionId()));
+            } else {
+              Set<Executor> executorList = new HashSet<>();
+              for (Executor executor1 : executors) {
+                for (Executor aliveExecutor : availableExecutors) {
+                  if (aliveExecutor.getId() == executor1.getId()) {
+                    executorList.add(aliveExecutor);
+                    break;
                   }
                 }
+              }
+              if (!executorList.isEmpty()) {
                 ExecutorSelector selector = new ExecutorSelector(filterList, comparatorWeightsMap);
                 executor = selector.getBest(executorList, exflow);
               }
@@ -2015,7 +2795,7 @@ public class ExecutorManager extends EventHandler implements
               exflow.getExecutionId(), reference.getNumErrors()));
       // TODO: handle scenario where a high priority flow failing to get
       // schedule can starve all others
-      queuedFlows.enqueue(exflow, reference);
+      queue.enqueue(exflow, reference);
     }
   }
 }
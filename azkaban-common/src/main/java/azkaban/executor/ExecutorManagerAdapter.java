@@ -123,6 +123,50 @@ public interface ExecutorManagerAdapter {
   public List<ExecutableFlow> getExecutableFlows(int projectId, String flowId,
       int from, int length, Status status) throws ExecutorManagerException;
 
+  /**
+   * <pre>
+   * Same as getExecutableFlows, but returns summaries built from the
+   * execution_flows columns, without loading the flow data. Use these for
+   * listing pages that do not need the flow graph.
+   * </pre>
+   */
+  public List<ExecutionSummary> getExecutionSummaries(int skip, int size)
+      throws ExecutorManagerException;
+
+  public List<ExecutionSummary> getExecutionSummaries(String flowIdContains,
+      int skip, int size) throws ExecutorManagerException;
+
+  public List<ExecutionSummary> getExecutionSummaries(String projContain,
+      String flowContain, String userContain, int status, long begin, long end,
+      int skip, int size) throws ExecutorManagerException;
+
+  public int getExecutionSummaries(int projectId, String flowId, int from,
+      int length, List<ExecutionSummary> outputList)
+      throws ExecutorManagerException;
+
+  public List<ExecutionSummary> getExecutionSummaries(int projectId,
+      String flowId, int from, int length, Status status)
+      throws ExecutorManagerException;
+
+  /**
+   * <pre>
+   * Keyset paged variants of getExecutionSummaries: return up to size
+   * executions older than beforeExecId, newest first. Unlike skipping rows,
+   * the cost of a page does not grow with its depth.
+   * </pre>
+   */
+  public List<ExecutionSummary> getExecutionSummariesBefore(int beforeExecId,
+      int size) throws ExecutorManagerException;
+
+  public List<ExecutionSummary> getExecutionSummariesBefore(
+      String flowIdContains, int beforeExecId, int size)
+      throws ExecutorManagerException;
+
+  public List<ExecutionSummary> getExecutionSummariesBefore(
+      String projContain, String flowContain, String userContain, int status,
+      long begin, long end, int beforeExecId, int size)
+      throws ExecutorManagerException;
+
   public List<ExecutableJobInfo> getExecutableJobs(Project project,
       String jobId, int skip, int size) throws ExecutorManagerException;
 
@@ -198,6 +242,16 @@ public interface ExecutorManagerAdapter {
   public Map<String, Object> callExecutorJMX(String hostPort, String action,
       String mBean) throws IOException;
 
+  /**
+   * Asks the active executors to get the files of a project version ready in
+   * the background, so its first execution doesn't wait for them. Failures
+   * are only logged.
+   *
+   * @param projectId
+   * @param version
+   */
+  public void prefetchProjectVersion(int projectId, int version);
+
   public void shutdown();
 
   public Set<String> getAllActiveExecutorServerHosts();
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+import azkaban.utils.JSONUtils;
+
+/**
+ * <pre>
+ * Cache of finished executions, which don't change anymore.
+ *
+ * Each flow weighs the size of its JSON, as stored in flow_data. The least
+ * recently used flows are evicted when the total weight goes over
+ * maxWeightBytes. Guava enforces the bound per segment of the cache, so
+ * eviction may start a little before that. The flows are shared, callers
+ * must not modify them.
+ * </pre>
+ */
+public class FinishedExecutionCache {
+  private final Cache<Integer, Entry> cache;
+
+  public FinishedExecutionCache(long maxWeightBytes) {
+    cache =
+        CacheBuilder.newBuilder().maximumWeight(maxWeightBytes)
+            .weigher(new Weigher<Integer, Entry>() {
+              @Override
+              public int weigh(Integer execId, Entry entry) {
+                return entry.weight;
+              }
+            }).recordStats().build();
+  }
+
+  /**
+   * @param execId
+   * @return the flow, or null if it isn't cached
+   */
+  public ExecutableFlow get(int execId) {
+    Entry entry = cache.getIfPresent(execId);
+    return entry == null ? null : entry.flow;
+  }
+
+  /**
+   * Caches the flow if it's finished
+   *
+   * @param flow
+   */
+  public void put(ExecutableFlow flow) {
+    if (!Status.isStatusFinished(flow.getStatus())) {
+      return;
+    }
+    int weight = JSONUtils.toJSON(flow.toObject()).length();
+    cache.put(flow.getExecutionId(), new Entry(flow, weight));
+  }
+
+  public void invalidate(int execId) {
+    cache.invalidate(execId);
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  private static class Entry {
+    private final ExecutableFlow flow;
+    private final int weight;
+
+    private Entry(ExecutableFlow flow, int weight) {
+      this.flow = flow;
+      this.weight = weight;
+    }
+  }
+}
@@ -26,12 +26,13 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.dbutils.QueryRunner;
@@ -43,6 +44,8 @@ import org.joda.time.DateTime;
 
 import azkaban.database.AbstractJdbcLoader;
 import azkaban.executor.ExecutorLogEvent.EventType;
+import azkaban.executor.archive.ArchivedExecution;
+import azkaban.executor.archive.ExecutionArchive;
 import azkaban.utils.FileIOUtils;
 import azkaban.utils.FileIOUtils.LogData;
 import azkaban.utils.GZIPUtils;
@@ -56,10 +59,80 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   private static final Logger logger = Logger
       .getLogger(JdbcExecutorLoader.class);
 
+  /**
+   * When set, running flows may be persisted as deltas in
+   * execution_flow_updates, which readers merge into flow_data. Must be set
+   * on every server sharing the database.
+   */
+  public static final String INCREMENTAL_FLOW_UPDATES =
+      "azkaban.execution.incremental.updates";
+
+  /**
+   * Directory of the execution archive. When set, archiveExecutions moves
+   * old executions there, and the fetches fall back to it.
+   */
+  public static final String EXECUTION_ARCHIVE_DIR = "execution.archive.dir";
+  public static final String EXECUTION_ARCHIVE_SEGMENT_MAX_BYTES =
+      "execution.archive.segment.max.bytes";
+  public static final String EXECUTION_ARCHIVE_CACHE_MAX_BYTES =
+      "execution.archive.cache.max.bytes";
+
+  /**
+   * When positive, execution ids are handed out from blocks of this size
+   * reserved in execution_id_blocks, and a submit is a single insert. Must be
+   * set on every server submitting flows to the database.
+   */
+  public static final String EXECUTION_ID_BLOCK_SIZE =
+      "azkaban.execution.id.block.size";
+
+  private static final String INSERT_EXECUTION_NODE =
+      "INSERT INTO execution_jobs "
+          + "(exec_id, project_id, version, flow_id, job_id, start_time, "
+          + "end_time, status, input_params, attempt) VALUES (?,?,?,?,?,?,?,?,?,?)";
+  private static final String UPSERT_EXECUTION_NODE =
+      "UPDATE execution_jobs "
+          + "SET start_time=?, end_time=?, status=?, output_params=? "
+          + "WHERE exec_id=? AND flow_id=? AND job_id=? AND attempt=?";
+  private static final String INSERT_EXECUTION_LOGS =
+      "INSERT INTO execution_logs "
+          + "(exec_id, name, attempt, enc_type, start_byte, end_byte, "
+          + "log, upload_time) VALUES (?,?,?,?,?,?,?,?)";
+
+  // encoding of flow_data and of the flow updates
   private EncodingType defaultEncodingType = EncodingType.GZIP;
+  private EncodingType logEncodingType = EncodingType.GZIP;
+  private final boolean incrementalFlowUpdates;
+  private final ExecutionArchive archive;
+
+  private final int idBlockSize;
+  // ids are taken from the block without locking, the lock is only held to
+  // reserve the next one
+  private volatile IdBlock idBlock = new IdBlock(0, 0);
+  private final Object idBlockLock = new Object();
 
   public JdbcExecutorLoader(Props props) {
     super(props);
+    incrementalFlowUpdates = props.getBoolean(INCREMENTAL_FLOW_UPDATES, false);
+    idBlockSize = props.getInt(EXECUTION_ID_BLOCK_SIZE, 0);
+    defaultEncodingType = getEncodingType(props, "flow", EncodingType.GZIP);
+    logEncodingType = getEncodingType(props, "log", EncodingType.GZIP);
+
+    String archiveDir = props.getString(EXECUTION_ARCHIVE_DIR, null);
+    if (archiveDir == null) {
+      archive = null;
+    } else {
+      try {
+        archive =
+            new ExecutionArchive(new File(archiveDir), getEncodingType(props,
+                "archive", EncodingType.XZ), props.getLong(
+                EXECUTION_ARCHIVE_SEGMENT_MAX_BYTES, 256 * 1024 * 1024L),
+                props.getLong(EXECUTION_ARCHIVE_CACHE_MAX_BYTES,
+                    32 * 1024 * 1024L));
+      } catch (IOException e) {
+        throw new RuntimeException("Error opening execution archive "
+            + archiveDir, e);
+      }
+    }
   }
 
   public EncodingType getDefaultEncodingType() {
@@ -70,50 +143,142 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     this.defaultEncodingType = defaultEncodingType;
   }
 
+  public EncodingType getLogEncodingType() {
+    return logEncodingType;
+  }
+
+  public void setLogEncodingType(EncodingType logEncodingType) {
+    this.logEncodingType = logEncodingType;
+  }
+
   @Override
-  public synchronized void uploadExecutableFlow(ExecutableFlow flow)
+  public void uploadExecutableFlow(ExecutableFlow flow)
       throws ExecutorManagerException {
     Connection connection = getConnection();
     try {
       uploadExecutableFlow(connection, flow, defaultEncodingType);
-    } catch (IOException e) {
-      throw new ExecutorManagerException("Error uploading flow", e);
     } finally {
       DbUtils.closeQuietly(connection);
     }
   }
 
-  private synchronized void uploadExecutableFlow(Connection connection,
+  /*
+   * Inserts the flow with an id of the current block, or inserts the row to
+   * get a generated id and then writes flow_data, in one transaction.
+   */
+  private void uploadExecutableFlow(Connection connection,
       ExecutableFlow flow, EncodingType encType)
-      throws ExecutorManagerException, IOException {
+      throws ExecutorManagerException {
     final String INSERT_EXECUTABLE_FLOW =
         "INSERT INTO execution_flows "
-            + "(project_id, flow_id, version, status, submit_time, submit_user, update_time) "
-            + "values (?,?,?,?,?,?,?)";
+            + "(project_id, flow_id, version, status, submit_time, submit_user, "
+            + "update_time, start_time, end_time) values (?,?,?,?,?,?,?,?,?)";
+    final String INSERT_EXECUTABLE_FLOW_WITH_ID =
+        "INSERT INTO execution_flows "
+            + "(exec_id, project_id, flow_id, version, status, submit_time, "
+            + "submit_user, update_time, start_time, end_time, enc_type, "
+            + "flow_data) values (?,?,?,?,?,?,?,?,?,?,?,?)";
+    final String UPDATE_EXECUTABLE_FLOW_DATA =
+        "UPDATE execution_flows SET enc_type=?, flow_data=? WHERE exec_id=?";
     QueryRunner runner = new QueryRunner();
     long submitTime = System.currentTimeMillis();
+    flow.setStatus(Status.PREPARING);
 
-    long id;
     try {
-      flow.setStatus(Status.PREPARING);
-      runner.update(connection, INSERT_EXECUTABLE_FLOW, flow.getProjectId(),
-          flow.getFlowId(), flow.getVersion(), Status.PREPARING.getNumVal(),
-          submitTime, flow.getSubmitUser(), submitTime);
+      if (idBlockSize > 0) {
+        flow.setExecutionId(allocateExecutionId());
+        runner.update(connection, INSERT_EXECUTABLE_FLOW_WITH_ID, flow
+            .getExecutionId(), flow.getProjectId(), flow.getFlowId(), flow
+            .getVersion(), Status.PREPARING.getNumVal(), submitTime, flow
+            .getSubmitUser(), flow.getUpdateTime(), flow.getStartTime(), flow
+            .getEndTime(), encType.getNumVal(), encodeFlowData(
+            flow.toObject(), encType));
+      } else {
+        long execId =
+            insertReturningKey(connection, INSERT_EXECUTABLE_FLOW,
+                flow.getProjectId(), flow.getFlowId(), flow.getVersion(),
+                Status.PREPARING.getNumVal(), submitTime,
+                flow.getSubmitUser(), flow.getUpdateTime(),
+                flow.getStartTime(), flow.getEndTime());
+        flow.setExecutionId((int) execId);
+        runner.update(connection, UPDATE_EXECUTABLE_FLOW_DATA,
+            encType.getNumVal(), encodeFlowData(flow.toObject(), encType),
+            flow.getExecutionId());
+      }
       connection.commit();
-      id =
-          runner.query(connection, LastInsertID.LAST_INSERT_ID,
-              new LastInsertID());
+      logger.info("Flow given " + flow.getFlowId() + " given id "
+          + flow.getExecutionId());
+    } catch (SQLException e) {
+      try {
+        connection.rollback();
+      } catch (SQLException e1) {
+        logger.error("Failed to roll back creation of execution", e1);
+      }
+      throw new ExecutorManagerException("Error creating execution.", e);
+    }
+  }
 
-      if (id == -1L) {
-        throw new ExecutorManagerException(
-            "Execution id is not properly created.");
+  private int allocateExecutionId() throws ExecutorManagerException {
+    while (true) {
+      IdBlock block = idBlock;
+      int id = block.next.getAndIncrement();
+      if (id < block.end) {
+        return id;
       }
-      logger.info("Flow given " + flow.getFlowId() + " given id " + id);
-      flow.setExecutionId((int) id);
+      synchronized (idBlockLock) {
+        if (idBlock == block) {
+          idBlock = reserveIdBlock();
+        }
+      }
+    }
+  }
 
-      updateExecutableFlow(connection, flow, encType);
+  private IdBlock reserveIdBlock() throws ExecutorManagerException {
+    final String FETCH_NEXT_ID =
+        "SELECT next_id FROM execution_id_blocks WHERE id=1 FOR UPDATE";
+    final String UPDATE_NEXT_ID =
+        "UPDATE execution_id_blocks SET next_id=? WHERE id=1";
+
+    QueryRunner runner = new QueryRunner();
+    Connection connection = getConnection();
+    try {
+      int nextId =
+          runner.query(connection, FETCH_NEXT_ID, new IntHandler());
+      // skips the ids generated while blocks weren't used
+      int maxId =
+          runner.query(connection, IntHandler.MAX_EXECUTION_ID,
+              new IntHandler());
+      int start = Math.max(nextId, maxId + 1);
+      if (runner.update(connection, UPDATE_NEXT_ID, start + idBlockSize) != 1) {
+        throw new ExecutorManagerException(
+            "execution_id_blocks isn't initialized");
+      }
+      connection.commit();
+      logger.info("Reserved execution ids " + start + " to "
+          + (start + idBlockSize - 1));
+      return new IdBlock(start, start + idBlockSize);
     } catch (SQLException e) {
-      throw new ExecutorManagerException("Error creating execution.", e);
+      try {
+        connection.rollback();
+      } catch (SQLException e1) {
+        logger.error("Failed to roll back execution id reservation", e1);
+      }
+      throw new ExecutorManagerException("Error reserving execution ids", e);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  /**
+   * Execution ids [next, end) not handed out yet
+   */
+  private static class IdBlock {
+    private final AtomicInteger next;
+    private final int end;
+
+    private IdBlock(int start, int end) {
+      this.next = new AtomicInteger(start);
+      this.end = end;
     }
   }
 
@@ -135,34 +300,90 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
         "UPDATE execution_flows "
             + "SET status=?,update_time=?,start_time=?,end_time=?,enc_type=?,flow_data=? "
             + "WHERE exec_id=?";
+    final String DELETE_EXECUTABLE_FLOW_UPDATES =
+        "DELETE FROM execution_flow_updates WHERE exec_id=?";
     QueryRunner runner = new QueryRunner();
 
-    String json = JSONUtils.toJSON(flow.toObject());
-    byte[] data = null;
-    try {
-      byte[] stringData = json.getBytes("UTF-8");
-      data = stringData;
-
-      if (encType == EncodingType.GZIP) {
-        data = GZIPUtils.gzipBytes(stringData);
-      }
-    } catch (IOException e) {
-      throw new ExecutorManagerException("Error encoding the execution flow.");
-    }
+    byte[] data = encodeFlowData(flow.toObject(), encType);
 
     try {
       runner.update(connection, UPDATE_EXECUTABLE_FLOW_DATA, flow.getStatus()
           .getNumVal(), flow.getUpdateTime(), flow.getStartTime(), flow
           .getEndTime(), encType.getNumVal(), data, flow.getExecutionId());
+      if (incrementalFlowUpdates) {
+        // flow_data now holds every delta
+        runner.update(connection, DELETE_EXECUTABLE_FLOW_UPDATES,
+            flow.getExecutionId());
+      }
+      connection.commit();
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error updating flow.", e);
+    }
+  }
+
+  /**
+   * Only writes the status columns and the nodes changed since
+   * lastUpdateTime, unless incremental updates are disabled, in which case
+   * the whole flow is written.
+   *
+   * {@inheritDoc}
+   * @see azkaban.executor.ExecutorLoader#updateExecutableFlowDelta(azkaban.executor.ExecutableFlow, long)
+   */
+  @Override
+  public void updateExecutableFlowDelta(ExecutableFlow flow,
+      long lastUpdateTime) throws ExecutorManagerException {
+    if (!incrementalFlowUpdates) {
+      updateExecutableFlow(flow);
+      return;
+    }
+
+    final String UPDATE_EXECUTABLE_FLOW_STATUS =
+        "UPDATE execution_flows "
+            + "SET status=?,update_time=?,start_time=?,end_time=? "
+            + "WHERE exec_id=?";
+    final String INSERT_EXECUTABLE_FLOW_UPDATE =
+        "INSERT INTO execution_flow_updates "
+            + "(exec_id, update_time, enc_type, update_data) values (?,?,?,?)";
+    QueryRunner runner = new QueryRunner();
+
+    byte[] data =
+        encodeFlowData(flow.toUpdateObject(lastUpdateTime), defaultEncodingType);
+
+    Connection connection = this.getConnection();
+    try {
+      runner.update(connection, UPDATE_EXECUTABLE_FLOW_STATUS, flow
+          .getStatus().getNumVal(), flow.getUpdateTime(), flow.getStartTime(),
+          flow.getEndTime(), flow.getExecutionId());
+      runner.update(connection, INSERT_EXECUTABLE_FLOW_UPDATE,
+          flow.getExecutionId(), flow.getUpdateTime(),
+          defaultEncodingType.getNumVal(), data);
       connection.commit();
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error updating flow.", e);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private byte[] encodeFlowData(Object flowObj, EncodingType encType)
+      throws ExecutorManagerException {
+    String json = JSONUtils.toJSON(flowObj);
+    byte[] data = null;
+    try {
+      data = encType.encode(json.getBytes("UTF-8"));
+    } catch (IOException e) {
+      throw new ExecutorManagerException("Error encoding the execution flow.");
     }
+    return data;
   }
 
   @Override
   public ExecutableFlow fetchExecutableFlow(int id)
       throws ExecutorManagerException {
+    if (incrementalFlowUpdates) {
+      return fetchExecutableFlowWithUpdates(id);
+    }
+
     QueryRunner runner = createQueryRunner();
     FetchExecutableFlows flowHandler = new FetchExecutableFlows();
 
@@ -171,15 +392,93 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
           runner.query(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW, flowHandler,
               id);
       if (properties.isEmpty()) {
-        return null;
-      } else {
-        return properties.get(0);
+        // archived executions keep their row, without flow_data
+        return fetchArchivedFlow(id);
       }
+      return properties.get(0);
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error fetching flow id " + id, e);
     }
   }
 
+  /*
+   * Reads flow_data and the deltas in one REPEATABLE READ transaction. A
+   * full write between two separate reads would fold the deltas into
+   * flow_data and delete them, so the second read would miss them.
+   */
+  private ExecutableFlow fetchExecutableFlowWithUpdates(int id)
+      throws ExecutorManagerException {
+    QueryRunner runner = new QueryRunner();
+    List<ExecutableFlow> properties;
+    Map<Integer, List<Map<String, Object>>> updates;
+    Connection connection = getConnection();
+    int isolation = beginSnapshot(connection);
+    try {
+      properties =
+          runner.query(connection, FetchExecutableFlows.FETCH_EXECUTABLE_FLOW,
+              new FetchExecutableFlows(), id);
+      updates =
+          runner.query(connection,
+              FetchExecutableFlowUpdates.FETCH_FLOW_UPDATES,
+              new FetchExecutableFlowUpdates(), id);
+      connection.commit();
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error fetching flow id " + id, e);
+    } finally {
+      endSnapshot(connection, isolation);
+    }
+
+    if (properties.isEmpty()) {
+      // archived executions keep their row, without flow_data
+      return fetchArchivedFlow(id);
+    }
+    ExecutableFlow flow = properties.get(0);
+    applyFlowUpdates(flow, updates.get(id));
+    return flow;
+  }
+
+  /*
+   * Makes the reads on the connection, up to the commit, see a single
+   * snapshot. Returns the isolation level to restore in endSnapshot.
+   */
+  private int beginSnapshot(Connection connection)
+      throws ExecutorManagerException {
+    try {
+      int isolation = connection.getTransactionIsolation();
+      connection
+          .setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+      return isolation;
+    } catch (SQLException e) {
+      DbUtils.closeQuietly(connection);
+      throw new ExecutorManagerException("Error setting up a snapshot read", e);
+    }
+  }
+
+  /*
+   * Restores the isolation level before the connection goes back to the
+   * pool, and closes it.
+   */
+  private void endSnapshot(Connection connection, int isolation) {
+    try {
+      connection.rollback();
+      connection.setTransactionIsolation(isolation);
+    } catch (SQLException e) {
+      logger.error("Error restoring the transaction isolation", e);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private static void applyFlowUpdates(ExecutableFlow flow,
+      List<Map<String, Object>> updates) {
+    if (updates == null) {
+      return;
+    }
+    for (Map<String, Object> update : updates) {
+      flow.applyUpdateObject(update);
+    }
+  }
+
   /**
    *
    * {@inheritDoc}
@@ -201,20 +500,55 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     }
   }
 
+  /**
+   * The active flows are running, so their deltas are applied, read in the
+   * same transaction as flow_data.
+   *
+   * {@inheritDoc}
+   * @see azkaban.executor.ExecutorLoader#fetchActiveFlows()
+   */
   @Override
   public Map<Integer, Pair<ExecutionReference, ExecutableFlow>> fetchActiveFlows()
       throws ExecutorManagerException {
-    QueryRunner runner = createQueryRunner();
     FetchActiveExecutableFlows flowHandler = new FetchActiveExecutableFlows();
+    if (!incrementalFlowUpdates) {
+      try {
+        return createQueryRunner().query(
+            FetchActiveExecutableFlows.FETCH_ACTIVE_EXECUTABLE_FLOW,
+            flowHandler);
+      } catch (SQLException e) {
+        throw new ExecutorManagerException("Error fetching active flows", e);
+      }
+    }
 
+    QueryRunner runner = new QueryRunner();
+    Map<Integer, Pair<ExecutionReference, ExecutableFlow>> properties;
+    Map<Integer, List<Map<String, Object>>> updates;
+    Connection connection = getConnection();
+    int isolation = beginSnapshot(connection);
     try {
-      Map<Integer, Pair<ExecutionReference, ExecutableFlow>> properties =
-          runner.query(FetchActiveExecutableFlows.FETCH_ACTIVE_EXECUTABLE_FLOW,
+      properties =
+          runner.query(connection,
+              FetchActiveExecutableFlows.FETCH_ACTIVE_EXECUTABLE_FLOW,
               flowHandler);
-      return properties;
+      updates =
+          runner.query(connection,
+              FetchExecutableFlowUpdates.FETCH_ACTIVE_FLOW_UPDATES,
+              new FetchExecutableFlowUpdates());
+      connection.commit();
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error fetching active flows", e);
+    } finally {
+      endSnapshot(connection, isolation);
+    }
+
+    for (Pair<ExecutionReference, ExecutableFlow> pair : properties.values()) {
+      if (pair != null) {
+        applyFlowUpdates(pair.getSecond(), updates.get(pair.getSecond()
+            .getExecutionId()));
+      }
     }
+    return properties;
   }
 
   @Override
@@ -315,87 +649,233 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   public List<ExecutableFlow> fetchFlowHistory(String projContain,
       String flowContains, String userNameContains, int status, long startTime,
       long endTime, int skip, int num) throws ExecutorManagerException {
-    String query = FetchExecutableFlows.FETCH_BASE_EXECUTABLE_FLOW_QUERY;
     ArrayList<Object> params = new ArrayList<Object>();
+    String query =
+        buildFlowHistoryQuery(
+            FetchExecutableFlows.FETCH_BASE_EXECUTABLE_FLOW_QUERY,
+            new ExecutionHistoryFilter(projContain, flowContains,
+                userNameContains, status, startTime, endTime), 0, skip, num,
+            params);
 
-    boolean first = true;
-    if (projContain != null && !projContain.isEmpty()) {
-      query += " ef JOIN projects p ON ef.project_id = p.id WHERE name LIKE ?";
-      params.add('%' + projContain + '%');
-      first = false;
+    QueryRunner runner = createQueryRunner();
+    FetchExecutableFlows flowHandler = new FetchExecutableFlows();
+
+    try {
+      List<ExecutableFlow> properties =
+          runner.query(query, flowHandler, params.toArray());
+      return properties;
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error fetching active flows", e);
     }
+  }
 
-    if (flowContains != null && !flowContains.isEmpty()) {
-      if (first) {
-        query += " WHERE ";
-        first = false;
-      } else {
-        query += " AND ";
-      }
+  @Override
+  public List<ExecutionSummary> fetchFlowHistorySummaries(int skip, int num)
+      throws ExecutorManagerException {
+    QueryRunner runner = createQueryRunner();
+    FetchExecutionSummaries summaryHandler = new FetchExecutionSummaries();
 
-      query += " flow_id LIKE ?";
-      params.add('%' + flowContains + '%');
+    try {
+      return runner.query(
+          FetchExecutionSummaries.FETCH_ALL_EXECUTION_SUMMARY_HISTORY,
+          summaryHandler, skip, num);
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error fetching execution summaries",
+          e);
     }
+  }
 
-    if (userNameContains != null && !userNameContains.isEmpty()) {
-      if (first) {
-        query += " WHERE ";
-        first = false;
-      } else {
-        query += " AND ";
-      }
-      query += " submit_user LIKE ?";
-      params.add('%' + userNameContains + '%');
+  @Override
+  public List<ExecutionSummary> fetchFlowHistorySummaries(int projectId,
+      String flowId, int skip, int num) throws ExecutorManagerException {
+    QueryRunner runner = createQueryRunner();
+    FetchExecutionSummaries summaryHandler = new FetchExecutionSummaries();
+
+    try {
+      return runner.query(
+          FetchExecutionSummaries.FETCH_EXECUTION_SUMMARY_HISTORY,
+          summaryHandler, projectId, flowId, skip, num);
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error fetching execution summaries",
+          e);
     }
+  }
 
-    if (status != 0) {
-      if (first) {
-        query += " WHERE ";
-        first = false;
-      } else {
-        query += " AND ";
-      }
-      query += " status = ?";
-      params.add(status);
+  @Override
+  public List<ExecutionSummary> fetchFlowHistorySummaries(int projectId,
+      String flowId, int skip, int num, Status status)
+      throws ExecutorManagerException {
+    QueryRunner runner = createQueryRunner();
+    FetchExecutionSummaries summaryHandler = new FetchExecutionSummaries();
+
+    try {
+      return runner.query(
+          FetchExecutionSummaries.FETCH_EXECUTION_SUMMARY_BY_STATUS,
+          summaryHandler, projectId, flowId, status.getNumVal(), skip, num);
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error fetching execution summaries",
+          e);
     }
+  }
 
-    if (startTime > 0) {
-      if (first) {
-        query += " WHERE ";
-        first = false;
-      } else {
-        query += " AND ";
-      }
-      query += " start_time > ?";
-      params.add(startTime);
+  @Override
+  public List<ExecutionSummary> fetchFlowHistorySummaries(String projContain,
+      String flowContains, String userNameContains, int status, long startTime,
+      long endTime, int skip, int num) throws ExecutorManagerException {
+    return fetchFlowHistorySummaries(new ExecutionHistoryFilter(projContain,
+        flowContains, userNameContains, status, startTime, endTime), 0, skip,
+        num);
+  }
+
+  @Override
+  public List<ExecutionSummary> fetchFlowHistorySummaries(
+      ExecutionHistoryFilter filter, int beforeExecId, int skip, int num)
+      throws ExecutorManagerException {
+    ArrayList<Object> params = new ArrayList<Object>();
+    String query =
+        buildFlowHistoryQuery(
+            FetchExecutionSummaries.FETCH_BASE_EXECUTION_SUMMARY_QUERY, filter,
+            beforeExecId, skip, num, params);
+
+    QueryRunner runner = createQueryRunner();
+    FetchExecutionSummaries summaryHandler = new FetchExecutionSummaries();
+
+    try {
+      return runner.query(query, summaryHandler, params.toArray());
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error fetching execution summaries",
+          e);
     }
+  }
 
-    if (endTime > 0) {
-      if (first) {
-        query += " WHERE ";
-        first = false;
-      } else {
-        query += " AND ";
-      }
-      query += " end_time < ?";
-      params.add(endTime);
+  /*
+   * Appends the filters of a flow history search to a base query selecting
+   * from "execution_flows ef", adding their values to params. Resolved
+   * values are matched with IN, plain substrings with LIKE.
+   */
+  private String buildFlowHistoryQuery(String baseQuery,
+      ExecutionHistoryFilter filter, int beforeExecId, int skip, int num,
+      List<Object> params) {
+    StringBuilder query = new StringBuilder(baseQuery);
+    List<String> conditions = new ArrayList<String>();
+
+    if (filter.getProjectIds() != null) {
+      conditions.add(inCondition("ef.project_id", filter.getProjectIds(),
+          params));
+    } else if (filter.getProjectContains() != null) {
+      query.append(" JOIN projects p ON ef.project_id = p.id");
+      conditions.add("p.name LIKE ?");
+      params.add('%' + filter.getProjectContains() + '%');
+    }
+
+    if (filter.getFlowIds() != null) {
+      conditions.add(inCondition("ef.flow_id", filter.getFlowIds(), params));
+    } else if (filter.getFlowContains() != null) {
+      conditions.add("ef.flow_id LIKE ?");
+      params.add('%' + filter.getFlowContains() + '%');
+    }
+
+    if (filter.getSubmitUsers() != null) {
+      conditions.add(inCondition("ef.submit_user", filter.getSubmitUsers(),
+          params));
+    } else if (filter.getUserContains() != null) {
+      conditions.add("ef.submit_user LIKE ?");
+      params.add('%' + filter.getUserContains() + '%');
+    }
+
+    if (filter.getStatus() != 0) {
+      conditions.add("ef.status = ?");
+      params.add(filter.getStatus());
+    }
+
+    if (filter.getBeginTime() > 0) {
+      conditions.add("ef.start_time > ?");
+      params.add(filter.getBeginTime());
+    }
+
+    if (filter.getEndTime() > 0) {
+      conditions.add("ef.end_time < ?");
+      params.add(filter.getEndTime());
+    }
+
+    if (beforeExecId > 0) {
+      conditions.add("ef.exec_id < ?");
+      params.add(beforeExecId);
+    }
+
+    for (int i = 0; i < conditions.size(); i++) {
+      query.append(i == 0 ? " WHERE " : " AND ").append(conditions.get(i));
     }
 
     if (skip > -1 && num > 0) {
-      query += "  ORDER BY exec_id DESC LIMIT ?, ?";
+      query.append(" ORDER BY ef.exec_id DESC LIMIT ?, ?");
       params.add(skip);
       params.add(num);
     }
+    return query.toString();
+  }
+
+  /*
+   * The number of placeholders is rounded up to a power of two, repeating the
+   * last value, so searches share a few prepared statements.
+   */
+  private static String inCondition(String column, Collection<?> values,
+      List<Object> params) {
+    StringBuilder condition = new StringBuilder(column).append(" IN (");
+    int placeholders = Integer.highestOneBit(values.size());
+    if (placeholders < values.size()) {
+      placeholders <<= 1;
+    }
+    boolean first = true;
+    Object last = null;
+    for (Object value : values) {
+      condition.append(first ? "?" : ",?");
+      params.add(value);
+      first = false;
+      last = value;
+    }
+    for (int i = values.size(); i < placeholders; ++i) {
+      condition.append(",?");
+      params.add(last);
+    }
+    return condition.append(")").toString();
+  }
 
+  @Override
+  public Map<Integer, String> fetchProjectNames()
+      throws ExecutorManagerException {
     QueryRunner runner = createQueryRunner();
-    FetchExecutableFlows flowHandler = new FetchExecutableFlows();
 
     try {
-      List<ExecutableFlow> properties =
-          runner.query(query, flowHandler, params.toArray());
-      return properties;
+      return runner.query(FetchProjectNamesHandler.FETCH_PROJECT_NAMES,
+          new FetchProjectNamesHandler());
     } catch (SQLException e) {
-      throw new ExecutorManagerException("Error fetching active flows", e);
+      throw new ExecutorManagerException("Error fetching project names", e);
+    }
+  }
+
+  @Override
+  public List<String> fetchDistinctFlowIds() throws ExecutorManagerException {
+    QueryRunner runner = createQueryRunner();
+
+    try {
+      return runner.query(FetchStringsHandler.FETCH_DISTINCT_FLOW_IDS,
+          new FetchStringsHandler());
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error fetching flow ids", e);
+    }
+  }
+
+  @Override
+  public List<String> fetchDistinctSubmitUsers()
+      throws ExecutorManagerException {
+    QueryRunner runner = createQueryRunner();
+
+    try {
+      return runner.query(FetchStringsHandler.FETCH_DISTINCT_SUBMIT_USERS,
+          new FetchStringsHandler());
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error fetching submit users", e);
     }
   }
 
@@ -451,21 +931,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   @Override
   public void uploadExecutableNode(ExecutableNode node, Props inputProps)
       throws ExecutorManagerException {
-    final String INSERT_EXECUTION_NODE =
-        "INSERT INTO execution_jobs "
-            + "(exec_id, project_id, version, flow_id, job_id, start_time, "
-            + "end_time, status, input_params, attempt) VALUES (?,?,?,?,?,?,?,?,?,?)";
-
-    byte[] inputParam = null;
-    if (inputProps != null) {
-      try {
-        String jsonString =
-            JSONUtils.toJSON(PropsUtils.toHierarchicalMap(inputProps));
-        inputParam = GZIPUtils.gzipString(jsonString, "UTF-8");
-      } catch (IOException e) {
-        throw new ExecutorManagerException("Error encoding input params");
-      }
-    }
+    byte[] inputParam = encodeProps(inputProps);
 
     ExecutableFlow flow = node.getExecutableFlow();
     String flowId = node.getParentFlow().getFlowPath();
@@ -484,22 +950,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   @Override
   public void updateExecutableNode(ExecutableNode node)
       throws ExecutorManagerException {
-    final String UPSERT_EXECUTION_NODE =
-        "UPDATE execution_jobs "
-            + "SET start_time=?, end_time=?, status=?, output_params=? "
-            + "WHERE exec_id=? AND flow_id=? AND job_id=? AND attempt=?";
-
-    byte[] outputParam = null;
-    Props outputProps = node.getOutputProps();
-    if (outputProps != null) {
-      try {
-        String jsonString =
-            JSONUtils.toJSON(PropsUtils.toHierarchicalMap(outputProps));
-        outputParam = GZIPUtils.gzipString(jsonString, "UTF-8");
-      } catch (IOException e) {
-        throw new ExecutorManagerException("Error encoding input params");
-      }
-    }
+    byte[] outputParam = encodeProps(node.getOutputProps());
 
     QueryRunner runner = createQueryRunner();
     try {
@@ -513,6 +964,55 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     }
   }
 
+  @Override
+  public void writeExecutableNodes(List<ExecutableNodeRecord> uploads,
+      List<ExecutableNodeRecord> updates) throws ExecutorManagerException {
+    List<Object[]> insertParams = new ArrayList<Object[]>(uploads.size());
+    for (ExecutableNodeRecord record : uploads) {
+      insertParams.add(new Object[] { record.getExecId(), record.getProjectId(),
+              record.getVersion(), record.getFlowPath(), record.getJobId(),
+              record.getStartTime(), record.getEndTime(),
+              record.getStatus().getNumVal(), encodeProps(record.getProps()),
+              record.getAttempt() });
+    }
+    List<Object[]> updateParams = new ArrayList<Object[]>(updates.size());
+    for (ExecutableNodeRecord record : updates) {
+      updateParams.add(new Object[] { record.getStartTime(), record.getEndTime(),
+              record.getStatus().getNumVal(), encodeProps(record.getProps()),
+              record.getExecId(), record.getFlowPath(), record.getJobId(),
+              record.getAttempt() });
+    }
+
+    Connection connection = this.getConnection();
+    try {
+      batchUpdate(connection, INSERT_EXECUTION_NODE, insertParams);
+      batchUpdate(connection, UPSERT_EXECUTION_NODE, updateParams);
+      connection.commit();
+    } catch (SQLException e) {
+      try {
+        connection.rollback();
+      } catch (SQLException e1) {
+        logger.error("Failed to roll back job writes", e1);
+      }
+      throw new ExecutorManagerException("Error writing "
+          + (uploads.size() + updates.size()) + " jobs", e);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private byte[] encodeProps(Props props) throws ExecutorManagerException {
+    if (props == null) {
+      return null;
+    }
+    try {
+      String jsonString = JSONUtils.toJSON(PropsUtils.toHierarchicalMap(props));
+      return GZIPUtils.gzipString(jsonString, "UTF-8");
+    } catch (IOException e) {
+      throw new ExecutorManagerException("Error encoding params");
+    }
+  }
+
   @Override
   public List<ExecutableJobInfo> fetchJobInfoAttempts(int execId, String jobId)
       throws ExecutorManagerException {
@@ -524,7 +1024,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
               FetchExecutableJobHandler.FETCH_EXECUTABLE_NODE_ATTEMPTS,
               new FetchExecutableJobHandler(), execId, jobId);
       if (info == null || info.isEmpty()) {
-        return null;
+        return fetchArchivedJobInfoAttempts(execId, jobId);
       }
       return info;
     } catch (SQLException e) {
@@ -542,7 +1042,8 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
           runner.query(FetchExecutableJobHandler.FETCH_EXECUTABLE_NODE,
               new FetchExecutableJobHandler(), execId, jobId, attempts);
       if (info == null || info.isEmpty()) {
-        return null;
+        ArchivedExecution.Job job = fetchArchivedJob(execId, jobId, attempts);
+        return job == null ? null : job.toJobInfo();
       }
       return info.get(0);
     } catch (SQLException e) {
@@ -559,6 +1060,9 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
           runner.query(
               FetchExecutableJobPropsHandler.FETCH_INPUT_PARAM_EXECUTABLE_NODE,
               new FetchExecutableJobPropsHandler(), execId, jobId);
+      if (props.getFirst() == null) {
+        return fetchArchivedJobProps(execId, jobId).getFirst();
+      }
       return props.getFirst();
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error querying job params " + execId
@@ -576,6 +1080,9 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
               .query(
                   FetchExecutableJobPropsHandler.FETCH_OUTPUT_PARAM_EXECUTABLE_NODE,
                   new FetchExecutableJobPropsHandler(), execId, jobId);
+      if (props.getFirst() == null) {
+        return fetchArchivedJobProps(execId, jobId).getSecond();
+      }
       return props.getFirst();
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error querying job params " + execId
@@ -593,6 +1100,9 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
               .query(
                   FetchExecutableJobPropsHandler.FETCH_INPUT_OUTPUT_PARAM_EXECUTABLE_NODE,
                   new FetchExecutableJobPropsHandler(), execId, jobId);
+      if (props.getFirst() == null && props.getSecond() == null) {
+        return fetchArchivedJobProps(execId, jobId);
+      }
       return props;
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error querying job params " + execId
@@ -629,6 +1139,9 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       LogData result =
           runner.query(FetchLogsHandler.FETCH_LOGS, handler, execId, name,
               attempt, startByte, startByte + length);
+      if (result == null) {
+        return fetchArchivedLogs(execId, name, attempt, startByte, length);
+      }
       return result;
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error fetching logs " + execId
@@ -648,7 +1161,11 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
                   FetchExecutableJobAttachmentsHandler.FETCH_ATTACHMENTS_EXECUTABLE_NODE,
                   new FetchExecutableJobAttachmentsHandler(), execId, jobId);
       if (attachments == null) {
-        return null;
+        ArchivedExecution.Job job = fetchArchivedJob(execId, jobId, attempt);
+        if (job == null || job.getAttachments() == null) {
+          return null;
+        }
+        attachments = new String(job.getAttachments(), "UTF-8");
       }
 
       @SuppressWarnings("unchecked")
@@ -671,7 +1188,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     Connection connection = getConnection();
     try {
       uploadLogFile(connection, execId, name, attempt, files,
-          defaultEncodingType);
+          logEncodingType);
       connection.commit();
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error committing log", e);
@@ -735,24 +1252,66 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   private void uploadLogPart(Connection connection, int execId, String name,
       int attempt, int startByte, int endByte, EncodingType encType,
       byte[] buffer, int length) throws SQLException, IOException {
-    final String INSERT_EXECUTION_LOGS =
-        "INSERT INTO execution_logs "
-            + "(exec_id, name, attempt, enc_type, start_byte, end_byte, "
-            + "log, upload_time) VALUES (?,?,?,?,?,?,?,?)";
-
     QueryRunner runner = new QueryRunner();
-    byte[] buf = buffer;
-    if (encType == EncodingType.GZIP) {
-      buf = GZIPUtils.gzipBytes(buf, 0, length);
-    } else if (length < buf.length) {
-      buf = Arrays.copyOf(buffer, length);
-    }
+    byte[] buf = encType.getCodec().encode(buffer, 0, length);
 
     runner.update(connection, INSERT_EXECUTION_LOGS, execId, name, attempt,
         encType.getNumVal(), startByte, startByte + length, buf, DateTime.now()
             .getMillis());
   }
 
+  @Override
+  public void appendLogChunks(List<ExecutionLogChunk> chunks)
+      throws ExecutorManagerException {
+    if (chunks.isEmpty()) {
+      return;
+    }
+
+    long uploadTime = DateTime.now().getMillis();
+    List<Object[]> params = new ArrayList<Object[]>(chunks.size());
+    try {
+      for (ExecutionLogChunk chunk : chunks) {
+        byte[] buf = logEncodingType.encode(chunk.getData());
+        params.add(new Object[] { chunk.getExecId(), chunk.getName(),
+            chunk.getAttempt(), logEncodingType.getNumVal(),
+            chunk.getStartByte(), chunk.getEndByte(), buf, uploadTime });
+      }
+    } catch (IOException e) {
+      throw new ExecutorManagerException("Error encoding log chunks", e);
+    }
+
+    Connection connection = getConnection();
+    try {
+      batchUpdate(connection, INSERT_EXECUTION_LOGS, params);
+      connection.commit();
+    } catch (SQLException e) {
+      try {
+        connection.rollback();
+      } catch (SQLException e1) {
+        logger.error("Failed to roll back log chunks", e1);
+      }
+      throw new ExecutorManagerException("Error appending " + chunks.size()
+          + " log chunks", e);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  @Override
+  public void removeExecutionLogs(int execId, String name, int attempt)
+      throws ExecutorManagerException {
+    final String DELETE_LOGS =
+        "DELETE FROM execution_logs WHERE exec_id=? AND name=? AND attempt=?";
+
+    QueryRunner runner = createQueryRunner();
+    try {
+      runner.update(DELETE_LOGS, execId, name, attempt);
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error deleting logs " + execId
+          + " : " + name, e);
+    }
+  }
+
   @Override
   public void uploadAttachmentFile(ExecutableNode node, File file)
       throws ExecutorManagerException {
@@ -1073,25 +1632,12 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     return executor;
   }
 
-  private static class LastInsertID implements ResultSetHandler<Long> {
-    private static String LAST_INSERT_ID = "SELECT LAST_INSERT_ID()";
-
-    @Override
-    public Long handle(ResultSet rs) throws SQLException {
-      if (!rs.next()) {
-        return -1L;
-      }
-      long id = rs.getLong(1);
-      return id;
-    }
-  }
-
   private static class FetchLogsHandler implements ResultSetHandler<LogData> {
     private static String FETCH_LOGS =
         "SELECT exec_id, name, attempt, enc_type, start_byte, end_byte, log "
             + "FROM execution_logs "
             + "WHERE exec_id=? AND name=? AND attempt=? AND end_byte > ? "
-            + "AND start_byte <= ? ORDER BY start_byte";
+            + "AND start_byte < ? ORDER BY start_byte";
 
     private int startByte;
     private int endByte;
@@ -1126,12 +1672,8 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
             this.endByte < endByte ? this.endByte - startByte - offset
                 : endByte - startByte - offset;
         try {
-          byte[] buffer = data;
-          if (encType == EncodingType.GZIP) {
-            buffer = GZIPUtils.unGzipBytes(data);
-          }
-
-          byteStream.write(buffer, offset, length);
+          // only decodes the chunk up to the end of the requested range
+          byteStream.write(encType.getCodec().decode(data, offset, length));
         } catch (IOException e) {
           throw new SQLException(e);
         }
@@ -1152,7 +1694,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
         "SELECT exec_id, project_id, version, flow_id, job_id, "
             + "start_time, end_time, status, attempt "
             + "FROM execution_jobs WHERE exec_id=? "
-            + "AND job_id=? AND attempt_id=?";
+            + "AND job_id=? AND attempt=?";
     private static String FETCH_EXECUTABLE_NODE_ATTEMPTS =
         "SELECT exec_id, project_id, version, flow_id, job_id, "
             + "start_time, end_time, status, attempt FROM execution_jobs "
@@ -1310,16 +1852,8 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
           EncodingType encType = EncodingType.fromInteger(encodingType);
           Object flowObj;
           try {
-            // Convoluted way to inflate strings. Should find common package or
-            // helper function.
-            if (encType == EncodingType.GZIP) {
-              // Decompress the sucker.
-              String jsonString = GZIPUtils.unGzipString(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            } else {
-              String jsonString = new String(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            }
+            String jsonString = new String(encType.decode(data), "UTF-8");
+            flowObj = JSONUtils.parseJSONFromString(jsonString);
 
             ExecutableFlow exFlow =
               ExecutableFlow.createExecutableFlowFromObject(flowObj);
@@ -1376,16 +1910,8 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
           EncodingType encType = EncodingType.fromInteger(encodingType);
           Object flowObj;
           try {
-            // Convoluted way to inflate strings. Should find common package or
-            // helper function.
-            if (encType == EncodingType.GZIP) {
-              // Decompress the sucker.
-              String jsonString = GZIPUtils.unGzipString(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            } else {
-              String jsonString = new String(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            }
+            String jsonString = new String(encType.decode(data), "UTF-8");
+            flowObj = JSONUtils.parseJSONFromString(jsonString);
 
             ExecutableFlow exFlow =
                 ExecutableFlow.createExecutableFlowFromObject(flowObj);
@@ -1408,7 +1934,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   private static class FetchExecutableFlows implements
       ResultSetHandler<List<ExecutableFlow>> {
     private static String FETCH_BASE_EXECUTABLE_FLOW_QUERY =
-        "SELECT exec_id, enc_type, flow_data FROM execution_flows ";
+        "SELECT ef.exec_id, ef.enc_type, ef.flow_data FROM execution_flows ef ";
     private static String FETCH_EXECUTABLE_FLOW =
         "SELECT exec_id, enc_type, flow_data FROM execution_flows "
             + "WHERE exec_id=?";
@@ -1445,16 +1971,8 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
           EncodingType encType = EncodingType.fromInteger(encodingType);
           Object flowObj;
           try {
-            // Convoluted way to inflate strings. Should find common package
-            // or helper function.
-            if (encType == EncodingType.GZIP) {
-              // Decompress the sucker.
-              String jsonString = GZIPUtils.unGzipString(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            } else {
-              String jsonString = new String(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            }
+            String jsonString = new String(encType.decode(data), "UTF-8");
+            flowObj = JSONUtils.parseJSONFromString(jsonString);
 
             ExecutableFlow exFlow =
                 ExecutableFlow.createExecutableFlowFromObject(flowObj);
@@ -1469,6 +1987,127 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     }
   }
 
+  /**
+   * JDBC ResultSetHandler to fetch ExecutionSummary records from the columns
+   * of execution_flows, without touching flow_data
+   */
+  private static class FetchExecutionSummaries implements
+      ResultSetHandler<List<ExecutionSummary>> {
+    private static String FETCH_BASE_EXECUTION_SUMMARY_QUERY =
+        "SELECT ef.exec_id, ef.project_id, ef.version, ef.flow_id, ef.status, "
+            + "ef.submit_user, ef.submit_time, ef.update_time, ef.start_time, "
+            + "ef.end_time FROM execution_flows ef ";
+    private static String FETCH_ALL_EXECUTION_SUMMARY_HISTORY =
+        FETCH_BASE_EXECUTION_SUMMARY_QUERY
+            + "ORDER BY exec_id DESC LIMIT ?, ?";
+    private static String FETCH_EXECUTION_SUMMARY_HISTORY =
+        FETCH_BASE_EXECUTION_SUMMARY_QUERY
+            + "WHERE project_id=? AND flow_id=? "
+            + "ORDER BY exec_id DESC LIMIT ?, ?";
+    private static String FETCH_EXECUTION_SUMMARY_BY_STATUS =
+        FETCH_BASE_EXECUTION_SUMMARY_QUERY
+            + "WHERE project_id=? AND flow_id=? AND status=? "
+            + "ORDER BY exec_id DESC LIMIT ?, ?";
+
+    @Override
+    public List<ExecutionSummary> handle(ResultSet rs) throws SQLException {
+      if (!rs.next()) {
+        return Collections.<ExecutionSummary> emptyList();
+      }
+
+      List<ExecutionSummary> summaries = new ArrayList<ExecutionSummary>();
+      do {
+        summaries.add(new ExecutionSummary(rs.getInt(1), rs.getInt(2), rs
+            .getInt(3), rs.getString(4), Status.fromInteger(rs.getInt(5)), rs
+            .getString(6), rs.getLong(7), rs.getLong(8), rs.getLong(9), rs
+            .getLong(10)));
+      } while (rs.next());
+
+      return summaries;
+    }
+  }
+
+  /**
+   * JDBC ResultSetHandler to fetch the deltas of flows from
+   * execution_flow_updates, by exec id, oldest first
+   */
+  private static class FetchExecutableFlowUpdates implements
+      ResultSetHandler<Map<Integer, List<Map<String, Object>>>> {
+    private static String FETCH_FLOW_UPDATES =
+        "SELECT exec_id, enc_type, update_data FROM execution_flow_updates "
+            + "WHERE exec_id=? ORDER BY update_id";
+    private static String FETCH_ACTIVE_FLOW_UPDATES =
+        "SELECT u.exec_id, u.enc_type, u.update_data "
+            + "FROM execution_flow_updates u "
+            + "INNER JOIN active_executing_flows ax ON u.exec_id = ax.exec_id "
+            + "ORDER BY u.exec_id, u.update_id";
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<Integer, List<Map<String, Object>>> handle(ResultSet rs)
+        throws SQLException {
+      Map<Integer, List<Map<String, Object>>> updates =
+          new HashMap<Integer, List<Map<String, Object>>>();
+      while (rs.next()) {
+        int execId = rs.getInt(1);
+        EncodingType encType = EncodingType.fromInteger(rs.getInt(2));
+        byte[] data = rs.getBytes(3);
+        List<Map<String, Object>> flowUpdates = updates.get(execId);
+        if (flowUpdates == null) {
+          flowUpdates = new ArrayList<Map<String, Object>>();
+          updates.put(execId, flowUpdates);
+        }
+        try {
+          String jsonString = new String(encType.decode(data), "UTF-8");
+          flowUpdates.add((Map<String, Object>) JSONUtils
+              .parseJSONFromString(jsonString));
+        } catch (IOException e) {
+          throw new SQLException("Error retrieving flow update", e);
+        }
+      }
+      return updates;
+    }
+  }
+
+  /**
+   * JDBC ResultSetHandler to fetch project id to name mappings
+   */
+  private static class FetchProjectNamesHandler implements
+      ResultSetHandler<Map<Integer, String>> {
+    private static String FETCH_PROJECT_NAMES =
+        "SELECT id, name FROM projects";
+
+    @Override
+    public Map<Integer, String> handle(ResultSet rs) throws SQLException {
+      Map<Integer, String> names = new HashMap<Integer, String>();
+      while (rs.next()) {
+        names.put(rs.getInt(1), rs.getString(2));
+      }
+      return names;
+    }
+  }
+
+  /**
+   * JDBC ResultSetHandler to fetch a single string column
+   */
+  private static class FetchStringsHandler implements
+      ResultSetHandler<List<String>> {
+    private static String FETCH_DISTINCT_FLOW_IDS =
+        "SELECT DISTINCT flow_id FROM execution_flows";
+    private static String FETCH_DISTINCT_SUBMIT_USERS =
+        "SELECT DISTINCT submit_user FROM execution_flows "
+            + "WHERE submit_user IS NOT NULL";
+
+    @Override
+    public List<String> handle(ResultSet rs) throws SQLException {
+      List<String> values = new ArrayList<String>();
+      while (rs.next()) {
+        values.add(rs.getString(1));
+      }
+      return values;
+    }
+  }
+
   private static class IntHandler implements ResultSetHandler<Integer> {
     private static String NUM_EXECUTIONS =
         "SELECT COUNT(1) FROM execution_flows";
@@ -1478,6 +2117,8 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
         "SELECT COUNT(1) FROM execution_jobs WHERE project_id=? AND job_id=?";
     private static String FETCH_EXECUTOR_ID =
         "SELECT executor_id FROM execution_flows WHERE exec_id=?";
+    private static String MAX_EXECUTION_ID =
+        "SELECT MAX(exec_id) FROM execution_flows";
 
     @Override
     public Integer handle(ResultSet rs) throws SQLException {
@@ -1507,13 +2148,332 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     return updateNum;
   }
 
+  @Override
+  public int archiveExecutions(long endTimeBefore, int limit)
+      throws ExecutorManagerException {
+    if (archive == null) {
+      return 0;
+    }
+
+    QueryRunner runner = createQueryRunner();
+    List<Integer> execIds;
+    try {
+      execIds =
+          runner.query(FetchExecIdsHandler.FETCH_ARCHIVABLE_EXECUTIONS,
+              new FetchExecIdsHandler(), endTimeBefore, limit);
+    } catch (SQLException e) {
+      throw new ExecutorManagerException(
+          "Error fetching executions to archive", e);
+    }
+    if (execIds.isEmpty()) {
+      return 0;
+    }
+
+    // the rows are only removed once the archive is synced to disk. If the
+    // batch fails part way, the executions synced so far are still removed,
+    // so the next run doesn't archive them again.
+    List<Integer> archived = new ArrayList<Integer>();
+    ExecutorManagerException failure = null;
+    IOException syncFailure = null;
+    Connection connection = getConnection();
+    ExecutionArchive.Writer writer = null;
+    try {
+      writer = archive.openWriter();
+      for (int execId : execIds) {
+        ExecutableFlow flow = fetchExecutableFlow(execId);
+        if (flow == null) {
+          continue;
+        }
+        byte[] flowData = JSONUtils.toJSON(flow.toObject()).getBytes("UTF-8");
+        List<ArchivedExecution.Job> jobs =
+            runner.query(connection, FetchArchivedJobsHandler.FETCH_JOBS,
+                new FetchArchivedJobsHandler(), execId);
+        // the logs go to the archive as they're read, ahead of the execution
+        streamQuery(connection, ArchiveLogsHandler.FETCH_LOGS,
+            new ArchiveLogsHandler(writer, execId), execId);
+        writer.append(new ArchivedExecution(execId, flowData, jobs));
+        archived.add(execId);
+      }
+    } catch (SQLException e) {
+      failure =
+          new ExecutorManagerException("Error reading executions to archive",
+              e);
+    } catch (IOException e) {
+      failure =
+          new ExecutorManagerException("Error writing execution archive", e);
+    } catch (ExecutorManagerException e) {
+      failure = e;
+    } finally {
+      DbUtils.closeQuietly(connection);
+      if (writer != null) {
+        syncFailure = closeArchiveWriter(writer);
+      }
+    }
+
+    if (syncFailure != null) {
+      // nothing is known to be synced, so no row is removed
+      if (failure == null) {
+        throw new ExecutorManagerException("Error syncing execution archive",
+            syncFailure);
+      }
+      logger.error("Error syncing execution archive", syncFailure);
+      throw failure;
+    }
+    if (!archived.isEmpty()) {
+      removeArchivedExecutions(archived);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return archived.size();
+  }
+
+  private static IOException closeArchiveWriter(
+      ExecutionArchive.Writer writer) {
+    try {
+      writer.close();
+      return null;
+    } catch (IOException e) {
+      return e;
+    }
+  }
+
+  private void removeArchivedExecutions(List<Integer> execIds)
+      throws ExecutorManagerException {
+    final String DELETE_JOBS = "DELETE FROM execution_jobs WHERE exec_id=?";
+    final String DELETE_LOGS = "DELETE FROM execution_logs WHERE exec_id=?";
+    final String DELETE_UPDATES =
+        "DELETE FROM execution_flow_updates WHERE exec_id=?";
+    final String UPDATE_FLOW =
+        "UPDATE execution_flows SET flow_data=NULL, archive_time=? "
+            + "WHERE exec_id=?";
+
+    long archiveTime = System.currentTimeMillis();
+    List<Object[]> idParams = new ArrayList<Object[]>(execIds.size());
+    List<Object[]> flowParams = new ArrayList<Object[]>(execIds.size());
+    for (int execId : execIds) {
+      idParams.add(new Object[] { execId });
+      flowParams.add(new Object[] { archiveTime, execId });
+    }
+
+    Connection connection = getConnection();
+    try {
+      batchUpdate(connection, DELETE_JOBS, idParams);
+      batchUpdate(connection, DELETE_LOGS, idParams);
+      batchUpdate(connection, DELETE_UPDATES, idParams);
+      batchUpdate(connection, UPDATE_FLOW, flowParams);
+      connection.commit();
+    } catch (SQLException e) {
+      try {
+        connection.rollback();
+      } catch (SQLException e1) {
+        logger.error("Failed to roll back removal of archived executions", e1);
+      }
+      throw new ExecutorManagerException("Error removing "
+          + execIds.size() + " archived executions", e);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private ArchivedExecution fetchArchived(int execId)
+      throws ExecutorManagerException {
+    if (archive == null) {
+      return null;
+    }
+    try {
+      return archive.fetch(execId);
+    } catch (IOException e) {
+      throw new ExecutorManagerException("Error reading execution " + execId
+          + " from the archive", e);
+    }
+  }
+
+  private ExecutableFlow fetchArchivedFlow(int execId)
+      throws ExecutorManagerException {
+    ArchivedExecution execution = fetchArchived(execId);
+    if (execution == null) {
+      return null;
+    }
+    try {
+      Object flowObj =
+          JSONUtils.parseJSONFromString(new String(execution.getFlowData(),
+              "UTF-8"));
+      return ExecutableFlow.createExecutableFlowFromObject(flowObj);
+    } catch (IOException e) {
+      throw new ExecutorManagerException("Error parsing archived flow "
+          + execId, e);
+    }
+  }
+
+  private ArchivedExecution.Job fetchArchivedJob(int execId, String jobId,
+      int attempt) throws ExecutorManagerException {
+    ArchivedExecution execution = fetchArchived(execId);
+    return execution == null ? null : execution.getJob(jobId, attempt);
+  }
+
+  private List<ExecutableJobInfo> fetchArchivedJobInfoAttempts(int execId,
+      String jobId) throws ExecutorManagerException {
+    ArchivedExecution execution = fetchArchived(execId);
+    if (execution == null) {
+      return null;
+    }
+
+    List<ExecutableJobInfo> info = new ArrayList<ExecutableJobInfo>();
+    for (ArchivedExecution.Job job : execution.getJobs()) {
+      if (job.getJobId().equals(jobId)) {
+        info.add(job.toJobInfo());
+      }
+    }
+    return info.isEmpty() ? null : info;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Pair<Props, Props> fetchArchivedJobProps(int execId, String jobId)
+      throws ExecutorManagerException {
+    ArchivedExecution.Job job = fetchArchivedJob(execId, jobId, -1);
+    Props inputProps = null;
+    Props outputProps = null;
+    try {
+      if (job != null && job.getInputParams() != null) {
+        inputProps =
+            PropsUtils.fromHierarchicalMap((Map<String, Object>) JSONUtils
+                .parseJSONFromString(new String(job.getInputParams(), "UTF-8")));
+      }
+      if (job != null && job.getOutputParams() != null) {
+        outputProps =
+            PropsUtils.fromHierarchicalMap((Map<String, Object>) JSONUtils
+                .parseJSONFromString(new String(job.getOutputParams(), "UTF-8")));
+      }
+    } catch (IOException e) {
+      throw new ExecutorManagerException("Error decoding archived params "
+          + execId + " " + jobId, e);
+    }
+    return new Pair<Props, Props>(inputProps, outputProps);
+  }
+
+  private LogData fetchArchivedLogs(int execId, String name, int attempt,
+      int startByte, int length) throws ExecutorManagerException {
+    if (archive == null) {
+      return null;
+    }
+    byte[] log;
+    try {
+      log = archive.fetchLog(execId, name, attempt, startByte, length);
+    } catch (IOException e) {
+      throw new ExecutorManagerException("Error reading log " + name
+          + " of execution " + execId + " from the archive", e);
+    }
+    if (log == null) {
+      return null;
+    }
+
+    Pair<Integer, Integer> range = FileIOUtils.getUtf8Range(log, 0, log.length);
+    return new LogData(startByte + range.getFirst(), range.getSecond(),
+        new String(log, range.getFirst(), range.getSecond()));
+  }
+
+  private static class FetchExecIdsHandler implements
+      ResultSetHandler<List<Integer>> {
+    // finished executions, oldest first
+    private static String FETCH_ARCHIVABLE_EXECUTIONS =
+        "SELECT exec_id FROM execution_flows "
+            + "WHERE archive_time IS NULL AND end_time > 0 AND end_time < ? "
+            + "AND flow_data IS NOT NULL "
+            + "AND status IN (" + Status.SUCCEEDED.getNumVal() + ","
+            + Status.KILLED.getNumVal() + "," + Status.FAILED.getNumVal() + ","
+            + Status.FAILED_SUCCEEDED.getNumVal() + ","
+            + Status.CANCELLED.getNumVal() + ") "
+            + "AND exec_id NOT IN (SELECT exec_id FROM active_executing_flows) "
+            + "ORDER BY exec_id LIMIT ?";
+
+    @Override
+    public List<Integer> handle(ResultSet rs) throws SQLException {
+      List<Integer> execIds = new ArrayList<Integer>();
+      while (rs.next()) {
+        execIds.add(rs.getInt(1));
+      }
+      return execIds;
+    }
+  }
+
+  /**
+   * JDBC ResultSetHandler reading the execution_jobs rows of an execution,
+   * with decoded params and attachments
+   */
+  private static class FetchArchivedJobsHandler implements
+      ResultSetHandler<List<ArchivedExecution.Job>> {
+    private static String FETCH_JOBS =
+        "SELECT exec_id, project_id, version, flow_id, job_id, start_time, "
+            + "end_time, status, attempt, input_params, output_params, "
+            + "attachments FROM execution_jobs WHERE exec_id=?";
+
+    @Override
+    public List<ArchivedExecution.Job> handle(ResultSet rs)
+        throws SQLException {
+      List<ArchivedExecution.Job> jobs = new ArrayList<ArchivedExecution.Job>();
+      while (rs.next()) {
+        try {
+          jobs.add(new ArchivedExecution.Job(rs.getInt(1), rs.getInt(2), rs
+              .getInt(3), rs.getString(4), rs.getString(5), rs.getLong(6), rs
+              .getLong(7), Status.fromInteger(rs.getInt(8)), rs.getInt(9),
+              unGzip(rs.getBytes(10)), unGzip(rs.getBytes(11)), unGzip(rs
+                  .getBytes(12))));
+        } catch (IOException e) {
+          throw new SQLException("Error decoding job data", e);
+        }
+      }
+      return jobs;
+    }
+
+    private static byte[] unGzip(byte[] data) throws IOException {
+      return data == null ? null : GZIPUtils.unGzipBytes(data);
+    }
+  }
+
+  /**
+   * JDBC ResultSetHandler appending the decoded logs of an execution to the
+   * archive, row by row
+   */
+  private static class ArchiveLogsHandler implements
+      ResultSetHandler<Integer> {
+    private static String FETCH_LOGS =
+        "SELECT name, attempt, enc_type, log FROM execution_logs "
+            + "WHERE exec_id=? ORDER BY name, attempt, start_byte";
+
+    private final ExecutionArchive.Writer writer;
+    private final int execId;
+
+    private ArchiveLogsHandler(ExecutionArchive.Writer writer, int execId) {
+      this.writer = writer;
+      this.execId = execId;
+    }
+
+    @Override
+    public Integer handle(ResultSet rs) throws SQLException {
+      int numRows = 0;
+      while (rs.next()) {
+        String name = rs.getString(1);
+        EncodingType encType = EncodingType.fromInteger(rs.getInt(3));
+        try {
+          writer.appendLog(execId, name, rs.getInt(2),
+              encType.decode(rs.getBytes(4)));
+        } catch (IOException e) {
+          throw new SQLException("Error archiving log " + name, e);
+        }
+        numRows++;
+      }
+      return numRows;
+    }
+  }
+
   /**
    * JDBC ResultSetHandler to fetch records from executors table
    */
   private static class FetchExecutorHandler implements
     ResultSetHandler<List<Executor>> {
     private static String FETCH_ALL_EXECUTORS =
-      "SELECT id, host, port, active FROM executors";
+      "SELECT id, host, port, active, clusterGroup FROM executors";
     private static String FETCH_ACTIVE_EXECUTORS =
       "SELECT id, host, port, active, clusterGroup FROM executors where active=true";
     private static String FETCH_EXECUTOR_BY_ID =
@@ -1538,12 +2498,16 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       }
 
       List<Executor> executors = new ArrayList<Executor>();
+      boolean hasClusterGroup = rs.getMetaData().getColumnCount() >= 5;
       do {
         int id = rs.getInt(1);
         String host = rs.getString(2);
         int port = rs.getInt(3);
         boolean active = rs.getBoolean(4);
         Executor executor = new Executor(id, host, port, active);
+        if (hasClusterGroup) {
+          executor.setClusterGroup(rs.getString(5));
+        }
         executors.add(executor);
       } while (rs.next());
 
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.StringUtils;
+
+import azkaban.utils.Pair;
+
+/**
+ * <pre>
+ * Queued executions partitioned by cluster group, so that each group can be
+ * dispatched independently.
+ *
+ * A flow belongs to the cluster group named by its useExecutor flow
+ * parameter, as long as some executor of the executors table is in that
+ * group. Other flows, including the ones pinned to an executor id, go to the
+ * default partition. Partitions only exist for known cluster groups, so
+ * useExecutor values can't create queues of their own.
+ * </pre>
+ */
+public class PartitionedQueuedExecutions {
+  public static final String DEFAULT_PARTITION = "";
+
+  final long capacity;
+  final private ConcurrentHashMap<String, QueuedExecutions> partitions =
+    new ConcurrentHashMap<String, QueuedExecutions>();
+  // lower cased cluster groups of the executors table
+  private volatile Set<String> clusterGroups = Collections.emptySet();
+
+  public PartitionedQueuedExecutions(long capacity) {
+    this.capacity = capacity;
+    partitions.put(DEFAULT_PARTITION, new QueuedExecutions(capacity));
+  }
+
+  /**
+   * Returns the cluster group a flow asks for with its useExecutor flow
+   * parameter, lower cased, or DEFAULT_PARTITION if it doesn't name one
+   *
+   * @param exflow
+   * @return
+   */
+  public static String getClusterGroup(ExecutableFlow exflow) {
+    ExecutionOptions options = exflow.getExecutionOptions();
+    if (options == null || options.getFlowParameters() == null) {
+      return DEFAULT_PARTITION;
+    }
+    String useExecutor =
+      options.getFlowParameters().get(ExecutionOptions.USE_EXECUTOR);
+    if (StringUtils.isBlank(useExecutor) || StringUtils.isNumeric(useExecutor)) {
+      return DEFAULT_PARTITION;
+    }
+    return useExecutor.trim().toLowerCase();
+  }
+
+  /**
+   * Sets the cluster groups of the executors table. Partitions of groups that
+   * are gone stay until removeIdlePartition removes them.
+   *
+   * @param groups
+   */
+  public void setClusterGroups(Collection<String> groups) {
+    Set<String> lowerCased = new HashSet<String>();
+    for (String group : groups) {
+      if (StringUtils.isNotBlank(group)) {
+        lowerCased.add(group.trim().toLowerCase());
+      }
+    }
+    clusterGroups = Collections.unmodifiableSet(lowerCased);
+  }
+
+  public Set<String> getClusterGroups() {
+    return clusterGroups;
+  }
+
+  /**
+   * Returns the partition of a flow: its cluster group if that group is
+   * known, the default partition otherwise
+   *
+   * @param exflow
+   * @return
+   */
+  public String getPartition(ExecutableFlow exflow) {
+    String clusterGroup = getClusterGroup(exflow);
+    return clusterGroups.contains(clusterGroup) ? clusterGroup
+      : DEFAULT_PARTITION;
+  }
+
+  /**
+   * Returns the queue of a partition, creating it if its cluster group is
+   * known. Returns null for other partitions that don't exist.
+   *
+   * @param partition
+   * @return
+   */
+  public QueuedExecutions getQueue(String partition) {
+    QueuedExecutions queue = partitions.get(partition);
+    if (queue == null && clusterGroups.contains(partition)) {
+      partitions.putIfAbsent(partition, new QueuedExecutions(capacity));
+      queue = partitions.get(partition);
+    }
+    return queue;
+  }
+
+  /**
+   * Removes the partition of a cluster group that is no longer known, if it
+   * has no queued flows left.
+   *
+   * @param partition
+   * @return true if the partition is gone
+   */
+  public synchronized boolean removeIdlePartition(String partition) {
+    if (DEFAULT_PARTITION.equals(partition)
+      || clusterGroups.contains(partition)) {
+      return false;
+    }
+    QueuedExecutions queue = partitions.get(partition);
+    if (queue != null && !queue.isEmpty()) {
+      return false;
+    }
+    partitions.remove(partition);
+    return true;
+  }
+
+  public Set<String> getPartitions() {
+    return Collections.unmodifiableSet(partitions.keySet());
+  }
+
+  /**
+   * Enqueues a flow in the partition of its cluster group
+   *
+   * @param exflow
+   * @param ref
+   * @throws ExecutorManagerException
+   *           if the flow is already queued in any partition, or the insertion
+   *           fails
+   */
+  public synchronized void enqueue(ExecutableFlow exflow,
+    ExecutionReference ref) throws ExecutorManagerException {
+    if (hasExecution(exflow.getExecutionId())) {
+      String errMsg = "Flow already in queue " + exflow.getExecutionId();
+      throw new ExecutorManagerException(errMsg);
+    }
+    QueuedExecutions queue = getQueue(getPartition(exflow));
+    if (queue == null) {
+      // its cluster group went away in the meantime
+      queue = partitions.get(DEFAULT_PARTITION);
+    }
+    queue.enqueue(exflow, ref);
+  }
+
+  public void dequeue(int executionId) {
+    for (QueuedExecutions queue : partitions.values()) {
+      queue.dequeue(executionId);
+    }
+  }
+
+  public boolean hasExecution(int executionId) {
+    return findQueue(executionId) != null;
+  }
+
+  public ExecutableFlow getFlow(int executionId) {
+    QueuedExecutions queue = findQueue(executionId);
+    return queue == null ? null : queue.getFlow(executionId);
+  }
+
+  public ExecutionReference getReference(int executionId) {
+    QueuedExecutions queue = findQueue(executionId);
+    return queue == null ? null : queue.getReference(executionId);
+  }
+
+  /**
+   * Returns a read only collection of the queued (reference, flow) pairs of
+   * all the partitions
+   *
+   * @return
+   */
+  public Collection<Pair<ExecutionReference, ExecutableFlow>> getAllEntries() {
+    List<Pair<ExecutionReference, ExecutableFlow>> entries =
+      new ArrayList<Pair<ExecutionReference, ExecutableFlow>>();
+    for (QueuedExecutions queue : partitions.values()) {
+      entries.addAll(queue.getAllEntries());
+    }
+    return Collections.unmodifiableCollection(entries);
+  }
+
+  /**
+   * Total number of queued flows across partitions
+   *
+   * @return
+   */
+  public long size() {
+    long size = 0;
+    for (QueuedExecutions queue : partitions.values()) {
+      size += queue.size();
+    }
+    return size;
+  }
+
+  /**
+   * Verify, if the queued flows across partitions reached the capacity
+   *
+   * @return
+   */
+  public boolean isFull() {
+    return size() >= capacity;
+  }
+
+  public boolean isEmpty() {
+    for (QueuedExecutions queue : partitions.values()) {
+      if (!queue.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private QueuedExecutions findQueue(int executionId) {
+    for (QueuedExecutions queue : partitions.values()) {
+      if (queue.hasExecution(executionId)) {
+        return queue;
+      }
+    }
+    return null;
+  }
+}
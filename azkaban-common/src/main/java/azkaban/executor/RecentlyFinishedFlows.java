@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <pre>
+ * Bounded store of recently finished flows, kept in the order they finished.
+ *
+ * Flows are evicted once they are older than the time to live, or oldest
+ * first when the store grows over its maximum size. Eviction only visits the
+ * evicted entries.
+ *
+ * Optionally only a summary of each flow is kept: the flow and node status,
+ * times and attempts, without job sources, edges and output properties.
+ * </pre>
+ */
+public class RecentlyFinishedFlows {
+  private final long timeToLiveMs;
+  private final int maxSize;
+  private final boolean keepSummaryOnly;
+
+  /* map to easily access finished flows */
+  private final ConcurrentHashMap<Integer, Entry> finishedFlowMap =
+    new ConcurrentHashMap<Integer, Entry>();
+  /* entries in the order they were added */
+  private final ConcurrentLinkedQueue<Entry> finishedFlowList =
+    new ConcurrentLinkedQueue<Entry>();
+
+  public RecentlyFinishedFlows(long timeToLiveMs, int maxSize,
+    boolean keepSummaryOnly) {
+    this.timeToLiveMs = timeToLiveMs;
+    this.maxSize = maxSize;
+    this.keepSummaryOnly = keepSummaryOnly;
+  }
+
+  /**
+   * Adds a finished flow, replacing any previous entry for the same execution
+   *
+   * @param flow
+   */
+  public void add(ExecutableFlow flow) {
+    Entry entry =
+      new Entry(keepSummaryOnly ? createSummary(flow) : flow,
+        System.currentTimeMillis());
+    finishedFlowMap.put(flow.getExecutionId(), entry);
+    finishedFlowList.add(entry);
+    evictOverSize();
+  }
+
+  /**
+   * Fetch flow for an execution. Returns null, if execution isn't in the store
+   *
+   * @param executionId
+   * @return
+   */
+  public ExecutableFlow get(int executionId) {
+    Entry entry = finishedFlowMap.get(executionId);
+    return entry == null ? null : entry.flow;
+  }
+
+  public boolean hasExecution(int executionId) {
+    return finishedFlowMap.containsKey(executionId);
+  }
+
+  /**
+   * Returns all the stored flows, oldest first
+   *
+   * @return
+   */
+  public List<ExecutableFlow> getAll() {
+    List<ExecutableFlow> flows = new ArrayList<ExecutableFlow>();
+    for (Entry entry : finishedFlowList) {
+      if (finishedFlowMap.get(entry.flow.getExecutionId()) == entry) {
+        flows.add(entry.flow);
+      }
+    }
+    return flows;
+  }
+
+  public int size() {
+    return finishedFlowMap.size();
+  }
+
+  /**
+   * Evicts flows older than the time to live
+   *
+   * @return the execution ids of the evicted flows
+   */
+  public synchronized List<Integer> evictExpired() {
+    List<Integer> evicted = new ArrayList<Integer>();
+    long threshold = System.currentTimeMillis() - timeToLiveMs;
+    Entry head;
+    while ((head = finishedFlowList.peek()) != null
+      && head.addedTime < threshold) {
+      finishedFlowList.poll();
+      if (finishedFlowMap.remove(head.flow.getExecutionId(), head)) {
+        evicted.add(head.flow.getExecutionId());
+      }
+    }
+    return evicted;
+  }
+
+  private synchronized void evictOverSize() {
+    while (finishedFlowMap.size() > maxSize) {
+      Entry head = finishedFlowList.poll();
+      if (head == null) {
+        break;
+      }
+      finishedFlowMap.remove(head.flow.getExecutionId(), head);
+    }
+  }
+
+  /**
+   * Creates a copy of the flow holding only status, times and attempts of the
+   * flow and its nodes.
+   *
+   * @param flow
+   * @return
+   */
+  public static ExecutableFlow createSummary(ExecutableFlow flow) {
+    Map<String, Object> flowObj = flow.toObject();
+    stripNode(flowObj);
+    return ExecutableFlow.createExecutableFlowFromObject(flowObj);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void stripNode(Map<String, Object> nodeObj) {
+    nodeObj.remove(ExecutableNode.JOB_SOURCE_PARAM);
+    nodeObj.remove(ExecutableNode.PROPS_SOURCE_PARAM);
+    nodeObj.remove(ExecutableNode.OUTPUT_PROPS_PARAM);
+    nodeObj.remove(ExecutableNode.INNODES_PARAM);
+    nodeObj.remove(ExecutableNode.OUTNODES_PARAM);
+
+    Object nodes = nodeObj.get(ExecutableFlowBase.NODES_PARAM);
+    if (nodes instanceof List) {
+      for (Object node : (List<Object>) nodes) {
+        stripNode((Map<String, Object>) node);
+      }
+    }
+  }
+
+  private static class Entry {
+    private final ExecutableFlow flow;
+    private final long addedTime;
+
+    private Entry(ExecutableFlow flow, long addedTime) {
+      this.flow = flow;
+      this.addedTime = addedTime;
+    }
+  }
+}
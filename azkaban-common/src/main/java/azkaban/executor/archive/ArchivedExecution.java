@@ -0,0 +1,296 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor.archive;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import azkaban.executor.ExecutableJobInfo;
+import azkaban.executor.Status;
+
+/**
+ * Everything stored about a finished execution, as moved out of
+ * execution_flows and execution_jobs. The flow, params and attachments are
+ * kept decoded, the archive compresses the whole record. The logs are
+ * archived as separate chunk records, this only holds where they are.
+ */
+public class ArchivedExecution {
+  private final int execId;
+  private final byte[] flowData;
+  private final List<Job> jobs;
+  private final List<Log> logs;
+
+  /**
+   * @param execId
+   * @param flowData the flow as JSON, in UTF-8
+   * @param jobs
+   */
+  public ArchivedExecution(int execId, byte[] flowData, List<Job> jobs) {
+    this(execId, flowData, jobs, new ArrayList<Log>());
+  }
+
+  ArchivedExecution(int execId, byte[] flowData, List<Job> jobs,
+      List<Log> logs) {
+    this.execId = execId;
+    this.flowData = flowData;
+    this.jobs = jobs;
+    this.logs = logs;
+  }
+
+  public int getExecId() {
+    return execId;
+  }
+
+  public byte[] getFlowData() {
+    return flowData;
+  }
+
+  public List<Job> getJobs() {
+    return Collections.unmodifiableList(jobs);
+  }
+
+  /**
+   * @param jobId
+   * @param attempt the attempt, or -1 for the first one archived
+   * @return the job, or null
+   */
+  public Job getJob(String jobId, int attempt) {
+    for (Job job : jobs) {
+      if (job.jobId.equals(jobId) && (attempt < 0 || job.attempt == attempt)) {
+        return job;
+      }
+    }
+    return null;
+  }
+
+  public List<Log> getLogs() {
+    return Collections.unmodifiableList(logs);
+  }
+
+  /**
+   * @param name
+   * @param attempt
+   * @return the log, or null
+   */
+  public Log getLog(String name, int attempt) {
+    for (Log log : logs) {
+      if (log.name.equals(name) && log.attempt == attempt) {
+        return log;
+      }
+    }
+    return null;
+  }
+
+  ArchivedExecution withLogs(List<Log> logs) {
+    return new ArchivedExecution(execId, flowData, jobs, logs);
+  }
+
+  void writeTo(DataOutputStream out) throws IOException {
+    out.writeInt(execId);
+    writeBytes(out, flowData);
+    out.writeInt(jobs.size());
+    for (Job job : jobs) {
+      out.writeInt(job.projectId);
+      out.writeInt(job.version);
+      out.writeUTF(job.flowId);
+      out.writeUTF(job.jobId);
+      out.writeLong(job.startTime);
+      out.writeLong(job.endTime);
+      out.writeInt(job.status.getNumVal());
+      out.writeInt(job.attempt);
+      writeBytes(out, job.inputParams);
+      writeBytes(out, job.outputParams);
+      writeBytes(out, job.attachments);
+    }
+    out.writeInt(logs.size());
+    for (Log log : logs) {
+      out.writeUTF(log.name);
+      out.writeInt(log.attempt);
+      out.writeInt(log.chunkOffsets.length);
+      for (int i = 0; i < log.chunkOffsets.length; ++i) {
+        out.writeLong(log.chunkOffsets[i]);
+        out.writeInt(log.chunkLengths[i]);
+      }
+    }
+  }
+
+  static ArchivedExecution readFrom(DataInputStream in) throws IOException {
+    int execId = in.readInt();
+    byte[] flowData = readBytes(in);
+    int numJobs = in.readInt();
+    List<Job> jobs = new ArrayList<Job>(numJobs);
+    for (int i = 0; i < numJobs; ++i) {
+      jobs.add(new Job(execId, in.readInt(), in.readInt(), in.readUTF(),
+          in.readUTF(), in.readLong(), in.readLong(), Status.fromInteger(in
+              .readInt()), in.readInt(), readBytes(in), readBytes(in),
+          readBytes(in)));
+    }
+    int numLogs = in.readInt();
+    List<Log> logs = new ArrayList<Log>(numLogs);
+    for (int i = 0; i < numLogs; ++i) {
+      String name = in.readUTF();
+      int attempt = in.readInt();
+      int numChunks = in.readInt();
+      long[] chunkOffsets = new long[numChunks];
+      int[] chunkLengths = new int[numChunks];
+      for (int j = 0; j < numChunks; ++j) {
+        chunkOffsets[j] = in.readLong();
+        chunkLengths[j] = in.readInt();
+      }
+      logs.add(new Log(name, attempt, chunkOffsets, chunkLengths));
+    }
+    return new ArchivedExecution(execId, flowData, jobs, logs);
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] data)
+      throws IOException {
+    if (data == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(data.length);
+      out.write(data);
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] data = new byte[length];
+    in.readFully(data);
+    return data;
+  }
+
+  /**
+   * An execution_jobs row. The params and attachments are JSON in UTF-8, or
+   * null.
+   */
+  public static class Job {
+    private final int execId;
+    private final int projectId;
+    private final int version;
+    private final String flowId;
+    private final String jobId;
+    private final long startTime;
+    private final long endTime;
+    private final Status status;
+    private final int attempt;
+    private final byte[] inputParams;
+    private final byte[] outputParams;
+    private final byte[] attachments;
+
+    public Job(int execId, int projectId, int version, String flowId,
+        String jobId, long startTime, long endTime, Status status,
+        int attempt, byte[] inputParams, byte[] outputParams,
+        byte[] attachments) {
+      this.execId = execId;
+      this.projectId = projectId;
+      this.version = version;
+      this.flowId = flowId;
+      this.jobId = jobId;
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.status = status;
+      this.attempt = attempt;
+      this.inputParams = inputParams;
+      this.outputParams = outputParams;
+      this.attachments = attachments;
+    }
+
+    public String getJobId() {
+      return jobId;
+    }
+
+    public int getAttempt() {
+      return attempt;
+    }
+
+    public byte[] getInputParams() {
+      return inputParams;
+    }
+
+    public byte[] getOutputParams() {
+      return outputParams;
+    }
+
+    public byte[] getAttachments() {
+      return attachments;
+    }
+
+    public ExecutableJobInfo toJobInfo() {
+      return new ExecutableJobInfo(execId, projectId, version, flowId, jobId,
+          startTime, endTime, status, attempt);
+    }
+  }
+
+  /**
+   * A job or flow log, as the concatenated execution_logs rows. The log is
+   * split in chunk records of the same segment, at the given offsets, with
+   * the given decoded lengths.
+   */
+  public static class Log {
+    private final String name;
+    private final int attempt;
+    private final long[] chunkOffsets;
+    private final int[] chunkLengths;
+    private final long length;
+
+    Log(String name, int attempt, long[] chunkOffsets, int[] chunkLengths) {
+      this.name = name;
+      this.attempt = attempt;
+      this.chunkOffsets = chunkOffsets;
+      this.chunkLengths = chunkLengths;
+      long length = 0;
+      for (int chunkLength : chunkLengths) {
+        length += chunkLength;
+      }
+      this.length = length;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getAttempt() {
+      return attempt;
+    }
+
+    /**
+     * @return the decoded length of the whole log
+     */
+    public long getLength() {
+      return length;
+    }
+
+    int getNumChunks() {
+      return chunkOffsets.length;
+    }
+
+    long getChunkOffset(int chunk) {
+      return chunkOffsets[chunk];
+    }
+
+    int getChunkLength(int chunk) {
+      return chunkLengths[chunk];
+    }
+  }
+}
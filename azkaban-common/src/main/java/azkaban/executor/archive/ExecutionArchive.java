@@ -0,0 +1,807 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import azkaban.database.AbstractJdbcLoader.EncodingType;
+
+/**
+ * <pre>
+ * Append-only local store of finished executions.
+ *
+ * Executions are appended to segment files, as records holding the exec id,
+ * the record type, the length, the CRC32 and the encoded payload. The logs of
+ * an execution are split in LOG_CHUNK_SIZE chunks, each appended as its own
+ * record. The execution record follows them, with the encoded
+ * ArchivedExecution and the offsets of its log chunks, so reading a page of
+ * a log only decodes the chunks it overlaps. The records of a segment are in
+ * increasing exec id order, a writer starts a new segment when that doesn't
+ * hold or the segment is full. Otherwise a new writer appends
+ * to the newest segment, so writers opened for small batches don't leave a
+ * segment each behind. When a segment is sealed, its
+ * sparse index is written next to it: the exec id and offset of every
+ * INDEX_INTERVAL-th record. A lookup binary searches the index of the
+ * segments whose exec id range holds the id, and scans at most
+ * INDEX_INTERVAL record headers from there.
+ *
+ * Segments without an up to date index, left by a crash, are scanned on
+ * startup. A torn record at their end is truncated, with the log chunks of
+ * an execution whose record is missing.
+ *
+ * The executions and log chunks read are cached, up to cacheMaxBytes of
+ * decoded data.
+ * </pre>
+ */
+public class ExecutionArchive {
+  private static final Logger logger = Logger.getLogger(ExecutionArchive.class);
+
+  private static final int SEGMENT_MAGIC = 0x415a4153;
+  private static final int INDEX_MAGIC = 0x415a4149;
+  // magic, encoding type
+  private static final int SEGMENT_HEADER_SIZE = 8;
+  // exec id, record type, payload length, CRC32
+  private static final int RECORD_HEADER_SIZE = 16;
+  private static final int RECORD_EXECUTION = 0;
+  private static final int RECORD_LOG_CHUNK = 1;
+  private static final int INDEX_INTERVAL = 32;
+  // decoded size of the log chunks, a log page reads one or two of them
+  private static final int LOG_CHUNK_SIZE = 256 * 1024;
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final String INDEX_SUFFIX = ".idx";
+
+  private final File dir;
+  private final EncodingType encodingType;
+  private final long maxSegmentBytes;
+
+  // sealed segments, oldest first
+  private final List<Segment> segments = new CopyOnWriteArrayList<Segment>();
+  // half of the bound each
+  private final Cache<Integer, Located> executionCache;
+  private final Cache<ChunkKey, byte[]> chunkCache;
+  private int nextSegment = 0;
+
+  /**
+   * Opens the archive in dir, creating it if needed
+   *
+   * @param dir
+   * @param encodingType encoding of the segments written
+   * @param maxSegmentBytes size after which a writer starts a new segment
+   * @param cacheMaxBytes decoded size of the executions and log chunks cached
+   * @throws IOException
+   */
+  public ExecutionArchive(File dir, EncodingType encodingType,
+      long maxSegmentBytes, long cacheMaxBytes) throws IOException {
+    this.dir = dir;
+    this.encodingType = encodingType;
+    this.maxSegmentBytes = maxSegmentBytes;
+    executionCache =
+        CacheBuilder.newBuilder().maximumWeight(cacheMaxBytes / 2)
+            .weigher(new Weigher<Integer, Located>() {
+              @Override
+              public int weigh(Integer execId, Located located) {
+                return located.weight;
+              }
+            }).build();
+    chunkCache =
+        CacheBuilder.newBuilder().maximumWeight(cacheMaxBytes / 2)
+            .weigher(new Weigher<ChunkKey, byte[]>() {
+              @Override
+              public int weigh(ChunkKey key, byte[] chunk) {
+                return chunk.length;
+              }
+            }).build();
+
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Can't create archive directory " + dir);
+    }
+
+    File[] files = dir.listFiles();
+    Arrays.sort(files);
+    for (File file : files) {
+      String name = file.getName();
+      if (!name.endsWith(SEGMENT_SUFFIX)) {
+        continue;
+      }
+      int seq =
+          Integer.parseInt(name.substring(0,
+              name.length() - SEGMENT_SUFFIX.length()));
+      nextSegment = Math.max(nextSegment, seq + 1);
+
+      Segment segment = Segment.open(file);
+      if (segment != null) {
+        segments.add(segment);
+      }
+    }
+    logger.info("Opened execution archive " + dir + " with "
+        + segments.size() + " segments");
+  }
+
+  /**
+   * @param execId
+   * @return the archived execution, or null if it isn't archived
+   * @throws IOException
+   */
+  public ArchivedExecution fetch(int execId) throws IOException {
+    Located located = locate(execId);
+    return located == null ? null : located.execution;
+  }
+
+  /**
+   * Reads part of a log, decoding only the chunks it overlaps
+   *
+   * @param execId
+   * @param name
+   * @param attempt
+   * @param startByte
+   * @param length
+   * @return the decoded bytes from startByte, up to length of them, or null
+   *         if the log isn't archived or ends before startByte
+   * @throws IOException
+   */
+  public byte[] fetchLog(int execId, String name, int attempt, int startByte,
+      int length) throws IOException {
+    Located located = locate(execId);
+    ArchivedExecution.Log log =
+        located == null ? null : located.execution.getLog(name, attempt);
+    if (log == null || startByte >= log.getLength()) {
+      return null;
+    }
+
+    long endByte = Math.min(log.getLength(), (long) startByte + length);
+    byte[] range = new byte[(int) (endByte - startByte)];
+    long chunkStart = 0;
+    for (int i = 0; i < log.getNumChunks() && chunkStart < endByte; ++i) {
+      long chunkEnd = chunkStart + log.getChunkLength(i);
+      if (chunkEnd > startByte) {
+        byte[] chunk = readChunk(located.segment, log.getChunkOffset(i));
+        if (chunk.length != log.getChunkLength(i)) {
+          throw new IOException("Corrupt log chunk of execution " + execId
+              + " in " + located.segment.file);
+        }
+        long from = Math.max(startByte, chunkStart);
+        long to = Math.min(endByte, chunkEnd);
+        System.arraycopy(chunk, (int) (from - chunkStart), range,
+            (int) (from - startByte), (int) (to - from));
+      }
+      chunkStart = chunkEnd;
+    }
+    return range;
+  }
+
+  /**
+   * Opens a writer appending to the newest segment, or to new segments. The
+   * executions are readable once the writer is closed. Only one writer may
+   * be open at a time.
+   *
+   * @return
+   */
+  public Writer openWriter() {
+    return new Writer();
+  }
+
+  public int getNumSegments() {
+    return segments.size();
+  }
+
+  /* the execution and the segment it's read from, or null */
+  private Located locate(int execId) throws IOException {
+    Located cached = executionCache.getIfPresent(execId);
+    if (cached != null) {
+      return cached;
+    }
+
+    // newest first, if an execution was archived twice they're the same
+    for (int i = segments.size() - 1; i >= 0; --i) {
+      Segment segment = segments.get(i);
+      if (!segment.contains(execId)) {
+        continue;
+      }
+
+      byte[] record = segment.read(execId);
+      if (record != null) {
+        ArchivedExecution execution =
+            ArchivedExecution.readFrom(new DataInputStream(
+                new ByteArrayInputStream(record)));
+        Located located = new Located(segment, execution, weigh(execution));
+        executionCache.put(execId, located);
+        return located;
+      }
+    }
+    return null;
+  }
+
+  private byte[] readChunk(Segment segment, long offset) throws IOException {
+    ChunkKey key = new ChunkKey(segment.file, offset);
+    byte[] chunk = chunkCache.getIfPresent(key);
+    if (chunk == null) {
+      chunk = segment.readChunk(offset);
+      chunkCache.put(key, chunk);
+    }
+    return chunk;
+  }
+
+  /* decoded size, the log chunks aren't part of it */
+  private static int weigh(ArchivedExecution execution) {
+    long weight = length(execution.getFlowData());
+    for (ArchivedExecution.Job job : execution.getJobs()) {
+      weight +=
+          length(job.getInputParams()) + length(job.getOutputParams())
+              + length(job.getAttachments());
+    }
+    for (ArchivedExecution.Log log : execution.getLogs()) {
+      weight += log.getNumChunks() * 12;
+    }
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  private static int length(byte[] data) {
+    return data == null ? 0 : data.length;
+  }
+
+  private synchronized File nextSegmentFile() {
+    return new File(dir, String.format("%010d", nextSegment++)
+        + SEGMENT_SUFFIX);
+  }
+
+  /**
+   * Appends executions to the archive. The logs of an execution are appended
+   * right before it, one log after the other. Not thread safe.
+   */
+  public class Writer implements Closeable {
+    private File file;
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long position;
+    private int numRecords;
+    private int minExecId;
+    private int lastExecId;
+    private List<Integer> indexIds;
+    private List<Long> indexOffsets;
+    private int recordsSinceIndex;
+    // the sealed segment being appended to, replaced on seal
+    private Segment continued;
+
+    // the execution whose logs are being appended, or -1
+    private int pendingExecId = -1;
+    private List<ArchivedExecution.Log> pendingLogs;
+    private String logName;
+    private int logAttempt;
+    private List<Long> chunkOffsets;
+    private List<Integer> chunkLengths;
+    private final ByteArrayOutputStream chunk = new ByteArrayOutputStream(
+        LOG_CHUNK_SIZE);
+
+    private Writer() {
+    }
+
+    /**
+     * Appends the next part of a log of the execution appended next
+     *
+     * @param execId
+     * @param name
+     * @param attempt
+     * @param data
+     * @throws IOException
+     */
+    public void appendLog(int execId, String name, int attempt, byte[] data)
+        throws IOException {
+      begin(execId);
+      if (!name.equals(logName) || attempt != logAttempt) {
+        endLog();
+        logName = name;
+        logAttempt = attempt;
+        chunkOffsets = new ArrayList<Long>();
+        chunkLengths = new ArrayList<Integer>();
+      }
+
+      int offset = 0;
+      while (offset < data.length) {
+        int count =
+            Math.min(data.length - offset, LOG_CHUNK_SIZE - chunk.size());
+        chunk.write(data, offset, count);
+        offset += count;
+        if (chunk.size() == LOG_CHUNK_SIZE) {
+          writeChunk();
+        }
+      }
+    }
+
+    public void append(ArchivedExecution execution) throws IOException {
+      int execId = execution.getExecId();
+      begin(execId);
+      endLog();
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream data = new DataOutputStream(bytes);
+      execution.withLogs(pendingLogs).writeTo(data);
+      data.flush();
+      writeRecord(execId, RECORD_EXECUTION, bytes.toByteArray());
+      pendingExecId = -1;
+    }
+
+    /* starts the records of execId, unless they're already started */
+    private void begin(int execId) throws IOException {
+      if (out != null && execId == pendingExecId) {
+        return;
+      }
+      // the logs of an execution that wasn't appended stay unreferenced
+      if (out != null && (execId <= lastExecId || position >= maxSegmentBytes)) {
+        seal();
+      }
+      if (out == null) {
+        start(execId);
+      }
+      pendingExecId = execId;
+      pendingLogs = new ArrayList<ArchivedExecution.Log>();
+      logName = null;
+      chunk.reset();
+    }
+
+    private void endLog() throws IOException {
+      if (logName == null) {
+        return;
+      }
+      if (chunk.size() > 0) {
+        writeChunk();
+      }
+      long[] offsets = new long[chunkOffsets.size()];
+      int[] lengths = new int[chunkLengths.size()];
+      for (int i = 0; i < offsets.length; ++i) {
+        offsets[i] = chunkOffsets.get(i);
+        lengths[i] = chunkLengths.get(i);
+      }
+      pendingLogs.add(new ArchivedExecution.Log(logName, logAttempt, offsets,
+          lengths));
+      logName = null;
+    }
+
+    private void writeChunk() throws IOException {
+      chunkOffsets.add(position);
+      chunkLengths.add(chunk.size());
+      writeRecord(pendingExecId, RECORD_LOG_CHUNK, chunk.toByteArray());
+      chunk.reset();
+    }
+
+    private void writeRecord(int execId, int type, byte[] record)
+        throws IOException {
+      byte[] payload = encodingType.encode(record);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+
+      if (recordsSinceIndex == 0) {
+        indexIds.add(execId);
+        indexOffsets.add(position);
+      }
+      recordsSinceIndex = (recordsSinceIndex + 1) % INDEX_INTERVAL;
+      out.writeInt(execId);
+      out.writeInt(type);
+      out.writeInt(payload.length);
+      out.writeInt((int) crc.getValue());
+      out.write(payload);
+
+      position += RECORD_HEADER_SIZE + payload.length;
+      lastExecId = execId;
+      numRecords++;
+    }
+
+    /**
+     * Syncs the current segment to disk and writes its index
+     */
+    @Override
+    public void close() throws IOException {
+      if (out != null) {
+        seal();
+      }
+    }
+
+    private void start(int execId) throws IOException {
+      numRecords = 0;
+      recordsSinceIndex = 0;
+      indexIds = new ArrayList<Integer>();
+      indexOffsets = new ArrayList<Long>();
+
+      Segment newest =
+          segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      if (newest != null && newest.encodingType == encodingType
+          && newest.maxExecId < execId && newest.length < maxSegmentBytes
+          && newest.length == newest.file.length()) {
+        // a crash past the indexed length is truncated on the next startup
+        continued = newest;
+        file = newest.file;
+        fileOut = new FileOutputStream(file, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        position = newest.length;
+        minExecId = newest.minExecId;
+        lastExecId = newest.maxExecId;
+        for (int i = 0; i < newest.indexIds.length; ++i) {
+          indexIds.add(newest.indexIds[i]);
+          indexOffsets.add(newest.indexOffsets[i]);
+        }
+        return;
+      }
+
+      continued = null;
+      file = nextSegmentFile();
+      fileOut = new FileOutputStream(file);
+      out = new DataOutputStream(new BufferedOutputStream(fileOut));
+      out.writeInt(SEGMENT_MAGIC);
+      out.writeInt(encodingType.getNumVal());
+      position = SEGMENT_HEADER_SIZE;
+      minExecId = execId;
+    }
+
+    private void seal() throws IOException {
+      pendingExecId = -1;
+      try {
+        out.flush();
+        fileOut.getFD().sync();
+      } finally {
+        IOUtils.closeQuietly(out);
+        out = null;
+      }
+
+      Segment replaced = continued;
+      continued = null;
+      if (numRecords == 0) {
+        if (replaced == null) {
+          file.delete();
+        }
+        return;
+      }
+
+      int[] ids = new int[indexIds.size()];
+      long[] offsets = new long[indexOffsets.size()];
+      for (int i = 0; i < ids.length; ++i) {
+        ids[i] = indexIds.get(i);
+        offsets[i] = indexOffsets.get(i);
+      }
+      Segment segment =
+          new Segment(file, encodingType, minExecId, lastExecId, position, ids,
+              offsets);
+      segment.writeIndex();
+      if (replaced != null) {
+        segments.set(segments.indexOf(replaced), segment);
+      } else {
+        segments.add(segment);
+      }
+    }
+  }
+
+  private static class Segment {
+    private final File file;
+    private final EncodingType encodingType;
+    private final int minExecId;
+    private final int maxExecId;
+    private final long length;
+    private final int[] indexIds;
+    private final long[] indexOffsets;
+
+    private Segment(File file, EncodingType encodingType, int minExecId,
+        int maxExecId, long length, int[] indexIds, long[] indexOffsets) {
+      this.file = file;
+      this.encodingType = encodingType;
+      this.minExecId = minExecId;
+      this.maxExecId = maxExecId;
+      this.length = length;
+      this.indexIds = indexIds;
+      this.indexOffsets = indexOffsets;
+    }
+
+    private boolean contains(int execId) {
+      return execId >= minExecId && execId <= maxExecId;
+    }
+
+    /* decoded execution record of execId, or null */
+    private byte[] read(int execId) throws IOException {
+      int entry = Arrays.binarySearch(indexIds, execId);
+      if (entry < 0) {
+        entry = -entry - 2;
+        if (entry < 0) {
+          return null;
+        }
+      }
+
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        long offset = indexOffsets[entry];
+        while (offset < length) {
+          raf.seek(offset);
+          int id = raf.readInt();
+          int type = raf.readInt();
+          int size = raf.readInt();
+          int crc = raf.readInt();
+          if (id > execId) {
+            return null;
+          } else if (id == execId && type == RECORD_EXECUTION) {
+            byte[] payload = new byte[size];
+            raf.readFully(payload);
+            if (!checkCrc(payload, crc)) {
+              throw new IOException("Corrupt record of execution " + execId
+                  + " in " + file);
+            }
+            return encodingType.decode(payload);
+          }
+          offset += RECORD_HEADER_SIZE + size;
+        }
+        return null;
+      } finally {
+        raf.close();
+      }
+    }
+
+    /* decoded log chunk record at offset */
+    private byte[] readChunk(long offset) throws IOException {
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        raf.seek(offset);
+        int id = raf.readInt();
+        int type = raf.readInt();
+        int size = raf.readInt();
+        int crc = raf.readInt();
+        if (type != RECORD_LOG_CHUNK || size < 0
+            || offset + RECORD_HEADER_SIZE + size > length) {
+          throw new IOException("No log chunk of execution " + id + " at "
+              + offset + " in " + file);
+        }
+        byte[] payload = new byte[size];
+        raf.readFully(payload);
+        if (!checkCrc(payload, crc)) {
+          throw new IOException("Corrupt log chunk of execution " + id
+              + " in " + file);
+        }
+        return encodingType.decode(payload);
+      } finally {
+        raf.close();
+      }
+    }
+
+    private static boolean checkCrc(byte[] payload, int expected) {
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      return (int) crc.getValue() == expected;
+    }
+
+    private static File indexFile(File file) {
+      String name = file.getName();
+      return new File(file.getParentFile(), name.substring(0, name.length()
+          - SEGMENT_SUFFIX.length())
+          + INDEX_SUFFIX);
+    }
+
+    /* the segment, or null if it has no complete record */
+    private static Segment open(File file) throws IOException {
+      File index = indexFile(file);
+      if (index.exists()) {
+        Segment segment = readIndex(file, index);
+        if (segment != null && segment.length == file.length()) {
+          return segment;
+        }
+      }
+
+      logger.warn("Rebuilding the index of archive segment " + file);
+      Segment segment = scan(file);
+      if (segment == null) {
+        logger.warn("Removing archive segment " + file
+            + " without complete records");
+        file.delete();
+        index.delete();
+        return null;
+      }
+      segment.writeIndex();
+      return segment;
+    }
+
+    private static Segment readIndex(File file, File index) throws IOException {
+      DataInputStream in =
+          new DataInputStream(new BufferedInputStream(
+              new FileInputStream(index)));
+      try {
+        if (in.readInt() != INDEX_MAGIC) {
+          return null;
+        }
+        EncodingType encodingType = EncodingType.fromInteger(in.readInt());
+        int minExecId = in.readInt();
+        int maxExecId = in.readInt();
+        long length = in.readLong();
+        int count = in.readInt();
+        int[] ids = new int[count];
+        long[] offsets = new long[count];
+        for (int i = 0; i < count; ++i) {
+          ids[i] = in.readInt();
+          offsets[i] = in.readLong();
+        }
+        return new Segment(file, encodingType, minExecId, maxExecId, length,
+            ids, offsets);
+      } catch (EOFException e) {
+        return null;
+      } finally {
+        in.close();
+      }
+    }
+
+    private static Segment scan(File file) throws IOException {
+      long fileLength = file.length();
+      EncodingType encodingType = null;
+      int minExecId = 0;
+      int maxExecId = 0;
+      int numRecords = 0;
+      List<Integer> ids = new ArrayList<Integer>();
+      List<Long> offsets = new ArrayList<Long>();
+      long offset = SEGMENT_HEADER_SIZE;
+      // past the last execution record, the log chunks after it are
+      // unreferenced
+      long end = SEGMENT_HEADER_SIZE;
+
+      DataInputStream in =
+          new DataInputStream(new BufferedInputStream(
+              new FileInputStream(file)));
+      try {
+        if (fileLength < SEGMENT_HEADER_SIZE || in.readInt() != SEGMENT_MAGIC) {
+          return null;
+        }
+        encodingType = EncodingType.fromInteger(in.readInt());
+
+        while (offset + RECORD_HEADER_SIZE <= fileLength) {
+          int id = in.readInt();
+          int type = in.readInt();
+          int size = in.readInt();
+          int crc = in.readInt();
+          if (size < 0 || offset + RECORD_HEADER_SIZE + size > fileLength) {
+            break;
+          }
+          byte[] payload = new byte[size];
+          in.readFully(payload);
+          if (!checkCrc(payload, crc)) {
+            break;
+          }
+
+          if (numRecords % INDEX_INTERVAL == 0) {
+            ids.add(id);
+            offsets.add(offset);
+          }
+          if (numRecords == 0) {
+            minExecId = id;
+          }
+          numRecords++;
+          offset += RECORD_HEADER_SIZE + size;
+          if (type == RECORD_EXECUTION) {
+            maxExecId = id;
+            end = offset;
+          }
+        }
+      } finally {
+        in.close();
+      }
+
+      if (end == SEGMENT_HEADER_SIZE) {
+        return null;
+      }
+      if (end < fileLength) {
+        logger.warn("Truncating " + (fileLength - end)
+            + " bytes of torn or unreferenced records from " + file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+          raf.setLength(end);
+        } finally {
+          raf.close();
+        }
+      }
+
+      int count = 0;
+      while (count < offsets.size() && offsets.get(count) < end) {
+        count++;
+      }
+      int[] indexIds = new int[count];
+      long[] indexOffsets = new long[count];
+      for (int i = 0; i < count; ++i) {
+        indexIds[i] = ids.get(i);
+        indexOffsets[i] = offsets.get(i);
+      }
+      return new Segment(file, encodingType, minExecId, maxExecId, end,
+          indexIds, indexOffsets);
+    }
+
+    private void writeIndex() throws IOException {
+      File index = indexFile(file);
+      File tmp = new File(index.getPath() + ".tmp");
+      FileOutputStream fileOut = new FileOutputStream(tmp);
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(fileOut));
+      try {
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(encodingType.getNumVal());
+        out.writeInt(minExecId);
+        out.writeInt(maxExecId);
+        out.writeLong(length);
+        out.writeInt(indexIds.length);
+        for (int i = 0; i < indexIds.length; ++i) {
+          out.writeInt(indexIds[i]);
+          out.writeLong(indexOffsets[i]);
+        }
+        out.flush();
+        fileOut.getFD().sync();
+      } finally {
+        out.close();
+      }
+      Files.move(tmp.toPath(), index.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static class Located {
+    private final Segment segment;
+    private final ArchivedExecution execution;
+    private final int weight;
+
+    private Located(Segment segment, ArchivedExecution execution, int weight) {
+      this.segment = segment;
+      this.execution = execution;
+      this.weight = weight;
+    }
+  }
+
+  private static class ChunkKey {
+    private final File file;
+    private final long offset;
+
+    private ChunkKey(File file, long offset) {
+      this.file = file;
+      this.offset = offset;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof ChunkKey)) {
+        return false;
+      }
+      ChunkKey other = (ChunkKey) obj;
+      return offset == other.offset && file.equals(other.file);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * file.hashCode() + (int) (offset ^ (offset >>> 32));
+    }
+  }
+}
@@ -19,7 +19,10 @@ package azkaban.jmx;
 import java.util.ArrayList;
 import java.util.List;
 
+import azkaban.executor.Executor;
+import azkaban.executor.ExecutorApiClient;
 import azkaban.executor.ExecutorManager;
+import azkaban.utils.Pair;
 
 public class JmxExecutorManager implements JmxExecutorManagerMBean {
   private ExecutorManager manager;
@@ -93,4 +96,106 @@ public class JmxExecutorManager implements JmxExecutorManagerMBean {
     return manager.getLastSuccessfulExecutorInfoRefresh();
   }
 
+  @Override
+  public List<String> getUnreachableExecutors() {
+    List<String> unreachable = new ArrayList<String>();
+    for (Pair<Executor, Integer> pair : manager.getUnreachableExecutors()) {
+      unreachable.add(pair.getFirst() + " failures: " + pair.getSecond());
+    }
+    return unreachable;
+  }
+
+  @Override
+  public String getExecutorPollLatencies() {
+    return manager.getExecutorPollLatencies().toString();
+  }
+
+  @Override
+  public String getDispatchQueuedTime() {
+    return manager.getDispatchMetrics().getQueuedTime().toString();
+  }
+
+  @Override
+  public String getDispatchSelectionTime() {
+    return manager.getDispatchMetrics().getSelectionTime().toString();
+  }
+
+  @Override
+  public String getDispatchCallTime() {
+    return manager.getDispatchMetrics().getDispatchTime().toString();
+  }
+
+  @Override
+  public String getDispatchFirstUpdateTime() {
+    return manager.getDispatchMetrics().getFirstUpdateTime().toString();
+  }
+
+  @Override
+  public String getDispatchErrorsByExecutor() {
+    return manager.getDispatchMetrics().getDispatchErrors().toString();
+  }
+
+  @Override
+  public long getFinishedExecutionCacheHits() {
+    return manager.getFinishedExecutionCache().getStats().hitCount();
+  }
+
+  @Override
+  public long getFinishedExecutionCacheMisses() {
+    return manager.getFinishedExecutionCache().getStats().missCount();
+  }
+
+  @Override
+  public long getFinishedExecutionCacheEvictions() {
+    return manager.getFinishedExecutionCache().getStats().evictionCount();
+  }
+
+  @Override
+  public long getFinishedExecutionCacheSize() {
+    return manager.getFinishedExecutionCache().size();
+  }
+
+  @Override
+  public int getExecutorClientLeasedConnections() {
+    return ExecutorApiClient.getInstance().getPoolStats().getLeased();
+  }
+
+  @Override
+  public int getExecutorClientAvailableConnections() {
+    return ExecutorApiClient.getInstance().getPoolStats().getAvailable();
+  }
+
+  @Override
+  public int getExecutorClientPendingConnections() {
+    return ExecutorApiClient.getInstance().getPoolStats().getPending();
+  }
+
+  @Override
+  public int getExecutorClientMaxConnections() {
+    return ExecutorApiClient.getInstance().getPoolStats().getMax();
+  }
+
+  @Override
+  public long getExecutorClientConnectionLeaseCount() {
+    return ExecutorApiClient.getInstance().getConnectionLeaseCount();
+  }
+
+  @Override
+  public double getExecutorClientAvgConnectionLeaseWaitMs() {
+    ExecutorApiClient client = ExecutorApiClient.getInstance();
+    long leases = client.getConnectionLeaseCount();
+    return leases == 0 ? 0 : (double) client.getTotalConnectionLeaseWaitMs()
+        / leases;
+  }
+
+  @Override
+  public long getExecutorClientMaxConnectionLeaseWaitMs() {
+    return ExecutorApiClient.getInstance().getMaxConnectionLeaseWaitMs();
+  }
+
+  @Override
+  public long getExecutorClientConnectionLeaseTimeouts() {
+    return ExecutorApiClient.getInstance().getConnectionLeaseTimeoutCount();
+  }
+
 }
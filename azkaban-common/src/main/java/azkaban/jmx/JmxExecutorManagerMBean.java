@@ -58,4 +58,61 @@ public interface JmxExecutorManagerMBean {
   @DisplayName("OPERATION: getLastSuccessfulExecutorInfoRefresh")
   long getLastSuccessfulExecutorInfoRefresh();
 
+  @DisplayName("OPERATION: getUnreachableExecutors")
+  List<String> getUnreachableExecutors();
+
+  @DisplayName("OPERATION: getExecutorPollLatencies")
+  String getExecutorPollLatencies();
+
+  @DisplayName("OPERATION: getDispatchQueuedTime")
+  String getDispatchQueuedTime();
+
+  @DisplayName("OPERATION: getDispatchSelectionTime")
+  String getDispatchSelectionTime();
+
+  @DisplayName("OPERATION: getDispatchCallTime")
+  String getDispatchCallTime();
+
+  @DisplayName("OPERATION: getDispatchFirstUpdateTime")
+  String getDispatchFirstUpdateTime();
+
+  @DisplayName("OPERATION: getDispatchErrorsByExecutor")
+  String getDispatchErrorsByExecutor();
+
+  @DisplayName("OPERATION: getFinishedExecutionCacheHits")
+  long getFinishedExecutionCacheHits();
+
+  @DisplayName("OPERATION: getFinishedExecutionCacheMisses")
+  long getFinishedExecutionCacheMisses();
+
+  @DisplayName("OPERATION: getFinishedExecutionCacheEvictions")
+  long getFinishedExecutionCacheEvictions();
+
+  @DisplayName("OPERATION: getFinishedExecutionCacheSize")
+  long getFinishedExecutionCacheSize();
+
+  @DisplayName("OPERATION: getExecutorClientLeasedConnections")
+  int getExecutorClientLeasedConnections();
+
+  @DisplayName("OPERATION: getExecutorClientAvailableConnections")
+  int getExecutorClientAvailableConnections();
+
+  @DisplayName("OPERATION: getExecutorClientPendingConnections")
+  int getExecutorClientPendingConnections();
+
+  @DisplayName("OPERATION: getExecutorClientMaxConnections")
+  int getExecutorClientMaxConnections();
+
+  @DisplayName("OPERATION: getExecutorClientConnectionLeaseCount")
+  long getExecutorClientConnectionLeaseCount();
+
+  @DisplayName("OPERATION: getExecutorClientAvgConnectionLeaseWaitMs")
+  double getExecutorClientAvgConnectionLeaseWaitMs();
+
+  @DisplayName("OPERATION: getExecutorClientMaxConnectionLeaseWaitMs")
+  long getExecutorClientMaxConnectionLeaseWaitMs();
+
+  @DisplayName("OPERATION: getExecutorClientConnectionLeaseTimeouts")
+  long getExecutorClientConnectionLeaseTimeouts();
+
 }
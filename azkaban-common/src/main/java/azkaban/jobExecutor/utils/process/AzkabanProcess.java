@@ -18,7 +18,6 @@ package azkaban.jobExecutor.utils.process;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Map;
@@ -29,15 +28,15 @@ import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
-import azkaban.utils.LogGobbler;
+import azkaban.utils.ProcessOutputPump;
 
 import com.google.common.base.Joiner;
 
 /**
  * An improved version of java.lang.Process.
  * 
- * Output is read by separate threads to avoid deadlock and logged to log4j
- * loggers.
+ * Output is read by the threads of the shared ProcessOutputPump to avoid
+ * deadlock and logged to log4j loggers. Stderr is merged into stdout.
  */
 public class AzkabanProcess {
   
@@ -100,15 +99,10 @@ public class AzkabanProcess {
 
       this.startupLatch.countDown();
 
-      LogGobbler outputGobbler =
-          new LogGobbler(new InputStreamReader(process.getInputStream()),
+      ProcessOutputPump.Output stdout =
+          ProcessOutputPump.getDefault().pump(process.getInputStream(),
               logger, Level.INFO, 30);
-      LogGobbler errorGobbler =
-          new LogGobbler(new InputStreamReader(process.getErrorStream()),
-              logger, Level.ERROR, 30);
 
-      outputGobbler.start();
-      errorGobbler.start();
       int exitCode = -1;
       try {
         exitCode = process.waitFor();
@@ -119,15 +113,13 @@ public class AzkabanProcess {
       completeLatch.countDown();
 
       // try to wait for everything to get logged out before exiting
-      outputGobbler.awaitCompletion(5000);
-      errorGobbler.awaitCompletion(5000);
+      stdout.awaitCompletion(5000);
 
       if (exitCode != 0) {
+        // stderr is merged into stdout
         String output =
-            new StringBuilder().append("Stdout:\n")
-                .append(outputGobbler.getRecentLog()).append("\n\n")
-                .append("Stderr:\n").append(errorGobbler.getRecentLog())
-                .append("\n").toString();
+            new StringBuilder().append("Stdout and stderr:\n")
+                .append(stdout.getRecentLog()).append("\n").toString();
         throw new ProcessFailureException(exitCode, output);
       }
 
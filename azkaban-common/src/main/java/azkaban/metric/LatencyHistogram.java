@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.metric;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with logarithmic buckets. Values below 32 are
+ * recorded exactly, larger values are split in 16 linear sub buckets per
+ * power of two, so reported percentiles are within ~6% of the recorded value.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int EXACT_LIMIT = SUB_BUCKET_COUNT * 2;
+  private static final int MAX_EXPONENT = 62;
+  private static final int BUCKET_COUNT = EXACT_LIMIT
+      + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a latency. Negative values are recorded as 0.
+   *
+   * @param value latency, typically in milliseconds
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.incrementAndGet(getBucketIndex(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long currentMax = max.get();
+    while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+      currentMax = max.get();
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long total = count.get();
+    return total == 0 ? 0 : (double) sum.get() / total;
+  }
+
+  /**
+   * Returns the highest value in the bucket holding the given percentile,
+   * capped at the max recorded value.
+   *
+   * @param percentile between 0 and 100
+   * @return
+   */
+  public long getValueAtPercentile(double percentile) {
+    long total = count.get();
+    if (total == 0) {
+      return 0;
+    }
+    long target =
+        Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += buckets.get(i);
+      if (seen >= target) {
+        return Math.min(getBucketUpperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Summary of the histogram, suitable for JSON or JMX display
+   *
+   * @return
+   */
+  public Map<String, Object> toObject() {
+    Map<String, Object> summary = new LinkedHashMap<String, Object>();
+    summary.put("count", getCount());
+    summary.put("mean", getMean());
+    summary.put("p50", getValueAtPercentile(50));
+    summary.put("p90", getValueAtPercentile(90));
+    summary.put("p99", getValueAtPercentile(99));
+    summary.put("p999", getValueAtPercentile(99.9));
+    summary.put("max", getMax());
+    return summary;
+  }
+
+  @Override
+  public String toString() {
+    return toObject().toString();
+  }
+
+  static int getBucketIndex(long value) {
+    if (value < EXACT_LIMIT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return EXACT_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT
+        + subBucket;
+  }
+
+  static long getBucketUpperBound(int index) {
+    if (index < EXACT_LIMIT) {
+      return index;
+    }
+    int offset = index - EXACT_LIMIT;
+    int shift = offset / SUB_BUCKET_COUNT + 1;
+    long subBucket = offset % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
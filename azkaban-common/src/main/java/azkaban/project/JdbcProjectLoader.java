@@ -40,12 +40,18 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
       .getLogger(JdbcProjectLoader.class);
 
   private static final int CHUCK_SIZE = 1024 * 1024 * 10;
+
+  private static final String INSERT_FLOW =
+      "INSERT INTO project_flows (project_id, version, flow_id, modified_time, encoding_type, json) values (?,?,?,?,?,?)";
+  private static final String INSERT_PROPERTIES =
+      "INSERT INTO project_properties (project_id, version, name, modified_time, encoding_type, property) values (?,?,?,?,?,?)";
   private File tempDir;
 
   private EncodingType defaultEncodingType = EncodingType.GZIP;
 
   public JdbcProjectLoader(Props props) {
     super(props);
+    defaultEncodingType = getEncodingType(props, "project", EncodingType.GZIP);
     tempDir = new File(props.getString("project.temp.dir", "temp"));
     if (!tempDir.exists()) {
       tempDir.mkdirs();
@@ -459,7 +465,18 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     return handler;
   }
 
-  private ProjectFileHandler getUploadedFile(Connection connection,
+  @Override
+  public ProjectFileHandler fetchProjectFileMetaData(int projectId,
+      int version) throws ProjectManagerException {
+    Connection connection = getConnection();
+    try {
+      return fetchProjectFileMetaData(connection, projectId, version);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private ProjectFileHandler fetchProjectFileMetaData(Connection connection,
       int projectId, int version) throws ProjectManagerException {
     QueryRunner runner = new QueryRunner();
     ProjectVersionResultHandler pfHandler = new ProjectVersionResultHandler();
@@ -478,8 +495,17 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     if (projectFiles == null || projectFiles.isEmpty()) {
       return null;
     }
+    return projectFiles.get(0);
+  }
+
+  private ProjectFileHandler getUploadedFile(Connection connection,
+      int projectId, int version) throws ProjectManagerException {
+    ProjectFileHandler projHandler =
+        fetchProjectFileMetaData(connection, projectId, version);
+    if (projHandler == null) {
+      return null;
+    }
 
-    ProjectFileHandler projHandler = projectFiles.get(0);
     int numChunks = projHandler.getNumChunks();
     BufferedOutputStream bStream = null;
     File file = null;
@@ -495,36 +521,21 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
             "Error creating temp file for stream.");
       }
 
-      int collect = 5;
-      int fromChunk = 0;
-      int toChunk = collect;
-      do {
-        ProjectFileChunkResultHandler chunkHandler =
-            new ProjectFileChunkResultHandler();
-        List<byte[]> data = null;
-        try {
-          data =
-              runner.query(connection,
-                  ProjectFileChunkResultHandler.SELECT_PROJECT_CHUNKS_FILE,
-                  chunkHandler, projectId, version, fromChunk, toChunk);
-        } catch (SQLException e) {
-          logger.error(e);
-          throw new ProjectManagerException("Query for uploaded file for "
-              + projectId + " failed.", e);
-        }
-
-        try {
-          for (byte[] d : data) {
-            bStream.write(d);
-          }
-        } catch (IOException e) {
-          throw new ProjectManagerException("Error writing file", e);
+      // the chunks are written out as they arrive, one at a time
+      try {
+        int chunks =
+            streamQuery(connection,
+                ProjectFileChunkWriter.SELECT_PROJECT_CHUNKS_FILE,
+                new ProjectFileChunkWriter(bStream), projectId, version);
+        if (chunks != numChunks) {
+          logger.warn("Read " + chunks + " chunks of " + numChunks
+              + " for project " + projectId + " version " + version);
         }
-
-        // Add all the bytes to the stream.
-        fromChunk += collect;
-        toChunk += collect;
-      } while (fromChunk <= numChunks);
+      } catch (SQLException e) {
+        logger.error(e);
+        throw new ProjectManagerException("Query for uploaded file for "
+            + projectId + " failed.", e);
+      }
     } finally {
       IOUtils.closeQuietly(bStream);
     }
@@ -635,13 +646,9 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     byte[] data = null;
     try {
       byte[] stringData = json.getBytes("UTF-8");
-      data = stringData;
-
-      if (encType == EncodingType.GZIP) {
-        data = GZIPUtils.gzipBytes(stringData);
-      }
+      data = encType.encode(stringData);
       logger.debug("NumChars: " + json.length() + " UTF-8:" + stringData.length
-          + " Gzip:" + data.length);
+          + " " + encType + ":" + data.length);
     } catch (IOException e) {
       throw new ProjectManagerException("Failed to encode. ", e);
     }
@@ -803,15 +810,16 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
   @Override
   public void uploadFlows(Project project, int version, Collection<Flow> flows)
       throws ProjectManagerException {
-    // We do one at a time instead of batch... because well, the batch could be
-    // large.
+    // batchUpdate sends them BATCH_SIZE at a time, so the batch stays small
     logger.info("Uploading flows");
     Connection connection = getConnection();
 
     try {
+      List<Object[]> params = new ArrayList<Object[]>(flows.size());
       for (Flow flow : flows) {
-        uploadFlow(connection, project, version, flow, defaultEncodingType);
+        params.add(getFlowParams(project, version, flow, defaultEncodingType));
       }
+      batchUpdate(connection, INSERT_FLOW, params);
       connection.commit();
     } catch (IOException e) {
       throw new ProjectManagerException("Flow Upload failed.", e);
@@ -849,12 +857,7 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     try {
       QueryRunner runner = new QueryRunner();
       String json = JSONUtils.toJSON(flow.toObject());
-      byte[] stringData = json.getBytes("UTF-8");
-      byte[] data = stringData;
-
-      if (defaultEncodingType == EncodingType.GZIP) {
-        data = GZIPUtils.gzipBytes(stringData);
-      }
+      byte[] data = defaultEncodingType.encode(json.getBytes("UTF-8"));
 
       logger.info("Flow upload " + flow.getId() + " is byte size "
           + data.length);
@@ -890,26 +893,28 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
       Flow flow, EncodingType encType) throws ProjectManagerException,
       IOException {
     QueryRunner runner = new QueryRunner();
-    String json = JSONUtils.toJSON(flow.toObject());
-    byte[] stringData = json.getBytes("UTF-8");
-    byte[] data = stringData;
-
-    if (encType == EncodingType.GZIP) {
-      data = GZIPUtils.gzipBytes(stringData);
-    }
-
-    logger.info("Flow upload " + flow.getId() + " is byte size " + data.length);
-    final String INSERT_FLOW =
-        "INSERT INTO project_flows (project_id, version, flow_id, modified_time, encoding_type, json) values (?,?,?,?,?,?)";
     try {
-      runner.update(connection, INSERT_FLOW, project.getId(), version,
-          flow.getId(), System.currentTimeMillis(), encType.getNumVal(), data);
+      runner.update(connection, INSERT_FLOW,
+          getFlowParams(project, version, flow, encType));
     } catch (SQLException e) {
       throw new ProjectManagerException("Error inserting flow " + flow.getId(),
           e);
     }
   }
 
+  /*
+   * The params of INSERT_FLOW
+   */
+  private Object[] getFlowParams(Project project, int version, Flow flow,
+      EncodingType encType) throws IOException {
+    String json = JSONUtils.toJSON(flow.toObject());
+    byte[] data = encType.encode(json.getBytes("UTF-8"));
+
+    logger.info("Flow upload " + flow.getId() + " is byte size " + data.length);
+    return new Object[] { project.getId(), version, flow.getId(),
+        System.currentTimeMillis(), encType.getNumVal(), data };
+  }
+
   @Override
   public Flow fetchFlow(Project project, String flowId)
       throws ProjectManagerException {
@@ -955,9 +960,11 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     Connection connection = getConnection();
 
     try {
+      List<Object[]> params = new ArrayList<Object[]>(properties.size());
       for (Props props : properties) {
-        uploadProjectProperty(connection, project, props.getSource(), props);
+        params.add(getPropertyParams(project, props.getSource(), props));
       }
+      batchUpdate(connection, INSERT_PROPERTIES, params);
       connection.commit();
     } catch (SQLException e) {
       throw new ProjectManagerException(
@@ -1010,16 +1017,14 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
       String name, Props props) throws ProjectManagerException, IOException {
     QueryRunner runner = new QueryRunner();
     final String UPDATE_PROPERTIES =
-        "UPDATE project_properties SET property=? WHERE project_id=? AND version=? AND name=?";
+        "UPDATE project_properties SET encoding_type=?, property=? WHERE project_id=? AND version=? AND name=?";
 
     String propertyJSON = PropsUtils.toJSONString(props, true);
-    byte[] data = propertyJSON.getBytes("UTF-8");
-    if (defaultEncodingType == EncodingType.GZIP) {
-      data = GZIPUtils.gzipBytes(data);
-    }
+    byte[] data = defaultEncodingType.encode(propertyJSON.getBytes("UTF-8"));
 
     try {
-      runner.update(connection, UPDATE_PROPERTIES, data, project.getId(),
+      runner.update(connection, UPDATE_PROPERTIES,
+          defaultEncodingType.getNumVal(), data, project.getId(),
           project.getVersion(), name);
       connection.commit();
     } catch (SQLException e) {
@@ -1031,19 +1036,9 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
   private void uploadProjectProperty(Connection connection, Project project,
       String name, Props props) throws ProjectManagerException, IOException {
     QueryRunner runner = new QueryRunner();
-    final String INSERT_PROPERTIES =
-        "INSERT INTO project_properties (project_id, version, name, modified_time, encoding_type, property) values (?,?,?,?,?,?)";
-
-    String propertyJSON = PropsUtils.toJSONString(props, true);
-    byte[] data = propertyJSON.getBytes("UTF-8");
-    if (defaultEncodingType == EncodingType.GZIP) {
-      data = GZIPUtils.gzipBytes(data);
-    }
-
     try {
-      runner.update(connection, INSERT_PROPERTIES, project.getId(),
-          project.getVersion(), name, System.currentTimeMillis(),
-          defaultEncodingType.getNumVal(), data);
+      runner.update(connection, INSERT_PROPERTIES,
+          getPropertyParams(project, name, props));
       connection.commit();
     } catch (SQLException e) {
       throw new ProjectManagerException("Error uploading project properties "
@@ -1052,6 +1047,18 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     }
   }
 
+  /*
+   * The params of INSERT_PROPERTIES
+   */
+  private Object[] getPropertyParams(Project project, String name, Props props)
+      throws IOException {
+    String propertyJSON = PropsUtils.toJSONString(props, true);
+    byte[] data = defaultEncodingType.encode(propertyJSON.getBytes("UTF-8"));
+
+    return new Object[] { project.getId(), project.getVersion(), name,
+        System.currentTimeMillis(), defaultEncodingType.getNumVal(), data };
+  }
+
   @Override
   public Props fetchProjectProperty(int projectId, int projectVer,
       String propsName) throws ProjectManagerException {
@@ -1108,6 +1115,10 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
       cleanOlderProjectVersionProperties(connection, projectId, version);
       cleanOlderProjectFiles(connection, projectId, version);
       cleanOlderProjectVersion(connection, projectId, version);
+      connection.commit();
+    } catch (SQLException e) {
+      throw new ProjectManagerException("Error cleaning project versions "
+          + projectId + ":" + version, e);
     } finally {
       DbUtils.closeQuietly(connection);
     }
@@ -1120,7 +1131,6 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     QueryRunner runner = new QueryRunner();
     try {
       runner.update(connection, DELETE_FLOW, projectId, version);
-      connection.commit();
     } catch (SQLException e) {
       throw new ProjectManagerException("Error deleting project version flows "
           + projectId + ":" + version, e);
@@ -1134,7 +1144,6 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     QueryRunner runner = new QueryRunner();
     try {
       runner.update(connection, DELETE_PROPERTIES, projectId, version);
-      connection.commit();
     } catch (SQLException e) {
       throw new ProjectManagerException(
           "Error deleting project version properties " + projectId + ":"
@@ -1149,7 +1158,6 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     QueryRunner runner = new QueryRunner();
     try {
       runner.update(connection, DELETE_PROJECT_FILES, projectId, version);
-      connection.commit();
     } catch (SQLException e) {
       throw new ProjectManagerException("Error deleting project version files "
           + projectId + ":" + version, e);
@@ -1163,7 +1171,6 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     QueryRunner runner = new QueryRunner();
     try {
       runner.update(connection, UPDATE_PROJECT_VERSIONS, projectId, version);
-      connection.commit();
     } catch (SQLException e) {
       throw new ProjectManagerException(
           "Error updating project version chunksize " + projectId + ":"
@@ -1240,16 +1247,8 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
           EncodingType encType = EncodingType.fromInteger(encodingType);
           Object blobObj;
           try {
-            // Convoluted way to inflate strings. Should find common package or
-            // helper function.
-            if (encType == EncodingType.GZIP) {
-              // Decompress the sucker.
-              String jsonString = GZIPUtils.unGzipString(data, "UTF-8");
-              blobObj = JSONUtils.parseJSONFromString(jsonString);
-            } else {
-              String jsonString = new String(data, "UTF-8");
-              blobObj = JSONUtils.parseJSONFromString(jsonString);
-            }
+            String jsonString = new String(encType.decode(data), "UTF-8");
+            blobObj = JSONUtils.parseJSONFromString(jsonString);
             project = Project.projectFromObject(blobObj);
           } catch (IOException e) {
             throw new SQLException("Failed to get project.", e);
@@ -1331,16 +1330,8 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
 
         Object flowObj = null;
         try {
-          // Convoluted way to inflate strings. Should find common package or
-          // helper function.
-          if (encType == EncodingType.GZIP) {
-            // Decompress the sucker.
-            String jsonString = GZIPUtils.unGzipString(dataBytes, "UTF-8");
-            flowObj = JSONUtils.parseJSONFromString(jsonString);
-          } else {
-            String jsonString = new String(dataBytes, "UTF-8");
-            flowObj = JSONUtils.parseJSONFromString(jsonString);
-          }
+          String jsonString = new String(encType.decode(dataBytes), "UTF-8");
+          flowObj = JSONUtils.parseJSONFromString(jsonString);
 
           Flow flow = Flow.flowFromObject(flowObj);
           flows.add(flow);
@@ -1379,12 +1370,7 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
         String propertyString = null;
 
         try {
-          if (encType == EncodingType.GZIP) {
-            // Decompress the sucker.
-            propertyString = GZIPUtils.unGzipString(dataBytes, "UTF-8");
-          } else {
-            propertyString = new String(dataBytes, "UTF-8");
-          }
+          propertyString = new String(encType.decode(dataBytes), "UTF-8");
 
           Props props = PropsUtils.fromJSONString(propertyString);
           props.setSource(name);
@@ -1427,25 +1413,33 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     }
   }
 
-  private static class ProjectFileChunkResultHandler implements
-      ResultSetHandler<List<byte[]>> {
+  /**
+   * Writes the chunks of a file to a stream, returning how many were written
+   */
+  private static class ProjectFileChunkWriter implements
+      ResultSetHandler<Integer> {
     private static String SELECT_PROJECT_CHUNKS_FILE =
-        "SELECT project_id, version, chunk, size, file FROM project_files WHERE project_id=? AND version=? AND chunk >= ? AND chunk < ? ORDER BY chunk ASC";
+        "SELECT project_id, version, chunk, size, file FROM project_files WHERE project_id=? AND version=? ORDER BY chunk ASC";
 
-    @Override
-    public List<byte[]> handle(ResultSet rs) throws SQLException {
-      if (!rs.next()) {
-        return Collections.<byte[]> emptyList();
-      }
+    private final OutputStream out;
 
-      ArrayList<byte[]> data = new ArrayList<byte[]>();
-      do {
-        byte[] bytes = rs.getBytes(5);
+    private ProjectFileChunkWriter(OutputStream out) {
+      this.out = out;
+    }
 
-        data.add(bytes);
-      } while (rs.next());
+    @Override
+    public Integer handle(ResultSet rs) throws SQLException {
+      int chunks = 0;
+      while (rs.next()) {
+        try {
+          out.write(rs.getBytes(5));
+        } catch (IOException e) {
+          throw new SQLException("Error writing file", e);
+        }
+        ++chunks;
+      }
 
-      return data;
+      return chunks;
     }
 
   }
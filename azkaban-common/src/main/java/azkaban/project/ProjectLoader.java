@@ -151,6 +151,15 @@ public interface ProjectLoader {
   public ProjectFileHandler getUploadedFile(int projectId, int version)
       throws ProjectManagerException;
 
+  /**
+   * Get the type, name and md5 of the file uploaded for a version, without
+   * the file itself.
+   *
+   * @return null if the version has no file
+   */
+  public ProjectFileHandler fetchProjectFileMetaData(int projectId,
+      int version) throws ProjectManagerException;
+
   /**
    * Changes and commits different project version.
    *
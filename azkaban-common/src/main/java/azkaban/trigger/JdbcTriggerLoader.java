@@ -32,7 +32,6 @@ import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
 
 import azkaban.database.AbstractJdbcLoader;
-import azkaban.utils.GZIPUtils;
 import azkaban.utils.JSONUtils;
 import azkaban.utils.Props;
 
@@ -77,6 +76,7 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
 
   public JdbcTriggerLoader(Props props) {
     super(props);
+    defaultEncodingType = getEncodingType(props, "trigger", EncodingType.GZIP);
   }
 
   @Override
@@ -86,14 +86,13 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
         + new DateTime(lastUpdateTime).toString());
     Connection connection = getConnection();
 
-    QueryRunner runner = new QueryRunner();
     ResultSetHandler<List<Trigger>> handler = new TriggerResultHandler();
 
     List<Trigger> triggers;
 
     try {
       triggers =
-          runner.query(connection, GET_UPDATED_TRIGGERS, handler,
+          streamQuery(connection, GET_UPDATED_TRIGGERS, handler,
               lastUpdateTime);
     } catch (SQLException e) {
       logger.error(GET_ALL_TRIGGERS + " failed.");
@@ -113,13 +112,12 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
     logger.info("Loading all triggers from db.");
     Connection connection = getConnection();
 
-    QueryRunner runner = new QueryRunner();
     ResultSetHandler<List<Trigger>> handler = new TriggerResultHandler();
 
     List<Trigger> triggers;
 
     try {
-      triggers = runner.query(connection, GET_ALL_TRIGGERS, handler);
+      triggers = streamQuery(connection, GET_ALL_TRIGGERS, handler);
     } catch (SQLException e) {
       logger.error(GET_ALL_TRIGGERS + " failed.");
 
@@ -164,29 +162,27 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
     }
   }
 
-  private synchronized void addTrigger(Connection connection, Trigger t,
+  private void addTrigger(Connection connection, Trigger t,
       EncodingType encType) throws TriggerLoaderException {
 
-    QueryRunner runner = new QueryRunner();
-
     long id;
 
     try {
-      runner.update(connection, ADD_TRIGGER, DateTime.now().getMillis());
-      connection.commit();
+      // the row and its data are committed together by updateTrigger
       id =
-          runner.query(connection, LastInsertID.LAST_INSERT_ID,
-              new LastInsertID());
-
-      if (id == -1L) {
-        logger.error("trigger id is not properly created.");
-        throw new TriggerLoaderException("trigger id is not properly created.");
-      }
+          insertReturningKey(connection, ADD_TRIGGER, DateTime.now()
+              .getMillis());
 
       t.setTriggerId((int) id);
-      updateTrigger(t);
+      t.setLastModifyTime(System.currentTimeMillis());
+      updateTrigger(connection, t, encType);
       logger.info("uploaded trigger " + t.getDescription());
     } catch (SQLException e) {
+      try {
+        connection.rollback();
+      } catch (SQLException e1) {
+        logger.error("Failed to roll back creation of trigger", e1);
+      }
       throw new TriggerLoaderException("Error creating trigger.", e);
     }
 
@@ -217,13 +213,9 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
     byte[] data = null;
     try {
       byte[] stringData = json.getBytes("UTF-8");
-      data = stringData;
-
-      if (encType == EncodingType.GZIP) {
-        data = GZIPUtils.gzipBytes(stringData);
-      }
+      data = encType.encode(stringData);
       logger.debug("NumChars: " + json.length() + " UTF-8:" + stringData.length
-          + " Gzip:" + data.length);
+          + " " + encType + ":" + data.length);
     } catch (IOException e) {
       throw new TriggerLoaderException("Error encoding the trigger "
           + t.toString());
@@ -251,21 +243,6 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
     }
   }
 
-  private static class LastInsertID implements ResultSetHandler<Long> {
-    private static String LAST_INSERT_ID = "SELECT LAST_INSERT_ID()";
-
-    @Override
-    public Long handle(ResultSet rs) throws SQLException {
-      if (!rs.next()) {
-        return -1L;
-      }
-
-      long id = rs.getLong(1);
-      return id;
-    }
-
-  }
-
   public class TriggerResultHandler implements ResultSetHandler<List<Trigger>> {
 
     @Override
@@ -285,16 +262,8 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
           EncodingType encType = EncodingType.fromInteger(encodingType);
 
           try {
-            // Convoluted way to inflate strings. Should find common package or
-            // helper function.
-            if (encType == EncodingType.GZIP) {
-              // Decompress the sucker.
-              String jsonString = GZIPUtils.unGzipString(data, "UTF-8");
-              jsonObj = JSONUtils.parseJSONFromString(jsonString);
-            } else {
-              String jsonString = new String(data, "UTF-8");
-              jsonObj = JSONUtils.parseJSONFromString(jsonString);
-            }
+            String jsonString = new String(encType.decode(data), "UTF-8");
+            jsonObj = JSONUtils.parseJSONFromString(jsonString);
           } catch (IOException e) {
             throw new SQLException("Error reconstructing trigger data ");
           }
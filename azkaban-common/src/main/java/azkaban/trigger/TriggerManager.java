@@ -22,6 +22,7 @@ import azkaban.event.EventHandler;
 import azkaban.event.EventListener;
 import azkaban.executor.ExecutableFlow;
 import azkaban.executor.ExecutorManager;
+import azkaban.trigger.builtin.ExecuteFlowAction;
 import azkaban.utils.AzkabanConfigFileMonitor;
 import azkaban.utils.Props;
 import org.apache.log4j.Logger;
@@ -35,6 +36,7 @@ public class TriggerManager extends EventHandler implements
         TriggerManagerAdapter {
     private static Logger logger = Logger.getLogger(TriggerManager.class);
     public static final long DEFAULT_SCANNER_INTERVAL_MS = 60000;
+    public static final long DEFAULT_PREFETCH_LOOKAHEAD_MS = 5 * 60 * 1000;
 
     private static Map<Integer, Trigger> triggerIdMap =
             new ConcurrentHashMap<Integer, Trigger>();
@@ -67,7 +69,11 @@ public class TriggerManager extends EventHandler implements
 
         long scannerInterval =
                 props.getLong("trigger.scan.interval", DEFAULT_SCANNER_INTERVAL_MS);
-        runnerThread = new TriggerScannerThread(scannerInterval);
+        long prefetchLookahead =
+                props.getLong("trigger.prefetch.lookahead.ms",
+                        DEFAULT_PREFETCH_LOOKAHEAD_MS);
+        runnerThread =
+                new TriggerScannerThread(scannerInterval, prefetchLookahead);
 
         checkerTypeLoader = new CheckerTypeLoader();
         actionTypeLoader = new ActionTypeLoader();
@@ -202,12 +208,18 @@ public class TriggerManager extends EventHandler implements
         private Map<Integer, ExecutableFlow> justFinishedFlows;
         private boolean shutdown = false;
         private final long scannerInterval;
+        // triggers firing this soon get their project files prefetched
+        private final long prefetchLookahead;
+        // trigger id to the check time its project files were prefetched for
+        private final Map<Integer, Long> prefetchedTriggers =
+                new ConcurrentHashMap<Integer, Long>();
 
-        public TriggerScannerThread(long scannerInterval) {
+        public TriggerScannerThread(long scannerInterval, long prefetchLookahead) {
             triggers = new PriorityBlockingQueue<Trigger>(1, new TriggerComparator());
             justFinishedFlows = new ConcurrentHashMap<Integer, ExecutableFlow>();
             this.setName("TriggerRunnerManager-Trigger-Scanner-Thread");
             this.scannerInterval = scannerInterval;
+            this.prefetchLookahead = prefetchLookahead;
         }
 
         public void shutdown() {
@@ -231,6 +243,7 @@ public class TriggerManager extends EventHandler implements
 
         public void deleteTrigger(Trigger t) {
             triggers.remove(t);
+            prefetchedTriggers.remove(t.getTriggerId());
         }
 
         /**
@@ -238,6 +251,7 @@ public class TriggerManager extends EventHandler implements
          */
         public void clearTriggers() {
             triggers.clear();
+            prefetchedTriggers.clear();
         }
 
         public void run() {
@@ -331,6 +345,7 @@ public class TriggerManager extends EventHandler implements
                         removeTrigger(t);
                     } else {
                         t.updateNextCheckTime();
+                        prefetchProjectFiles(t, now);
                     }
                 } catch (Throwable th) {
                     //skip this trigger, moving on to the next one
@@ -339,6 +354,27 @@ public class TriggerManager extends EventHandler implements
             }
         }
 
+        /**
+         * Gets the executors ready for the flows of a trigger firing within
+         * prefetchLookahead, once per firing
+         */
+        private void prefetchProjectFiles(Trigger t, long now) {
+            long nextCheckTime = t.getNextCheckTime();
+            if (prefetchLookahead <= 0 || !t.getStatus().equals(TriggerStatus.READY)
+                    || nextCheckTime - now > prefetchLookahead) {
+                return;
+            }
+            Long prefetched = prefetchedTriggers.put(t.getTriggerId(), nextCheckTime);
+            if (prefetched != null && prefetched == nextCheckTime) {
+                return;
+            }
+            for (TriggerAction action : t.getTriggerActions()) {
+                if (action instanceof ExecuteFlowAction) {
+                    ((ExecuteFlowAction) action).prefetchProjectFiles();
+                }
+            }
+        }
+
         private void onTriggerTrigger(Trigger t) throws TriggerManagerException {
             List<TriggerAction> actions = t.getTriggerActions();
             for (TriggerAction action : actions) {
@@ -203,6 +203,19 @@ public class ExecuteFlowAction implements TriggerAction {
     return jsonObj;
   }
 
+  /**
+   * Asks the executors to get the files of the project ready for the flow
+   */
+  public void prefetchProjectFiles() {
+    if (projectManager == null || executorManager == null) {
+      return;
+    }
+    Project project = projectManager.getProject(projectId);
+    if (project != null) {
+      executorManager.prefetchProjectVersion(projectId, project.getVersion());
+    }
+  }
+
   @Override
   public void doAction() throws Exception {
     if (projectManager == null || executorManager == null) {
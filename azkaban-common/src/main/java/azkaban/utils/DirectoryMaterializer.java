@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <pre>
+ * Recreates a directory tree inside another directory, without forking a
+ * shell.
+ *
+ * The directories are created and the other entries are linked or copied
+ * depending on the mode:
+ *   SYMLINK  - a symbolic link to the source entry
+ *   HARDLINK - a hard link, which keeps the file if the source is removed.
+ *              Falls back to a symbolic link where the file system can't,
+ *              like across devices. A job writing to the file in place
+ *              changes the source too.
+ *   COPY     - a copy, so jobs can change the files of their execution
+ *              without changing the source
+ *
+ * Names starting with a dot are skipped and entries already in the
+ * destination are left alone, like the "ln -s source/* dest" this replaces.
+ * The directories are walked in parallel on a pool shared by all the calls.
+ * </pre>
+ */
+public class DirectoryMaterializer {
+  private static final Logger logger = Logger
+      .getLogger(DirectoryMaterializer.class);
+
+  public enum Mode {
+    SYMLINK, HARDLINK, COPY
+  }
+
+  private static final ForkJoinPool pool = new ForkJoinPool(Math.min(4,
+      Runtime.getRuntime().availableProcessors()));
+
+  private final Mode mode;
+  private final AtomicLong numMaterialized = new AtomicLong();
+  private final AtomicLong numEntries = new AtomicLong();
+  private final AtomicLong totalTimeMs = new AtomicLong();
+  private final AtomicLong maxTimeMs = new AtomicLong();
+
+  public DirectoryMaterializer(Mode mode) {
+    this.mode = mode;
+  }
+
+  /**
+   * Recreates the tree of sourceDir in destDir, which must exist
+   *
+   * @param sourceDir
+   * @param destDir
+   * @return the time it took in ms
+   * @throws IOException
+   */
+  public long materialize(File sourceDir, File destDir) throws IOException {
+    long startTime = System.currentTimeMillis();
+    AtomicReference<IOException> failure = new AtomicReference<IOException>();
+    AtomicLong entries = new AtomicLong();
+    pool.invoke(new DirectoryTask(sourceDir.getAbsoluteFile().toPath(),
+        destDir.toPath(), entries, failure));
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+
+    long timeMs = System.currentTimeMillis() - startTime;
+    numMaterialized.incrementAndGet();
+    numEntries.addAndGet(entries.get());
+    totalTimeMs.addAndGet(timeMs);
+    long max;
+    while ((max = maxTimeMs.get()) < timeMs
+        && !maxTimeMs.compareAndSet(max, timeMs)) {
+    }
+    logger.debug("Materialized " + entries.get() + " entries of "
+        + sourceDir.getPath() + " in " + timeMs + " ms");
+    return timeMs;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public long getNumMaterialized() {
+    return numMaterialized.get();
+  }
+
+  public long getNumEntries() {
+    return numEntries.get();
+  }
+
+  public long getTotalTimeMs() {
+    return totalTimeMs.get();
+  }
+
+  public long getMaxTimeMs() {
+    return maxTimeMs.get();
+  }
+
+  private void materializeFile(Path source, Path dest) throws IOException {
+    switch (mode) {
+    case COPY:
+      Files.copy(source, dest, StandardCopyOption.COPY_ATTRIBUTES);
+      break;
+    case HARDLINK:
+      try {
+        Files.createLink(dest, source);
+        break;
+      } catch (FileAlreadyExistsException e) {
+        throw e;
+      } catch (IOException e) {
+        logger.debug("Can't hard link " + source + ", using a symlink", e);
+      } catch (UnsupportedOperationException e) {
+        logger.debug("Can't hard link " + source + ", using a symlink", e);
+      }
+      Files.createSymbolicLink(dest, source);
+      break;
+    default:
+      Files.createSymbolicLink(dest, source);
+    }
+  }
+
+  /*
+   * Creates the subdirectories of one directory and materializes its other
+   * entries, then does the same for the subdirectories in parallel.
+   */
+  private class DirectoryTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Path source;
+    private final Path dest;
+    private final AtomicLong entries;
+    private final AtomicReference<IOException> failure;
+
+    private DirectoryTask(Path source, Path dest, AtomicLong entries,
+        AtomicReference<IOException> failure) {
+      this.source = source;
+      this.dest = dest;
+      this.entries = entries;
+      this.failure = failure;
+    }
+
+    @Override
+    protected void compute() {
+      if (failure.get() != null) {
+        return;
+      }
+      List<DirectoryTask> subdirectories = new ArrayList<DirectoryTask>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
+        for (Path entry : stream) {
+          String name = entry.getFileName().toString();
+          if (name.startsWith(".")) {
+            continue;
+          }
+          Path target = dest.resolve(name);
+          if (Files.isDirectory(entry)) {
+            Files.createDirectories(target);
+            subdirectories.add(new DirectoryTask(entry, target, entries,
+                failure));
+          } else {
+            try {
+              materializeFile(entry, target);
+            } catch (FileAlreadyExistsException e) {
+              logger.debug("Not replacing " + target);
+              continue;
+            }
+          }
+          entries.incrementAndGet();
+        }
+      } catch (IOException e) {
+        failure.compareAndSet(null, e);
+        return;
+      }
+      invokeAll(subdirectories);
+    }
+  }
+}
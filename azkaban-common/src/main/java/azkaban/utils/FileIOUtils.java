@@ -17,18 +17,13 @@
 package azkaban.utils;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.commons.io.IOUtils;
@@ -38,6 +33,8 @@ import org.apache.commons.io.IOUtils;
  * future.
  */
 public class FileIOUtils {
+  private static final DirectoryMaterializer symlinker =
+      new DirectoryMaterializer(DirectoryMaterializer.Mode.SYMLINK);
 
   public static class PrefixSuffixFileFilter implements FileFilter {
     private String prefix;
@@ -84,7 +81,8 @@ public class FileIOUtils {
   }
 
   /**
-   * Run a unix command that will symlink files, and recurse into directories.
+   * Symlinks the files of sourceDir into destDir, recreating its
+   * subdirectories.
    */
   public static void createDeepSymlink(File sourceDir, File destDir)
       throws IOException {
@@ -98,103 +96,7 @@ public class FileIOUtils {
       throw new IOException("Source or Destination is not a directory.");
     }
 
-    Set<String> paths = new HashSet<String>();
-    createDirsFindFiles(sourceDir, sourceDir, destDir, paths);
-
-    StringBuffer buffer = new StringBuffer();
-    for (String path : paths) {
-      File sourceLink = new File(sourceDir, path);
-      path = "." + path;
-
-      buffer.append("ln -s ").append(sourceLink.getAbsolutePath()).append("/*")
-          .append(" ").append(path).append(";");
-    }
-
-    String command = buffer.toString();
-    ProcessBuilder builder = new ProcessBuilder().command("sh", "-c", command);
-    builder.directory(destDir);
-
-    // XXX what about stopping threads ??
-    Process process = builder.start();
-    try {
-      NullLogger errorLogger = new NullLogger(process.getErrorStream());
-      NullLogger inputLogger = new NullLogger(process.getInputStream());
-      errorLogger.start();
-      inputLogger.start();
-
-      try {
-        if (process.waitFor() < 0) {
-          // Assume that the error will be in standard out. Otherwise it'll be
-          // in standard in.
-          String errorMessage = errorLogger.getLastMessages();
-          if (errorMessage.isEmpty()) {
-            errorMessage = inputLogger.getLastMessages();
-          }
-
-          throw new IOException(errorMessage);
-        }
-
-        // System.out.println(errorLogger.getLastMessages());
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
-    } finally {
-      IOUtils.closeQuietly(process.getInputStream());
-      IOUtils.closeQuietly(process.getOutputStream());
-      IOUtils.closeQuietly(process.getErrorStream());
-    }
-  }
-
-  private static void createDirsFindFiles(File baseDir, File sourceDir,
-      File destDir, Set<String> paths) {
-    File[] srcList = sourceDir.listFiles();
-    String path = getRelativePath(baseDir, sourceDir);
-    paths.add(path);
-
-    for (File file : srcList) {
-      if (file.isDirectory()) {
-        File newDestDir = new File(destDir, file.getName());
-        newDestDir.mkdirs();
-        createDirsFindFiles(baseDir, file, newDestDir, paths);
-      }
-    }
-  }
-
-  private static String getRelativePath(File basePath, File sourceDir) {
-    return sourceDir.getPath().substring(basePath.getPath().length());
-  }
-
-  private static class NullLogger extends Thread {
-    private final BufferedReader inputReader;
-    private CircularBuffer<String> buffer = new CircularBuffer<String>(5);
-
-    public NullLogger(InputStream stream) {
-      inputReader = new BufferedReader(new InputStreamReader(stream));
-    }
-
-    public void run() {
-      try {
-        while (!Thread.currentThread().isInterrupted()) {
-          String line = inputReader.readLine();
-          if (line == null) {
-            return;
-          }
-          buffer.append(line);
-        }
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
-    }
-
-    public String getLastMessages() {
-      StringBuffer messageBuffer = new StringBuffer();
-      for (String message : buffer) {
-        messageBuffer.append(message);
-        messageBuffer.append("\n");
-      }
-
-      return messageBuffer.toString();
-    }
+    symlinker.materialize(sourceDir, destDir);
   }
 
   public static Pair<Integer, Integer> readUtf8File(File file, int offset,
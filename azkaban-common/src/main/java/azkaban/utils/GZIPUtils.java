@@ -16,15 +16,15 @@
 
 package azkaban.utils;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
-import org.apache.commons.io.IOUtils;
+import azkaban.utils.codec.GzipCodec;
 
+/**
+ * Gzip helpers for the blobs that are always gzipped, backed by GzipCodec.
+ */
 public class GZIPUtils {
+  private static final GzipCodec CODEC = new GzipCodec();
 
   public static byte[] gzipString(String str, String encType)
       throws IOException {
@@ -39,24 +39,20 @@ public class GZIPUtils {
 
   public static byte[] gzipBytes(byte[] bytes, int offset, int length)
       throws IOException {
-    ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
-    GZIPOutputStream gzipStream = null;
-
-    gzipStream = new GZIPOutputStream(byteOutputStream);
-
-    gzipStream.write(bytes, offset, length);
-    gzipStream.close();
-    return byteOutputStream.toByteArray();
+    return CODEC.encode(bytes, offset, length);
   }
 
   public static byte[] unGzipBytes(byte[] bytes) throws IOException {
-    ByteArrayInputStream byteInputStream = new ByteArrayInputStream(bytes);
-    GZIPInputStream gzipInputStream = new GZIPInputStream(byteInputStream);
-
-    ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
-    IOUtils.copy(gzipInputStream, byteOutputStream);
+    return CODEC.decode(bytes);
+  }
 
-    return byteOutputStream.toByteArray();
+  /**
+   * Uncompresses length bytes starting at offset of the uncompressed data,
+   * without inflating the rest of it.
+   */
+  public static byte[] unGzipBytes(byte[] bytes, int offset, int length)
+      throws IOException {
+    return CODEC.decode(bytes, offset, length);
   }
 
   public static String unGzipString(byte[] bytes, String encType)
@@ -61,4 +61,12 @@ public class Md5Hasher {
     return digest.digest();
   }
 
+  public static String toHex(byte[] hash) {
+    StringBuilder builder = new StringBuilder(hash.length * 2);
+    for (byte b : hash) {
+      builder.append(String.format("%02x", b & 0xff));
+    }
+    return builder.toString();
+  }
+
 }
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Joiner;
+
+/**
+ * <pre>
+ * Reads the output of child processes on a few shared threads, instead of a
+ * thread per stream.
+ *
+ * Process streams can't be selected on, so each pump thread polls the streams
+ * it owns and only reads the bytes they have available, at most CHUNK_BYTES
+ * per stream per pass, so no stream blocks the others. The most recent lines
+ * are kept for error messages.
+ *
+ * Complete lines are queued to the logger of their stream, and logged by a
+ * few logging threads per pump thread, by one thread at a time per stream,
+ * LINES_PER_TURN lines before the other streams get a turn. The pump threads
+ * never call the appenders, so a slow one holds up the lines of its own
+ * stream and at worst a logging thread.
+ *
+ * Bytes stay in the pipe until their stream is read, so a process writing
+ * faster than its lines get logged blocks on its pipe instead of growing a
+ * buffer: a stream isn't read while MAX_QUEUED_LINES of its lines wait to be
+ * logged. Each stream only buffers its current line, up to maxLineBytes, a
+ * longer line is logged in pieces.
+ * </pre>
+ */
+public class ProcessOutputPump {
+  private static final Logger logger = Logger
+      .getLogger(ProcessOutputPump.class);
+
+  public static final int DEFAULT_PUMP_THREADS = 2;
+  public static final int DEFAULT_MAX_LINE_BYTES = 64 * 1024;
+
+  private static final int CHUNK_BYTES = 8 * 1024;
+  private static final long MAX_IDLE_SLEEP_MS = 10;
+  // a stream with nothing to read this long after its process exited is done
+  private static final long IDLE_AFTER_EXIT_MS = 50;
+  private static final int MAX_QUEUED_LINES = 1024;
+  private static final int LINES_PER_TURN = 256;
+  private static final int LOGGING_THREADS_PER_PUMP = 2;
+
+  private static final AtomicInteger pumpCount = new AtomicInteger();
+  private static ProcessOutputPump defaultPump;
+
+  private final int maxLineBytes;
+  private final Pump[] pumps;
+  private final ExecutorService loggingThreads;
+
+  public ProcessOutputPump(int numThreads, int maxLineBytes) {
+    this.maxLineBytes = maxLineBytes;
+    this.pumps = new Pump[Math.max(1, numThreads)];
+    this.loggingThreads =
+        Executors.newFixedThreadPool(pumps.length * LOGGING_THREADS_PER_PUMP,
+            new LoggingThreadFactory());
+    for (int i = 0; i < pumps.length; ++i) {
+      pumps[i] =
+          new Pump("azkaban-output-pump-" + pumpCount.incrementAndGet());
+      pumps[i].start();
+    }
+  }
+
+  /**
+   * The pump shared by the processes of the server, started on first use
+   *
+   * @return
+   */
+  public static synchronized ProcessOutputPump getDefault() {
+    if (defaultPump == null) {
+      defaultPump =
+          new ProcessOutputPump(DEFAULT_PUMP_THREADS, DEFAULT_MAX_LINE_BYTES);
+    }
+    return defaultPump;
+  }
+
+  /**
+   * Starts reading a stream, on the pump thread with the fewest streams
+   *
+   * @param stream
+   * @param streamLogger logger of the lines, or null to only keep them
+   * @param level
+   * @param recentLines number of lines kept for getRecentLog
+   * @return
+   */
+  public Output pump(InputStream stream, Logger streamLogger, Level level,
+      int recentLines) {
+    Output output =
+        new Output(stream, streamLogger, level, recentLines, maxLineBytes,
+            loggingThreads);
+    Pump pump = pumps[0];
+    for (Pump other : pumps) {
+      if (other.outputs.size() < pump.outputs.size()) {
+        pump = other;
+      }
+    }
+    output.pump = pump;
+    pump.outputs.add(output);
+    pump.wake();
+    return output;
+  }
+
+  public int getNumThreads() {
+    return pumps.length;
+  }
+
+  public int getNumStreams() {
+    int streams = 0;
+    for (Pump pump : pumps) {
+      streams += pump.outputs.size();
+    }
+    return streams;
+  }
+
+  /**
+   * The lines read from a stream
+   */
+  public static class Output {
+    private final InputStream stream;
+    private final Logger streamLogger;
+    private final Level level;
+    private final Charset charset = Charset.defaultCharset();
+    private final ExecutorService loggingThreads;
+    private final Runnable logLines = new Runnable() {
+      @Override
+      public void run() {
+        logQueuedLines();
+      }
+    };
+
+    // guarded by this
+    private final CircularBuffer<String> recent;
+    private final byte[] line;
+    private final Queue<String> queuedLines = new ArrayDeque<String>();
+    private boolean logging = false;
+    private int lineLength = 0;
+    private boolean afterCR = false;
+    private boolean done = false;
+    private boolean exited = false;
+    private int pollsAfterExit = 0;
+    private long firstPollAfterExit = 0;
+    private long lastRead = System.currentTimeMillis();
+
+    private Pump pump;
+
+    private Output(InputStream stream, Logger streamLogger, Level level,
+        int recentLines, int maxLineBytes, ExecutorService loggingThreads) {
+      this.stream = stream;
+      this.streamLogger = streamLogger;
+      this.level = level;
+      this.recent = new CircularBuffer<String>(recentLines);
+      this.line = new byte[maxLineBytes];
+      this.loggingThreads = loggingThreads;
+    }
+
+    /*
+     * Reads what the stream has available, without blocking. Returns whether
+     * anything was read.
+     */
+    private synchronized boolean pumpOnce(byte[] buffer) {
+      if (done || queuedLines.size() >= MAX_QUEUED_LINES) {
+        return false;
+      }
+      int read = 0;
+      try {
+        int available = stream.available();
+        if (available > 0) {
+          read = stream.read(buffer, 0, Math.min(available, buffer.length));
+        }
+      } catch (IOException e) {
+        if (streamLogger != null) {
+          streamLogger.error("Error reading from logging stream:", e);
+        }
+        finish();
+        return false;
+      }
+
+      if (read < 0) {
+        finish();
+        return false;
+      }
+      for (int i = 0; i < read; ++i) {
+        append(buffer[i]);
+      }
+      if (read > 0) {
+        lastRead = System.currentTimeMillis();
+      }
+      if (exited) {
+        if (pollsAfterExit++ == 0) {
+          firstPollAfterExit = System.currentTimeMillis();
+        }
+        notifyAll();
+      }
+      return read > 0;
+    }
+
+    /*
+     * Splits lines on \n, \r or \r\n, like BufferedReader.readLine
+     */
+    private void append(byte b) {
+      if (b == '\n' && afterCR) {
+        afterCR = false;
+        return;
+      }
+      afterCR = b == '\r';
+      if (b == '\n' || b == '\r') {
+        flushLine();
+        return;
+      }
+      if (lineLength == line.length) {
+        flushLine();
+      }
+      line[lineLength++] = b;
+    }
+
+    private void flushLine() {
+      String text = new String(line, 0, lineLength, charset);
+      lineLength = 0;
+      recent.append(text);
+      if (streamLogger != null) {
+        queuedLines.add(text);
+        if (!logging) {
+          logging = true;
+          loggingThreads.execute(logLines);
+        }
+      }
+    }
+
+    /*
+     * Logs the queued lines on a logging thread, until the queue is empty or
+     * LINES_PER_TURN were logged, then lets the other streams log theirs
+     */
+    private void logQueuedLines() {
+      for (int i = 0; i < LINES_PER_TURN; ++i) {
+        String text;
+        synchronized (this) {
+          text = queuedLines.poll();
+          if (text == null) {
+            logging = false;
+            notifyAll();
+            return;
+          }
+        }
+        try {
+          streamLogger.log(level, text);
+        } catch (Throwable t) {
+          logger.error("Failed to log process output", t);
+        }
+      }
+      loggingThreads.execute(logLines);
+    }
+
+    private void finish() {
+      if (done) {
+        return;
+      }
+      done = true;
+      if (lineLength > 0) {
+        flushLine();
+      }
+      pump.outputs.remove(this);
+      notifyAll();
+    }
+
+    /**
+     * Waits for the rest of the output once the process exited, then stops
+     * reading the stream and waits for its lines to be logged. The output is
+     * complete when the stream has had nothing to read for a moment, a child
+     * of the process keeping the stream open only delays this up to waitMs.
+     * That wait starts once the pump polled the stream, so a busy pump doesn't
+     * cut the output short. The lag of the pump or of the appenders delays
+     * the return up to waitMs more, the lines not logged by then are dropped.
+     *
+     * @param waitMs
+     */
+    public synchronized void awaitCompletion(long waitMs) {
+      long deadline = System.currentTimeMillis() + 2 * waitMs;
+      exited = true;
+      pump.wake();
+      try {
+        while (!done) {
+          long now = System.currentTimeMillis();
+          // a full queue stops the reads, the output isn't idle then
+          boolean reading = queuedLines.size() < MAX_QUEUED_LINES;
+          if (now >= deadline || pollsAfterExit > 0 && reading
+              && (now >= firstPollAfterExit + waitMs || pollsAfterExit >= 2
+                  && now - lastRead >= IDLE_AFTER_EXIT_MS)) {
+            break;
+          }
+          wait(Math.min(deadline - now, MAX_IDLE_SLEEP_MS));
+        }
+        finish();
+        while (logging) {
+          long now = System.currentTimeMillis();
+          if (now >= deadline) {
+            logger.warn("Dropping " + queuedLines.size()
+                + " lines of process output not logged in time");
+            queuedLines.clear();
+            break;
+          }
+          wait(deadline - now);
+        }
+      } catch (InterruptedException e) {
+        if (streamLogger != null) {
+          streamLogger.info("I/O thread interrupted.", e);
+        }
+        finish();
+      }
+    }
+
+    private synchronized void abort() {
+      lineLength = 0;
+      finish();
+    }
+
+    public synchronized boolean isDone() {
+      return done;
+    }
+
+    public synchronized String getRecentLog() {
+      return Joiner.on(System.getProperty("line.separator")).join(recent);
+    }
+  }
+
+  private static class LoggingThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread =
+          new Thread(runnable, "azkaban-output-logger-"
+              + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  private static class Pump extends Thread {
+    private final List<Output> outputs = new CopyOnWriteArrayList<Output>();
+    private final byte[] buffer = new byte[CHUNK_BYTES];
+
+    private Pump(String name) {
+      super(name);
+      setDaemon(true);
+    }
+
+    private synchronized void wake() {
+      notifyAll();
+    }
+
+    @Override
+    public void run() {
+      long sleep = 1;
+      while (true) {
+        boolean read = false;
+        for (Output output : outputs) {
+          try {
+            read |= output.pumpOnce(buffer);
+          } catch (Throwable t) {
+            logger.error("Failed to pump process output", t);
+            output.abort();
+          }
+        }
+        if (read) {
+          sleep = 1;
+          continue;
+        }
+
+        synchronized (this) {
+          try {
+            if (outputs.isEmpty()) {
+              wait();
+            } else {
+              wait(sleep);
+              sleep = Math.min(sleep * 2, MAX_IDLE_SLEEP_MS);
+            }
+          } catch (InterruptedException e) {
+            logger.info("Output pump interrupted.", e);
+            return;
+          }
+        }
+      }
+    }
+  }
+}
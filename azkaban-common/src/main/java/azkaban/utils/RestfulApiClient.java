@@ -205,7 +205,7 @@ public abstract class RestfulApiClient<T> {
 
   /** helper function to fill  the request with header entries .
    * */
-  private static HttpMessage completeRequest(HttpMessage request,
+  protected static HttpMessage completeRequest(HttpMessage request,
       List<NameValuePair> headerEntries){
     if (null == request){
       logger.error("unable to complete request as the passed request object is null");
@@ -223,7 +223,7 @@ public abstract class RestfulApiClient<T> {
 
   /** helper function to fill  the request with header entries and posting body .
    * */
-  private static HttpEntityEnclosingRequestBase completeRequest(HttpEntityEnclosingRequestBase request,
+  protected static HttpEntityEnclosingRequestBase completeRequest(HttpEntityEnclosingRequestBase request,
       List<NameValuePair> headerEntries,
       String postingBody) throws UnsupportedEncodingException{
      if (null != completeRequest(request, headerEntries)){
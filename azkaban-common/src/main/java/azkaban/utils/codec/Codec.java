@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils.codec;
+
+import java.io.IOException;
+
+/**
+ * <pre>
+ * Compression codec of the blobs stored by the JDBC loaders. Each
+ * EncodingType maps to one codec, and the enc_type column of a row tells
+ * which codec decodes it.
+ *
+ * Implementations are thread safe, and reuse per thread buffers and
+ * (de)compressors instead of allocating them for every call.
+ * </pre>
+ */
+public interface Codec {
+  public byte[] encode(byte[] data, int offset, int length) throws IOException;
+
+  public byte[] decode(byte[] data) throws IOException;
+
+  /**
+   * Decodes length bytes starting at offset of the decoded data. Codecs that
+   * can stop early don't decode the rest of the data.
+   *
+   * @param data
+   * @param offset
+   * @param length
+   * @return
+   * @throws IOException if the decoded data is shorter than offset + length
+   */
+  public byte[] decode(byte[] data, int offset, int length) throws IOException;
+}
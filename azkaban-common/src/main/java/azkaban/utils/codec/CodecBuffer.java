@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils.codec;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte array reused by the codecs of a thread. Buffers grown past
+ * MAX_RETAINED_SIZE are dropped once their bytes are copied out, or at the
+ * next use if the codec failed, so a single large blob doesn't pin memory on
+ * every thread that ever handled one.
+ */
+class CodecBuffer extends OutputStream {
+  private static final int INITIAL_SIZE = 64 * 1024;
+  private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<CodecBuffer> BUFFERS =
+      new ThreadLocal<CodecBuffer>() {
+        @Override
+        protected CodecBuffer initialValue() {
+          return new CodecBuffer();
+        }
+      };
+
+  private byte[] buf = new byte[INITIAL_SIZE];
+  private int count = 0;
+
+  /**
+   * Returns the empty buffer of the calling thread
+   */
+  static CodecBuffer get() {
+    CodecBuffer buffer = BUFFERS.get();
+    buffer.trim();
+    return buffer;
+  }
+
+  /* empties the buffer, dropping its array if it grew too large */
+  private void trim() {
+    if (buf.length > MAX_RETAINED_SIZE) {
+      buf = new byte[INITIAL_SIZE];
+    }
+    count = 0;
+  }
+
+  /**
+   * Makes room for size more bytes, and returns the array to write them to,
+   * from getCount()
+   */
+  byte[] reserve(int size) {
+    int needed = count + size;
+    if (needed > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(needed, buf.length * 2));
+    }
+    return buf;
+  }
+
+  void advance(int size) {
+    count += size;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  /**
+   * Returns a copy of the bytes written, and empties the buffer
+   */
+  byte[] toByteArray() {
+    byte[] bytes = Arrays.copyOf(buf, count);
+    trim();
+    return bytes;
+  }
+
+  /**
+   * Returns a copy of length bytes from offset, and empties the buffer
+   */
+  byte[] toByteArray(int offset, int length) {
+    byte[] bytes = Arrays.copyOfRange(buf, offset, offset + length);
+    trim();
+    return bytes;
+  }
+
+  @Override
+  public void write(int b) {
+    reserve(1)[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    System.arraycopy(b, off, reserve(len), count, len);
+    count += len;
+  }
+}
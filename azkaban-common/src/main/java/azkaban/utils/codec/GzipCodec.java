@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * <pre>
+ * The gzip format, as written by GZIPOutputStream.
+ *
+ * Deflaters and inflaters are reused per thread. The output of encode is
+ * built in a reused buffer and copied once. decode allocates the result once,
+ * with the size recorded in the gzip trailer, and inflates straight into it.
+ * Data with optional header fields or several gzip members falls back to
+ * GZIPInputStream.
+ * </pre>
+ */
+public class GzipCodec implements Codec {
+  private static final int HEADER_SIZE = 10;
+  private static final int TRAILER_SIZE = 8;
+  private static final int MAX_RATIO = 1032;
+  private static final byte[] HEADER = { (byte) 0x1f, (byte) 0x8b,
+      Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+  private static final ThreadLocal<Deflater> DEFLATERS =
+      new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+          return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+      };
+
+  private static final ThreadLocal<Inflater> INFLATERS =
+      new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+          return new Inflater(true);
+        }
+      };
+
+  @Override
+  public byte[] encode(byte[] data, int offset, int length) throws IOException {
+    Deflater deflater = DEFLATERS.get();
+    deflater.reset();
+    deflater.setInput(data, offset, length);
+    deflater.finish();
+
+    CodecBuffer buffer = CodecBuffer.get();
+    buffer.write(HEADER, 0, HEADER.length);
+    while (!deflater.finished()) {
+      byte[] buf = buffer.reserve(8192);
+      int count = buffer.getCount();
+      buffer.advance(deflater.deflate(buf, count, buf.length - count));
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(data, offset, length);
+    writeInt(buffer, (int) crc.getValue());
+    writeInt(buffer, length);
+    return buffer.toByteArray();
+  }
+
+  @Override
+  public byte[] decode(byte[] data) throws IOException {
+    if (!isSimpleGzip(data)) {
+      return decodeStream(data);
+    }
+
+    int size = readInt(data, data.length - 4);
+    // deflate can't expand data more than about 1032 times, a larger size
+    // means the trailer isn't the one of the only member
+    if (size < 0 || size > (long) data.length * MAX_RATIO) {
+      return decodeStream(data);
+    }
+
+    byte[] result = new byte[size];
+    if (inflate(data, result, size) != size || !endOfMember()) {
+      return decodeStream(data);
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(result, 0, size);
+    if ((int) crc.getValue() != readInt(data, data.length - TRAILER_SIZE)) {
+      throw new IOException("Corrupt gzip data, CRC mismatch");
+    }
+    return result;
+  }
+
+  @Override
+  public byte[] decode(byte[] data, int offset, int length) throws IOException {
+    if (!isSimpleGzip(data)) {
+      byte[] all = decodeStream(data);
+      if (offset + length > all.length) {
+        throw new EOFException("Only " + all.length
+            + " bytes decoded, can't read " + length + " at " + offset);
+      }
+      return Arrays.copyOfRange(all, offset, offset + length);
+    }
+
+    // stops inflating at the end of the range
+    CodecBuffer buffer = CodecBuffer.get();
+    byte[] buf = buffer.reserve(offset + length);
+    if (inflate(data, buf, offset + length) != offset + length) {
+      throw new EOFException("Can't read " + length + " bytes at " + offset);
+    }
+    return buffer.toByteArray(offset, length);
+  }
+
+  /* true if the data has the plain header GZIPOutputStream writes */
+  private static boolean isSimpleGzip(byte[] data) {
+    return data.length >= HEADER_SIZE + TRAILER_SIZE
+        && data[0] == HEADER[0] && data[1] == HEADER[1]
+        && data[2] == HEADER[2] && data[3] == 0;
+  }
+
+  /*
+   * Inflates up to size bytes of the first member into result, with the
+   * thread's inflater. Returns the number of bytes inflated.
+   */
+  private static int inflate(byte[] data, byte[] result, int size)
+      throws IOException {
+    Inflater inflater = INFLATERS.get();
+    inflater.reset();
+    inflater.setInput(data, HEADER_SIZE, data.length - HEADER_SIZE);
+    try {
+      int count = 0;
+      while (count < size && !inflater.finished()) {
+        int read = inflater.inflate(result, count, size - count);
+        if (read == 0
+            && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        count += read;
+      }
+      return count;
+    } catch (DataFormatException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /* true if the inflater is at the end of the only member */
+  private static boolean endOfMember() throws IOException {
+    Inflater inflater = INFLATERS.get();
+    byte[] extra = new byte[1];
+    try {
+      while (!inflater.finished()) {
+        if (inflater.inflate(extra) > 0 || inflater.needsInput()
+            || inflater.needsDictionary()) {
+          return false;
+        }
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(e);
+    }
+    // the trailer must be all that's left
+    return inflater.getRemaining() == TRAILER_SIZE;
+  }
+
+  private static byte[] decodeStream(byte[] data) throws IOException {
+    GZIPInputStream gzipInputStream =
+        new GZIPInputStream(new ByteArrayInputStream(data));
+    try {
+      CodecBuffer buffer = CodecBuffer.get();
+      IOUtils.copy(gzipInputStream, buffer);
+      return buffer.toByteArray();
+    } finally {
+      gzipInputStream.close();
+    }
+  }
+
+  private static void writeInt(CodecBuffer buffer, int value) {
+    buffer.write(value & 0xff);
+    buffer.write((value >> 8) & 0xff);
+    buffer.write((value >> 16) & 0xff);
+    buffer.write((value >> 24) & 0xff);
+  }
+
+  private static int readInt(byte[] data, int offset) {
+    return (data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8)
+        | ((data[offset + 2] & 0xff) << 16) | ((data[offset + 3] & 0xff) << 24);
+  }
+}
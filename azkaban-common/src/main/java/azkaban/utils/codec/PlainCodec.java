@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Stores the data as is
+ */
+public class PlainCodec implements Codec {
+  @Override
+  public byte[] encode(byte[] data, int offset, int length) {
+    if (offset == 0 && length == data.length) {
+      return data;
+    }
+    return Arrays.copyOfRange(data, offset, offset + length);
+  }
+
+  @Override
+  public byte[] decode(byte[] data) {
+    return data;
+  }
+
+  @Override
+  public byte[] decode(byte[] data, int offset, int length) throws IOException {
+    if (offset + length > data.length) {
+      throw new EOFException("Only " + data.length + " bytes, can't read "
+          + length + " at " + offset);
+    }
+    return Arrays.copyOfRange(data, offset, offset + length);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+/**
+ * <pre>
+ * Fast codec, for blobs written often such as flow_data and logs. Several
+ * times faster than gzip at both ends, for a somewhat lower ratio.
+ *
+ * Uses the snappy block format, which records the decoded size, so decode
+ * allocates the result once. The pure Java implementation is used, nothing
+ * native has to be installed.
+ * </pre>
+ */
+public class SnappyCodec implements Codec {
+  @Override
+  public byte[] encode(byte[] data, int offset, int length) throws IOException {
+    CodecBuffer buffer = CodecBuffer.get();
+    byte[] buf = buffer.reserve(Snappy.maxCompressedLength(length));
+    buffer.advance(Snappy.compress(data, offset, length, buf, 0));
+    return buffer.toByteArray();
+  }
+
+  @Override
+  public byte[] decode(byte[] data) throws IOException {
+    try {
+      return Snappy.uncompress(data, 0, data.length);
+    } catch (CorruptionException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public byte[] decode(byte[] data, int offset, int length) throws IOException {
+    byte[] all = decode(data);
+    if (offset + length > all.length) {
+      throw new EOFException("Only " + all.length
+          + " bytes decoded, can't read " + length + " at " + offset);
+    }
+    return Arrays.copyOfRange(all, offset, offset + length);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.IOUtils;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.UnsupportedOptionsException;
+import org.tukaani.xz.XZ;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * <pre>
+ * High ratio codec, for blobs that are written once and rarely read, such
+ * as project flows and properties. Encoding is much slower than gzip.
+ * </pre>
+ */
+public class XzCodec implements Codec {
+  private final LZMA2Options options;
+
+  public XzCodec() {
+    this(LZMA2Options.PRESET_DEFAULT);
+  }
+
+  public XzCodec(int preset) {
+    try {
+      this.options = new LZMA2Options(preset);
+    } catch (UnsupportedOptionsException e) {
+      throw new IllegalArgumentException("Invalid xz preset " + preset, e);
+    }
+  }
+
+  @Override
+  public byte[] encode(byte[] data, int offset, int length) throws IOException {
+    CodecBuffer buffer = CodecBuffer.get();
+    // CRC32 like gzip, the default CRC64 buys nothing here
+    XZOutputStream xzStream =
+        new XZOutputStream(buffer, optionsFor(length), XZ.CHECK_CRC32);
+    xzStream.write(data, offset, length);
+    xzStream.finish();
+    return buffer.toByteArray();
+  }
+
+  /*
+   * The encoder allocates the whole dictionary up front, 8MB at the default
+   * preset. A dictionary larger than the data doesn't compress any better,
+   * so small blobs get one sized to them.
+   */
+  private LZMA2Options optionsFor(int length) throws IOException {
+    if (length >= options.getDictSize()) {
+      return options;
+    }
+    LZMA2Options sized = (LZMA2Options) options.clone();
+    sized.setDictSize(Math.max(LZMA2Options.DICT_SIZE_MIN, length));
+    return sized;
+  }
+
+  @Override
+  public byte[] decode(byte[] data) throws IOException {
+    XZInputStream xzStream = new XZInputStream(new ByteArrayInputStream(data));
+    try {
+      CodecBuffer buffer = CodecBuffer.get();
+      IOUtils.copy(xzStream, buffer);
+      return buffer.toByteArray();
+    } finally {
+      xzStream.close();
+    }
+  }
+
+  @Override
+  public byte[] decode(byte[] data, int offset, int length) throws IOException {
+    // stops decoding at the end of the range
+    XZInputStream xzStream = new XZInputStream(new ByteArrayInputStream(data));
+    try {
+      IOUtils.skipFully(xzStream, offset);
+      byte[] result = new byte[length];
+      IOUtils.readFully(xzStream, result);
+      return result;
+    } finally {
+      xzStream.close();
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import azkaban.utils.Props;
+
+public class AbstractJdbcLoaderTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private TestLoader loader;
+  private Connection connection;
+  private int executions;
+  private int commits;
+
+  @Before
+  public void setUp() throws Exception {
+    Props props = new Props();
+    props.put("database.type", "h2");
+    props.put("h2.path", temp.newFolder("h2").getAbsolutePath() + "/test");
+    loader = new TestLoader(props);
+
+    connection = countExecutions(loader.getDBConnection(false));
+    QueryRunner runner = new QueryRunner();
+    runner.update(connection, "CREATE TABLE rows_test (id INT NOT NULL "
+        + "AUTO_INCREMENT, name VARCHAR(64), PRIMARY KEY (id))");
+    connection.commit();
+    executions = 0;
+    commits = 0;
+  }
+
+  @After
+  public void tearDown() {
+    DbUtils.closeQuietly(connection);
+  }
+
+  /* Test rows are sent BATCH_SIZE at a time */
+  @Test
+  public void testBatchUpdate() throws Exception {
+    int numRows = AbstractJdbcLoader.BATCH_SIZE * 2 + 50;
+    List<Object[]> params = new ArrayList<Object[]>();
+    for (int i = 1; i <= numRows; ++i) {
+      params.add(new Object[] { i, "row" + i });
+    }
+
+    int[] counts =
+        loader.batchUpdate(connection,
+            "INSERT INTO rows_test (id, name) VALUES (?,?)", params);
+    connection.commit();
+
+    Assert.assertEquals(numRows, counts.length);
+    Assert.assertEquals(3, executions);
+    // nothing is sent for no rows
+    Assert.assertEquals(0, loader.batchUpdate(connection,
+        "DELETE FROM rows_test WHERE id=?", new ArrayList<Object[]>()).length);
+    Assert.assertEquals(3, executions);
+    Assert.assertEquals(numRows, (int) new QueryRunner().query(connection,
+        "SELECT COUNT(*) FROM rows_test", new AbstractJdbcLoader.IntHandler()));
+  }
+
+  /*
+   * Test the round trips of writing the properties of a project version: one
+   * statement and one commit per row the way uploadProjectProperties used to,
+   * against one executeBatch per BATCH_SIZE rows and one commit.
+   */
+  @Test
+  public void testBatchUpdateRoundTrips() throws Exception {
+    String insert = "INSERT INTO rows_test (id, name) VALUES (?,?)";
+    int numRows = 1000;
+    QueryRunner runner = new QueryRunner();
+    for (int i = 1; i <= numRows; ++i) {
+      runner.update(connection, insert, i, "row" + i);
+      connection.commit();
+    }
+    Assert.assertEquals(numRows, executions);
+    Assert.assertEquals(numRows, commits);
+
+    executions = 0;
+    commits = 0;
+    List<Object[]> params = new ArrayList<Object[]>();
+    for (int i = numRows + 1; i <= numRows * 2; ++i) {
+      params.add(new Object[] { i, "row" + i });
+    }
+    loader.batchUpdate(connection, insert, params);
+    connection.commit();
+    Assert.assertEquals(numRows / AbstractJdbcLoader.BATCH_SIZE, executions);
+    Assert.assertEquals(1, commits);
+  }
+
+  /* Test the generated key comes back from the insert itself */
+  @Test
+  public void testInsertReturningKey() throws Exception {
+    String insert = "INSERT INTO rows_test (name) VALUES (?)";
+    long first = loader.insertReturningKey(connection, insert, "a");
+    long second = loader.insertReturningKey(connection, insert, "b");
+    connection.commit();
+
+    Assert.assertEquals(first + 1, second);
+    Assert.assertEquals(2, executions);
+    Assert.assertEquals("b", new QueryRunner().query(connection,
+        "SELECT name FROM rows_test WHERE id=?",
+        new AbstractJdbcLoader.SingleStringHandler(), second));
+  }
+
+  /* Test every row reaches the handler of a streamed query */
+  @Test
+  public void testStreamQuery() throws Exception {
+    List<Object[]> params = new ArrayList<Object[]>();
+    for (int i = 1; i <= 10; ++i) {
+      params.add(new Object[] { i, "row" + i });
+    }
+    loader.batchUpdate(connection,
+        "INSERT INTO rows_test (id, name) VALUES (?,?)", params);
+    connection.commit();
+
+    int sum =
+        loader.streamQuery(connection,
+            "SELECT id FROM rows_test WHERE id > ? ORDER BY id",
+            new ResultSetHandler<Integer>() {
+              @Override
+              public Integer handle(ResultSet rs) throws SQLException {
+                int sum = 0;
+                while (rs.next()) {
+                  sum += rs.getInt(1);
+                }
+                return sum;
+              }
+            }, 5);
+    Assert.assertEquals(6 + 7 + 8 + 9 + 10, sum);
+  }
+
+  /*
+   * Counts the statements executed and the commits on the connection, each
+   * being a round trip to a remote database.
+   */
+  private Connection countExecutions(final Connection connection) {
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { Connection.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args)
+              throws Throwable {
+            if (method.getName().equals("commit")) {
+              ++commits;
+            }
+            Object result = forward(connection, method, args);
+            if (result instanceof PreparedStatement) {
+              final PreparedStatement statement = (PreparedStatement) result;
+              return Proxy.newProxyInstance(getClass().getClassLoader(),
+                  new Class<?>[] { PreparedStatement.class },
+                  new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                        Object[] args) throws Throwable {
+                      if (method.getName().startsWith("execute")) {
+                        ++executions;
+                      }
+                      return forward(statement, method, args);
+                    }
+                  });
+            }
+            return result;
+          }
+        });
+  }
+
+  private static Object forward(Object target, Method method, Object[] args)
+      throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static class TestLoader extends AbstractJdbcLoader {
+    private TestLoader(Props props) {
+      super(props);
+    }
+  }
+}
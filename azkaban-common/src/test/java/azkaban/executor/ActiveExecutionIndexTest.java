@@ -0,0 +1,58 @@
+package azkaban.executor;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.utils.TestUtils;
+
+public class ActiveExecutionIndexTest {
+
+  private ExecutableFlow createExecutableFlow(String flowName, int projectId,
+    int execId) throws IOException {
+    ExecutableFlow execFlow = TestUtils.createExecutableFlow("exectest1",
+      flowName);
+    execFlow.setProjectId(projectId);
+    execFlow.setExecutionId(execId);
+    return execFlow;
+  }
+
+  /* Test lookups are keyed by both project and flow */
+  @Test
+  public void testLookupByProjectAndFlow() throws IOException {
+    ActiveExecutionIndex index = new ActiveExecutionIndex();
+    ExecutableFlow flow = createExecutableFlow("exec1", 1, 3);
+    String flowId = flow.getFlowId();
+    index.add(flow);
+    index.add(createExecutableFlow("exec2", 1, 1));
+    index.add(createExecutableFlow("exec1", 2, 4));
+
+    Assert.assertEquals(Arrays.asList(1, 3), index.getExecutionIds(1, flowId));
+    Assert.assertEquals(Arrays.asList(4), index.getExecutionIds(2, flowId));
+    Assert.assertTrue(index.hasExecution(1, flowId));
+    Assert.assertFalse(index.hasExecution(3, flowId));
+    Assert.assertFalse(index.hasExecution(1, flowId + "-other"));
+    Assert.assertTrue(index.getExecutionIds(3, flowId).isEmpty());
+  }
+
+  /* Test removal drops the execution and empty flows */
+  @Test
+  public void testRemove() throws IOException {
+    ActiveExecutionIndex index = new ActiveExecutionIndex();
+    ExecutableFlow flow1 = createExecutableFlow("exec1", 1, 1);
+    ExecutableFlow flow2 = createExecutableFlow("exec1", 1, 2);
+    index.add(flow1);
+    index.add(flow2);
+
+    String flowId = flow1.getFlowId();
+    index.remove(flow1);
+    Assert.assertEquals(Arrays.asList(2), index.getExecutionIds(1, flowId));
+    index.remove(flow2);
+    Assert.assertFalse(index.hasExecution(1, flowId));
+    // removing twice is a no-op
+    index.remove(flow2);
+    Assert.assertFalse(index.hasExecution(1, flowId));
+  }
+}
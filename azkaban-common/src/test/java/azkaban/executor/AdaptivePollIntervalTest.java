@@ -0,0 +1,59 @@
+package azkaban.executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.utils.TestUtils;
+
+public class AdaptivePollIntervalTest {
+
+  /* Test a recently changed flow is polled at the minimum interval */
+  @Test
+  public void testRecentChangeUsesMinInterval() {
+    AdaptivePollInterval interval = new AdaptivePollInterval(500, 10000);
+    Assert.assertEquals(500, interval.getInterval(0, 1));
+    Assert.assertEquals(500, interval.getInterval(1000, 1));
+    Assert.assertEquals(500, interval.getInterval(-100, 1));
+  }
+
+  /* Test the interval grows with idle time, up to the maximum */
+  @Test
+  public void testBackoff() {
+    AdaptivePollInterval interval = new AdaptivePollInterval(500, 10000);
+    Assert.assertEquals(2500, interval.getInterval(10000, 1));
+    Assert.assertEquals(10000, interval.getInterval(40000, 1));
+    Assert.assertEquals(10000, interval.getInterval(Long.MAX_VALUE, 1));
+  }
+
+  /* Test flows with more running jobs back off slower */
+  @Test
+  public void testRunningJobsSlowBackoff() {
+    AdaptivePollInterval interval = new AdaptivePollInterval(500, 10000);
+    Assert.assertEquals(1250, interval.getInterval(10000, 2));
+    Assert.assertEquals(2500, interval.getInterval(10000, 0));
+  }
+
+  /* Test fixed interval */
+  @Test
+  public void testFixedInterval() {
+    AdaptivePollInterval interval = new AdaptivePollInterval(100, 100);
+    Assert.assertEquals(100, interval.getInterval(0, 1));
+    Assert.assertEquals(100, interval.getInterval(100000, 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidIntervals() {
+    new AdaptivePollInterval(1000, 500);
+  }
+
+  /* Test running jobs are counted */
+  @Test
+  public void testCountRunningJobs() throws Exception {
+    ExecutableFlow exFlow = TestUtils.createExecutableFlow("exectest1", "exec1");
+
+    Assert.assertEquals(0, AdaptivePollInterval.countRunningJobs(exFlow));
+    exFlow.getExecutableNodes().get(0).setStatus(Status.RUNNING);
+    exFlow.getExecutableNodes().get(1).setStatus(Status.RUNNING);
+    Assert.assertEquals(2, AdaptivePollInterval.countRunningJobs(exFlow));
+  }
+}
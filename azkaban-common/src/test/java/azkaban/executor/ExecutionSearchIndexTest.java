@@ -0,0 +1,101 @@
+package azkaban.executor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import azkaban.project.Project;
+import azkaban.utils.TestUtils;
+
+public class ExecutionSearchIndexTest {
+  private MockExecutorLoader loader;
+
+  /* Helper method to create an executed flow of the given project */
+  private ExecutableFlow createExecutableFlow(String flowName, int execId,
+    Project project, String user) throws IOException {
+    ExecutableFlow execFlow =
+      new ExecutableFlow(project, TestUtils.createFlow("exectest1", flowName));
+    execFlow.setExecutionId(execId);
+    execFlow.setSubmitUser(user);
+    return execFlow;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    loader = new MockExecutorLoader();
+    loader.uploadExecutableFlow(createExecutableFlow("exec1", 1, new Project(
+      1, "SalesReports"), "alice"));
+    loader.uploadExecutableFlow(createExecutableFlow("exec2", 2, new Project(
+      2, "sales-etl"), "bob"));
+  }
+
+  /* Test terms are resolved to the values they match, ignoring case */
+  @Test
+  public void testResolve() throws Exception {
+    ExecutionSearchIndex index = new ExecutionSearchIndex(loader, 10);
+    ExecutionHistoryFilter filter =
+      new ExecutionHistoryFilter("SALES", "Member", "Ali", 0, -1, -1);
+    Assert.assertTrue(index.resolve(filter));
+    Assert.assertEquals(new HashSet<Integer>(Arrays.asList(1, 2)),
+      new HashSet<Integer>(filter.getProjectIds()));
+    Assert.assertEquals(
+      new HashSet<String>(Arrays.asList("derived-member-data")),
+      new HashSet<String>(filter.getFlowIds()));
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("alice")),
+      new HashSet<String>(filter.getSubmitUsers()));
+  }
+
+  /* Test a term without match short circuits the search */
+  @Test
+  public void testResolveNoMatch() throws Exception {
+    ExecutionSearchIndex index = new ExecutionSearchIndex(loader, 10);
+    Assert.assertFalse(index.resolve(new ExecutionHistoryFilter("sales",
+      "missing", null, 0, -1, -1)));
+  }
+
+  /* Test empty terms are no filter */
+  @Test
+  public void testResolveEmptyTerms() throws Exception {
+    ExecutionSearchIndex index = new ExecutionSearchIndex(loader, 10);
+    ExecutionHistoryFilter filter =
+      new ExecutionHistoryFilter("", null, "", 0, -1, -1);
+    Assert.assertTrue(index.resolve(filter));
+    Assert.assertNull(filter.getProjectIds());
+    Assert.assertNull(filter.getFlowIds());
+    Assert.assertNull(filter.getSubmitUsers());
+  }
+
+  /* Test broad terms are left to the LIKE predicate */
+  @Test
+  public void testResolveTooManyMatches() throws Exception {
+    ExecutionSearchIndex index = new ExecutionSearchIndex(loader, 1);
+    ExecutionHistoryFilter filter =
+      new ExecutionHistoryFilter("sales", null, "bob", 0, -1, -1);
+    Assert.assertTrue(index.resolve(filter));
+    Assert.assertNull(filter.getProjectIds());
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("bob")),
+      new HashSet<String>(filter.getSubmitUsers()));
+  }
+
+  /* Test flows stored since the last search, by any server, are found */
+  @Test
+  public void testResolveNewValues() throws Exception {
+    ExecutionSearchIndex index = new ExecutionSearchIndex(loader, 10);
+    Assert.assertFalse(index.resolve(new ExecutionHistoryFilter("billing",
+      null, null, 0, -1, -1)));
+
+    loader.uploadExecutableFlow(createExecutableFlow("exec3", 3, new Project(
+      3, "billing"), "carol"));
+    ExecutionHistoryFilter filter =
+      new ExecutionHistoryFilter("billing", null, "carol", 0, -1, -1);
+    Assert.assertTrue(index.resolve(filter));
+    Assert.assertEquals(new HashSet<Integer>(Arrays.asList(3)),
+      new HashSet<Integer>(filter.getProjectIds()));
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("carol")),
+      new HashSet<String>(filter.getSubmitUsers()));
+  }
+}
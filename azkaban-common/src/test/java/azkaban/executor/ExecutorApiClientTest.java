@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExecutorApiClientTest {
+
+  /* Test a call to an executor that never answers times out */
+  @Test
+  public void testSocketTimeout() throws Exception {
+    ServerSocket server = new ServerSocket(0);
+    try {
+      URI uri =
+          ExecutorApiClient.buildUri("localhost", server.getLocalPort(),
+              "/executor", true);
+      long start = System.currentTimeMillis();
+      try {
+        ExecutorApiClient.getInstance().httpGet(uri, null, 200);
+        Assert.fail("Expected a timeout");
+      } catch (SocketTimeoutException e) {
+      }
+      Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    } finally {
+      server.close();
+    }
+  }
+}
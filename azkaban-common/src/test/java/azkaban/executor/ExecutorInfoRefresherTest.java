@@ -0,0 +1,151 @@
+package azkaban.executor;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExecutorInfoRefresherTest {
+  private ExecutorService pool;
+
+  /* Refresher answering from a settable capacity, or failing */
+  private static class TestRefresher extends ExecutorInfoRefresher {
+    private volatile boolean fail = false;
+    private volatile int capacity = 10;
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    public TestRefresher(ExecutorService pool, long refreshIntervalMs,
+      int failureThreshold) {
+      super(pool, refreshIntervalMs, 60000, 5000, failureThreshold, 60000);
+    }
+
+    @Override
+    protected ExecutorInfo fetchExecutorInfo(Executor executor)
+      throws Exception {
+      fetches.incrementAndGet();
+      if (fail) {
+        throw new Exception("unreachable");
+      }
+      ExecutorInfo info = new ExecutorInfo();
+      info.setRemainingFlowCapacity(capacity);
+      return info;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    pool = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  /* waits for the refreshes submitted so far */
+  private void drain() throws Exception {
+    pool.submit(new Runnable() {
+      @Override
+      public void run() {
+      }
+    }).get(5, TimeUnit.SECONDS);
+  }
+
+  /* Test executors get an ExecutorInfo once tracked */
+  @Test
+  public void testRefreshOnSetExecutors() throws Exception {
+    TestRefresher refresher = new TestRefresher(pool, 10000, 3);
+    Executor executor = new Executor(1, "localhost", 12345, true);
+    refresher.setExecutors(Arrays.asList(executor));
+    drain();
+
+    Assert.assertNotNull(executor.getExecutorInfo());
+    Assert.assertTrue(refresher.isAvailable(executor));
+    Assert.assertTrue(refresher.getLastSuccessfulRefreshTime() > 0);
+  }
+
+  /* Test background rounds only refresh executors that are due */
+  @Test
+  public void testRefreshDue() throws Exception {
+    TestRefresher refresher = new TestRefresher(pool, 10000, 3);
+    Executor executor = new Executor(1, "localhost", 12345, true);
+    refresher.setExecutors(Arrays.asList(executor));
+    drain();
+    refresher.refreshDue();
+    drain();
+    Assert.assertEquals(1, refresher.fetches.get());
+  }
+
+  /* Test the circuit opens after repeated failures and closes on success */
+  @Test
+  public void testCircuitBreaker() throws Exception {
+    TestRefresher refresher = new TestRefresher(pool, 0, 2);
+    Executor executor = new Executor(1, "localhost", 12345, true);
+    refresher.setExecutors(Arrays.asList(executor));
+    drain();
+    Assert.assertTrue(refresher.isAvailable(executor));
+
+    refresher.fail = true;
+    refresher.requestRefresh(Arrays.asList(executor));
+    drain();
+    // one failure keeps the last known stats
+    Assert.assertTrue(refresher.isAvailable(executor));
+    refresher.requestRefresh(Arrays.asList(executor));
+    drain();
+    Assert.assertFalse(refresher.isAvailable(executor));
+    Assert.assertNull(executor.getExecutorInfo());
+    Assert.assertEquals(1, refresher.getOpenCircuits().size());
+
+    refresher.fail = false;
+    // a 0 ms base backoff probes right away
+    refresher.requestRefresh(Arrays.asList(executor));
+    drain();
+    Assert.assertTrue(refresher.isAvailable(executor));
+    Assert.assertTrue(refresher.getOpenCircuits().isEmpty());
+  }
+
+  /* Test the capacity listener fires only when capacity grows */
+  @Test
+  public void testCapacityListener() throws Exception {
+    final AtomicInteger signals = new AtomicInteger();
+    TestRefresher refresher = new TestRefresher(pool, 0, 3);
+    refresher.setCapacityListener(new Runnable() {
+      @Override
+      public void run() {
+        signals.incrementAndGet();
+      }
+    });
+    Executor executor = new Executor(1, "localhost", 12345, true);
+    refresher.setExecutors(Arrays.asList(executor));
+    drain();
+    Assert.assertEquals(1, signals.get());
+
+    refresher.requestRefresh(Arrays.asList(executor));
+    drain();
+    Assert.assertEquals(1, signals.get());
+
+    refresher.capacity = 20;
+    refresher.requestRefresh(Arrays.asList(executor));
+    drain();
+    Assert.assertEquals(2, signals.get());
+  }
+
+  /* Test cached infos carry over to reloaded executor objects */
+  @Test
+  public void testSetExecutorsKeepsInfo() throws Exception {
+    TestRefresher refresher = new TestRefresher(pool, 10000, 3);
+    Executor executor = new Executor(1, "localhost", 12345, true);
+    refresher.setExecutors(Arrays.asList(executor));
+    drain();
+
+    Executor reloaded = new Executor(1, "localhost", 12345, true);
+    refresher.setExecutors(Arrays.asList(reloaded));
+    Assert.assertSame(executor.getExecutorInfo(), reloaded.getExecutorInfo());
+  }
+}
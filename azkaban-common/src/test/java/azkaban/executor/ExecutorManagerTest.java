@@ -18,11 +18,13 @@ package azkaban.executor;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -62,6 +64,120 @@ public class ExecutorManagerTest {
     return new ExecutorManager(props, loader, new HashMap<String, Alerter>());
   }
 
+  /* Props of a multi executor manager talking to MockExecutorServers */
+  private Props createMockServerProps() {
+    Props props = new Props();
+    props.put(ExecutorManager.AZKABAN_USE_MULTIPLE_EXECUTORS, "true");
+    props.put(ExecutorManager.AZKABAN_QUEUEPROCESSING_ENABLED, "false");
+    return props;
+  }
+
+  /* Puts a flow on an executor server, as if it was dispatched earlier */
+  private ExecutionReference addRunningFlow(MockExecutorLoader loader,
+    MockExecutorServer server, Executor executor, int execId)
+    throws Exception {
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    flow.setExecutionId(execId);
+    flow.setStatus(Status.PREPARING);
+    ExecutionReference ref = new ExecutionReference(execId, executor);
+    loader.uploadExecutableFlow(flow);
+    loader.addActiveExecutableReference(ref);
+    loader.activeFlows.put(execId,
+      new Pair<ExecutionReference, ExecutableFlow>(ref, flow));
+    server.addFlow(execId, Status.RUNNING);
+    return ref;
+  }
+
+  /*
+   * Manager dispatching to one executor server. Executor infos are only
+   * refreshed when the queue processor asks for it, not in the background.
+   */
+  private ExecutorManager createDispatchingManager(MockExecutorLoader loader,
+    MockExecutorServer server) throws Exception {
+    Props props = createMockServerProps();
+    props.put(ExecutorManager.AZKABAN_EXECUTOR_SELECTOR_FILTERS,
+      "StaticRemainingFlowSize");
+    props.put(ExecutorManager.AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_MS, "60000");
+    props.put(ExecutorManager.AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_NUM_FLOW,
+      "100");
+    props.put(ExecutorManager.AZKABAN_EXECUTORINFO_REFRESH_INTERVAL_IN_MS,
+      "60000");
+    props.put(ExecutorManager.AZKABAN_EXECUTORINFO_REFRESH_TIMEOUT_IN_MS,
+      "60000");
+    loader.addExecutor("localhost", server.getPort());
+    ExecutorManager manager =
+      new ExecutorManager(props, loader, new HashMap<String, Alerter>());
+
+    final Executor executor = getActiveExecutor(manager);
+    Assert.assertTrue(waitFor(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return executor.getExecutorInfo() != null;
+      }
+    }, 5000));
+    return manager;
+  }
+
+  private static Executor getActiveExecutor(ExecutorManager manager) {
+    return manager.getAllActiveExecutors().iterator().next();
+  }
+
+  private static int getRemainingFlowCapacity(ExecutorManager manager) {
+    return getActiveExecutor(manager).getExecutorInfo()
+      .getRemainingFlowCapacity();
+  }
+
+  private ExecutableFlow submitFlow(ExecutorManager manager, String flowName,
+    int execId) throws Exception {
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", flowName);
+    flow.setExecutionId(execId);
+    manager.submitExecutableFlow(flow, TestUtils.getTestUser().getUserId());
+    return flow;
+  }
+
+  /* Waits up to timeoutMs for the condition, returns whether it holds */
+  private static boolean waitFor(Callable<Boolean> condition, long timeoutMs)
+    throws Exception {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (!condition.call()) {
+      if (System.currentTimeMillis() > deadline) {
+        return false;
+      }
+      Thread.sleep(50);
+    }
+    return true;
+  }
+
+  private static Callable<Boolean> isDispatched(
+    final MockExecutorServer server, final int execId) {
+    return new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return server.getExecutions().contains(execId);
+      }
+    };
+  }
+
+  private static Callable<Boolean> hasErrors(final ExecutionReference ref,
+    final int numErrors) {
+    return new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return ref.getNumErrors() == numErrors;
+      }
+    };
+  }
+
+  private static Callable<Boolean> hasStatus(final ExecutableFlow flow,
+    final Status status) {
+    return new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return flow.getStatus() == status;
+      }
+    };
+  }
+
   /*
    * Test create an executor manager instance without any executor local or
    * remote
@@ -255,4 +371,223 @@ public class ExecutorManagerTest {
 
     Assert.assertFalse(manager.getRunningFlows().contains(flow1));
   }
+
+  /*
+   * Test executors are updated in parallel: a hung executor doesn't hold up
+   * the updates of the others, and the flows of a failing one are charged an
+   * error and retried later instead of being finalized
+   */
+  @Test
+  public void testParallelExecutorUpdates() throws Exception {
+    MockExecutorServer fastServer1 = new MockExecutorServer(10);
+    MockExecutorServer fastServer2 = new MockExecutorServer(10);
+    MockExecutorServer slowServer = new MockExecutorServer(10);
+    MockExecutorServer failingServer = new MockExecutorServer(10);
+    ExecutorManager manager = null;
+    try {
+      MockExecutorLoader loader = new MockExecutorLoader();
+      ExecutionReference fastRef1 = addRunningFlow(loader, fastServer1,
+        loader.addExecutor("localhost", fastServer1.getPort()), 1);
+      ExecutionReference fastRef2 = addRunningFlow(loader, fastServer2,
+        loader.addExecutor("localhost", fastServer2.getPort()), 2);
+      addRunningFlow(loader, slowServer,
+        loader.addExecutor("localhost", slowServer.getPort()), 3);
+      ExecutionReference failingRef = addRunningFlow(loader, failingServer,
+        loader.addExecutor("localhost", failingServer.getPort()), 4);
+      slowServer.holdUpdates();
+      failingServer.setFailing(true);
+
+      Props props = createMockServerProps();
+      // the hung call is not charged while the test runs
+      props.put(ExecutorManager.AZKABAN_EXECUTOR_UPDATE_TIMEOUT_IN_MS, "60000");
+      long startTime = System.currentTimeMillis();
+      manager =
+        new ExecutorManager(props, loader, new HashMap<String, Alerter>());
+
+      ExecutableFlow fastFlow1 = manager.getExecutableFlow(1);
+      ExecutableFlow fastFlow2 = manager.getExecutableFlow(2);
+      ExecutableFlow slowFlow = manager.getExecutableFlow(3);
+      ExecutableFlow failingFlow = manager.getExecutableFlow(4);
+
+      // the fast executors are updated while the slow one hangs
+      Assert.assertTrue(waitFor(hasStatus(fastFlow1, Status.RUNNING), 5000));
+      Assert.assertTrue(waitFor(hasStatus(fastFlow2, Status.RUNNING), 5000));
+      Assert.assertEquals(1,
+        slowServer.getNumCalls(ConnectorParams.UPDATE_ACTION));
+      Assert.assertEquals(0,
+        slowServer.getNumAnsweredCalls(ConnectorParams.UPDATE_ACTION));
+      Assert.assertEquals(Status.PREPARING, slowFlow.getStatus());
+      Assert.assertEquals(0, fastRef1.getNumErrors());
+      Assert.assertEquals(0, fastRef2.getNumErrors());
+
+      // the failing executor's flow is charged one error and not finalized
+      Assert.assertTrue(waitFor(hasErrors(failingRef, 1), 5000));
+      Assert.assertEquals(Status.PREPARING, failingFlow.getStatus());
+      Assert.assertTrue(manager.getRunningFlows().contains(failingFlow));
+      Assert.assertTrue(failingRef.getNextCheckTime() >= startTime + 10000);
+
+      // nor is it asked again before the error threshold runs out
+      Thread.sleep(2000);
+      Assert.assertEquals(1,
+        failingServer.getNumCalls(ConnectorParams.UPDATE_ACTION));
+      Assert.assertEquals(1, failingRef.getNumErrors());
+
+      slowServer.releaseUpdates();
+      Assert.assertTrue(waitFor(hasStatus(slowFlow, Status.RUNNING), 5000));
+    } finally {
+      if (manager != null) {
+        manager.shutdown();
+      }
+      fastServer1.stop();
+      fastServer2.stop();
+      slowServer.stop();
+      failingServer.stop();
+    }
+  }
+
+  /*
+   * Counts the update calls a long polling manager makes to the executor
+   * server in 2.5s, after the flow's first update. Held calls are answered
+   * after 300ms, the minimum poll interval is 1s.
+   */
+  private int countLongPollUpdates(MockExecutorServer server)
+    throws Exception {
+    ExecutorManager manager = null;
+    try {
+      MockExecutorLoader loader = new MockExecutorLoader();
+      addRunningFlow(loader, server,
+        loader.addExecutor("localhost", server.getPort()), 1);
+      Props props = createMockServerProps();
+      props.put(ExecutorManager.AZKABAN_EXECUTOR_UPDATE_LONGPOLL_IN_MS, "300");
+      props.put(ExecutorManager.AZKABAN_EXECUTOR_UPDATE_MIN_INTERVAL_IN_MS,
+        "1000");
+      manager =
+        new ExecutorManager(props, loader, new HashMap<String, Alerter>());
+
+      Assert.assertTrue(waitFor(
+        hasStatus(manager.getExecutableFlow(1), Status.RUNNING), 5000));
+      int calls = server.getNumCalls(ConnectorParams.UPDATE_ACTION);
+      Thread.sleep(2500);
+      return server.getNumCalls(ConnectorParams.UPDATE_ACTION) - calls;
+    } finally {
+      if (manager != null) {
+        manager.shutdown();
+      }
+      server.stop();
+    }
+  }
+
+  /* Test an executor that held the update call is asked again right away */
+  @Test
+  public void testLongPollWaitingExecutor() throws Exception {
+    MockExecutorServer server = new MockExecutorServer(10);
+    int calls = countLongPollUpdates(server);
+    // one call every 300ms, not one every second
+    Assert.assertTrue("Only " + calls + " update calls", calls >= 5);
+  }
+
+  /*
+   * Test an executor that answers right away, such as one without long
+   * polling, is polled at the minimum interval instead of in a busy loop
+   */
+  @Test
+  public void testLongPollNonWaitingExecutor() throws Exception {
+    MockExecutorServer server = new MockExecutorServer(10);
+    server.setLongPolling(false);
+    int calls = countLongPollUpdates(server);
+    Assert.assertTrue("No update calls", calls >= 1);
+    Assert.assertTrue(calls + " update calls", calls <= 4);
+  }
+
+  /*
+   * Dispatches two flows to an executor with room for one. The second flow
+   * must wait for the first one to finish with the given status.
+   */
+  private void assertFinishReleasesCapacity(Status finalStatus)
+    throws Exception {
+    final MockExecutorServer server = new MockExecutorServer(1);
+    ExecutorManager manager = null;
+    try {
+      MockExecutorLoader loader = new MockExecutorLoader();
+      manager = createDispatchingManager(loader, server);
+      // refreshes don't return, so only the reservation tells the processor
+      // the executor is full
+      server.holdStatistics();
+      submitFlow(manager, "exec1", 1);
+      submitFlow(manager, "exec2", 2);
+      manager.enableQueueProcessorThread();
+
+      Assert.assertTrue(waitFor(isDispatched(server, 1), 5000));
+      Thread.sleep(1000);
+      Assert.assertEquals(0, getRemainingFlowCapacity(manager));
+      Assert.assertEquals(Collections.singleton(1), server.getExecutions());
+      Assert.assertEquals("[2]", manager.getQueuedFlowIds());
+
+      // a refresh while the first flow runs finds no room either
+      server.releaseStatistics();
+      Assert.assertTrue(waitFor(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          return server.getNumAnsweredCalls(MockExecutorServer.STATISTICS)
+            == server.getNumCalls(MockExecutorServer.STATISTICS);
+        }
+      }, 5000));
+      Thread.sleep(500);
+      Assert.assertEquals("[2]", manager.getQueuedFlowIds());
+
+      // without being woken up the processor would wait out the 60s refresh
+      // window
+      server.setStatus(1, finalStatus);
+      Assert.assertTrue(waitFor(isDispatched(server, 2), 15000));
+      Assert.assertEquals("[]", manager.getQueuedFlowIds());
+    } finally {
+      if (manager != null) {
+        manager.shutdown();
+      }
+      server.stop();
+    }
+  }
+
+  /* Test a reservation is released when its flow succeeds */
+  @Test
+  public void testReservationReleasedOnFinish() throws Exception {
+    assertFinishReleasesCapacity(Status.SUCCEEDED);
+  }
+
+  /* Test a reservation is released when its flow fails */
+  @Test
+  public void testReservationReleasedOnFailure() throws Exception {
+    assertFinishReleasesCapacity(Status.FAILED);
+  }
+
+  /* Test a failed dispatch doesn't keep capacity reserved */
+  @Test
+  public void testDispatchFailureKeepsCapacity() throws Exception {
+    MockExecutorServer server = new MockExecutorServer(1);
+    ExecutorManager manager = null;
+    try {
+      MockExecutorLoader loader = new MockExecutorLoader();
+      manager = createDispatchingManager(loader, server);
+      // no refresh can undo a reservation
+      server.holdStatistics();
+      server.setFailingExecutions(true);
+      ExecutableFlow flow1 = submitFlow(manager, "exec1", 1);
+      manager.enableQueueProcessorThread();
+
+      // the only executor failed it, so the flow is failed
+      Assert.assertTrue(waitFor(hasStatus(flow1, Status.FAILED), 5000));
+      Assert.assertEquals(1, getRemainingFlowCapacity(manager));
+      Assert.assertTrue(server.getExecutions().isEmpty());
+
+      server.setFailingExecutions(false);
+      submitFlow(manager, "exec2", 2);
+      Assert.assertTrue(waitFor(isDispatched(server, 2), 5000));
+      Assert.assertEquals(0, getRemainingFlowCapacity(manager));
+    } finally {
+      if (manager != null) {
+        manager.shutdown();
+      }
+      server.stop();
+    }
+  }
 }
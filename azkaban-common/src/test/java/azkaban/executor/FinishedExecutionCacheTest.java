@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.alert.Alerter;
+import azkaban.utils.JSONUtils;
+import azkaban.utils.Props;
+import azkaban.utils.TestUtils;
+
+public class FinishedExecutionCacheTest {
+  private static ExecutableFlow createFlow(int execId, Status status)
+      throws Exception {
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    flow.setExecutionId(execId);
+    flow.setStatus(status);
+    return flow;
+  }
+
+  /* Test only finished flows are cached, and hits and misses are counted */
+  @Test
+  public void testFinishedOnly() throws Exception {
+    FinishedExecutionCache cache = new FinishedExecutionCache(1024 * 1024);
+    ExecutableFlow running = createFlow(1, Status.RUNNING);
+    ExecutableFlow finished = createFlow(2, Status.SUCCEEDED);
+    cache.put(running);
+    cache.put(finished);
+
+    Assert.assertNull(cache.get(1));
+    Assert.assertSame(finished, cache.get(2));
+    Assert.assertSame(finished, cache.get(2));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(2, cache.getStats().hitCount());
+    Assert.assertEquals(1, cache.getStats().missCount());
+
+    cache.invalidate(2);
+    Assert.assertNull(cache.get(2));
+  }
+
+  /* Test flows are evicted by the size of their JSON */
+  @Test
+  public void testEvictedByWeight() throws Exception {
+    ExecutableFlow flow = createFlow(1, Status.FAILED);
+    int weight = JSONUtils.toJSON(flow.toObject()).length();
+    // the weight is split among the segments of the cache
+    FinishedExecutionCache cache = new FinishedExecutionCache(weight * 40);
+    for (int execId = 1; execId <= 100; ++execId) {
+      cache.put(createFlow(execId, Status.FAILED));
+      cache.get(1);
+    }
+
+    Assert.assertTrue(cache.size() <= 40);
+    Assert.assertEquals(100 - cache.size(), cache.getStats().evictionCount());
+    // the most recently used flows stay
+    Assert.assertNotNull(cache.get(1));
+    Assert.assertNotNull(cache.get(100));
+  }
+
+  /* Test the manager only fetches a finished flow once */
+  @Test
+  public void testExecutorManagerReadThrough() throws Exception {
+    Props props = new Props();
+    props.put("executor.port", 12345);
+    MockExecutorLoader loader = new MockExecutorLoader();
+    ExecutorManager manager =
+        new ExecutorManager(props, loader, new HashMap<String, Alerter>());
+    loader.uploadExecutableFlow(createFlow(5, Status.KILLED));
+
+    ExecutableFlow flow = manager.getExecutableFlow(5);
+    Assert.assertEquals(Status.KILLED, flow.getStatus());
+    Assert.assertSame(flow, manager.getExecutableFlow(5));
+    Assert.assertEquals(1, manager.getFinishedExecutionCache().getStats()
+        .hitCount());
+    Assert.assertEquals(1, manager.getFinishedExecutionCache().getStats()
+        .missCount());
+  }
+}
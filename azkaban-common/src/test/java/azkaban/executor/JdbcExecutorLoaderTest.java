@@ -22,11 +22,14 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
@@ -38,7 +41,9 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import azkaban.database.DataSourceUtils;
 import azkaban.executor.ExecutorLogEvent.EventType;
@@ -52,6 +57,9 @@ import azkaban.utils.Props;
 import azkaban.utils.TestUtils;
 
 public class JdbcExecutorLoaderTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private static boolean testDBExists;
   /* Directory with serialized description of test flows */
   private static final String UNIT_BASE_DIR =
@@ -221,6 +229,15 @@ public class JdbcExecutorLoaderTest {
       return;
     }
 
+    try {
+      runner.update(connection, "DELETE FROM execution_flow_updates");
+    } catch (SQLException e) {
+      e.printStackTrace();
+      testDBExists = false;
+      DbUtils.closeQuietly(connection);
+      return;
+    }
+
     DbUtils.closeQuietly(connection);
   }
 
@@ -252,6 +269,65 @@ public class JdbcExecutorLoaderTest {
         new HashSet<String>(fetchFlow.getEndNodes()));
   }
 
+  /* Test concurrent submits get distinct ids, with and without id blocks */
+  @Test
+  public void testConcurrentUploadExecutionFlows() throws Exception {
+    if (!isTestSetup()) {
+      return;
+    }
+    Props props = createLoaderProps(false, null);
+    assertConcurrentUploads(new JdbcExecutorLoader(props));
+    props.put(JdbcExecutorLoader.EXECUTION_ID_BLOCK_SIZE, 7);
+    // two loaders, as two web servers would
+    assertConcurrentUploads(new JdbcExecutorLoader(props),
+        new JdbcExecutorLoader(props));
+  }
+
+  private void assertConcurrentUploads(final ExecutorLoader... loaders)
+      throws Exception {
+    final int numFlows = 20;
+    final List<ExecutableFlow> flows =
+        Collections.synchronizedList(new ArrayList<ExecutableFlow>());
+    final List<Exception> errors =
+        Collections.synchronizedList(new ArrayList<Exception>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 4; ++i) {
+      final ExecutorLoader loader = loaders[i % loaders.length];
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int j = 0; j < numFlows; ++j) {
+              ExecutableFlow flow =
+                  TestUtils.createExecutableFlow("exectest1", "exec1");
+              loader.uploadExecutableFlow(flow);
+              flows.add(flow);
+            }
+          } catch (Exception e) {
+            errors.add(e);
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertEquals(new ArrayList<Exception>(), errors);
+    Set<Integer> execIds = new HashSet<Integer>();
+    for (ExecutableFlow flow : flows) {
+      Assert.assertTrue(execIds.add(flow.getExecutionId()));
+      ExecutableFlow fetchFlow =
+          loaders[0].fetchExecutableFlow(flow.getExecutionId());
+      Assert.assertEquals(Status.PREPARING, fetchFlow.getStatus());
+      Assert.assertEquals(flow.getFlowId(), fetchFlow.getFlowId());
+    }
+    Assert.assertEquals(threads.size() * numFlows, execIds.size());
+  }
+
   @Test
   public void testUpdateExecutionFlows() throws Exception {
     if (!isTestSetup()) {
@@ -288,6 +364,143 @@ public class JdbcExecutorLoaderTest {
         new HashSet<String>(fetchFlow.getEndNodes()));
   }
 
+  /* Test summaries carry the same fields as the full flows */
+  @Test
+  public void testFetchFlowHistorySummaries() throws Exception {
+    if (!isTestSetup()) {
+      return;
+    }
+
+    ExecutorLoader loader = createLoader();
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    loader.uploadExecutableFlow(flow);
+    flow.setStatus(Status.SUCCEEDED);
+    flow.setEndTime(System.currentTimeMillis());
+    loader.updateExecutableFlow(flow);
+
+    List<ExecutionSummary> summaries =
+        loader.fetchFlowHistorySummaries(flow.getProjectId(),
+            flow.getFlowId(), 0, 10);
+    Assert.assertEquals(1, summaries.size());
+    ExecutionSummary summary = summaries.get(0);
+    Assert.assertEquals(flow.getExecutionId(), summary.getExecutionId());
+    Assert.assertEquals(flow.getProjectId(), summary.getProjectId());
+    Assert.assertEquals(flow.getVersion(), summary.getVersion());
+    Assert.assertEquals(flow.getFlowId(), summary.getFlowId());
+    Assert.assertEquals(Status.SUCCEEDED, summary.getStatus());
+    Assert.assertEquals(flow.getSubmitUser(), summary.getSubmitUser());
+    Assert.assertEquals(flow.getStartTime(), summary.getStartTime());
+    Assert.assertEquals(flow.getEndTime(), summary.getEndTime());
+
+    Assert.assertEquals(1,
+        loader.fetchFlowHistorySummaries(flow.getProjectId(), flow.getFlowId(),
+            0, 10, Status.SUCCEEDED).size());
+    Assert.assertTrue(loader.fetchFlowHistorySummaries(flow.getProjectId(),
+        flow.getFlowId(), 0, 10, Status.FAILED).isEmpty());
+    Assert.assertEquals(1, loader.fetchFlowHistorySummaries(null,
+        flow.getFlowId(), null, 0, -1, -1, 0, 10).size());
+  }
+
+  /* Test keyset paging and resolved IN filters */
+  @Test
+  public void testFetchFlowHistorySummariesBefore() throws Exception {
+    if (!isTestSetup()) {
+      return;
+    }
+
+    ExecutorLoader loader = createLoader();
+    ExecutableFlow flow1 = TestUtils.createExecutableFlow("exectest1", "exec1");
+    ExecutableFlow flow2 = TestUtils.createExecutableFlow("exectest1", "exec1");
+    loader.uploadExecutableFlow(flow1);
+    loader.uploadExecutableFlow(flow2);
+
+    ExecutionHistoryFilter filter =
+        new ExecutionHistoryFilter(null, null, null, 0, -1, -1);
+    List<ExecutionSummary> page =
+        loader.fetchFlowHistorySummaries(filter, 0, 0, 1);
+    Assert.assertEquals(flow2.getExecutionId(), page.get(0).getExecutionId());
+    page =
+        loader.fetchFlowHistorySummaries(filter, page.get(0).getExecutionId(),
+            0, 1);
+    Assert.assertEquals(flow1.getExecutionId(), page.get(0).getExecutionId());
+
+    filter = new ExecutionHistoryFilter(null, "member", null, 0, -1, -1);
+    filter.setFlowIds(Arrays.asList(flow1.getFlowId()));
+    Assert.assertEquals(2,
+        loader.fetchFlowHistorySummaries(filter, 0, 0, 10).size());
+  }
+
+  /* Test deltas are merged on fetch and folded in by a full update */
+  @Test
+  public void testUpdateExecutionFlowDeltas() throws Exception {
+    if (!isTestSetup()) {
+      return;
+    }
+
+    ExecutorLoader loader = createLoader(true);
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    loader.uploadExecutableFlow(flow);
+    long lastUpdateTime = flow.getUpdateTime();
+
+    ExecutableNode node = flow.getExecutableNodes().get(0);
+    node.setStatus(Status.RUNNING);
+    node.setStartTime(lastUpdateTime + 1);
+    node.setUpdateTime(lastUpdateTime + 1);
+    flow.setStatus(Status.RUNNING);
+    flow.setUpdateTime(lastUpdateTime + 1);
+    loader.updateExecutableFlowDelta(flow, lastUpdateTime);
+
+    node.setStatus(Status.SUCCEEDED);
+    node.setEndTime(lastUpdateTime + 2);
+    node.setUpdateTime(lastUpdateTime + 2);
+    flow.setUpdateTime(lastUpdateTime + 2);
+    loader.updateExecutableFlowDelta(flow, lastUpdateTime + 1);
+
+    ExecutableFlow fetchFlow =
+        loader.fetchExecutableFlow(flow.getExecutionId());
+    ExecutableNode fetchNode = fetchFlow.getExecutableNode(node.getId());
+    Assert.assertEquals(Status.RUNNING, fetchFlow.getStatus());
+    Assert.assertEquals(Status.SUCCEEDED, fetchNode.getStatus());
+    Assert.assertEquals(lastUpdateTime + 1, fetchNode.getStartTime());
+    Assert.assertEquals(lastUpdateTime + 2, fetchNode.getEndTime());
+
+    fetchFlow.setStatus(Status.SUCCEEDED);
+    loader.updateExecutableFlow(fetchFlow);
+    fetchFlow = loader.fetchExecutableFlow(flow.getExecutionId());
+    Assert.assertEquals(Status.SUCCEEDED, fetchFlow.getStatus());
+    Assert.assertEquals(Status.SUCCEEDED,
+        fetchFlow.getExecutableNode(node.getId()).getStatus());
+  }
+
+  /* Test deltas are merged into the active flows */
+  @Test
+  public void testActiveFlowDeltas() throws Exception {
+    if (!isTestSetup()) {
+      return;
+    }
+
+    ExecutorLoader loader = createLoader(true);
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    loader.uploadExecutableFlow(flow);
+    Executor executor = new Executor(2, "test", 1, true);
+    loader.addActiveExecutableReference(new ExecutionReference(flow
+        .getExecutionId(), executor));
+    long lastUpdateTime = flow.getUpdateTime();
+
+    ExecutableNode node = flow.getExecutableNodes().get(0);
+    node.setStatus(Status.RUNNING);
+    node.setUpdateTime(lastUpdateTime + 1);
+    flow.setStatus(Status.RUNNING);
+    flow.setUpdateTime(lastUpdateTime + 1);
+    loader.updateExecutableFlowDelta(flow, lastUpdateTime);
+
+    ExecutableFlow fetchFlow =
+        loader.fetchActiveFlows().get(flow.getExecutionId()).getSecond();
+    Assert.assertEquals(Status.RUNNING, fetchFlow.getStatus());
+    Assert.assertEquals(Status.RUNNING,
+        fetchFlow.getExecutableNode(node.getId()).getStatus());
+  }
+
   @Test
   public void testUploadExecutableNode() throws Exception {
     if (!isTestSetup()) {
@@ -890,6 +1103,79 @@ public class JdbcExecutorLoaderTest {
         logsResult6.getLength(), 185493);
   }
 
+  /* Test ranges are read across appended chunks */
+  @Test
+  public void testAppendLogChunks() throws Exception {
+    if (!isTestSetup()) {
+      return;
+    }
+
+    ExecutorLoader loader = createLoader();
+    String log = "0123456789abcdefghij";
+    byte[] bytes = log.getBytes("UTF-8");
+    loader.appendLogChunks(Arrays.asList(new ExecutionLogChunk(1,
+        "streamed", 0, 0, Arrays.copyOfRange(bytes, 0, 10))));
+    loader.appendLogChunks(Arrays.asList(new ExecutionLogChunk(1,
+        "streamed", 0, 10, Arrays.copyOfRange(bytes, 10, 15)),
+        new ExecutionLogChunk(1, "streamed", 0, 15, Arrays.copyOfRange(bytes,
+            15, 20))));
+
+    Assert.assertEquals(log, loader.fetchLogs(1, "streamed", 0, 0, 100)
+        .getData());
+    LogData data = loader.fetchLogs(1, "streamed", 0, 8, 9);
+    Assert.assertEquals(8, data.getOffset());
+    Assert.assertEquals("89abcdefg", data.getData());
+    Assert.assertEquals("abcde", loader.fetchLogs(1, "streamed", 0, 10, 5)
+        .getData());
+
+    loader.removeExecutionLogs(1, "streamed", 0);
+    Assert.assertNull(loader.fetchLogs(1, "streamed", 0, 0, 100));
+  }
+
+  /* Test archived executions keep their summary and are fetched back */
+  @Test
+  public void testArchiveExecutions() throws Exception {
+    if (!isTestSetup()) {
+      return;
+    }
+
+    ExecutorLoader loader = createLoader(false, temp.newFolder("archive"));
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    loader.uploadExecutableFlow(flow);
+    int execId = flow.getExecutionId();
+
+    ExecutableNode node = flow.getExecutableNode("job10");
+    node.setStartTime(100);
+    Props inputProps = new Props();
+    inputProps.put("test", "input");
+    loader.uploadExecutableNode(node, inputProps);
+    loader.appendLogChunks(Arrays.asList(new ExecutionLogChunk(execId,
+        "job10", 0, 0, "archived log".getBytes("UTF-8"))));
+    flow.setStatus(Status.SUCCEEDED);
+    flow.setEndTime(1000);
+    loader.updateExecutableFlow(flow);
+
+    Assert.assertEquals(0, loader.archiveExecutions(1000, 10));
+    Assert.assertEquals(1, loader.archiveExecutions(2000, 10));
+    Assert.assertEquals(0, loader.archiveExecutions(2000, 10));
+
+    // the rows are gone, the fetches fall back to the archive
+    Assert.assertEquals(0,
+        loader.fetchNumExecutableNodes(flow.getProjectId(), "job10"));
+    ExecutableFlow fetchFlow = loader.fetchExecutableFlow(execId);
+    Assert.assertEquals(Status.SUCCEEDED, fetchFlow.getStatus());
+    Assert.assertEquals(1000, fetchFlow.getEndTime());
+    Assert.assertEquals(100, loader.fetchJobInfo(execId, "job10", 0)
+        .getStartTime());
+    Assert.assertEquals("input",
+        loader.fetchExecutionJobInputProps(execId, "job10").get("test"));
+    LogData data = loader.fetchLogs(execId, "job10", 0, 9, 10);
+    Assert.assertEquals(9, data.getOffset());
+    Assert.assertEquals("log", data.getData());
+
+    Assert.assertEquals(1, loader.fetchFlowHistorySummaries(0, 10).size());
+  }
+
   @SuppressWarnings("static-access")
   @Ignore @Test
   public void testRemoveExecutionLogsByTime() throws ExecutorManagerException,
@@ -929,7 +1215,28 @@ public class JdbcExecutorLoaderTest {
   }
 
   private ExecutorLoader createLoader() {
+    return createLoader(false);
+  }
+
+  private ExecutorLoader createLoader(boolean incrementalFlowUpdates) {
+    return createLoader(incrementalFlowUpdates, null);
+  }
+
+  private ExecutorLoader createLoader(boolean incrementalFlowUpdates,
+      File archiveDir) {
+    return new JdbcExecutorLoader(createLoaderProps(incrementalFlowUpdates,
+        archiveDir));
+  }
+
+  private Props createLoaderProps(boolean incrementalFlowUpdates,
+      File archiveDir) {
     Props props = new Props();
+    props.put(JdbcExecutorLoader.INCREMENTAL_FLOW_UPDATES,
+        String.valueOf(incrementalFlowUpdates));
+    if (archiveDir != null) {
+      props.put(JdbcExecutorLoader.EXECUTION_ARCHIVE_DIR,
+          archiveDir.getAbsolutePath());
+    }
     props.put("database.type", "mysql");
 
     props.put("mysql.host", host);
@@ -938,8 +1245,7 @@ public class JdbcExecutorLoaderTest {
     props.put("mysql.database", database);
     props.put("mysql.password", password);
     props.put("mysql.numconnections", numConnections);
-
-    return new JdbcExecutorLoader(props);
+    return props;
   }
 
   private boolean isTestSetup() {
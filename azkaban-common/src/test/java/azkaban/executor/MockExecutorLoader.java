@@ -23,16 +23,18 @@ import azkaban.utils.Props;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MockExecutorLoader implements ExecutorLoader {
 
-  HashMap<Integer, Integer> executionExecutorMapping =
-      new HashMap<Integer, Integer>();
-  HashMap<Integer, ExecutableFlow> flows =
-      new HashMap<Integer, ExecutableFlow>();
+  // concurrent, the threads of an ExecutorManager use them too
+  Map<Integer, Integer> executionExecutorMapping =
+      new ConcurrentHashMap<Integer, Integer>();
+  Map<Integer, ExecutableFlow> flows =
+      new ConcurrentHashMap<Integer, ExecutableFlow>();
   HashMap<String, ExecutableNode> nodes = new HashMap<String, ExecutableNode>();
-  HashMap<Integer, ExecutionReference> refs =
-      new HashMap<Integer, ExecutionReference>();
+  Map<Integer, ExecutionReference> refs =
+      new ConcurrentHashMap<Integer, ExecutionReference>();
   int flowUpdateCount = 0;
   HashMap<String, Integer> jobUpdateCount = new HashMap<String, Integer>();
   Map<Integer, Pair<ExecutionReference, ExecutableFlow>> activeFlows =
@@ -90,6 +92,18 @@ public class MockExecutorLoader implements ExecutorLoader {
 
   }
 
+  @Override
+  public void appendLogChunks(List<ExecutionLogChunk> chunks)
+      throws ExecutorManagerException {
+
+  }
+
+  @Override
+  public void removeExecutionLogs(int execId, String name, int attempt)
+      throws ExecutorManagerException {
+
+  }
+
   @Override
   public void updateExecutableFlow(ExecutableFlow flow)
       throws ExecutorManagerException {
@@ -99,6 +113,16 @@ public class MockExecutorLoader implements ExecutorLoader {
     flowUpdateCount++;
   }
 
+  @Override
+  public void updateExecutableFlowDelta(ExecutableFlow flow,
+      long lastUpdateTime) throws ExecutorManagerException {
+    ExecutableFlow toUpdate = flows.get(flow.getExecutionId());
+
+    toUpdate.applyUpdateObject((Map<String, Object>) flow
+        .toUpdateObject(lastUpdateTime));
+    flowUpdateCount++;
+  }
+
   @Override
   public void uploadExecutableNode(ExecutableNode node, Props inputParams)
       throws ExecutorManagerException {
@@ -128,6 +152,22 @@ public class MockExecutorLoader implements ExecutorLoader {
     flowUpdateCount++;
   }
 
+  @Override
+  public void writeExecutableNodes(List<ExecutableNodeRecord> uploads,
+      List<ExecutableNodeRecord> updates) throws ExecutorManagerException {
+    for (ExecutableNodeRecord record : uploads) {
+      jobUpdateCount.put(record.getJobId(), 1);
+    }
+    for (ExecutableNodeRecord record : updates) {
+      Integer value = jobUpdateCount.get(record.getJobId());
+      if (value == null) {
+        throw new ExecutorManagerException("The node has not been uploaded");
+      }
+      jobUpdateCount.put(record.getJobId(), ++value);
+      flowUpdateCount++;
+    }
+  }
+
   @Override
   public int fetchNumExecutableFlows(int projectId, String flowId)
       throws ExecutorManagerException {
@@ -184,6 +224,85 @@ public class MockExecutorLoader implements ExecutorLoader {
     return null;
   }
 
+  @Override
+  public List<ExecutionSummary> fetchFlowHistorySummaries(int skip, int num)
+      throws ExecutorManagerException {
+    return fetchFlowHistorySummaries(-1, null, skip, num, null);
+  }
+
+  @Override
+  public List<ExecutionSummary> fetchFlowHistorySummaries(int projectId,
+      String flowId, int skip, int num) throws ExecutorManagerException {
+    return fetchFlowHistorySummaries(projectId, flowId, skip, num, null);
+  }
+
+  @Override
+  public List<ExecutionSummary> fetchFlowHistorySummaries(int projectId,
+      String flowId, int skip, int num, Status status)
+      throws ExecutorManagerException {
+    List<Integer> execIds = new ArrayList<Integer>(flows.keySet());
+    Collections.sort(execIds, Collections.reverseOrder());
+    List<ExecutionSummary> summaries = new ArrayList<ExecutionSummary>();
+    for (Integer execId : execIds) {
+      ExecutableFlow flow = flows.get(execId);
+      if ((projectId < 0 || flow.getProjectId() == projectId)
+          && (flowId == null || flowId.equals(flow.getFlowId()))
+          && (status == null || status == flow.getStatus())) {
+        summaries.add(ExecutionSummary.fromExecutableFlow(flow));
+      }
+    }
+    return summaries.subList(Math.min(skip, summaries.size()),
+        Math.min(skip + num, summaries.size()));
+  }
+
+  @Override
+  public List<ExecutionSummary> fetchFlowHistorySummaries(
+      String projectContains, String flowContains, String userNameContains,
+      int status, long startData, long endData, int skip, int num)
+      throws ExecutorManagerException {
+    // TODO Auto-generated method stub
+    return null;
+  }
+
+  @Override
+  public List<ExecutionSummary> fetchFlowHistorySummaries(
+      ExecutionHistoryFilter filter, int beforeExecId, int skip, int num)
+      throws ExecutorManagerException {
+    // TODO Auto-generated method stub
+    return null;
+  }
+
+  @Override
+  public Map<Integer, String> fetchProjectNames()
+      throws ExecutorManagerException {
+    Map<Integer, String> names = new HashMap<Integer, String>();
+    for (ExecutableFlow flow : flows.values()) {
+      names.put(flow.getProjectId(), flow.getProjectName());
+    }
+    return names;
+  }
+
+  @Override
+  public List<String> fetchDistinctFlowIds() throws ExecutorManagerException {
+    Set<String> flowIds = new HashSet<String>();
+    for (ExecutableFlow flow : flows.values()) {
+      flowIds.add(flow.getFlowId());
+    }
+    return new ArrayList<String>(flowIds);
+  }
+
+  @Override
+  public List<String> fetchDistinctSubmitUsers()
+      throws ExecutorManagerException {
+    Set<String> users = new HashSet<String>();
+    for (ExecutableFlow flow : flows.values()) {
+      if (flow.getSubmitUser() != null) {
+        users.add(flow.getSubmitUser());
+      }
+    }
+    return new ArrayList<String>(users);
+  }
+
   @Override
   public List<ExecutableJobInfo> fetchJobHistory(int projectId, String jobId,
       int skip, int size) throws ExecutorManagerException {
@@ -233,6 +352,12 @@ public class MockExecutorLoader implements ExecutorLoader {
     return 0;
   }
 
+  @Override
+  public int archiveExecutions(long endTimeBefore, int limit)
+      throws ExecutorManagerException {
+    return 0;
+  }
+
   @Override
   public List<ExecutableFlow> fetchFlowHistory(int projectId, String flowId,
       int skip, int num, Status status) throws ExecutorManagerException {
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.ServletHolder;
+
+import azkaban.utils.JSONUtils;
+
+/**
+ * Executor server for tests, answering the calls of the ExecutorManager from
+ * memory. Dispatched flows keep running until the test changes their status.
+ */
+public class MockExecutorServer {
+  public static final String STATISTICS = "serverStatistics";
+
+  private final Server server;
+  private final int maxFlows;
+  // execution id -> status and update time of the flows on this executor
+  private final Map<Integer, Status> flowStatuses =
+      new HashMap<Integer, Status>();
+  private final Map<Integer, Long> flowUpdateTimes =
+      new HashMap<Integer, Long>();
+  // action -> number of calls received and answered
+  private final ConcurrentHashMap<String, AtomicInteger> receivedCalls =
+      new ConcurrentHashMap<String, AtomicInteger>();
+  private final ConcurrentHashMap<String, AtomicInteger> answeredCalls =
+      new ConcurrentHashMap<String, AtomicInteger>();
+
+  private volatile boolean longPolling = true;
+  private volatile boolean failing = false;
+  private volatile boolean failingExecutions = false;
+  private volatile boolean stopped = false;
+  private volatile CountDownLatch updateGate = new CountDownLatch(0);
+  private volatile CountDownLatch statisticsGate = new CountDownLatch(0);
+
+  public MockExecutorServer(int maxFlows) throws Exception {
+    this.maxFlows = maxFlows;
+    server = new Server(0);
+    Context context = new Context(server, "/", Context.SESSIONS);
+    context.addServlet(new ServletHolder(new MockServlet()), "/*");
+    server.start();
+  }
+
+  public int getPort() {
+    return server.getConnectors()[0].getLocalPort();
+  }
+
+  public void stop() throws Exception {
+    stopped = true;
+    updateGate.countDown();
+    statisticsGate.countDown();
+    synchronized (this) {
+      notifyAll();
+    }
+    server.stop();
+  }
+
+  /* Puts a flow on this executor, as if it had been dispatched earlier */
+  public synchronized void addFlow(int execId, Status status) {
+    flowStatuses.put(execId, status);
+    flowUpdateTimes.put(execId, System.currentTimeMillis());
+  }
+
+  /* Changes the status of a flow, waking up held update calls */
+  public synchronized void setStatus(int execId, Status status) {
+    flowStatuses.put(execId, status);
+    flowUpdateTimes.put(execId, System.currentTimeMillis());
+    notifyAll();
+  }
+
+  public synchronized Set<Integer> getExecutions() {
+    return new HashSet<Integer>(flowStatuses.keySet());
+  }
+
+  public synchronized int getRemainingFlowCapacity() {
+    int running = 0;
+    for (Status status : flowStatuses.values()) {
+      if (!Status.isStatusFinished(status)) {
+        running++;
+      }
+    }
+    return maxFlows - running;
+  }
+
+  /* Older executors answer update calls right away without a wait time */
+  public void setLongPolling(boolean longPolling) {
+    this.longPolling = longPolling;
+  }
+
+  /* Answers every call with an error */
+  public void setFailing(boolean failing) {
+    this.failing = failing;
+  }
+
+  /* Answers execute calls with an error */
+  public void setFailingExecutions(boolean failingExecutions) {
+    this.failingExecutions = failingExecutions;
+  }
+
+  /* Holds update calls until releaseUpdates is called */
+  public void holdUpdates() {
+    updateGate = new CountDownLatch(1);
+  }
+
+  public void releaseUpdates() {
+    updateGate.countDown();
+  }
+
+  /* Holds statistics calls until releaseStatistics is called */
+  public void holdStatistics() {
+    statisticsGate = new CountDownLatch(1);
+  }
+
+  public void releaseStatistics() {
+    statisticsGate.countDown();
+  }
+
+  public int getNumCalls(String action) {
+    return getCount(receivedCalls, action);
+  }
+
+  public int getNumAnsweredCalls(String action) {
+    return getCount(answeredCalls, action);
+  }
+
+  private static int getCount(Map<String, AtomicInteger> counts,
+      String action) {
+    AtomicInteger count = counts.get(action);
+    return count == null ? 0 : count.get();
+  }
+
+  private static void count(ConcurrentHashMap<String, AtomicInteger> counts,
+      String action) {
+    counts.putIfAbsent(action, new AtomicInteger());
+    counts.get(action).incrementAndGet();
+  }
+
+  private synchronized Map<String, Object> getStatistics() {
+    Map<String, Object> statistics = new HashMap<String, Object>();
+    statistics.put("remainingFlowCapacity", getRemainingFlowCapacity());
+    statistics.put("numberOfAssignedFlows",
+        maxFlows - getRemainingFlowCapacity());
+    statistics.put("remainingMemoryInMB", 64 * 1024);
+    statistics.put("remainingMemoryPercent", 100);
+    return statistics;
+  }
+
+  private Map<String, Object> execute(HttpServletRequest req) {
+    Map<String, Object> respMap = new HashMap<String, Object>();
+    if (failingExecutions) {
+      respMap.put(ConnectorParams.RESPONSE_ERROR, "Failed to execute");
+    } else {
+      addFlow(Integer.valueOf(req.getParameter(ConnectorParams.EXECID_PARAM)),
+          Status.RUNNING);
+      respMap.put(ConnectorParams.STATUS_PARAM,
+          ConnectorParams.RESPONSE_SUCCESS);
+    }
+    return respMap;
+  }
+
+  /*
+   * Answers the flows updated since the times the caller has. Like the
+   * executor, a long polling call without updates is held until a flow
+   * changes or the wait time asked for runs out.
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> update(HttpServletRequest req)
+      throws IOException, InterruptedException {
+    List<Object> execIds =
+        (List<Object>) JSONUtils.parseJSONFromString(req
+            .getParameter(ConnectorParams.EXEC_ID_LIST_PARAM));
+    List<Object> updateTimes =
+        (List<Object>) JSONUtils.parseJSONFromString(req
+            .getParameter(ConnectorParams.UPDATE_TIME_LIST_PARAM));
+    String waitTimeParam =
+        req.getParameter(ConnectorParams.UPDATE_WAIT_TIME_PARAM);
+    long waitTime =
+        longPolling && waitTimeParam != null ? Long.valueOf(waitTimeParam) : 0;
+
+    long startTime = System.currentTimeMillis();
+    List<Object> updates;
+    synchronized (this) {
+      updates = getUpdates(execIds, updateTimes);
+      long remaining = waitTime;
+      while (updates.isEmpty() && remaining > 0 && !stopped) {
+        wait(remaining);
+        updates = getUpdates(execIds, updateTimes);
+        remaining = startTime + waitTime - System.currentTimeMillis();
+      }
+    }
+
+    Map<String, Object> respMap = new HashMap<String, Object>();
+    respMap.put(ConnectorParams.RESPONSE_UPDATED_FLOWS, updates);
+    if (longPolling) {
+      respMap.put(ConnectorParams.RESPONSE_UPDATE_WAIT_TIME,
+          System.currentTimeMillis() - startTime);
+    }
+    return respMap;
+  }
+
+  /* caller holds the lock on this */
+  private List<Object> getUpdates(List<Object> execIds,
+      List<Object> updateTimes) {
+    List<Object> updates = new ArrayList<Object>();
+    for (int i = 0; i < execIds.size(); ++i) {
+      int execId = (Integer) execIds.get(i);
+      long updateTime = JSONUtils.getLongFromObject(updateTimes.get(i));
+      Map<String, Object> update = new HashMap<String, Object>();
+      update.put(ConnectorParams.UPDATE_MAP_EXEC_ID, execId);
+
+      Status status = flowStatuses.get(execId);
+      if (status == null) {
+        update.put(ConnectorParams.RESPONSE_ERROR, "Flow does not exist");
+        updates.add(update);
+        continue;
+      }
+
+      long flowUpdateTime = flowUpdateTimes.get(execId);
+      if (flowUpdateTime > updateTime) {
+        update.put(ConnectorParams.UPDATE_MAP_STATUS, status.getNumVal());
+        update.put(ConnectorParams.UPDATE_MAP_UPDATE_TIME, flowUpdateTime);
+        update.put(ConnectorParams.UPDATE_MAP_END_TIME,
+            Status.isStatusFinished(status) ? flowUpdateTime : -1);
+        updates.add(update);
+      }
+    }
+    return updates;
+  }
+
+  private class MockServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void doGet(HttpServletRequest req, HttpServletResponse resp)
+        throws ServletException, IOException {
+      String action =
+          req.getRequestURI().endsWith("/" + STATISTICS) ? STATISTICS : req
+              .getParameter(ConnectorParams.ACTION_PARAM);
+      count(receivedCalls, action);
+
+      Object response;
+      try {
+        if (STATISTICS.equals(action)) {
+          statisticsGate.await();
+          response = getStatistics();
+        } else if (failing) {
+          Map<String, Object> respMap = new HashMap<String, Object>();
+          respMap.put(ConnectorParams.RESPONSE_ERROR, "Executor is failing");
+          response = respMap;
+        } else if (ConnectorParams.UPDATE_ACTION.equals(action)) {
+          updateGate.await();
+          response = update(req);
+        } else if (ConnectorParams.EXECUTE_ACTION.equals(action)) {
+          response = execute(req);
+        } else {
+          Map<String, Object> respMap = new HashMap<String, Object>();
+          respMap.put(ConnectorParams.STATUS_PARAM,
+              ConnectorParams.RESPONSE_SUCCESS);
+          response = respMap;
+        }
+      } catch (InterruptedException e) {
+        throw new ServletException(e);
+      }
+
+      resp.setContentType("application/json");
+      Writer writer = resp.getWriter();
+      writer.write(JSONUtils.toJSON(response));
+      writer.close();
+      count(answeredCalls, action);
+    }
+  }
+}
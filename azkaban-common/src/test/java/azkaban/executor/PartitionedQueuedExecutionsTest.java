@@ -0,0 +1,151 @@
+package azkaban.executor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.utils.Pair;
+import azkaban.utils.TestUtils;
+
+public class PartitionedQueuedExecutionsTest {
+
+  /*
+   * Helper method to create an (ExecutionReference, ExecutableFlow) pinned to
+   * the given useExecutor value, null for none
+   */
+  private Pair<ExecutionReference, ExecutableFlow> createExecutablePair(
+    String flowName, int execId, String useExecutor) throws IOException {
+    ExecutableFlow execFlow = TestUtils.createExecutableFlow("exectest1",
+      flowName);
+    execFlow.setExecutionId(execId);
+    if (useExecutor != null) {
+      Map<String, String> params = new HashMap<String, String>();
+      params.put(ExecutionOptions.USE_EXECUTOR, useExecutor);
+      execFlow.getExecutionOptions().addAllFlowParameters(params);
+    }
+    ExecutionReference ref = new ExecutionReference(execId);
+    return new Pair<ExecutionReference, ExecutableFlow>(ref, execFlow);
+  }
+
+  /* Test flows are routed to the partition of their cluster group */
+  @Test
+  public void testGetPartition() throws IOException {
+    PartitionedQueuedExecutions queues = new PartitionedQueuedExecutions(5);
+    queues.setClusterGroups(Arrays.asList("GPU"));
+    Assert.assertEquals(PartitionedQueuedExecutions.DEFAULT_PARTITION,
+      queues.getPartition(createExecutablePair("exec1", 1, null)
+        .getSecond()));
+    Assert.assertEquals(PartitionedQueuedExecutions.DEFAULT_PARTITION,
+      queues.getPartition(createExecutablePair("exec1", 2, "3").getSecond()));
+    Assert.assertEquals("gpu",
+      queues.getPartition(createExecutablePair("exec1", 3, " GPU ")
+        .getSecond()));
+    Assert.assertEquals("unknown", PartitionedQueuedExecutions
+      .getClusterGroup(createExecutablePair("exec1", 4, "Unknown")
+        .getSecond()));
+    Assert.assertEquals(PartitionedQueuedExecutions.DEFAULT_PARTITION,
+      queues.getPartition(createExecutablePair("exec1", 4, "Unknown")
+        .getSecond()));
+  }
+
+  /* Test unknown cluster groups don't get partitions of their own */
+  @Test
+  public void testUnknownClusterGroup() throws IOException,
+    ExecutorManagerException {
+    PartitionedQueuedExecutions queues = new PartitionedQueuedExecutions(5);
+    queues.setClusterGroups(Arrays.asList("gpu"));
+    for (int i = 1; i <= 3; ++i) {
+      Pair<ExecutionReference, ExecutableFlow> pair =
+        createExecutablePair("exec1", i, "group" + i);
+      queues.enqueue(pair.getSecond(), pair.getFirst());
+    }
+
+    Assert.assertEquals(1, queues.getPartitions().size());
+    Assert.assertNull(queues.getQueue("group1"));
+    Assert.assertEquals(3,
+      queues.getQueue(PartitionedQueuedExecutions.DEFAULT_PARTITION).size());
+  }
+
+  /* Test the partition of a removed cluster group goes once it is empty */
+  @Test
+  public void testRemoveIdlePartition() throws IOException,
+    ExecutorManagerException {
+    PartitionedQueuedExecutions queues = new PartitionedQueuedExecutions(5);
+    queues.setClusterGroups(Arrays.asList("gpu"));
+    Pair<ExecutionReference, ExecutableFlow> pair1 =
+      createExecutablePair("exec1", 1, "gpu");
+    queues.enqueue(pair1.getSecond(), pair1.getFirst());
+    Assert.assertFalse(queues.removeIdlePartition("gpu"));
+
+    queues.setClusterGroups(Collections.<String> emptyList());
+    Assert.assertFalse(queues.removeIdlePartition("gpu"));
+    Assert.assertFalse(queues
+      .removeIdlePartition(PartitionedQueuedExecutions.DEFAULT_PARTITION));
+    queues.dequeue(1);
+    Assert.assertTrue(queues.removeIdlePartition("gpu"));
+    Assert.assertEquals(1, queues.getPartitions().size());
+
+    // the group's flows now go to the default partition
+    queues.enqueue(pair1.getSecond(), pair1.getFirst());
+    Assert.assertEquals(1,
+      queues.getQueue(PartitionedQueuedExecutions.DEFAULT_PARTITION).size());
+  }
+
+  /* Test enqueue and lookup across partitions */
+  @Test
+  public void testEnqueueAcrossPartitions() throws IOException,
+    ExecutorManagerException {
+    PartitionedQueuedExecutions queues = new PartitionedQueuedExecutions(5);
+    queues.setClusterGroups(Arrays.asList("gpu"));
+    Pair<ExecutionReference, ExecutableFlow> pair1 =
+      createExecutablePair("exec1", 1, null);
+    Pair<ExecutionReference, ExecutableFlow> pair2 =
+      createExecutablePair("exec2", 2, "gpu");
+    queues.enqueue(pair1.getSecond(), pair1.getFirst());
+    queues.enqueue(pair2.getSecond(), pair2.getFirst());
+
+    Assert.assertEquals(2, queues.size());
+    Assert.assertEquals(2, queues.getPartitions().size());
+    Assert.assertEquals(1, queues.getQueue("gpu").size());
+    Assert.assertSame(pair2.getSecond(), queues.getFlow(2));
+    Assert.assertSame(pair1.getFirst(), queues.getReference(1));
+    Assert.assertTrue(queues.getAllEntries().contains(pair1));
+    Assert.assertTrue(queues.getAllEntries().contains(pair2));
+
+    queues.dequeue(2);
+    Assert.assertFalse(queues.hasExecution(2));
+    Assert.assertEquals(1, queues.size());
+  }
+
+  /* Test an execution can only be queued once across partitions */
+  @Test(expected = ExecutorManagerException.class)
+  public void testEnqueueDuplicateExecution() throws IOException,
+    ExecutorManagerException {
+    PartitionedQueuedExecutions queues = new PartitionedQueuedExecutions(5);
+    Pair<ExecutionReference, ExecutableFlow> pair1 =
+      createExecutablePair("exec1", 1, null);
+    queues.enqueue(pair1.getSecond(), pair1.getFirst());
+    pair1.getSecond().getExecutionOptions().addAllFlowParameters(
+      Collections.singletonMap(ExecutionOptions.USE_EXECUTOR, "gpu"));
+    queues.enqueue(pair1.getSecond(), pair1.getFirst());
+  }
+
+  /* Test the capacity is shared by all partitions */
+  @Test
+  public void testIsFull() throws IOException, ExecutorManagerException {
+    PartitionedQueuedExecutions queues = new PartitionedQueuedExecutions(2);
+    Pair<ExecutionReference, ExecutableFlow> pair1 =
+      createExecutablePair("exec1", 1, null);
+    Pair<ExecutionReference, ExecutableFlow> pair2 =
+      createExecutablePair("exec2", 2, "gpu");
+    queues.enqueue(pair1.getSecond(), pair1.getFirst());
+    Assert.assertFalse(queues.isFull());
+    queues.enqueue(pair2.getSecond(), pair2.getFirst());
+    Assert.assertTrue(queues.isFull());
+  }
+}
@@ -0,0 +1,90 @@
+package azkaban.executor;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.utils.TestUtils;
+
+public class RecentlyFinishedFlowsTest {
+
+  private ExecutableFlow createExecutableFlow(String flowName, int execId)
+    throws IOException {
+    ExecutableFlow execFlow = TestUtils.createExecutableFlow("exectest1",
+      flowName);
+    execFlow.setExecutionId(execId);
+    return execFlow;
+  }
+
+  /* Test the oldest flows are evicted first once over the size cap */
+  @Test
+  public void testEvictOverSize() throws IOException {
+    RecentlyFinishedFlows flows = new RecentlyFinishedFlows(60000, 2, false);
+    flows.add(createExecutableFlow("exec1", 1));
+    flows.add(createExecutableFlow("exec1", 2));
+    flows.add(createExecutableFlow("exec2", 3));
+
+    Assert.assertEquals(2, flows.size());
+    Assert.assertFalse(flows.hasExecution(1));
+    Assert.assertNull(flows.get(1));
+    Assert.assertEquals(2, flows.get(2).getExecutionId());
+    Assert.assertEquals(3, flows.getAll().get(1).getExecutionId());
+  }
+
+  /* Test expired flows are evicted and reported */
+  @Test
+  public void testEvictExpired() throws IOException, InterruptedException {
+    RecentlyFinishedFlows flows = new RecentlyFinishedFlows(-1, 10, false);
+    flows.add(createExecutableFlow("exec1", 1));
+    flows.add(createExecutableFlow("exec2", 2));
+    // re-adding an execution keeps a single entry
+    flows.add(createExecutableFlow("exec2", 2));
+    Thread.sleep(5);
+
+    Assert.assertEquals(2, flows.getAll().size());
+    Assert.assertEquals(Arrays.asList(1, 2), flows.evictExpired());
+    Assert.assertEquals(0, flows.size());
+    Assert.assertTrue(flows.evictExpired().isEmpty());
+
+    RecentlyFinishedFlows longLived =
+      new RecentlyFinishedFlows(60000, 10, false);
+    longLived.add(createExecutableFlow("exec1", 1));
+    Assert.assertTrue(longLived.evictExpired().isEmpty());
+    Assert.assertTrue(longLived.hasExecution(1));
+  }
+
+  /* Test summaries keep flow and node status and times */
+  @Test
+  public void testSummary() throws IOException {
+    ExecutableFlow flow = createExecutableFlow("exec1", 1);
+    flow.setStatus(Status.SUCCEEDED);
+    flow.setStartTime(100);
+    flow.setEndTime(200);
+    flow.setSubmitUser("testUser");
+    for (ExecutableNode node : flow.getExecutableNodes()) {
+      node.setStatus(Status.SUCCEEDED);
+      node.setUpdateTime(150);
+    }
+
+    RecentlyFinishedFlows flows = new RecentlyFinishedFlows(60000, 10, true);
+    flows.add(flow);
+    ExecutableFlow summary = flows.get(1);
+
+    Assert.assertNotSame(flow, summary);
+    Assert.assertEquals(flow.getFlowId(), summary.getFlowId());
+    Assert.assertEquals(Status.SUCCEEDED, summary.getStatus());
+    Assert.assertEquals(100, summary.getStartTime());
+    Assert.assertEquals(200, summary.getEndTime());
+    Assert.assertEquals("testUser", summary.getSubmitUser());
+    Assert.assertEquals(flow.getExecutableNodes().size(), summary
+      .getExecutableNodes().size());
+    for (ExecutableNode node : flow.getExecutableNodes()) {
+      ExecutableNode summaryNode = summary.getExecutableNode(node.getId());
+      Assert.assertEquals(Status.SUCCEEDED, summaryNode.getStatus());
+      Assert.assertTrue(summaryNode.getInNodes().isEmpty());
+      Assert.assertFalse(summaryNode.hasJobSource());
+    }
+  }
+}
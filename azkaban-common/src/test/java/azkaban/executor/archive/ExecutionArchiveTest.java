@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import azkaban.database.AbstractJdbcLoader.EncodingType;
+import azkaban.executor.Status;
+
+public class ExecutionArchiveTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static ArchivedExecution createExecution(int execId)
+      throws Exception {
+    List<ArchivedExecution.Job> jobs = new ArrayList<ArchivedExecution.Job>();
+    jobs.add(new ArchivedExecution.Job(execId, 1, 2, "flow", "job1", 10, 20,
+        Status.SUCCEEDED, 0, "{\"a\":\"b\"}".getBytes("UTF-8"), null, null));
+    jobs.add(new ArchivedExecution.Job(execId, 1, 2, "flow", "job1", 30, 40,
+        Status.FAILED, 1, null, null, "[]".getBytes("UTF-8")));
+    return new ArchivedExecution(execId, ("{\"executionId\":" + execId + "}")
+        .getBytes("UTF-8"), jobs);
+  }
+
+  private static void assertArchived(ExecutionArchive archive, int execId)
+      throws Exception {
+    ArchivedExecution execution = archive.fetch(execId);
+    Assert.assertNotNull("execution " + execId, execution);
+    Assert.assertEquals(execId, execution.getExecId());
+    Assert.assertEquals("{\"executionId\":" + execId + "}", new String(
+        execution.getFlowData(), "UTF-8"));
+    Assert.assertEquals(2, execution.getJobs().size());
+    Assert.assertEquals(Status.FAILED, execution.getJob("job1", 1).toJobInfo()
+        .getStatus());
+    Assert.assertArrayEquals("[]".getBytes("UTF-8"),
+        execution.getJob("job1", 1).getAttachments());
+    Assert.assertNull(execution.getJob("job1", 0).getOutputParams());
+    Assert.assertEquals("log of " + execId, new String(archive.fetchLog(
+        execId, "job1", 1, 0, 1000), "UTF-8"));
+    Assert.assertEquals("of", new String(archive.fetchLog(execId, "job1", 1,
+        4, 2), "UTF-8"));
+    Assert.assertNull(archive.fetchLog(execId, "job1", 0, 0, 1000));
+    Assert.assertNull(archive.fetchLog(execId, "job1", 1, 1000, 1000));
+  }
+
+  private static void append(ExecutionArchive archive, int... execIds)
+      throws Exception {
+    ExecutionArchive.Writer writer = archive.openWriter();
+    for (int execId : execIds) {
+      writer.appendLog(execId, "job1", 1, "log ".getBytes("UTF-8"));
+      writer.appendLog(execId, "job1", 1, ("of " + execId).getBytes("UTF-8"));
+      writer.append(createExecution(execId));
+    }
+    writer.close();
+  }
+
+  /* Test lookups through the sparse index, and misses between records */
+  @Test
+  public void testFetch() throws Exception {
+    ExecutionArchive archive =
+        new ExecutionArchive(temp.getRoot(), EncodingType.GZIP, 1 << 20,
+            1 << 20);
+    int[] execIds = new int[100];
+    for (int i = 0; i < execIds.length; ++i) {
+      execIds[i] = i * 2 + 1;
+    }
+    append(archive, execIds);
+
+    Assert.assertEquals(1, archive.getNumSegments());
+    for (int execId : execIds) {
+      assertArchived(archive, execId);
+    }
+    Assert.assertNull(archive.fetch(0));
+    Assert.assertNull(archive.fetch(64));
+    Assert.assertNull(archive.fetch(1000));
+  }
+
+  /* Test unordered and large batches roll segments, and survive a reopen */
+  @Test
+  public void testSegmentsReopened() throws Exception {
+    ExecutionArchive archive =
+        new ExecutionArchive(temp.getRoot(), EncodingType.XZ, 1000, 1 << 20);
+    append(archive, 5, 7, 3, 4);
+    Assert.assertEquals(2, archive.getNumSegments());
+
+    int[] execIds = new int[20];
+    for (int i = 0; i < execIds.length; ++i) {
+      execIds[i] = i + 10;
+    }
+    append(archive, execIds);
+    Assert.assertTrue(archive.getNumSegments() > 3);
+
+    ExecutionArchive reopened =
+        new ExecutionArchive(temp.getRoot(), EncodingType.GZIP, 1000, 1 << 20);
+    Assert.assertEquals(archive.getNumSegments(), reopened.getNumSegments());
+    for (int execId : Arrays.asList(3, 4, 5, 7, 10, 17, 29)) {
+      assertArchived(reopened, execId);
+    }
+    Assert.assertNull(reopened.fetch(6));
+  }
+
+  /* Test a segment left by a crash is truncated to its complete records */
+  @Test
+  public void testTornSegmentRecovered() throws Exception {
+    ExecutionArchive archive =
+        new ExecutionArchive(temp.getRoot(), EncodingType.SNAPPY,
+            1 << 20, 1 << 20);
+    append(archive, 1, 2, 3);
+
+    File segment = new File(temp.getRoot(), "0000000000.seg");
+    new File(temp.getRoot(), "0000000000.idx").delete();
+    RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+    raf.setLength(raf.length() - 5);
+    raf.close();
+
+    ExecutionArchive reopened =
+        new ExecutionArchive(temp.getRoot(), EncodingType.SNAPPY,
+            1 << 20, 1 << 20);
+    assertArchived(reopened, 1);
+    assertArchived(reopened, 2);
+    Assert.assertNull(reopened.fetch(3));
+
+    append(reopened, 3);
+    assertArchived(reopened, 3);
+    Assert.assertEquals(1, reopened.getNumSegments());
+
+    // new segments don't reuse the name of the recovered one
+    append(reopened, 2);
+    assertArchived(reopened, 2);
+    Assert.assertEquals(2, reopened.getNumSegments());
+    Assert.assertTrue(new File(temp.getRoot(), "0000000001.seg").exists());
+  }
+
+  /* Test writers opened for small batches append to the same segment */
+  @Test
+  public void testWritersAppend() throws Exception {
+    ExecutionArchive archive =
+        new ExecutionArchive(temp.getRoot(), EncodingType.XZ, 1 << 20, 1 << 20);
+    int execId = 1;
+    for (int batch = 0; batch < 10; ++batch) {
+      int[] execIds = new int[7];
+      for (int i = 0; i < execIds.length; ++i) {
+        execIds[i] = execId++;
+      }
+      append(archive, execIds);
+    }
+    Assert.assertEquals(1, archive.getNumSegments());
+    Assert.assertEquals(2, temp.getRoot().list().length);
+
+    ExecutionArchive reopened =
+        new ExecutionArchive(temp.getRoot(), EncodingType.XZ, 1 << 20, 1 << 20);
+    Assert.assertEquals(1, reopened.getNumSegments());
+    for (int id = 1; id < execId; ++id) {
+      assertArchived(reopened, id);
+    }
+    Assert.assertNull(reopened.fetch(execId));
+  }
+
+  /* Test a large log is split in chunks, and read across their boundaries */
+  @Test
+  public void testLogChunks() throws Exception {
+    ExecutionArchive archive =
+        new ExecutionArchive(temp.getRoot(), EncodingType.GZIP, 1 << 30,
+            1 << 20);
+    byte[] row = new byte[50000];
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    ExecutionArchive.Writer writer = archive.openWriter();
+    for (int i = 0; i < 12; ++i) {
+      Arrays.fill(row, (byte) ('a' + i));
+      log.write(row);
+      writer.appendLog(1, "flow", 0, row);
+    }
+    writer.appendLog(1, "job1", 1, "log of 1".getBytes("UTF-8"));
+    writer.append(createExecution(1));
+    writer.close();
+
+    byte[] expected = log.toByteArray();
+    ArchivedExecution execution = archive.fetch(1);
+    Assert.assertEquals(expected.length, execution.getLog("flow", 0)
+        .getLength());
+    Assert.assertTrue(execution.getLog("flow", 0).getNumChunks() > 1);
+    for (int start : new int[] { 0, 262000, 524200, 599000 }) {
+      int end = Math.min(expected.length, start + 50000);
+      Assert.assertArrayEquals(Arrays.copyOfRange(expected, start, end),
+          archive.fetchLog(1, "flow", 0, start, 50000));
+    }
+    Assert.assertArrayEquals(expected,
+        archive.fetchLog(1, "flow", 0, 0, expected.length));
+    assertArchived(archive, 1);
+  }
+
+  /* Test the logs of an execution that wasn't appended are dropped */
+  @Test
+  public void testUnreferencedLogsDropped() throws Exception {
+    ExecutionArchive archive =
+        new ExecutionArchive(temp.getRoot(), EncodingType.XZ, 1 << 20,
+            1 << 20);
+    append(archive, 1);
+    ExecutionArchive.Writer writer = archive.openWriter();
+    // more than a chunk, so some of it is written
+    writer.appendLog(2, "job1", 1, new byte[300000]);
+    writer.close();
+    Assert.assertNull(archive.fetch(2));
+
+    new File(temp.getRoot(), "0000000000.idx").delete();
+    ExecutionArchive reopened =
+        new ExecutionArchive(temp.getRoot(), EncodingType.XZ, 1 << 20,
+            1 << 20);
+    assertArchived(reopened, 1);
+    Assert.assertNull(reopened.fetch(2));
+
+    // retried in the same segment, since the chunks were truncated
+    append(reopened, 2);
+    assertArchived(reopened, 2);
+    Assert.assertEquals(1, reopened.getNumSegments());
+  }
+}
@@ -0,0 +1,63 @@
+package azkaban.metric;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Latency histogram tests
+ */
+public class LatencyHistogramTest {
+
+  /**
+   * Test small values are recorded exactly
+   */
+  @Test
+  public void exactValuesTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 10; i++) {
+      histogram.record(i);
+    }
+    assertEquals(10, histogram.getCount());
+    assertEquals(5.5, histogram.getMean(), 0.0001);
+    assertEquals(5, histogram.getValueAtPercentile(50));
+    assertEquals(9, histogram.getValueAtPercentile(90));
+    assertEquals(10, histogram.getValueAtPercentile(100));
+    assertEquals(10, histogram.getMax());
+  }
+
+  /**
+   * Test large values are reported within the bucket precision
+   */
+  @Test
+  public void percentilePrecisionTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100000; i++) {
+      histogram.record(i);
+    }
+    long p50 = histogram.getValueAtPercentile(50);
+    long p99 = histogram.getValueAtPercentile(99);
+    assertTrue("p50 " + p50, Math.abs(p50 - 50000) <= 50000 / 16);
+    assertTrue("p99 " + p99, Math.abs(p99 - 99000) <= 99000 / 16);
+    assertEquals(100000, histogram.getValueAtPercentile(100));
+  }
+
+  /**
+   * Test bucket boundaries line up
+   */
+  @Test
+  public void bucketBoundaryTest() {
+    for (long value : new long[] { 0, 31, 32, 33, 63, 64, 1000, 123456789L,
+        Long.MAX_VALUE }) {
+      int index = LatencyHistogram.getBucketIndex(value);
+      assertTrue(LatencyHistogram.getBucketUpperBound(index) >= value);
+      if (index > 0) {
+        assertTrue(LatencyHistogram.getBucketUpperBound(index - 1) < value);
+      }
+    }
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getValueAtPercentile(99));
+    histogram.record(-5);
+    assertEquals(0, histogram.getMax());
+  }
+}
@@ -113,6 +113,12 @@ public class MockProjectLoader implements ProjectLoader {
     return null;
   }
 
+  @Override
+  public ProjectFileHandler fetchProjectFileMetaData(int projectId,
+      int version) throws ProjectManagerException {
+    return null;
+  }
+
   @Override
   public void changeProjectVersion(Project project, int version, String user)
       throws ProjectManagerException {
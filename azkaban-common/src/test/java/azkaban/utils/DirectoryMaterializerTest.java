@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DirectoryMaterializerTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File sourceDir;
+
+  @Before
+  public void setUp() throws Exception {
+    sourceDir = temp.newFolder("source");
+    FileUtils.writeStringToFile(new File(sourceDir, "a.job"), "a");
+    FileUtils.writeStringToFile(new File(sourceDir, ".hidden"), "hidden");
+    FileUtils.writeStringToFile(new File(sourceDir, "lib/b.jar"), "b");
+    FileUtils.writeStringToFile(new File(sourceDir, "lib/deep/c.py"), "c");
+  }
+
+  /* Test the files are symlinked and the directories recreated */
+  @Test
+  public void testSymlink() throws Exception {
+    DirectoryMaterializer materializer =
+        new DirectoryMaterializer(DirectoryMaterializer.Mode.SYMLINK);
+    File destDir = temp.newFolder("dest");
+    FileUtils.writeStringToFile(new File(destDir, "a.job"), "existing");
+    materializer.materialize(sourceDir, destDir);
+
+    Assert.assertFalse(new File(destDir, ".hidden").exists());
+    Assert.assertEquals("existing",
+        FileUtils.readFileToString(new File(destDir, "a.job")));
+    File lib = new File(destDir, "lib");
+    Assert.assertTrue(lib.isDirectory());
+    Assert.assertFalse(Files.isSymbolicLink(lib.toPath()));
+    File deep = new File(destDir, "lib/deep/c.py");
+    Assert.assertTrue(Files.isSymbolicLink(deep.toPath()));
+    Assert.assertEquals("c", FileUtils.readFileToString(deep));
+
+    Assert.assertEquals(1, materializer.getNumMaterialized());
+    Assert.assertEquals(4, materializer.getNumEntries());
+  }
+
+  /* Test hard linked files are kept when the source is removed */
+  @Test
+  public void testHardlink() throws Exception {
+    DirectoryMaterializer materializer =
+        new DirectoryMaterializer(DirectoryMaterializer.Mode.HARDLINK);
+    File destDir = temp.newFolder("dest");
+    materializer.materialize(sourceDir, destDir);
+
+    File b = new File(destDir, "lib/b.jar");
+    Assert.assertFalse(Files.isSymbolicLink(b.toPath()));
+    FileUtils.deleteDirectory(sourceDir);
+    Assert.assertEquals("b", FileUtils.readFileToString(b));
+    Assert.assertEquals(5, materializer.getNumEntries());
+  }
+
+  /* Test copied files can change without changing the source */
+  @Test
+  public void testCopy() throws Exception {
+    DirectoryMaterializer materializer =
+        new DirectoryMaterializer(DirectoryMaterializer.Mode.COPY);
+    File first = temp.newFolder("first");
+    File second = temp.newFolder("second");
+    materializer.materialize(sourceDir, first);
+    materializer.materialize(sourceDir, second);
+
+    FileUtils.writeStringToFile(new File(first, "lib/deep/c.py"), "changed");
+    Assert.assertEquals("c",
+        FileUtils.readFileToString(new File(sourceDir, "lib/deep/c.py")));
+    Assert.assertEquals("c",
+        FileUtils.readFileToString(new File(second, "lib/deep/c.py")));
+    Assert.assertEquals(2, materializer.getNumMaterialized());
+    Assert.assertTrue(materializer.getMaxTimeMs() <= materializer
+        .getTotalTimeMs());
+  }
+}
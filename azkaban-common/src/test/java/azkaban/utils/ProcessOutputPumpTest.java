@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProcessOutputPumpTest {
+  private static final String NEW_LINE = System.getProperty("line.separator");
+
+  /* Test the lines of a stream are logged and the last ones kept */
+  @Test
+  public void testLines() throws Exception {
+    ProcessOutputPump pump = new ProcessOutputPump(1, 8);
+    CountingAppender appender = new CountingAppender();
+    Logger logger = createLogger("testLines", appender);
+
+    ProcessOutputPump.Output output =
+        pump.pump(new ByteArrayInputStream("a\r\nb\rc\n\nlonger than 8\nend"
+            .getBytes("UTF-8")), logger, Level.INFO, 3);
+    output.awaitCompletion(5000);
+
+    Assert.assertTrue(output.isDone());
+    Assert.assertEquals(7, appender.lines.size());
+    Assert.assertEquals("a", appender.lines.get(0));
+    Assert.assertEquals("", appender.lines.get(3));
+    Assert.assertEquals("longer t", appender.lines.get(4));
+    Assert.assertEquals("han 8", appender.lines.get(5));
+    Assert.assertEquals("longer t" + NEW_LINE + "han 8" + NEW_LINE + "end",
+        output.getRecentLog());
+    Assert.assertEquals(0, pump.getNumStreams());
+  }
+
+  /* Test one thread reads the output of many processes */
+  @Test
+  public void testProcesses() throws Exception {
+    ProcessOutputPump pump = new ProcessOutputPump(1, 1024);
+    int numProcesses = 10;
+    int numLines = 20000;
+    List<Process> processes = new ArrayList<Process>();
+    List<ProcessOutputPump.Output> outputs =
+        new ArrayList<ProcessOutputPump.Output>();
+    List<CountingAppender> appenders = new ArrayList<CountingAppender>();
+    for (int i = 0; i < numProcesses; ++i) {
+      // more output than a pipe holds, so the process waits on the pump
+      ProcessBuilder builder =
+          new ProcessBuilder("sh", "-c", "yes line | head -n " + numLines
+              + "; echo failed >&2; exit 3");
+      builder.redirectErrorStream(true);
+      Process process = builder.start();
+      CountingAppender appender = new CountingAppender();
+      processes.add(process);
+      appenders.add(appender);
+      outputs.add(pump.pump(process.getInputStream(),
+          createLogger("testProcesses" + i, appender), Level.INFO, 2));
+    }
+    Assert.assertEquals(1, pump.getNumThreads());
+
+    for (int i = 0; i < numProcesses; ++i) {
+      Assert.assertEquals(3, processes.get(i).waitFor());
+      outputs.get(i).awaitCompletion(5000);
+      Assert.assertEquals(numLines + 1, appenders.get(i).lines.size());
+      Assert.assertEquals("line" + NEW_LINE + "failed", outputs.get(i)
+          .getRecentLog());
+      processes.get(i).getInputStream().close();
+    }
+    Assert.assertEquals(0, pump.getNumStreams());
+  }
+
+  /* Test a blocked appender doesn't hold up the other streams of its pump */
+  @Test
+  public void testSlowAppender() throws Exception {
+    ProcessOutputPump pump = new ProcessOutputPump(1, 1024);
+    final CountDownLatch release = new CountDownLatch(1);
+    CountingAppender blocked = new CountingAppender() {
+      @Override
+      protected void append(LoggingEvent event) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.append(event);
+      }
+    };
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 5000; ++i) {
+      text.append("line ").append(i).append('\n');
+    }
+    byte[] bytes = text.toString().getBytes("UTF-8");
+    ProcessOutputPump.Output slow =
+        pump.pump(new ByteArrayInputStream(bytes),
+            createLogger("testSlowAppender0", blocked), Level.INFO, 1);
+
+    CountingAppender appender = new CountingAppender();
+    ProcessOutputPump.Output fast =
+        pump.pump(new ByteArrayInputStream(bytes),
+            createLogger("testSlowAppender1", appender), Level.INFO, 1);
+    fast.awaitCompletion(5000);
+    Assert.assertTrue(fast.isDone());
+    Assert.assertEquals(5000, appender.lines.size());
+    Assert.assertFalse(slow.isDone());
+
+    release.countDown();
+    slow.awaitCompletion(5000);
+    Assert.assertEquals(5000, blocked.lines.size());
+    Assert.assertEquals("line 4999", slow.getRecentLog());
+    Assert.assertEquals(0, pump.getNumStreams());
+  }
+
+  /* Test a stuck appender doesn't hold up the completion of its stream */
+  @Test
+  public void testStuckAppender() throws Exception {
+    ProcessOutputPump pump = new ProcessOutputPump(1, 1024);
+    final CountDownLatch release = new CountDownLatch(1);
+    CountingAppender stuck = new CountingAppender() {
+      @Override
+      protected void append(LoggingEvent event) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.append(event);
+      }
+    };
+    ProcessOutputPump.Output output =
+        pump.pump(new ByteArrayInputStream("a\nb\nc\n".getBytes("UTF-8")),
+            createLogger("testStuckAppender", stuck), Level.INFO, 3);
+    try {
+      long start = System.currentTimeMillis();
+      output.awaitCompletion(200);
+      Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+      Assert.assertTrue(output.isDone());
+      Assert.assertEquals("a" + NEW_LINE + "b" + NEW_LINE + "c",
+          output.getRecentLog());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  private static Logger createLogger(String name, CountingAppender appender) {
+    Logger logger = Logger.getLogger(ProcessOutputPumpTest.class + "." + name);
+    logger.setAdditivity(false);
+    logger.addAppender(appender);
+    return logger;
+  }
+
+  private static class CountingAppender extends AppenderSkeleton {
+    private final List<String> lines = new ArrayList<String>();
+
+    @Override
+    protected synchronized void append(LoggingEvent event) {
+      lines.add(event.getRenderedMessage());
+    }
+
+    @Override
+    public boolean requiresLayout() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -47,15 +47,21 @@ public class TestUtils {
     return new User("testUser");
   }
 
-  /* Helper method to create an ExecutableFlow from serialized description */
-  public static ExecutableFlow createExecutableFlow(String projectName,
-    String flowName) throws IOException {
+  /* Helper method to create a Flow from serialized description */
+  public static Flow createFlow(String projectName, String flowName)
+    throws IOException {
     File jsonFlowFile = getFlowDir(projectName, flowName);
     @SuppressWarnings("unchecked")
     HashMap<String, Object> flowObj =
       (HashMap<String, Object>) JSONUtils.parseJSONFromFile(jsonFlowFile);
 
-    Flow flow = Flow.flowFromObject(flowObj);
+    return Flow.flowFromObject(flowObj);
+  }
+
+  /* Helper method to create an ExecutableFlow from serialized description */
+  public static ExecutableFlow createExecutableFlow(String projectName,
+    String flowName) throws IOException {
+    Flow flow = createFlow(projectName, flowName);
     Project project = new Project(1, "flow");
     HashMap<String, Flow> flowMap = new HashMap<String, Flow>();
     flowMap.put(flow.getId(), flow);
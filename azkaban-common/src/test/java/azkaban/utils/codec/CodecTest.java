@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import azkaban.database.AbstractJdbcLoader.EncodingType;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CodecTest {
+  private static byte[] createData(int size) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; text.length() < size; ++i) {
+      text.append("{\"id\":\"job").append(i % 97).append("\",\"status\":")
+          .append(i % 3 == 0 ? "\"SUCCEEDED\"" : "\"RUNNING\"").append("}\n");
+    }
+    return text.substring(0, size).getBytes();
+  }
+
+  private static byte[] gzipStream(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(data);
+    gzip.close();
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    for (EncodingType type : EncodingType.values()) {
+      for (int size : new int[] { 0, 1, 1000, 300 * 1024 }) {
+        byte[] data = createData(size);
+        byte[] encoded = type.encode(data);
+        assertArrayEquals(type + " " + size, data, type.decode(encoded));
+      }
+    }
+  }
+
+  @Test
+  public void testEncodeRange() throws Exception {
+    byte[] data = createData(5000);
+    for (EncodingType type : EncodingType.values()) {
+      byte[] encoded = type.getCodec().encode(data, 100, 2000);
+      assertArrayEquals(type.toString(),
+          Arrays.copyOfRange(data, 100, 2100), type.decode(encoded));
+    }
+  }
+
+  @Test
+  public void testDecodeRange() throws Exception {
+    byte[] data = createData(100 * 1024);
+    for (EncodingType type : EncodingType.values()) {
+      Codec codec = type.getCodec();
+      byte[] encoded = type.encode(data);
+      assertArrayEquals(type.toString(), Arrays.copyOfRange(data, 0, 10),
+          codec.decode(encoded, 0, 10));
+      assertArrayEquals(type.toString(),
+          Arrays.copyOfRange(data, 50000, 51000),
+          codec.decode(encoded, 50000, 1000));
+      assertArrayEquals(type.toString(),
+          Arrays.copyOfRange(data, data.length - 5, data.length),
+          codec.decode(encoded, data.length - 5, 5));
+
+      try {
+        codec.decode(encoded, data.length - 5, 10);
+        fail(type + " decoded past the end");
+      } catch (IOException e) {
+      }
+    }
+  }
+
+  /* Test rows written by GZIPUtils before the codecs still decode, and back */
+  @Test
+  public void testGzipStreamCompatible() throws Exception {
+    GzipCodec codec = new GzipCodec();
+    byte[] data = createData(200 * 1024);
+
+    assertArrayEquals(data, codec.decode(gzipStream(data)));
+
+    byte[] encoded = codec.encode(data, 0, data.length);
+    GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded));
+    assertArrayEquals(data, IOUtils.toByteArray(in));
+  }
+
+  /* Test data with several gzip members falls back to the stream */
+  @Test
+  public void testGzipMultipleMembers() throws Exception {
+    GzipCodec codec = new GzipCodec();
+    byte[] first = createData(3000);
+    byte[] second = createData(700);
+    ByteArrayOutputStream joined = new ByteArrayOutputStream();
+    joined.write(gzipStream(first));
+    joined.write(gzipStream(second));
+
+    byte[] decoded = codec.decode(joined.toByteArray());
+    assertEquals(first.length + second.length, decoded.length);
+    assertArrayEquals(first, Arrays.copyOfRange(decoded, 0, first.length));
+    assertArrayEquals(second,
+        Arrays.copyOfRange(decoded, first.length, decoded.length));
+  }
+
+  @Test
+  public void testGzipCorrupt() throws Exception {
+    GzipCodec codec = new GzipCodec();
+    byte[] encoded = codec.encode(createData(1000), 0, 1000);
+    // flip a bit of the CRC
+    encoded[encoded.length - 8] ^= 1;
+    try {
+      codec.decode(encoded);
+      fail("CRC mismatch not detected");
+    } catch (IOException e) {
+    }
+  }
+
+  @Test
+  public void testUnknownEncodingType() {
+    assertEquals(EncodingType.GZIP, EncodingType.fromInteger(2));
+    assertEquals(EncodingType.SNAPPY, EncodingType.fromInteger(3));
+    assertEquals(EncodingType.XZ, EncodingType.fromInteger(4));
+    assertEquals(EncodingType.PLAIN, EncodingType.fromInteger(42));
+  }
+}
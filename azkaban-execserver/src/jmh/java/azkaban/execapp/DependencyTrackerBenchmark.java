@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutableFlowBase;
+import azkaban.executor.ExecutableNode;
+import azkaban.executor.Status;
+import azkaban.flow.Edge;
+import azkaban.flow.Flow;
+import azkaban.flow.Node;
+import azkaban.project.Project;
+
+/**
+ * <pre>
+ * Runs a layered flow to the end, one finished job at a time, and finds the
+ * jobs that can run next. Every node of a layer depends on fanIn nodes of
+ * the layer before it.
+ *
+ * "scan" is the FlowRunner before DependencyTracker: every out node of a
+ * finished node is a candidate, and its in nodes are scanned to check they
+ * finished. "tracker" builds a DependencyTracker for the flow, and only
+ * scans the in nodes of the candidates it returns, like getImpliedStatus.
+ *
+ * Run from azkaban-execserver with: ../gradlew jmh
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DependencyTrackerBenchmark {
+  private static final int LAYER_WIDTH = 100;
+
+  @Param({ "10000", "100000" })
+  private int numNodes;
+
+  @Param({ "4", "32" })
+  private int fanIn;
+
+  private ExecutableFlow flow;
+  // in layer order, so each node finishes after its dependencies
+  private List<ExecutableNode> order;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Flow flowDef = new Flow("flow");
+    int layers = numNodes / LAYER_WIDTH;
+    for (int layer = 0; layer < layers; ++layer) {
+      for (int i = 0; i < LAYER_WIDTH; ++i) {
+        Node node = new Node(layer + "-" + i);
+        node.setType("command");
+        flowDef.addNode(node);
+        if (layer > 0) {
+          for (int j = 0; j < fanIn; ++j) {
+            flowDef.addEdge(new Edge((layer - 1) + "-"
+                + (i + j) % LAYER_WIDTH, node.getId()));
+          }
+        }
+      }
+    }
+    Project project = new Project(1, "benchmark");
+    Map<String, Flow> flows = new HashMap<String, Flow>();
+    flows.put(flowDef.getId(), flowDef);
+    project.setFlows(flows);
+    flow = new ExecutableFlow(project, flowDef);
+
+    order = new ArrayList<ExecutableNode>();
+    for (int layer = 0; layer < layers; ++layer) {
+      for (int i = 0; i < LAYER_WIDTH; ++i) {
+        order.add(flow.getExecutableNode(layer + "-" + i));
+      }
+    }
+  }
+
+  @Benchmark
+  public int scan() {
+    reset();
+    int ready = 0;
+    for (ExecutableNode node : order) {
+      node.setStatus(Status.SUCCEEDED);
+      ExecutableFlowBase parentFlow = node.getParentFlow();
+      for (String outNodeId : node.getOutNodes()) {
+        if (dependenciesFinished(parentFlow.getExecutableNode(outNodeId))) {
+          ++ready;
+        }
+      }
+    }
+    return ready;
+  }
+
+  @Benchmark
+  public int tracker() {
+    reset();
+    DependencyTracker tracker = new DependencyTracker(flow);
+    List<ExecutableNode> candidates = new ArrayList<ExecutableNode>();
+    int ready = 0;
+    for (ExecutableNode node : order) {
+      node.setStatus(Status.SUCCEEDED);
+      candidates.clear();
+      tracker.nodeFinished(node, candidates);
+      for (ExecutableNode candidate : candidates) {
+        if (dependenciesFinished(candidate)) {
+          ++ready;
+        }
+      }
+    }
+    return ready;
+  }
+
+  private void reset() {
+    for (ExecutableNode node : order) {
+      node.setStatus(Status.READY);
+    }
+  }
+
+  /* the dependency scan of FlowRunner.getImpliedStatus */
+  private static boolean dependenciesFinished(ExecutableNode node) {
+    ExecutableFlowBase parentFlow = node.getParentFlow();
+    for (String dependency : node.getInNodes()) {
+      if (!Status.isStatusFinished(parentFlow.getExecutableNode(dependency)
+          .getStatus())) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -270,6 +270,10 @@ public class AzkabanExecutorServer {
   public void stopServer() throws Exception {
     server.stop();
     server.destroy();
+    runnerManager.shutdownJobWriter();
+    runnerManager.shutdownLogUploader();
+    runnerManager.shutdownPrefetchService();
+    runnerManager.shutdownJobPool();
   }
 
   public ProjectLoader getProjectLoader() {
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import azkaban.executor.ExecutableFlowBase;
+import azkaban.executor.ExecutableNode;
+import azkaban.executor.Status;
+
+/**
+ * <pre>
+ * Counts the unfinished dependencies of every node of a flow, embedded flows
+ * included, so the nodes that can run next are found from the nodes that
+ * just finished without rescanning the dependencies of their out nodes.
+ *
+ * The nodes are numbered once and the out nodes of each node are kept as an
+ * array of numbers. Finishing a node decrements the count of its out nodes,
+ * the ones reaching zero are the candidates to run. Finishing a node twice
+ * only counts once, recount resets the counts after nodes are reset.
+ *
+ * Not thread safe, the flow runner only uses it under its main lock.
+ * </pre>
+ */
+public class DependencyTracker {
+  private final Map<ExecutableNode, Integer> ordinals =
+      new IdentityHashMap<ExecutableNode, Integer>();
+  private final ExecutableNode[] nodes;
+  private final int[][] outNodes;
+  private final int[] pending;
+  private final boolean[] finished;
+
+  public DependencyTracker(ExecutableFlowBase flow) {
+    List<ExecutableNode> allNodes = new ArrayList<ExecutableNode>();
+    collectNodes(flow, allNodes);
+    nodes = allNodes.toArray(new ExecutableNode[allNodes.size()]);
+    for (int i = 0; i < nodes.length; ++i) {
+      ordinals.put(nodes[i], i);
+    }
+
+    outNodes = new int[nodes.length][];
+    for (int i = 0; i < nodes.length; ++i) {
+      ExecutableFlowBase parentFlow = nodes[i].getParentFlow();
+      int[] out = new int[nodes[i].getOutNodes().size()];
+      int j = 0;
+      for (String outNodeId : nodes[i].getOutNodes()) {
+        out[j++] = ordinals.get(parentFlow.getExecutableNode(outNodeId));
+      }
+      outNodes[i] = out;
+    }
+
+    pending = new int[nodes.length];
+    finished = new boolean[nodes.length];
+    recount();
+  }
+
+  private static void collectNodes(ExecutableFlowBase flow,
+      List<ExecutableNode> allNodes) {
+    for (ExecutableNode node : flow.getExecutableNodes()) {
+      allNodes.add(node);
+      if (node instanceof ExecutableFlowBase) {
+        collectNodes((ExecutableFlowBase) node, allNodes);
+      }
+    }
+  }
+
+  /**
+   * Counts the dependencies again from the statuses of the nodes. Needed
+   * after finished nodes are reset to run again.
+   */
+  public void recount() {
+    for (int i = 0; i < nodes.length; ++i) {
+      pending[i] = 0;
+      finished[i] = Status.isStatusFinished(nodes[i].getStatus());
+    }
+    for (int i = 0; i < nodes.length; ++i) {
+      if (!finished[i]) {
+        for (int out : outNodes[i]) {
+          ++pending[out];
+        }
+      }
+    }
+  }
+
+  /**
+   * Counts a node as finished for its out nodes.
+   *
+   * @param node
+   * @param candidates gets the out nodes with no unfinished dependencies left
+   */
+  public void nodeFinished(ExecutableNode node,
+      Collection<ExecutableNode> candidates) {
+    Integer ordinal = ordinals.get(node);
+    if (ordinal == null) {
+      return;
+    }
+
+    int[] out = outNodes[ordinal];
+    if (!finished[ordinal]) {
+      finished[ordinal] = true;
+      for (int i = 0; i < out.length; ++i) {
+        --pending[out[i]];
+      }
+    }
+    for (int i = 0; i < out.length; ++i) {
+      if (pending[out[i]] <= 0) {
+        candidates.add(nodes[out[i]]);
+      }
+    }
+  }
+
+  /**
+   * Returns false if some dependency of the node hasn't finished. Nodes
+   * outside of the flow are assumed to have none.
+   *
+   * @param node
+   * @return
+   */
+  public boolean isReady(ExecutableNode node) {
+    Integer ordinal = ordinals.get(node);
+    return ordinal == null || pending[ordinal] <= 0;
+  }
+
+  public int getNumPending(ExecutableNode node) {
+    Integer ordinal = ordinals.get(node);
+    return ordinal == null ? 0 : pending[ordinal];
+  }
+
+  public int getNumNodes() {
+    return nodes.length;
+  }
+}
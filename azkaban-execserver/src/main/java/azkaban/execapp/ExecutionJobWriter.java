@@ -0,0 +1,298 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import azkaban.executor.ExecutableNode;
+import azkaban.executor.ExecutableNodeRecord;
+import azkaban.executor.ExecutorLoader;
+import azkaban.executor.ExecutorManagerException;
+import azkaban.metric.LatencyHistogram;
+import azkaban.utils.Props;
+
+/**
+ * <pre>
+ * Write-behind stage for the execution_jobs rows written by JobRunners.
+ *
+ * Instead of one statement and one transaction per job status change, writes
+ * are queued per flow and coalesced per row: only the latest update of a row
+ * is kept. A background thread flushes every flow with pending writes at
+ * least every maxDelayMs, or as soon as maxBatchSize rows are pending. Each
+ * flow is flushed as JDBC batches within one transaction, inserts first.
+ *
+ * Flushes are serialized, so a row is never written with an older state than
+ * a previous flush wrote. When a batch fails its rows are retried one by one,
+ * and a row that still fails is logged and dropped, like a failed direct
+ * write would be.
+ * </pre>
+ */
+public class ExecutionJobWriter {
+  private static final Logger logger = Logger
+      .getLogger(ExecutionJobWriter.class);
+
+  private final ExecutorLoader loader;
+  private final long maxDelayMs;
+  private final int maxBatchSize;
+
+  // exec id -> pending writes of the flow by row, in arrival order
+  private final Map<Integer, LinkedHashMap<String, PendingWrite>> pending =
+      new HashMap<Integer, LinkedHashMap<String, PendingWrite>>();
+  private int pendingRows = 0;
+  // serializes flushes, so rows are written in the order they were queued
+  private final Object flushLock = new Object();
+
+  private final LatencyHistogram flushLatency = new LatencyHistogram();
+  private final AtomicLong writtenRows = new AtomicLong();
+  private final AtomicLong droppedRows = new AtomicLong();
+
+  private WriterThread thread;
+
+  public ExecutionJobWriter(ExecutorLoader loader, long maxDelayMs,
+      int maxBatchSize) {
+    this.loader = loader;
+    this.maxDelayMs = maxDelayMs;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public synchronized void start() {
+    if (thread == null) {
+      thread = new WriterThread();
+      thread.start();
+    }
+  }
+
+  /**
+   * Stops the background thread and writes everything still pending
+   */
+  public void shutdown() {
+    WriterThread writerThread;
+    synchronized (this) {
+      writerThread = thread;
+      thread = null;
+    }
+    if (writerThread != null) {
+      writerThread.shutdown();
+    }
+    flushAll();
+  }
+
+  /**
+   * Queues the first write of a node attempt
+   *
+   * @param node
+   * @param inputProps
+   */
+  public void uploadExecutableNode(ExecutableNode node, Props inputProps) {
+    enqueue(ExecutableNodeRecord.forUpload(node, inputProps), true);
+  }
+
+  /**
+   * Queues a status update of a node attempt, replacing any update of the
+   * same attempt still pending
+   *
+   * @param node
+   */
+  public void updateExecutableNode(ExecutableNode node) {
+    enqueue(ExecutableNodeRecord.forUpdate(node), false);
+  }
+
+  private synchronized void enqueue(ExecutableNodeRecord record,
+      boolean upload) {
+    LinkedHashMap<String, PendingWrite> flowWrites =
+        pending.get(record.getExecId());
+    if (flowWrites == null) {
+      flowWrites = new LinkedHashMap<String, PendingWrite>();
+      pending.put(record.getExecId(), flowWrites);
+    }
+    PendingWrite write = flowWrites.get(record.getKey());
+    if (write == null) {
+      write = new PendingWrite();
+      flowWrites.put(record.getKey(), write);
+      pendingRows++;
+    }
+    if (upload) {
+      write.upload = record;
+    } else {
+      write.update = record;
+    }
+    if (pendingRows >= maxBatchSize) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * Writes the pending rows of a flow, waiting for it. Called before a flow
+   * is finalized so that its job rows are complete.
+   *
+   * @param execId
+   */
+  public void flush(int execId) {
+    synchronized (flushLock) {
+      flushFlow(execId);
+    }
+  }
+
+  /**
+   * Writes the pending rows of every flow, one transaction per flow. The rows
+   * of a flow stay queued until its turn comes.
+   */
+  public void flushAll() {
+    synchronized (flushLock) {
+      List<Integer> execIds;
+      synchronized (this) {
+        execIds = new ArrayList<Integer>(pending.keySet());
+      }
+      for (int execId : execIds) {
+        flushFlow(execId);
+      }
+    }
+  }
+
+  /* caller holds flushLock */
+  private void flushFlow(int execId) {
+    LinkedHashMap<String, PendingWrite> flowWrites;
+    synchronized (this) {
+      flowWrites = pending.remove(execId);
+      if (flowWrites != null) {
+        pendingRows -= flowWrites.size();
+      }
+    }
+    if (flowWrites != null) {
+      write(execId, flowWrites);
+    }
+  }
+
+  /* caller holds flushLock */
+  private void write(int execId, LinkedHashMap<String, PendingWrite> flowWrites) {
+    List<ExecutableNodeRecord> uploads = new ArrayList<ExecutableNodeRecord>();
+    List<ExecutableNodeRecord> updates = new ArrayList<ExecutableNodeRecord>();
+    for (PendingWrite write : flowWrites.values()) {
+      if (write.upload != null) {
+        uploads.add(write.upload);
+      }
+      if (write.update != null) {
+        updates.add(write.update);
+      }
+    }
+
+    long startTime = System.currentTimeMillis();
+    try {
+      loader.writeExecutableNodes(uploads, updates);
+      writtenRows.addAndGet(flowWrites.size());
+    } catch (ExecutorManagerException e) {
+      logger.error("Failed to write " + flowWrites.size() + " jobs of flow "
+          + execId + " as a batch, retrying them one by one", e);
+      for (PendingWrite write : flowWrites.values()) {
+        writeSingle(write);
+      }
+    } catch (RuntimeException e) {
+      // not a database error, writing the rows again would fail the same way
+      logger.error("Could not write " + flowWrites.size() + " jobs of flow "
+          + execId, e);
+      droppedRows.addAndGet(flowWrites.size());
+    }
+    flushLatency.record(System.currentTimeMillis() - startTime);
+  }
+
+  private void writeSingle(PendingWrite write) {
+    List<ExecutableNodeRecord> uploads =
+        write.upload == null ? Collections.<ExecutableNodeRecord> emptyList()
+            : Collections.singletonList(write.upload);
+    List<ExecutableNodeRecord> updates =
+        write.update == null ? Collections.<ExecutableNodeRecord> emptyList()
+            : Collections.singletonList(write.update);
+    try {
+      loader.writeExecutableNodes(uploads, updates);
+      writtenRows.incrementAndGet();
+    } catch (ExecutorManagerException | RuntimeException e) {
+      ExecutableNodeRecord record =
+          write.update != null ? write.update : write.upload;
+      logger.error("Could not write job " + record.getJobId() + " attempt "
+          + record.getAttempt() + " of flow " + record.getExecId(), e);
+      droppedRows.incrementAndGet();
+    }
+  }
+
+  /**
+   * Number of rows with writes waiting to be flushed
+   *
+   * @return
+   */
+  public synchronized int getQueueDepth() {
+    return pendingRows;
+  }
+
+  public LatencyHistogram getFlushLatency() {
+    return flushLatency;
+  }
+
+  public long getWrittenRows() {
+    return writtenRows.get();
+  }
+
+  public long getDroppedRows() {
+    return droppedRows.get();
+  }
+
+  private static class PendingWrite {
+    private ExecutableNodeRecord upload;
+    private ExecutableNodeRecord update;
+  }
+
+  private class WriterThread extends Thread {
+    private volatile boolean shutdown = false;
+
+    private WriterThread() {
+      this.setName("AzkabanExecutorServer-ExecutionJobWriter-Thread");
+      this.setDaemon(true);
+    }
+
+    private void shutdown() {
+      shutdown = true;
+      synchronized (ExecutionJobWriter.this) {
+        ExecutionJobWriter.this.notifyAll();
+      }
+    }
+
+    @Override
+    public void run() {
+      while (!shutdown) {
+        try {
+          synchronized (ExecutionJobWriter.this) {
+            if (pendingRows < maxBatchSize) {
+              ExecutionJobWriter.this.wait(maxDelayMs);
+            }
+          }
+          flushAll();
+        } catch (InterruptedException e) {
+          logger.info("Interrupted. Probably to shut down.");
+        } catch (Exception e) {
+          logger.error("Failed to flush job writes", e);
+        }
+      }
+    }
+  }
+}
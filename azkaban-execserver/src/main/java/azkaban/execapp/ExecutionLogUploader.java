@@ -0,0 +1,410 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import azkaban.executor.ExecutionLogChunk;
+import azkaban.executor.ExecutorLoader;
+import azkaban.executor.ExecutorManagerException;
+
+/**
+ * <pre>
+ * Ships job logs to execution_logs while the jobs are running.
+ *
+ * Every job logger gets a LogStream appender, which buffers what the job logs
+ * in memory. A background thread appends the buffered bytes of the streams
+ * that are due as chunks, in one JDBC batch. A stream is due once it buffered
+ * minFlushBytes, or once its oldest buffered byte is intervalMs old, so a
+ * quiet job adds at most one row per intervalMs and a chatty one adds rows
+ * of about minFlushBytes. When the job ends, finish uploads the rest of its
+ * log.
+ *
+ * A stream whose upload fails, whose buffer grows past maxBufferBytes
+ * because uploads can't keep up, or whose log grows past the maxLogBytes it
+ * was opened with, is marked broken and stops buffering. finish returns false
+ * for it, and the caller uploads the log files instead.
+ * </pre>
+ */
+public class ExecutionLogUploader {
+  private static final Logger logger = Logger
+      .getLogger(ExecutionLogUploader.class);
+
+  // same chunk size as the upload of log files
+  private static final int CHUNK_SIZE = 50 * 1024;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final ExecutorLoader loader;
+  private final long intervalMs;
+  private final int minFlushBytes;
+  private final int maxBufferBytes;
+
+  private final Map<LogStream, Boolean> streams =
+      new LinkedHashMap<LogStream, Boolean>();
+  // serializes uploads, so the chunks of a stream are appended in order
+  private final Object flushLock = new Object();
+  // set by the streams that buffered minFlushBytes, guarded by this
+  private boolean flushRequested = false;
+
+  private final AtomicLong uploadedBytes = new AtomicLong();
+  private final AtomicLong brokenStreams = new AtomicLong();
+
+  private UploaderThread thread;
+
+  /**
+   * @param loader
+   * @param intervalMs maximum age of the buffered bytes of a stream
+   * @param minFlushBytes buffered bytes past which a stream is uploaded
+   *          without waiting for intervalMs
+   * @param maxBufferBytes buffered bytes past which a stream is broken
+   */
+  public ExecutionLogUploader(ExecutorLoader loader, long intervalMs,
+      int minFlushBytes, int maxBufferBytes) {
+    this.loader = loader;
+    this.intervalMs = intervalMs;
+    this.minFlushBytes = minFlushBytes;
+    this.maxBufferBytes = maxBufferBytes;
+  }
+
+  public synchronized void start() {
+    if (thread == null) {
+      thread = new UploaderThread();
+      thread.start();
+    }
+  }
+
+  /**
+   * Stops the background thread and uploads everything buffered
+   */
+  public void shutdown() {
+    UploaderThread uploaderThread;
+    synchronized (this) {
+      uploaderThread = thread;
+      thread = null;
+    }
+    if (uploaderThread != null) {
+      uploaderThread.shutdown();
+    }
+    flushAll();
+  }
+
+  /**
+   * Creates the appender streaming a log to execution_logs
+   *
+   * @param execId
+   * @param name
+   * @param attempt
+   * @param layout
+   * @param maxLogBytes size of the log past which it isn't streamed
+   * @return
+   */
+  public LogStream open(int execId, String name, int attempt, Layout layout,
+      long maxLogBytes) {
+    LogStream stream = new LogStream(execId, name, attempt, maxLogBytes);
+    stream.setLayout(layout);
+    synchronized (this) {
+      streams.put(stream, Boolean.TRUE);
+    }
+    return stream;
+  }
+
+  /**
+   * Closes the stream and uploads the rest of its log, waiting for it.
+   *
+   * @param stream
+   * @return true if the whole log is stored, false if it has to be uploaded
+   *         again
+   */
+  public boolean finish(LogStream stream) {
+    stream.close();
+    synchronized (flushLock) {
+      List<ExecutionLogChunk> chunks = stream.drain();
+      if (!chunks.isEmpty()) {
+        upload(stream, chunks);
+      }
+    }
+    synchronized (this) {
+      streams.remove(stream);
+    }
+    return !stream.isBroken();
+  }
+
+  /**
+   * Uploads what every open stream has buffered, as one batch
+   */
+  public void flushAll() {
+    flush(Long.MAX_VALUE);
+  }
+
+  /**
+   * Uploads, as one batch, what the streams that are due have buffered
+   *
+   * @return milliseconds until the next stream is due by age, at most
+   *         intervalMs
+   */
+  public long flushDue() {
+    return flush(System.currentTimeMillis());
+  }
+
+  /*
+   * Uploads the streams due at now, Long.MAX_VALUE for all of them. Returns
+   * how long until the first stream left is due.
+   */
+  private long flush(long now) {
+    long nextDue = now == Long.MAX_VALUE ? intervalMs : now + intervalMs;
+    synchronized (flushLock) {
+      List<LogStream> toFlush;
+      synchronized (this) {
+        toFlush = new ArrayList<LogStream>(streams.keySet());
+      }
+
+      Map<LogStream, List<ExecutionLogChunk>> chunksByStream =
+          new LinkedHashMap<LogStream, List<ExecutionLogChunk>>();
+      List<ExecutionLogChunk> allChunks = new ArrayList<ExecutionLogChunk>();
+      for (LogStream stream : toFlush) {
+        long due = stream.getDueTime();
+        if (due > now) {
+          nextDue = Math.min(nextDue, due);
+          continue;
+        }
+        List<ExecutionLogChunk> chunks = stream.drain();
+        if (!chunks.isEmpty()) {
+          chunksByStream.put(stream, chunks);
+          allChunks.addAll(chunks);
+        }
+      }
+      if (allChunks.isEmpty()) {
+        return Math.max(nextDue - now, 1);
+      }
+
+      try {
+        loader.appendLogChunks(allChunks);
+        for (ExecutionLogChunk chunk : allChunks) {
+          uploadedBytes.addAndGet(chunk.getData().length);
+        }
+      } catch (ExecutorManagerException e) {
+        logger.error("Failed to append " + allChunks.size()
+            + " log chunks as a batch, retrying them per log", e);
+        for (Map.Entry<LogStream, List<ExecutionLogChunk>> entry : chunksByStream
+            .entrySet()) {
+          upload(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    return Math.max(nextDue - now, 1);
+  }
+
+  /* caller holds flushLock */
+  private void upload(LogStream stream, List<ExecutionLogChunk> chunks) {
+    try {
+      loader.appendLogChunks(chunks);
+      for (ExecutionLogChunk chunk : chunks) {
+        uploadedBytes.addAndGet(chunk.getData().length);
+      }
+    } catch (ExecutorManagerException e) {
+      logger.error("Failed to append log " + stream.name + " attempt "
+          + stream.attempt + " of flow " + stream.execId, e);
+      stream.markBroken();
+    }
+  }
+
+  /**
+   * Number of logs being streamed
+   *
+   * @return
+   */
+  public synchronized int getOpenStreams() {
+    return streams.size();
+  }
+
+  private synchronized void requestFlush() {
+    flushRequested = true;
+    notifyAll();
+  }
+
+  public long getUploadedBytes() {
+    return uploadedBytes.get();
+  }
+
+  public long getBrokenStreams() {
+    return brokenStreams.get();
+  }
+
+  /**
+   * Appender buffering a job log until the uploader ships it
+   */
+  public class LogStream extends AppenderSkeleton {
+    private final int execId;
+    private final String name;
+    private final int attempt;
+    private final long maxLogBytes;
+
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    // offset of the first buffered byte in the log
+    private long bufferStart = 0;
+    // when the first buffered byte was logged
+    private long bufferTime = 0;
+    private boolean broken = false;
+
+    private LogStream(int execId, String name, int attempt, long maxLogBytes) {
+      this.execId = execId;
+      this.name = name;
+      this.attempt = attempt;
+      this.maxLogBytes = maxLogBytes;
+    }
+
+    @Override
+    protected void append(LoggingEvent event) {
+      if (broken) {
+        return;
+      }
+
+      StringBuilder text = new StringBuilder(layout.format(event));
+      if (layout.ignoresThrowable()) {
+        String[] lines = event.getThrowableStrRep();
+        if (lines != null) {
+          for (String line : lines) {
+            text.append(line).append(Layout.LINE_SEP);
+          }
+        }
+      }
+
+      byte[] bytes = text.toString().getBytes(UTF8);
+      if (bufferStart + buffer.size() + bytes.length > maxLogBytes) {
+        // the log files roll over at the same size
+        logger.info("Log " + name + " attempt " + attempt + " of flow "
+            + execId + " is larger than " + maxLogBytes
+            + " bytes, its log files will be uploaded when the job finishes");
+        markBroken();
+        return;
+      }
+      int size = buffer.size();
+      if (size == 0) {
+        bufferTime = System.currentTimeMillis();
+      }
+      buffer.write(bytes, 0, bytes.length);
+      if (buffer.size() > maxBufferBytes) {
+        logger.error("Log " + name + " attempt " + attempt + " of flow "
+            + execId + " buffered more than " + maxBufferBytes
+            + " bytes, it will be uploaded when the job finishes");
+        markBroken();
+      } else if (size < minFlushBytes && buffer.size() >= minFlushBytes) {
+        requestFlush();
+      }
+    }
+
+    /*
+     * When the stream is due to be uploaded: now once it buffered
+     * minFlushBytes, else intervalMs after its oldest buffered byte.
+     */
+    private synchronized long getDueTime() {
+      if (broken || buffer.size() == 0) {
+        return Long.MAX_VALUE;
+      } else if (buffer.size() >= minFlushBytes) {
+        return 0;
+      }
+      return bufferTime + intervalMs;
+    }
+
+    private synchronized List<ExecutionLogChunk> drain() {
+      List<ExecutionLogChunk> chunks = new ArrayList<ExecutionLogChunk>();
+      if (broken || buffer.size() == 0) {
+        return chunks;
+      }
+
+      byte[] bytes = buffer.toByteArray();
+      buffer.reset();
+      for (int start = 0; start < bytes.length; start += CHUNK_SIZE) {
+        int end = Math.min(start + CHUNK_SIZE, bytes.length);
+        chunks.add(new ExecutionLogChunk(execId, name, attempt, bufferStart
+            + start, Arrays.copyOfRange(bytes, start, end)));
+      }
+      bufferStart += bytes.length;
+      return chunks;
+    }
+
+    private synchronized void markBroken() {
+      if (!broken) {
+        broken = true;
+        buffer = null;
+        brokenStreams.incrementAndGet();
+      }
+    }
+
+    public synchronized boolean isBroken() {
+      return broken;
+    }
+
+    @Override
+    public void close() {
+      this.closed = true;
+    }
+
+    @Override
+    public boolean requiresLayout() {
+      return true;
+    }
+  }
+
+  private class UploaderThread extends Thread {
+    private volatile boolean shutdown = false;
+
+    private UploaderThread() {
+      this.setName("AzkabanExecutorServer-ExecutionLogUploader-Thread");
+      this.setDaemon(true);
+    }
+
+    private void shutdown() {
+      shutdown = true;
+      synchronized (ExecutionLogUploader.this) {
+        ExecutionLogUploader.this.notifyAll();
+      }
+    }
+
+    @Override
+    public void run() {
+      long waitMs = intervalMs;
+      while (!shutdown) {
+        try {
+          synchronized (ExecutionLogUploader.this) {
+            if (!shutdown && !flushRequested) {
+              ExecutionLogUploader.this.wait(waitMs);
+            }
+            flushRequested = false;
+          }
+          waitMs = flushDue();
+        } catch (InterruptedException e) {
+          logger.info("Interrupted. Probably to shut down.");
+        } catch (Exception e) {
+          logger.error("Failed to upload logs", e);
+        }
+      }
+    }
+  }
+}
@@ -46,6 +46,8 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
   private static final Logger logger = Logger.getLogger(ExecutorServlet.class
       .getName());
   public static final String JSON_MIME_TYPE = "application/json";
+  // Upper bound on how long an update call may be held open.
+  private static final long MAX_UPDATE_WAIT_TIME_MS = 60 * 1000;
 
   private AzkabanExecutorServer application;
   private FlowRunnerManager flowRunnerManager;
@@ -95,6 +97,8 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
         } else if (action.equals(RELOAD_JOBTYPE_PLUGINS_ACTION)) {
           logger.info("Reloading Jobtype plugins");
           handleReloadJobTypePlugins(respMap);
+        } else if (action.equals(PREFETCH_PROJECT_ACTION)) {
+          handlePrefetchProject(req, respMap);
         } else {
           int execid = Integer.parseInt(getParam(req, EXECID_PARAM));
           String user = getParam(req, USER_PARAM, null);
@@ -226,6 +230,13 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
     }
   }
 
+  /**
+   * Returns the node level changes of the requested flows since the update
+   * times the caller already has. If nothing has changed and the caller asked
+   * for a wait time, the call is held until one of the flows on this executor
+   * is updated, so the web server sees changes as they happen instead of on
+   * its next poll.
+   */
   @SuppressWarnings("unchecked")
   private void handleAjaxUpdateRequest(HttpServletRequest req,
       Map<String, Object> respMap) throws ServletException, IOException {
@@ -235,7 +246,33 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
     ArrayList<Object> execIDList =
         (ArrayList<Object>) JSONUtils.parseJSONFromString(getParam(req,
             EXEC_ID_LIST_PARAM));
+    long waitTime =
+        getUpdateWaitTime(getLongParam(req, UPDATE_WAIT_TIME_PARAM, 0));
 
+    long startTime = System.currentTimeMillis();
+    long sequence = flowRunnerManager.getFlowUpdateSequence();
+    List<Object> updateList = getFlowUpdates(execIDList, updateTimesList);
+    if (updateList.isEmpty() && waitTime > 0) {
+      try {
+        flowRunnerManager.waitForFlowUpdate(sequence, waitTime);
+      } catch (InterruptedException e) {
+        logger.info("Interrupted while waiting for flow updates.");
+      }
+      updateList = getFlowUpdates(execIDList, updateTimesList);
+    }
+
+    respMap.put(RESPONSE_UPDATED_FLOWS, updateList);
+    respMap.put(RESPONSE_UPDATE_WAIT_TIME, System.currentTimeMillis()
+        - startTime);
+  }
+
+  /* Caps the wait time asked for by an update call */
+  static long getUpdateWaitTime(long requestedWaitTime) {
+    return Math.max(0, Math.min(requestedWaitTime, MAX_UPDATE_WAIT_TIME_MS));
+  }
+
+  private List<Object> getFlowUpdates(List<Object> execIDList,
+      List<Object> updateTimesList) {
     ArrayList<Object> updateList = new ArrayList<Object>();
     for (int i = 0; i < execIDList.size(); ++i) {
       long updateTime = JSONUtils.getLongFromObject(updateTimesList.get(i));
@@ -254,8 +291,7 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
         updateList.add(flow.toUpdateObject(updateTime));
       }
     }
-
-    respMap.put(RESPONSE_UPDATED_FLOWS, updateList);
+    return updateList;
   }
 
   private void handleAjaxExecute(HttpServletRequest req,
@@ -327,6 +363,15 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
     }
   }
 
+  private void handlePrefetchProject(HttpServletRequest req,
+      Map<String, Object> respMap) throws ServletException {
+    int projectId = Integer.parseInt(getParam(req, PROJECT_ID_PARAM));
+    int version = Integer.parseInt(getParam(req, PROJECT_VERSION_PARAM));
+    logger.info("Prefetching project " + projectId + " version " + version);
+    flowRunnerManager.prefetchProject(projectId, version);
+    respMap.put(STATUS_PARAM, RESPONSE_SUCCESS);
+  }
+
   private void handleReloadJobTypePlugins(Map<String, Object> respMap)
       throws ServletException {
     try {
@@ -376,6 +421,19 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
     return Integer.parseInt(p);
   }
 
+  public long getLongParam(HttpServletRequest request, String name,
+      long defaultVal) {
+    if (hasParam(request, name)) {
+      try {
+        return Long.parseLong(getParam(request, name));
+      } catch (Exception e) {
+        return defaultVal;
+      }
+    }
+
+    return defaultVal;
+  }
+
   public int getIntParam(HttpServletRequest request, String name, int defaultVal) {
     if (hasParam(request, name)) {
       try {
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <pre>
+ * Job threads shared by all the flows running on the executor.
+ *
+ * Each flow submits its jobs to its own FlowExecutor, a view of the pool.
+ * At most maxJobs jobs run on the executor at a time, at most the limit of
+ * the flow run per flow, and at most maxJobsPerProject run per project. When
+ * a thread frees up, the next job is taken from the flow with the fewest
+ * running jobs for its weight, among the flows under their limits, so a wide
+ * flow gets its share of the threads instead of all of them. Ties go to the
+ * job submitted first. The jobs of a flow start in the order they were
+ * submitted.
+ *
+ * A job waiting on another flow, like a pipelined job, marks the wait with
+ * beginWait and endWait. It keeps its thread and its place under the limit
+ * of its flow, but isn't counted against maxJobs or maxJobsPerProject while
+ * it waits, so the jobs it waits for can run. The pool starts a thread for
+ * every job dispatched, so there are up to maxJobs threads plus one per
+ * waiting job.
+ * </pre>
+ */
+public class FairShareJobPool {
+  private static final Logger logger = Logger
+      .getLogger(FairShareJobPool.class);
+
+  private static final int JOBS_PER_PROCESSOR = 8;
+  private static final long IDLE_THREAD_KEEP_ALIVE_MS = 60 * 1000;
+
+  // the job running on the current thread
+  private static final ThreadLocal<Job> currentJob = new ThreadLocal<Job>();
+
+  private final int maxJobs;
+  private final int maxJobsPerProject;
+  private final ThreadPoolExecutor threads;
+
+  // guarded by this
+  private final List<FlowExecutor> flows = new ArrayList<FlowExecutor>();
+  private final Map<Integer, Integer> runningPerProject =
+      new HashMap<Integer, Integer>();
+  private int running = 0;
+  private int queued = 0;
+  private long submitted = 0;
+  private boolean shutdown = false;
+
+  /**
+   * @param maxJobs jobs running at once on the executor
+   * @param maxJobsPerProject jobs running at once per project, 0 for no limit
+   */
+  public FairShareJobPool(int maxJobs, int maxJobsPerProject) {
+    this.maxJobs = maxJobs;
+    this.maxJobsPerProject = maxJobsPerProject;
+    // dispatched jobs never wait for a thread, the jobs waiting on other flows
+    // may hold more than maxJobs of them
+    this.threads =
+        new ThreadPoolExecutor(maxJobs, Integer.MAX_VALUE,
+            IDLE_THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<Runnable>(), new JobThreadFactory());
+    this.threads.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * The job cap used when none is configured, from the processors of the
+   * host. Jobs mostly wait on the processes they start, and their memory is
+   * checked when they start, so several jobs run per processor.
+   *
+   * @return
+   */
+  public static int getDefaultMaxJobs() {
+    return Runtime.getRuntime().availableProcessors() * JOBS_PER_PROCESSOR;
+  }
+
+  /**
+   * Registers a flow with the pool
+   *
+   * @param execId
+   * @param projectId
+   * @param maxJobs jobs of the flow running at once
+   * @param weight share of the pool relative to the other flows, at least 1
+   * @return the executor to submit the jobs of the flow to
+   */
+  public synchronized FlowExecutor createFlowExecutor(int execId,
+      int projectId, int maxJobs, int weight) {
+    if (shutdown) {
+      throw new RejectedExecutionException("Job pool is shut down");
+    }
+    FlowExecutor flow =
+        new FlowExecutor(execId, projectId, Math.max(1, maxJobs), Math.max(1,
+            weight));
+    flows.add(flow);
+    return flow;
+  }
+
+  /**
+   * Shuts down every flow and drops their queued jobs. The running jobs
+   * finish, then the threads exit.
+   *
+   * @return the jobs that never ran
+   */
+  public synchronized List<Runnable> shutdown() {
+    shutdown = true;
+    List<Runnable> tasks = new ArrayList<Runnable>();
+    for (FlowExecutor flow : new ArrayList<FlowExecutor>(flows)) {
+      tasks.addAll(flow.shutdownNow());
+    }
+    threads.shutdown();
+    return tasks;
+  }
+
+  /**
+   * Waits for the threads to exit after shutdown
+   *
+   * @param timeout
+   * @param unit
+   * @return false if the timeout elapsed first
+   * @throws InterruptedException
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit)
+      throws InterruptedException {
+    return threads.awaitTermination(timeout, unit);
+  }
+
+  /**
+   * Stops counting the job of the current thread against maxJobs and
+   * maxJobsPerProject until endWait, while it waits on another flow. Does
+   * nothing outside of the jobs of a pool.
+   */
+  public static void beginWait() {
+    Job job = currentJob.get();
+    if (job != null) {
+      job.flow.pool().setWaiting(job, true);
+    }
+  }
+
+  /**
+   * Counts the job of the current thread again after beginWait. It may run
+   * over maxJobs until enough jobs finish.
+   */
+  public static void endWait() {
+    Job job = currentJob.get();
+    if (job != null) {
+      job.flow.pool().setWaiting(job, false);
+    }
+  }
+
+  public int getMaxJobs() {
+    return maxJobs;
+  }
+
+  public int getMaxJobsPerProject() {
+    return maxJobsPerProject;
+  }
+
+  public synchronized int getNumRunningJobs() {
+    return running;
+  }
+
+  public synchronized int getNumQueuedJobs() {
+    return queued;
+  }
+
+  public synchronized int getNumFlows() {
+    return flows.size();
+  }
+
+  /*
+   * Starts queued jobs while there are free threads and flows under their
+   * limits.
+   */
+  private synchronized void dispatch() {
+    while (running < maxJobs && queued > 0) {
+      FlowExecutor next = null;
+      for (FlowExecutor flow : flows) {
+        if (flow.queue.isEmpty() || flow.running >= flow.maxJobs
+            || !isUnderProjectLimit(flow.projectId)) {
+          continue;
+        }
+        if (next == null || isBefore(flow, next)) {
+          next = flow;
+        }
+      }
+      if (next == null) {
+        return;
+      }
+
+      Job job = next.queue.poll();
+      --queued;
+      ++next.running;
+      countRunning(next.projectId, 1);
+      threads.execute(job);
+    }
+  }
+
+  /* counts a job of the project against maxJobs and maxJobsPerProject */
+  private void countRunning(int projectId, int delta) {
+    running += delta;
+    Integer projectRunning = runningPerProject.get(projectId);
+    int count = (projectRunning == null ? 0 : projectRunning) + delta;
+    if (count == 0) {
+      runningPerProject.remove(projectId);
+    } else {
+      runningPerProject.put(projectId, count);
+    }
+  }
+
+  private synchronized void setWaiting(Job job, boolean waiting) {
+    if (job.waiting == waiting) {
+      return;
+    }
+    job.waiting = waiting;
+    countRunning(job.flow.projectId, waiting ? -1 : 1);
+    if (waiting) {
+      dispatch();
+    }
+  }
+
+  private boolean isUnderProjectLimit(int projectId) {
+    if (maxJobsPerProject <= 0) {
+      return true;
+    }
+    Integer projectRunning = runningPerProject.get(projectId);
+    return projectRunning == null || projectRunning < maxJobsPerProject;
+  }
+
+  /*
+   * running / weight of a is less than b's, or it's equal and a's next job
+   * was submitted first
+   */
+  private static boolean isBefore(FlowExecutor a, FlowExecutor b) {
+    long share = (long) a.running * b.weight - (long) b.running * a.weight;
+    if (share != 0) {
+      return share < 0;
+    }
+    return a.queue.peek().seq < b.queue.peek().seq;
+  }
+
+  private synchronized void finished(Job job) {
+    FlowExecutor flow = job.flow;
+    --flow.running;
+    if (!job.waiting) {
+      countRunning(flow.projectId, -1);
+    }
+    if (flow.isTerminated()) {
+      flows.remove(flow);
+      notifyAll();
+    }
+    dispatch();
+  }
+
+  private static class Job implements Runnable {
+    private final FlowExecutor flow;
+    private final Runnable task;
+    private final long seq;
+    // guarded by the pool
+    private boolean waiting = false;
+
+    private Job(FlowExecutor flow, Runnable task, long seq) {
+      this.flow = flow;
+      this.task = task;
+      this.seq = seq;
+    }
+
+    @Override
+    public void run() {
+      currentJob.set(this);
+      try {
+        task.run();
+      } catch (Throwable t) {
+        logger.error("Job of flow " + flow.execId + " failed", t);
+      } finally {
+        currentJob.remove();
+        flow.pool().finished(this);
+      }
+    }
+  }
+
+  /**
+   * The jobs of one flow. Shutting it down stops new jobs, the jobs already
+   * submitted still run.
+   */
+  public class FlowExecutor extends AbstractExecutorService {
+    private final int execId;
+    private final int projectId;
+    private final int maxJobs;
+    private final int weight;
+
+    // guarded by the pool
+    private final ArrayDeque<Job> queue = new ArrayDeque<Job>();
+    private int running = 0;
+    private boolean shutdown = false;
+
+    private FlowExecutor(int execId, int projectId, int maxJobs, int weight) {
+      this.execId = execId;
+      this.projectId = projectId;
+      this.maxJobs = maxJobs;
+      this.weight = weight;
+    }
+
+    private FairShareJobPool pool() {
+      return FairShareJobPool.this;
+    }
+
+    public int getMaxJobs() {
+      return maxJobs;
+    }
+
+    public int getWeight() {
+      return weight;
+    }
+
+    public int getNumRunningJobs() {
+      synchronized (pool()) {
+        return running;
+      }
+    }
+
+    public int getNumQueuedJobs() {
+      synchronized (pool()) {
+        return queue.size();
+      }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      synchronized (pool()) {
+        if (shutdown) {
+          throw new RejectedExecutionException("Flow " + execId
+              + " doesn't take jobs anymore");
+        }
+        queue.add(new Job(this, task, submitted++));
+        ++queued;
+        dispatch();
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      synchronized (pool()) {
+        shutdown = true;
+        if (isTerminated()) {
+          flows.remove(this);
+          pool().notifyAll();
+        }
+      }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      synchronized (pool()) {
+        List<Runnable> tasks = new ArrayList<Runnable>(queue.size());
+        for (Job job : queue) {
+          tasks.add(job.task);
+        }
+        queued -= queue.size();
+        queue.clear();
+        shutdown();
+        return tasks;
+      }
+    }
+
+    @Override
+    public boolean isShutdown() {
+      synchronized (pool()) {
+        return shutdown;
+      }
+    }
+
+    @Override
+    public boolean isTerminated() {
+      synchronized (pool()) {
+        return shutdown && running == 0 && queue.isEmpty();
+      }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException {
+      long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+      synchronized (pool()) {
+        while (!isTerminated()) {
+          long wait = deadline - System.currentTimeMillis();
+          if (wait <= 0) {
+            return false;
+          }
+          pool().wait(wait);
+        }
+        return true;
+      }
+    }
+  }
+
+  private static class JobThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      return new Thread(runnable, "azkaban-job-" + count.incrementAndGet());
+    }
+  }
+}
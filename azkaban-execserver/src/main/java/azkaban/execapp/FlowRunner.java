@@ -86,6 +86,8 @@ public class FlowRunner extends EventHandler implements Runnable {
 
   // Thread safe swap queue for finishedExecutions.
   private SwapQueue<ExecutableNode> finishedNodes;
+  // unfinished dependencies of the nodes, guarded by mainSyncObj
+  private final DependencyTracker dependencies;
 
   // Used for pipelining
   private Integer pipelineLevel = null;
@@ -100,6 +102,19 @@ public class FlowRunner extends EventHandler implements Runnable {
   private String jobLogFileSize = "5MB";
   private int jobLogNumFiles = 4;
 
+  // Between milestones, only the nodes changed since the last update are
+  // persisted. The whole flow is written when its status changes, at the
+  // end, and after compactionInterval deltas.
+  private boolean incrementalUpdates = false;
+  private int compactionInterval = 50;
+  private int updatesSinceCompaction = 0;
+  private Status lastPersistedStatus = null;
+  private long lastPersistedTime = -1;
+  // queues the execution_jobs writes of the job runners when set
+  private ExecutionJobWriter jobWriter;
+  // streams the job logs to execution_logs while they run when set
+  private ExecutionLogUploader logUploader;
+
   private boolean flowPaused = false;
   private boolean flowFailed = false;
   private boolean flowFinished = false;
@@ -125,7 +140,7 @@ public class FlowRunner extends EventHandler implements Runnable {
 
   /**
    * Constructor. If executorService is null, then it will create it's own for
-   * thread pools.
+   * thread pools. The executorService is shut down when the flow finishes.
    *
    * @param flow
    * @param executorLoader
@@ -151,6 +166,7 @@ public class FlowRunner extends EventHandler implements Runnable {
     this.proxyUsers = flow.getProxyUsers();
     this.executorService = executorService;
     this.finishedNodes = new SwapQueue<ExecutableNode>();
+    this.dependencies = new DependencyTracker(flow);
   }
 
   public FlowRunner setFlowWatcher(FlowWatcher watcher) {
@@ -158,6 +174,23 @@ public class FlowRunner extends EventHandler implements Runnable {
     return this;
   }
 
+  public FlowRunner setIncrementalUpdates(boolean incrementalUpdates,
+      int compactionInterval) {
+    this.incrementalUpdates = incrementalUpdates;
+    this.compactionInterval = compactionInterval;
+    return this;
+  }
+
+  public FlowRunner setJobWriter(ExecutionJobWriter jobWriter) {
+    this.jobWriter = jobWriter;
+    return this;
+  }
+
+  public FlowRunner setLogUploader(ExecutionLogUploader logUploader) {
+    this.logUploader = logUploader;
+    return this;
+  }
+
   public FlowRunner setNumJobThreads(int jobs) {
     numJobThreads = jobs;
     return this;
@@ -217,7 +250,15 @@ public class FlowRunner extends EventHandler implements Runnable {
           + System.currentTimeMillis());
       closeLogger();
 
-      updateFlow();
+      if (jobWriter != null) {
+        // job rows are complete before the flow shows as finished
+        jobWriter.flush(execId);
+      }
+      updateFlow(System.currentTimeMillis(), true);
+      if (executorService != null) {
+        // also when the flow failed before running jobs
+        executorService.shutdown();
+      }
       this.fireEventListeners(Event.create(this, Type.FLOW_FINISHED));
     }
   }
@@ -276,16 +317,30 @@ public class FlowRunner extends EventHandler implements Runnable {
   }
 
   private void updateFlow() {
-    updateFlow(System.currentTimeMillis());
+    updateFlow(System.currentTimeMillis(), false);
   }
 
-  private synchronized void updateFlow(long time) {
+  private synchronized void updateFlow(long time, boolean milestone) {
     try {
       flow.setUpdateTime(time);
-      executorLoader.updateExecutableFlow(flow);
+      if (incrementalUpdates && !milestone && lastPersistedTime >= 0
+          && flow.getStatus() == lastPersistedStatus
+          && updatesSinceCompaction < compactionInterval) {
+        // nodes updated in the same millisecond as the last write may not
+        // be in it yet
+        executorLoader.updateExecutableFlowDelta(flow, lastPersistedTime - 1);
+        updatesSinceCompaction++;
+      } else {
+        executorLoader.updateExecutableFlow(flow);
+        lastPersistedStatus = flow.getStatus();
+        updatesSinceCompaction = 0;
+      }
+      lastPersistedTime = time;
     } catch (ExecutorManagerException e) {
       logger.error("Error updating flow.", e);
     }
+    // Wakes up web servers waiting on a long poll update call.
+    this.fireEventListeners(Event.create(this, Type.FLOW_UPDATED));
   }
 
   private void createLogger(String flowId) {
@@ -392,6 +447,7 @@ public class FlowRunner extends EventHandler implements Runnable {
 
     ArrayList<ExecutableNode> retryJobs = new ArrayList<ExecutableNode>();
     resetFailedState(this.flow, retryJobs);
+    dependencies.recount();
 
     for (ExecutableNode node : retryJobs) {
       if (node.getStatus() == Status.READY
@@ -414,10 +470,10 @@ public class FlowRunner extends EventHandler implements Runnable {
     finishedNodes.swap();
 
     // The following nodes are finished, so we'll collect a list of outnodes
-    // that are candidates for running next.
+    // that are candidates for running next. Only the out nodes with no
+    // unfinished dependencies left are candidates.
     HashSet<ExecutableNode> nodesToCheck = new HashSet<ExecutableNode>();
     for (ExecutableNode node : finishedNodes) {
-      Set<String> outNodeIds = node.getOutNodes();
       ExecutableFlowBase parentFlow = node.getParentFlow();
 
       // If a job is seen as failed, then we set the parent flow to
@@ -437,25 +493,14 @@ public class FlowRunner extends EventHandler implements Runnable {
         }
       }
 
-      if (outNodeIds.isEmpty()) {
+      if (node.getOutNodes().isEmpty()) {
         // There's no outnodes means it's the end of a flow, so we finalize
-        // and fire an event.
+        // and fire an event. The out nodes of an embedded flow are checked
+        // when the finished flow is taken from the queue.
         finalizeFlow(parentFlow);
         finishExecutableNode(parentFlow);
-
-        // If the parent has a parent, then we process
-        if (!(parentFlow instanceof ExecutableFlow)) {
-          outNodeIds = parentFlow.getOutNodes();
-          parentFlow = parentFlow.getParentFlow();
-        }
-      }
-
-      // Add all out nodes from the finished job. We'll check against this set
-      // to
-      // see if any are candidates for running.
-      for (String nodeId : outNodeIds) {
-        ExecutableNode outNode = parentFlow.getExecutableNode(nodeId);
-        nodesToCheck.add(outNode);
+      } else {
+        dependencies.nodeFinished(node, nodesToCheck);
       }
     }
 
@@ -739,6 +784,12 @@ public class FlowRunner extends EventHandler implements Runnable {
       return null;
     }
 
+    // Counted without scanning the dependencies, so a node checked after each
+    // of its many dependencies finishes is only scanned once.
+    if (!dependencies.isReady(node)) {
+      return null;
+    }
+
     // Go through the node's dependencies. If all of the previous job's
     // statuses is finished and not FAILED or KILLED, than we can safely
     // run this job.
@@ -808,6 +859,8 @@ public class FlowRunner extends EventHandler implements Runnable {
       jobRunner.setValidatedProxyUsers(proxyUsers);
     }
 
+    jobRunner.setJobWriter(jobWriter);
+    jobRunner.setLogUploader(logUploader);
     jobRunner.setDelayStart(node.getDelayedExecution());
     jobRunner.setLogSettings(logger, jobLogFileSize, jobLogNumFiles);
     jobRunner.addListener(listener);
@@ -30,9 +30,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
@@ -48,12 +50,15 @@ import azkaban.executor.ExecutableFlow;
 import azkaban.executor.ExecutionOptions;
 import azkaban.executor.ExecutorLoader;
 import azkaban.executor.ExecutorManagerException;
+import azkaban.executor.JdbcExecutorLoader;
+import azkaban.executor.RecentlyFinishedFlows;
 import azkaban.jobtype.JobTypeManager;
 import azkaban.jobtype.JobTypeManagerException;
 import azkaban.metric.MetricReportManager;
 import azkaban.project.ProjectLoader;
 import azkaban.project.ProjectWhitelist;
 import azkaban.project.ProjectWhitelist.WhitelistType;
+import azkaban.utils.DirectoryMaterializer;
 import azkaban.utils.FileIOUtils;
 import azkaban.utils.FileIOUtils.JobMetaData;
 import azkaban.utils.FileIOUtils.LogData;
@@ -94,6 +99,38 @@ public class FlowRunnerManager implements EventListener,
       "executor.threadpool.workqueue.size";
   private static final String EXECUTOR_FLOW_THREADS = "executor.flow.threads";
   private static final String FLOW_NUM_JOB_THREADS = "flow.num.job.threads";
+  private static final String FLOW_JOB_WEIGHT = "flow.job.weight";
+  private static final String EXECUTOR_MAX_JOB_THREADS =
+      "executor.max.job.threads";
+  private static final String EXECUTOR_MAX_JOB_THREADS_PER_PROJECT =
+      "executor.max.job.threads.per.project";
+  private static final String RECENTLY_FINISHED_MAX_SIZE =
+      "executor.recentlyfinished.maxSize";
+  private static final String RECENTLY_FINISHED_SUMMARY_ONLY =
+      "executor.recentlyfinished.summaryOnly";
+  private static final String FLOW_UPDATE_COMPACTION_INTERVAL =
+      "executor.flow.update.compaction.interval";
+  private static final String JOB_WRITE_BEHIND = "executor.job.write.behind";
+  private static final String JOB_WRITE_BEHIND_MAX_DELAY_MS =
+      "executor.job.write.behind.max.delay.ms";
+  private static final String JOB_WRITE_BEHIND_BATCH_SIZE =
+      "executor.job.write.behind.batch.size";
+  private static final String JOB_LOG_STREAMING = "executor.job.log.streaming";
+  // maximum age of the streamed log lines not uploaded yet
+  private static final String JOB_LOG_STREAMING_INTERVAL_MS =
+      "executor.job.log.streaming.interval.ms";
+  private static final String JOB_LOG_STREAMING_MIN_FLUSH_BYTES =
+      "executor.job.log.streaming.min.flush.bytes";
+  private static final String JOB_LOG_STREAMING_MAX_BUFFER_BYTES =
+      "executor.job.log.streaming.max.buffer.bytes";
+  private static final String PROJECT_CACHE_MAX_BYTES =
+      "executor.project.cache.max.bytes";
+  private static final String PROJECT_PREFETCH_THREADS =
+      "executor.project.prefetch.threads";
+  private static final String PROJECT_PREFETCH_QUEUE_SIZE =
+      "executor.project.prefetch.queue.size";
+  private static final String PROJECT_CACHE_DIR = "_artifacts";
+  private static final String EXECUTION_DIR_MODE = "executor.execution.dir.mode";
   private static Logger logger = Logger.getLogger(FlowRunnerManager.class);
   private File executionDirectory;
   private File projectDirectory;
@@ -113,8 +150,7 @@ public class FlowRunnerManager implements EventListener,
       new ConcurrentHashMap<Future<?>, Integer>();
   private Map<Integer, FlowRunner> runningFlows =
       new ConcurrentHashMap<Integer, FlowRunner>();
-  private Map<Integer, ExecutableFlow> recentlyFinishedFlows =
-      new ConcurrentHashMap<Integer, ExecutableFlow>();
+  private final RecentlyFinishedFlows recentlyFinishedFlows;
 
   private int numThreads = DEFAULT_NUM_EXECUTING_FLOWS;
   private int threadPoolQueueSize = -1;
@@ -124,9 +160,22 @@ public class FlowRunnerManager implements EventListener,
   private CleanerThread cleanerThread;
   private int numJobThreadPerFlow = DEFAULT_FLOW_NUM_JOB_TREADS;
 
+  // runs the jobs of every flow
+  private final FairShareJobPool jobPool;
+
   private ExecutorLoader executorLoader;
   private ProjectLoader projectLoader;
 
+  // the unzipped project files, shared by the versions with the same zip
+  private final ProjectArtifactCache artifactCache;
+  // gets project files ready ahead of their executions
+  private final ExecutorService prefetchService;
+  // project id and version of the prefetches queued or running
+  private final Set<Pair<Integer, Integer>> pendingPrefetches = Collections
+      .newSetFromMap(new ConcurrentHashMap<Pair<Integer, Integer>, Boolean>());
+  // links or copies the project files into the execution directories
+  private final DirectoryMaterializer executionDirMaterializer;
+
   private JobTypeManager jobtypeManager;
 
   private Props globalProps = null;
@@ -143,11 +192,25 @@ public class FlowRunnerManager implements EventListener,
   // If true, jobs will validate proxy user against a list of valid proxy users.
   private boolean validateProxyUser = false;
 
+  // persist running flows as deltas, rewriting the whole flow every
+  // flowUpdateCompactionInterval updates
+  private boolean incrementalFlowUpdates = false;
+  private int flowUpdateCompactionInterval = 50;
+
+  // batches the execution_jobs writes of all flows, null if disabled
+  private ExecutionJobWriter jobWriter;
+
+  // uploads the job logs while the jobs run, null if disabled
+  private ExecutionLogUploader logUploader;
+
   private Object executionDirDeletionSync = new Object();
 
   // date time of the the last flow submitted.
   private long lastFlowSubmittedDate = 0;
 
+  // Bumped on every flow update so long poll update calls can wait for it.
+  private final FlowUpdateSignal flowUpdateSignal = new FlowUpdateSignal();
+
   public FlowRunnerManager(Props props, ExecutorLoader executorLoader,
       ProjectLoader projectLoader, ClassLoader parentClassLoader)
       throws IOException {
@@ -179,16 +242,63 @@ public class FlowRunnerManager implements EventListener,
     numJobThreadPerFlow =
         props.getInt(FLOW_NUM_JOB_THREADS, DEFAULT_FLOW_NUM_JOB_TREADS);
     executorService = createExecutorService(numThreads);
+    jobPool =
+        new FairShareJobPool(props.getInt(EXECUTOR_MAX_JOB_THREADS,
+            FairShareJobPool.getDefaultMaxJobs()), props.getInt(
+            EXECUTOR_MAX_JOB_THREADS_PER_PROJECT, 0));
+    logger.info("Job threads: " + jobPool.getMaxJobs() + ", per project: "
+        + jobPool.getMaxJobsPerProject());
+
+    recentlyFinishedFlows =
+        new RecentlyFinishedFlows(RECENTLY_FINISHED_TIME_TO_LIVE,
+            props.getInt(RECENTLY_FINISHED_MAX_SIZE, 1000),
+            props.getBoolean(RECENTLY_FINISHED_SUMMARY_ONLY, false));
 
     this.executorLoader = executorLoader;
     this.projectLoader = projectLoader;
 
+    artifactCache =
+        new ProjectArtifactCache(new File(projectDirectory, PROJECT_CACHE_DIR),
+            props.getLong(PROJECT_CACHE_MAX_BYTES,
+                ProjectArtifactCache.DEFAULT_MAX_BYTES), projectLoader);
+    int prefetchThreads = props.getInt(PROJECT_PREFETCH_THREADS, 2);
+    prefetchService =
+        new ThreadPoolExecutor(prefetchThreads, prefetchThreads, 0L,
+            TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(
+                props.getInt(PROJECT_PREFETCH_QUEUE_SIZE, 100)));
+    executionDirMaterializer =
+        new DirectoryMaterializer(DirectoryMaterializer.Mode.valueOf(props
+            .getString(EXECUTION_DIR_MODE, "symlink").toUpperCase()));
+
     this.jobLogChunkSize = azkabanProps.getString("job.log.chunk.size", "5MB");
     this.jobLogNumFiles = azkabanProps.getInt("job.log.backup.index", 4);
+    this.incrementalFlowUpdates =
+        azkabanProps.getBoolean(JdbcExecutorLoader.INCREMENTAL_FLOW_UPDATES,
+            false);
+    this.flowUpdateCompactionInterval =
+        azkabanProps.getInt(FLOW_UPDATE_COMPACTION_INTERVAL, 50);
 
     this.validateProxyUser =
         azkabanProps.getBoolean("proxy.user.lock.down", false);
 
+    if (azkabanProps.getBoolean(JOB_WRITE_BEHIND, false)) {
+      jobWriter =
+          new ExecutionJobWriter(executorLoader, azkabanProps.getLong(
+              JOB_WRITE_BEHIND_MAX_DELAY_MS, 1000), azkabanProps.getInt(
+              JOB_WRITE_BEHIND_BATCH_SIZE, 500));
+      jobWriter.start();
+    }
+
+    if (azkabanProps.getBoolean(JOB_LOG_STREAMING, false)) {
+      logUploader =
+          new ExecutionLogUploader(executorLoader, azkabanProps.getLong(
+              JOB_LOG_STREAMING_INTERVAL_MS, 30000), azkabanProps.getInt(
+              JOB_LOG_STREAMING_MIN_FLUSH_BYTES, 50 * 1024),
+              azkabanProps.getInt(JOB_LOG_STREAMING_MAX_BUFFER_BYTES,
+                  4 * 1024 * 1024));
+      logUploader.start();
+    }
+
     cleanerThread = new CleanerThread();
     cleanerThread.start();
 
@@ -355,7 +465,7 @@ public class FlowRunnerManager implements EventListener,
         try {
           int execId = Integer.valueOf(exDir.getName());
           if (runningFlows.containsKey(execId)
-              || recentlyFinishedFlows.containsKey(execId)) {
+              || recentlyFinishedFlows.hasExecution(execId)) {
             continue;
           }
         } catch (NumberFormatException e) {
@@ -375,19 +485,9 @@ public class FlowRunnerManager implements EventListener,
     }
 
     private void cleanRecentlyFinished() {
-      long cleanupThreshold =
-          System.currentTimeMillis() - RECENTLY_FINISHED_TIME_TO_LIVE;
-      ArrayList<Integer> executionToKill = new ArrayList<Integer>();
-      for (ExecutableFlow flow : recentlyFinishedFlows.values()) {
-        if (flow.getEndTime() < cleanupThreshold) {
-          executionToKill.add(flow.getExecutionId());
-        }
-      }
-
-      for (Integer id : executionToKill) {
+      for (Integer id : recentlyFinishedFlows.evictExpired()) {
         logger.info("Cleaning execution " + id
             + " from recently finished flows list.");
-        recentlyFinishedFlows.remove(id);
       }
     }
 
@@ -443,6 +543,79 @@ public class FlowRunnerManager implements EventListener,
           }
         }
       }
+
+      evictProjectFiles();
+    }
+  }
+
+  /*
+   * Removes the least recently used project files over the cache size, except
+   * the ones of the running flows
+   */
+  private void evictProjectFiles() {
+    Set<String> inUse = new HashSet<String>();
+    for (FlowRunner runner : runningFlows.values()) {
+      ExecutableFlow flow = runner.getExecutableFlow();
+      ProjectVersion version =
+          installedProjects.get(new Pair<Integer, Integer>(flow.getProjectId(),
+              flow.getVersion()));
+      if (version != null && version.getArtifactKey() != null) {
+        inUse.add(version.getArtifactKey());
+      }
+    }
+    artifactCache.evict(inUse);
+  }
+
+  /**
+   * Gets the files of a project version ready in the background, so its
+   * first execution doesn't wait for them. Does nothing if the version is
+   * already being prefetched, or if too many prefetches are queued.
+   *
+   * @param projectId
+   * @param version
+   */
+  public void prefetchProject(final int projectId, final int version) {
+    final Pair<Integer, Integer> key =
+        new Pair<Integer, Integer>(projectId, version);
+    if (!pendingPrefetches.add(key)) {
+      return;
+    }
+
+    final ProjectVersion projectVersion = getProjectVersion(projectId, version);
+    try {
+      prefetchService.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            projectVersion.install(artifactCache, projectDirectory, logger);
+            evictProjectFiles();
+          } catch (Exception e) {
+            logger.error("Failed to prefetch project " + projectId
+                + " version " + version, e);
+          } finally {
+            pendingPrefetches.remove(key);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      pendingPrefetches.remove(key);
+      logger.warn("Too many prefetches queued, skipping project " + projectId
+          + " version " + version);
+    }
+  }
+
+  private ProjectVersion getProjectVersion(int projectId, int version) {
+    Pair<Integer, Integer> projectVersionKey =
+        new Pair<Integer, Integer>(projectId, version);
+
+    // We set up project versions this way
+    synchronized (installedProjects) {
+      ProjectVersion projectVersion = installedProjects.get(projectVersionKey);
+      if (projectVersion == null) {
+        projectVersion = new ProjectVersion(projectId, version);
+        installedProjects.put(projectVersionKey, projectVersion);
+      }
+      return projectVersion;
     }
   }
 
@@ -496,39 +669,69 @@ public class FlowRunnerManager implements EventListener,
       }
     }
 
-    FlowRunner runner =
-        new FlowRunner(flow, executorLoader, projectLoader, jobtypeManager);
-    runner.setFlowWatcher(watcher)
-        .setJobLogSettings(jobLogChunkSize, jobLogNumFiles)
-        .setValidateProxyUser(validateProxyUser)
-        .setNumJobThreads(numJobThreads).addListener(this);
-
-    configureFlowLevelMetrics(runner);
-
-    // Check again.
-    if (runningFlows.containsKey(execId)) {
-      throw new ExecutorManagerException("Execution " + execId
-          + " is already running.");
+    int jobWeight = 1;
+    if (options.getFlowParameters().containsKey(FLOW_JOB_WEIGHT)) {
+      try {
+        jobWeight =
+            Integer.valueOf(options.getFlowParameters().get(FLOW_JOB_WEIGHT));
+      } catch (NumberFormatException e) {
+        throw new ExecutorManagerException("Failed to set the job weight "
+            + options.getFlowParameters().get(FLOW_JOB_WEIGHT) + " for flow "
+            + execId, e);
+      }
     }
 
-    // Finally, queue the sucker.
-    runningFlows.put(execId, runner);
-
+    FairShareJobPool.FlowExecutor flowExecutor =
+        jobPool.createFlowExecutor(execId, flow.getProjectId(), numJobThreads,
+            jobWeight);
+    boolean queued = false;
     try {
-      // The executorService already has a queue.
-      // The submit method below actually returns an instance of FutureTask,
-      // which implements interface RunnableFuture, which extends both
-      // Runnable and Future interfaces
-      Future<?> future = executorService.submit(runner);
-      // keep track of this future
-      submittedFlows.put(future, runner.getExecutionId());
-      // update the last submitted time.
-      this.lastFlowSubmittedDate = System.currentTimeMillis();
-    } catch (RejectedExecutionException re) {
-      throw new ExecutorManagerException(
-          "Azkaban server can't execute any more flows. "
-              + "The number of running flows has reached the system configured limit."
-              + "Please notify Azkaban administrators");
+      FlowRunner runner =
+          new FlowRunner(flow, executorLoader, projectLoader, jobtypeManager,
+              flowExecutor);
+      runner.setFlowWatcher(watcher)
+          .setJobLogSettings(jobLogChunkSize, jobLogNumFiles)
+          .setValidateProxyUser(validateProxyUser)
+          .setIncrementalUpdates(incrementalFlowUpdates,
+              flowUpdateCompactionInterval)
+          .setJobWriter(jobWriter)
+          .setLogUploader(logUploader)
+          .setNumJobThreads(numJobThreads).addListener(this);
+
+      configureFlowLevelMetrics(runner);
+
+      // Check again.
+      if (runningFlows.containsKey(execId)) {
+        throw new ExecutorManagerException("Execution " + execId
+            + " is already running.");
+      }
+
+      // Finally, queue the sucker.
+      runningFlows.put(execId, runner);
+
+      try {
+        // The executorService already has a queue.
+        // The submit method below actually returns an instance of FutureTask,
+        // which implements interface RunnableFuture, which extends both
+        // Runnable and Future interfaces
+        Future<?> future = executorService.submit(runner);
+        // keep track of this future
+        submittedFlows.put(future, runner.getExecutionId());
+        // update the last submitted time.
+        this.lastFlowSubmittedDate = System.currentTimeMillis();
+        queued = true;
+      } catch (RejectedExecutionException re) {
+        runningFlows.remove(execId);
+        throw new ExecutorManagerException(
+            "Azkaban server can't execute any more flows. "
+                + "The number of running flows has reached the system configured limit."
+                + "Please notify Azkaban administrators");
+      }
+    } finally {
+      // a flow that won't run doesn't keep its place in the job pool
+      if (!queued) {
+        flowExecutor.shutdownNow();
+      }
     }
   }
 
@@ -558,24 +761,30 @@ public class FlowRunnerManager implements EventListener,
     execPath.mkdirs();
 
     // We're setting up the installed projects. First time, it may take a while
-    // to set up.
-    Pair<Integer, Integer> projectVersionKey =
-        new Pair<Integer, Integer>(flow.getProjectId(), flow.getVersion());
-
-    // We set up project versions this way
-    ProjectVersion projectVersion = null;
-    synchronized (installedProjects) {
-      projectVersion = installedProjects.get(projectVersionKey);
-      if (projectVersion == null) {
-        projectVersion =
-            new ProjectVersion(flow.getProjectId(), flow.getVersion());
-        installedProjects.put(projectVersionKey, projectVersion);
-      }
-    }
+    // to set up, unless the files were prefetched or another version has the
+    // same zip.
+    ProjectVersion projectVersion =
+        getProjectVersion(flow.getProjectId(), flow.getVersion());
 
     try {
-      projectVersion.setupProjectFiles(projectLoader, projectDirectory, logger);
-      projectVersion.copyCreateSymlinkDirectory(execPath);
+      projectVersion.setupProjectFiles(artifactCache, projectDirectory, logger);
+      long setupTime =
+          projectVersion.materializeDirectory(execPath,
+              executionDirMaterializer);
+      logger.info("Flow " + execId + " execution directory set up in "
+          + setupTime + " ms");
+      projectVersion.processInitParameter(execPath);
+      try {
+        prefetchService.submit(new Runnable() {
+          @Override
+          public void run() {
+            evictProjectFiles();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // the queued prefetches evict when they are done
+        logger.info("Prefetch queue full, not evicting project files");
+      }
     } catch (Exception e) {
       e.printStackTrace();
       if (execPath.exists()) {
@@ -647,18 +856,44 @@ public class FlowRunnerManager implements EventListener,
 
   @Override
   public void handleEvent(Event event) {
-    if (event.getType() == Event.Type.FLOW_FINISHED) {
+    if (event.getType() == Event.Type.FLOW_UPDATED) {
+      flowUpdateSignal.signal();
+    } else if (event.getType() == Event.Type.FLOW_FINISHED) {
 
       FlowRunner flowRunner = (FlowRunner) event.getRunner();
       ExecutableFlow flow = flowRunner.getExecutableFlow();
 
-      recentlyFinishedFlows.put(flow.getExecutionId(), flow);
+      recentlyFinishedFlows.add(flow);
       logger.info("Flow " + flow.getExecutionId()
           + " is finished. Adding it to recently finished flows list.");
       runningFlows.remove(flow.getExecutionId());
     }
   }
 
+  /**
+   * Returns a counter that increases every time one of the flows on this
+   * executor is updated. Used together with
+   * {@link #waitForFlowUpdate(long, long)}.
+   *
+   * @return
+   */
+  public long getFlowUpdateSequence() {
+    return flowUpdateSignal.getSequence();
+  }
+
+  /**
+   * Blocks until any flow has been updated after the given sequence number
+   * was read, or until the wait time runs out.
+   *
+   * @param sequence value previously returned by getFlowUpdateSequence
+   * @param waitTimeMs
+   * @throws InterruptedException
+   */
+  public void waitForFlowUpdate(long sequence, long waitTimeMs)
+      throws InterruptedException {
+    flowUpdateSignal.await(sequence, waitTimeMs);
+  }
+
   public LogData readFlowLogs(int execId, int startByte, int length)
       throws ExecutorManagerException {
     FlowRunner runner = runningFlows.get(execId);
@@ -806,6 +1041,81 @@ public class FlowRunnerManager implements EventListener,
     return this.cleanerThread.getState();
   }
 
+  /**
+   * Writes the job rows still queued and stops the write-behind thread
+   */
+  public void shutdownJobWriter() {
+    if (jobWriter != null) {
+      jobWriter.shutdown();
+    }
+  }
+
+  /**
+   * Returns the write-behind stage of execution_jobs, null if disabled
+   *
+   * @return
+   */
+  public ExecutionJobWriter getJobWriter() {
+    return jobWriter;
+  }
+
+  /**
+   * Uploads the job logs still buffered and stops the log upload thread
+   */
+  public void shutdownLogUploader() {
+    if (logUploader != null) {
+      logUploader.shutdown();
+    }
+  }
+
+  /**
+   * Stops the threads prefetching the projects of the queued flows
+   */
+  public void shutdownPrefetchService() {
+    prefetchService.shutdownNow();
+  }
+
+  /**
+   * Drops the jobs not started yet and lets the job threads exit once their
+   * jobs finish
+   */
+  public void shutdownJobPool() {
+    List<Runnable> dropped = jobPool.shutdown();
+    logger.info("Job pool shut down, " + dropped.size()
+        + " queued jobs dropped");
+  }
+
+  /**
+   * Returns the uploader streaming job logs, null if disabled
+   *
+   * @return
+   */
+  public ExecutionLogUploader getLogUploader() {
+    return logUploader;
+  }
+
+  /**
+   * Returns the pool running the jobs of all the flows
+   *
+   * @return
+   */
+  public FairShareJobPool getJobPool() {
+    return jobPool;
+  }
+
+  /**
+   * Returns the cache of the unzipped project files
+   *
+   * @return
+   */
+  public ProjectArtifactCache getArtifactCache() {
+    return artifactCache;
+  }
+
+  public DirectoryMaterializer getExecutionDirMaterializer() {
+    return executionDirMaterializer;
+  }
+
   public boolean isExecutorThreadPoolShutdown() {
     return executorService.isShutdown();
   }
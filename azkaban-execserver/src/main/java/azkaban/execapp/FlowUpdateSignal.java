@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+/**
+ * Counter bumped on every flow update, so long poll update calls can wait
+ * for the next one. A caller reads the sequence before it looks for updates
+ * and then waits on that value, so an update that lands in between is not
+ * missed.
+ */
+public class FlowUpdateSignal {
+  private long sequence = 0;
+
+  /**
+   * Returns the number of updates signalled so far
+   *
+   * @return
+   */
+  public synchronized long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Records an update and wakes up every waiting caller
+   */
+  public synchronized void signal() {
+    sequence++;
+    notifyAll();
+  }
+
+  /**
+   * Blocks until an update is signalled after the given sequence number was
+   * read, or until the wait time runs out.
+   *
+   * @param sequence value previously returned by getSequence
+   * @param waitTimeMs
+   * @return true if an update was signalled
+   * @throws InterruptedException
+   */
+  public synchronized boolean await(long sequence, long waitTimeMs)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + waitTimeMs;
+    long remaining = waitTimeMs;
+    while (this.sequence == sequence && remaining > 0) {
+      wait(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return this.sequence != sequence;
+  }
+}
@@ -30,6 +30,7 @@ import org.apache.log4j.EnhancedPatternLayout;
 import org.apache.log4j.Layout;
 import org.apache.log4j.Logger;
 import org.apache.log4j.RollingFileAppender;
+import org.apache.log4j.helpers.OptionConverter;
 
 import azkaban.event.Event;
 import azkaban.event.Event.Type;
@@ -57,6 +58,11 @@ public class JobRunner extends EventHandler implements Runnable {
       "%d{dd-MM-yyyy HH:mm:ss z} %c{1} %p - %m\n");
 
   private ExecutorLoader loader;
+  // queues execution_jobs writes when set, instead of writing them directly
+  private ExecutionJobWriter jobWriter;
+  // streams the job log to execution_logs while the job runs when set
+  private ExecutionLogUploader logUploader;
+  private ExecutionLogUploader.LogStream logStream;
   private Props props;
   private ExecutableNode node;
   private File workingDir;
@@ -104,6 +110,14 @@ public class JobRunner extends EventHandler implements Runnable {
     this.jobtypeManager = jobtypeManager;
   }
 
+  public void setJobWriter(ExecutionJobWriter jobWriter) {
+    this.jobWriter = jobWriter;
+  }
+
+  public void setLogUploader(ExecutionLogUploader logUploader) {
+    this.logUploader = logUploader;
+  }
+
   public void setValidatedProxyUsers(Set<String> proxyUsers) {
     this.proxyUsers = proxyUsers;
   }
@@ -228,9 +242,26 @@ public class JobRunner extends EventHandler implements Runnable {
         flowLogger.error("Could not open log file in " + workingDir
             + " for job " + this.jobId, e);
       }
+
+      if (logUploader != null) {
+        logStream =
+            logUploader.open(executionId, node.getNestedId(),
+                node.getAttempt(), loggerLayout, getMaxLogBytes());
+        logger.addAppender(logStream);
+        logger.setAdditivity(false);
+      }
     }
   }
 
+  /*
+   * The most log the rolling log files keep, larger logs are uploaded from
+   * the files instead of streamed
+   */
+  private long getMaxLogBytes() {
+    return OptionConverter.toFileSize(jobLogChunkSize, 10 * 1024 * 1024)
+        * (jobLogBackupIndex + 1);
+  }
+
   private void createAttachmentFile() {
     String fileName = createAttachmentFileName(node);
     File file = new File(workingDir, fileName);
@@ -242,11 +273,18 @@ public class JobRunner extends EventHandler implements Runnable {
       logger.removeAppender(jobAppender);
       jobAppender.close();
     }
+    if (logStream != null) {
+      logger.removeAppender(logStream);
+    }
   }
 
   private void writeStatus() {
     try {
       node.setUpdateTime(System.currentTimeMillis());
+      if (jobWriter != null) {
+        jobWriter.updateExecutableNode(node);
+        return;
+      }
       loader.updateExecutableNode(node);
     } catch (ExecutorManagerException e) {
       flowLogger.error("Could not update job properties in db for "
@@ -311,16 +349,22 @@ public class JobRunner extends EventHandler implements Runnable {
         logger.info("Pipeline job " + this.jobId + " waiting on " + blockedList
             + " in execution " + watcher.getExecId());
 
-        for (BlockingStatus bStatus : blockingStatus) {
-          logger.info("Waiting on pipelined job " + bStatus.getJobId());
-          currentBlockStatus = bStatus;
-          bStatus.blockOnFinishedStatus();
-          if (this.isKilled()) {
-            logger.info("Job was killed while waiting on pipeline. Quiting.");
-            return true;
-          } else {
-            logger.info("Pipelined job " + bStatus.getJobId() + " finished.");
+        // the jobs waited on may need the job thread this one holds
+        FairShareJobPool.beginWait();
+        try {
+          for (BlockingStatus bStatus : blockingStatus) {
+            logger.info("Waiting on pipelined job " + bStatus.getJobId());
+            currentBlockStatus = bStatus;
+            bStatus.blockOnFinishedStatus();
+            if (this.isKilled()) {
+              logger.info("Job was killed while waiting on pipeline. Quiting.");
+              return true;
+            } else {
+              logger.info("Pipelined job " + bStatus.getJobId() + " finished.");
+            }
           }
+        } finally {
+          FairShareJobPool.endWait();
         }
       }
     }
@@ -361,6 +405,24 @@ public class JobRunner extends EventHandler implements Runnable {
 
   private void finalizeLogFile(int attemptNo) {
     closeLogger();
+    if (logStream != null) {
+      if (logUploader.finish(logStream)) {
+        return;
+      }
+
+      flowLogger.info("Log of job " + this.jobId
+          + " could not be streamed, uploading the log files instead");
+      try {
+        loader.removeExecutionLogs(executionId, this.node.getNestedId(),
+            attemptNo);
+      } catch (ExecutorManagerException e) {
+        flowLogger.error(
+            "Error removing streamed logs for job " + this.node.getNestedId(),
+            e);
+        return;
+      }
+    }
+
     if (logFile == null) {
       flowLogger.info("Log file for job " + this.jobId + " is null");
       return;
@@ -430,10 +492,14 @@ public class JobRunner extends EventHandler implements Runnable {
     node.setStartTime(System.currentTimeMillis());
     if (!errorFound && !isKilled()) {
       fireEvent(Event.create(this, Type.JOB_STARTED, null, false));
-      try {
-        loader.uploadExecutableNode(node, props);
-      } catch (ExecutorManagerException e1) {
-        logger.error("Error writing initial node properties");
+      if (jobWriter != null) {
+        jobWriter.uploadExecutableNode(node, props);
+      } else {
+        try {
+          loader.uploadExecutableNode(node, props);
+        } catch (ExecutorManagerException e1) {
+          logger.error("Error writing initial node properties");
+        }
       }
 
       if (prepareJob()) {
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import azkaban.project.ProjectFileHandler;
+import azkaban.project.ProjectLoader;
+import azkaban.project.ProjectManagerException;
+import azkaban.utils.Md5Hasher;
+import azkaban.utils.Utils;
+
+/**
+ * <pre>
+ * Unzipped project files on the executor, one directory per md5 of the
+ * uploaded zip, so the versions of a project uploaded with the same zip share
+ * their files and a version is only downloaded once.
+ *
+ * The least recently used directories are removed once the total size goes
+ * over maxBytes, except the ones in use and the ones used in the last
+ * minIdleBeforeEvictionMs, which may be getting linked to an execution.
+ * The modification time of a directory records its last use, so the order
+ * survives restarts.
+ * </pre>
+ */
+public class ProjectArtifactCache {
+  private static final Logger logger = Logger
+      .getLogger(ProjectArtifactCache.class);
+
+  public static final long DEFAULT_MAX_BYTES = 10L * 1024 * 1024 * 1024;
+
+  public static final long DEFAULT_MIN_IDLE_BEFORE_EVICTION_MS = 10 * 60 * 1000;
+  private static final String TEMP_PREFIX = "_temp.";
+
+  private final File cacheDir;
+  private final long maxBytes;
+  private final long minIdleBeforeEvictionMs;
+  private final ProjectLoader projectLoader;
+
+  // guarded by this, least recently used first
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final Map<String, Object> downloads = new HashMap<String, Object>();
+  private long totalBytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+
+  public ProjectArtifactCache(File cacheDir, long maxBytes,
+      ProjectLoader projectLoader) throws IOException {
+    this(cacheDir, maxBytes, DEFAULT_MIN_IDLE_BEFORE_EVICTION_MS,
+        projectLoader);
+  }
+
+  public ProjectArtifactCache(File cacheDir, long maxBytes,
+      long minIdleBeforeEvictionMs, ProjectLoader projectLoader)
+      throws IOException {
+    this.cacheDir = cacheDir;
+    this.maxBytes = maxBytes;
+    this.minIdleBeforeEvictionMs = minIdleBeforeEvictionMs;
+    this.projectLoader = projectLoader;
+    cacheDir.mkdirs();
+    loadEntries();
+  }
+
+  private void loadEntries() throws IOException {
+    File[] dirs = cacheDir.listFiles();
+    if (dirs == null) {
+      throw new IOException("Can't list project cache " + cacheDir.getPath());
+    }
+    Arrays.sort(dirs, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        return Long.compare(a.lastModified(), b.lastModified());
+      }
+    });
+    for (File dir : dirs) {
+      if (dir.getName().startsWith(TEMP_PREFIX)) {
+        // left over by a download that didn't finish
+        FileUtils.deleteQuietly(dir);
+      } else if (dir.isDirectory()) {
+        Entry entry =
+            new Entry(dir, FileUtils.sizeOfDirectory(dir), dir.lastModified());
+        entries.put(dir.getName(), entry);
+        totalBytes += entry.bytes;
+      }
+    }
+    logger.info("Loaded " + entries.size() + " cached project files, "
+        + totalBytes + " bytes");
+  }
+
+  /**
+   * Returns the unzipped files of a project version, downloading them if no
+   * version with the same zip was cached. Callers getting the same files
+   * wait for a single download.
+   *
+   * @param projectId
+   * @param version
+   * @return the directory of the files, named after the md5 of the zip
+   * @throws ProjectManagerException
+   * @throws IOException
+   */
+  public File get(int projectId, int version) throws ProjectManagerException,
+      IOException {
+    ProjectFileHandler metaData =
+        projectLoader.fetchProjectFileMetaData(projectId, version);
+    if (metaData == null) {
+      throw new ProjectManagerException("No file uploaded for project "
+          + projectId + " version " + version);
+    } else if (!"zip".equals(metaData.getFileType())) {
+      throw new IOException("The file type hasn't been decided yet.");
+    }
+    String key = Md5Hasher.toHex(metaData.getMd5Hash());
+
+    Object download;
+    synchronized (this) {
+      File dir = use(key);
+      if (dir != null) {
+        return dir;
+      }
+      download = downloads.get(key);
+      if (download == null) {
+        download = new Object();
+        downloads.put(key, download);
+      }
+    }
+
+    synchronized (download) {
+      try {
+        synchronized (this) {
+          File dir = use(key);
+          if (dir != null) {
+            return dir;
+          }
+          ++misses;
+        }
+        Entry entry = download(projectId, version, key);
+        synchronized (this) {
+          entries.put(key, entry);
+          totalBytes += entry.bytes;
+        }
+        return entry.dir;
+      } finally {
+        synchronized (this) {
+          if (downloads.get(key) == download) {
+            downloads.remove(key);
+          }
+        }
+      }
+    }
+  }
+
+  /*
+   * Marks the files as just used, returns null if they aren't cached
+   */
+  private File use(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    ++hits;
+    entry.lastUsed = System.currentTimeMillis();
+    entry.dir.setLastModified(entry.lastUsed);
+    return entry.dir;
+  }
+
+  private Entry download(int projectId, int version, String key)
+      throws ProjectManagerException, IOException {
+    logger.info("Downloading project " + projectId + " version " + version
+        + " to " + key);
+    File dir = new File(cacheDir, key);
+    File tempDir =
+        new File(cacheDir, TEMP_PREFIX + key + "." + System.currentTimeMillis());
+    ProjectFileHandler projectFileHandler = null;
+    try {
+      projectFileHandler = projectLoader.getUploadedFile(projectId, version);
+      if (projectFileHandler == null) {
+        throw new ProjectManagerException("No file uploaded for project "
+            + projectId + " version " + version);
+      }
+      tempDir.mkdirs();
+      ZipFile zip = new ZipFile(projectFileHandler.getLocalFile());
+      try {
+        Utils.unzip(zip, tempDir);
+      } finally {
+        zip.close();
+      }
+      if (!tempDir.renameTo(dir)) {
+        throw new IOException("Failed to move " + tempDir.getPath() + " to "
+            + dir.getPath());
+      }
+    } finally {
+      if (projectFileHandler != null) {
+        projectFileHandler.deleteLocalFile();
+      }
+      FileUtils.deleteQuietly(tempDir);
+    }
+    return new Entry(dir, FileUtils.sizeOfDirectory(dir),
+        System.currentTimeMillis());
+  }
+
+  /**
+   * Removes the least recently used files until the cache fits in maxBytes
+   *
+   * @param inUse keys of the files used by running executions
+   * @return the number of removed directories
+   */
+  public int evict(Set<String> inUse) {
+    long idleSince = System.currentTimeMillis() - minIdleBeforeEvictionMs;
+    List<File> evicted = new ArrayList<File>();
+    synchronized (this) {
+      Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+      while (totalBytes > maxBytes && iter.hasNext()) {
+        Map.Entry<String, Entry> next = iter.next();
+        Entry entry = next.getValue();
+        if (inUse.contains(next.getKey()) || entry.lastUsed > idleSince) {
+          continue;
+        }
+        iter.remove();
+        totalBytes -= entry.bytes;
+        evicted.add(entry.dir);
+      }
+    }
+
+    for (File dir : evicted) {
+      logger.info("Removing cached project files " + dir.getName());
+      try {
+        FileUtils.deleteDirectory(dir);
+      } catch (IOException e) {
+        logger.error("Failed to remove cached project files " + dir.getPath(),
+            e);
+      }
+    }
+    return evicted.size();
+  }
+
+  public File getCacheDir() {
+    return cacheDir;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  public synchronized int getNumEntries() {
+    return entries.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  private static class Entry {
+    private final File dir;
+    private final long bytes;
+    private long lastUsed;
+
+    private Entry(File dir, long bytes, long lastUsed) {
+      this.dir = dir;
+      this.bytes = bytes;
+      this.lastUsed = lastUsed;
+    }
+  }
+}
@@ -17,21 +17,19 @@
 package azkaban.execapp;
 
 import azkaban.flow.CommonJobProperties;
-import azkaban.project.ProjectFileHandler;
-import azkaban.project.ProjectLoader;
 import azkaban.project.ProjectManagerException;
-import azkaban.utils.FileIOUtils;
-import azkaban.utils.Utils;
+import azkaban.utils.DirectoryMaterializer;
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
 import java.io.*;
-import java.util.zip.ZipFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class ProjectVersion implements Comparable<ProjectVersion> {
   private final int projectId;
   private final int version;
-  private File installedDir;
+  private volatile File installedDir;
 
   public ProjectVersion(int projectId, int version) {
     this.projectId = projectId;
@@ -52,48 +50,69 @@ public class ProjectVersion implements Comparable<ProjectVersion> {
     return version;
   }
 
-  public synchronized void setupProjectFiles(ProjectLoader projectLoader, File projectDir, Logger logger) throws ProjectManagerException,
-          IOException {
+  public synchronized void setupProjectFiles(ProjectArtifactCache artifactCache,
+      File projectDir, Logger logger) throws ProjectManagerException,
+      IOException {
+    install(artifactCache, projectDir, logger);
+  }
+
+  /**
+   * Links the version directory to the files of the version in the artifact
+   * cache, getting them into the cache if needed. Does nothing if the version
+   * is already installed.
+   */
+  public synchronized void install(ProjectArtifactCache artifactCache,
+      File projectDir, Logger logger) throws ProjectManagerException,
+      IOException {
     String projectVersion = String.valueOf(projectId) + "." + String.valueOf(version);
     if (installedDir == null) {
       installedDir = new File(projectDir, projectVersion);
     }
+    if (installedDir.exists()) {
+      return;
+    }
 
-    if (!installedDir.exists()) {
-      logger.info("First time executing new project. Setting up in directory " + installedDir.getPath());
-      File tempDir = new File(projectDir, "_temp." + projectVersion + "." + System.currentTimeMillis());
-      tempDir.mkdirs();
-      ProjectFileHandler projectFileHandler = null;
-      try {
-        projectFileHandler = projectLoader.getUploadedFile(projectId, version);
-        if ("zip".equals(projectFileHandler.getFileType())) {
-          logger.info("Downloading zip file.");
-          ZipFile zip = new ZipFile(projectFileHandler.getLocalFile());
-          Utils.unzip(zip, tempDir);
-          tempDir.renameTo(installedDir);
-          processInitParameter();
-        } else {
-          throw new IOException("The file type hasn't been decided yet.");
-        }
-      } finally {
-        if (projectFileHandler != null) {
-          projectFileHandler.deleteLocalFile();
-        }
-      }
-    } else {
-      processInitParameter();
+    logger.info("First time executing new project. Setting up in directory " + installedDir.getPath());
+    File artifactDir = artifactCache.get(projectId, version);
+    Path link = installedDir.toPath();
+    // a link left to files removed from the cache
+    Files.deleteIfExists(link);
+    Files.createSymbolicLink(link, artifactDir.getAbsoluteFile().toPath());
+  }
+
+  /**
+   * @return the artifact cache key of the files of the version, null if the
+   *         version isn't installed from the cache
+   */
+  public String getArtifactKey() {
+    File dir = installedDir;
+    if (dir == null || !Files.isSymbolicLink(dir.toPath())) {
+      return null;
+    }
+    try {
+      return Files.readSymbolicLink(dir.toPath()).getFileName().toString();
+    } catch (IOException e) {
+      return null;
     }
   }
 
-  private void processInitParameter() throws IOException {
+  /**
+   * Runs the init parameter script of the project and writes its output to the
+   * init parameter properties of the execution. The files of the version are
+   * shared by every execution and version with the same zip, so they are never
+   * written to.
+   *
+   * @param executionDir the execution directory, set up from this version
+   */
+  public void processInitParameter(File executionDir) throws IOException {
     /**
      * 修改多job使用相同参数的问题
      * -----start-----
      */
-    int folderSize = installedDir.list().length;
-    if (folderSize > 0) {
+    String[] names = executionDir.list();
+    if (names != null && names.length > 0) {
       String folderName = "";
-      for (String name : installedDir.list()) {
+      for (String name : names) {
         //使用mac进行文件打包时会产生__MACOSX文件夹,需要排除掉
         if ("__MACOSX".equalsIgnoreCase(name) || name.startsWith("_")) {
           continue;
@@ -103,19 +122,18 @@ public class ProjectVersion implements Comparable<ProjectVersion> {
         }
       }
       if (folderName.length() > 0) {
-        File initParameterFile = new File(installedDir.getAbsolutePath() + File.separator + folderName
+        File initParameterFile = new File(executionDir.getAbsolutePath() + File.separator + folderName
                 + File.separator + CommonJobProperties.INIT_PARAMETER_SHELL);
-        String initPropertiesPath = installedDir.getAbsolutePath() + File.separator + folderName
+        String initPropertiesPath = executionDir.getAbsolutePath() + File.separator + folderName
                 + File.separator + CommonJobProperties.INIT_PARAMETER_PROPERTIES;
         if (initParameterFile.exists()) {
           Process pcs = Runtime.getRuntime().exec("sh " + initParameterFile.getAbsolutePath());
           String lineStr;
           BufferedInputStream in = new BufferedInputStream(pcs.getInputStream());
           BufferedReader br = new BufferedReader(new InputStreamReader(in));
-          File propertiesFile = new File(initPropertiesPath);
-          if (propertiesFile.exists()) {
-            propertiesFile.delete();
-          }
+          // removes the link to the properties of the version, if any, and not
+          // the properties themselves
+          Files.deleteIfExists(new File(initPropertiesPath).toPath());
           while ((lineStr = br.readLine()) != null) {
             FileWriter writer = new FileWriter(initPropertiesPath, true);
             writer.write(lineStr + "\r\n");
@@ -132,8 +150,14 @@ public class ProjectVersion implements Comparable<ProjectVersion> {
      */
   }
 
-  public synchronized void copyCreateSymlinkDirectory(File executionDir)
-      throws IOException {
+  /**
+   * Links or copies the project files into the execution directory
+   *
+   * @return the time it took in ms
+   */
+  public long materializeDirectory(File executionDir,
+      DirectoryMaterializer materializer) throws IOException {
+    File installedDir = this.installedDir;
     if (installedDir == null || !installedDir.exists()) {
       throw new IOException("Installed dir doesn't exist: "
           + ((installedDir == null) ? null : installedDir.getAbsolutePath()));
@@ -142,12 +166,18 @@ public class ProjectVersion implements Comparable<ProjectVersion> {
           + ((executionDir == null) ? null : executionDir.getAbsolutePath()));
     }
 
-    FileIOUtils.createDeepSymlink(installedDir, executionDir);
+    // link to the cached files directly, removing the version doesn't affect
+    // the execution
+    return materializer.materialize(installedDir.getCanonicalFile(),
+        executionDir);
   }
 
   public synchronized void deleteDirectory() throws IOException {
     System.out.println("Deleting old unused project versin " + installedDir);
-    if (installedDir != null && installedDir.exists()) {
+    if (installedDir != null && Files.isSymbolicLink(installedDir.toPath())) {
+      // the files stay in the artifact cache
+      Files.delete(installedDir.toPath());
+    } else if (installedDir != null && installedDir.exists()) {
       FileUtils.deleteDirectory(installedDir);
     }
   }
@@ -19,6 +19,7 @@ package azkaban.execapp.event;
 import java.util.ArrayList;
 import java.util.Map;
 
+import azkaban.executor.AdaptivePollInterval;
 import azkaban.executor.ExecutableFlow;
 import azkaban.executor.ExecutableNode;
 import azkaban.executor.ExecutorLoader;
@@ -27,6 +28,7 @@ import azkaban.executor.Status;
 
 public class RemoteFlowWatcher extends FlowWatcher {
   private final static long CHECK_INTERVAL_MS = 60 * 1000;
+  private final static long MIN_CHECK_INTERVAL_MS = 5 * 1000;
 
   private int execId;
   private ExecutorLoader loader;
@@ -34,16 +36,22 @@ public class RemoteFlowWatcher extends FlowWatcher {
   private RemoteUpdaterThread thread;
   private boolean isShutdown = false;
 
-  // Every minute
-  private long checkIntervalMs = CHECK_INTERVAL_MS;
+  // Every 5 seconds while the watched flow changes, backing off to every
+  // minute while it does not.
+  private AdaptivePollInterval checkInterval;
 
   public RemoteFlowWatcher(int execId, ExecutorLoader loader) {
-    this(execId, loader, CHECK_INTERVAL_MS);
+    this(execId, loader, MIN_CHECK_INTERVAL_MS, CHECK_INTERVAL_MS);
   }
 
   public RemoteFlowWatcher(int execId, ExecutorLoader loader, long interval) {
+    this(execId, loader, interval, interval);
+  }
+
+  public RemoteFlowWatcher(int execId, ExecutorLoader loader,
+      long minIntervalMs, long maxIntervalMs) {
     super(execId);
-    checkIntervalMs = interval;
+    checkInterval = new AdaptivePollInterval(minIntervalMs, maxIntervalMs);
 
     try {
       flow = loader.fetchExecutableFlow(execId);
@@ -62,6 +70,15 @@ public class RemoteFlowWatcher extends FlowWatcher {
   }
 
   private class RemoteUpdaterThread extends Thread {
+    private long lastChangeTime = System.currentTimeMillis();
+    private boolean checkRequested = false;
+
+    /* Checks the flow right away instead of at the next interval */
+    private synchronized void requestCheck() {
+      checkRequested = true;
+      notify();
+    }
+
     @Override
     public void run() {
       do {
@@ -90,6 +107,9 @@ public class RemoteFlowWatcher extends FlowWatcher {
           for (ExecutableNode node : updatedNodes) {
             handleJobStatusChange(node.getNestedId(), node.getStatus());
           }
+          if (!updatedNodes.isEmpty()) {
+            lastChangeTime = System.currentTimeMillis();
+          }
 
           updateTime = flow.getUpdateTime();
         }
@@ -97,11 +117,17 @@ public class RemoteFlowWatcher extends FlowWatcher {
         if (Status.isStatusFinished(flow.getStatus())) {
           isShutdown = true;
         } else {
+          long interval =
+              checkInterval.getInterval(System.currentTimeMillis()
+                  - lastChangeTime, AdaptivePollInterval.countRunningJobs(flow));
           synchronized (this) {
             try {
-              wait(checkIntervalMs);
+              if (!checkRequested) {
+                wait(interval);
+              }
             } catch (InterruptedException e) {
             }
+            checkRequested = false;
           }
         }
       } while (!isShutdown);
@@ -109,6 +135,16 @@ public class RemoteFlowWatcher extends FlowWatcher {
 
   }
 
+  @Override
+  public synchronized BlockingStatus getBlockingStatus(String jobId) {
+    BlockingStatus blockingStatus = super.getBlockingStatus(jobId);
+    // a job is about to wait on the watched flow, get it a fresh status
+    if (blockingStatus != null && thread != null) {
+      thread.requestCheck();
+    }
+    return blockingStatus;
+  }
+
   @Override
   public synchronized void stopWatcher() {
     if (isShutdown) {
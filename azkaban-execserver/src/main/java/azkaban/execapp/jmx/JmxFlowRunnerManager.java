@@ -16,7 +16,10 @@
 
 package azkaban.execapp.jmx;
 
+import azkaban.execapp.ExecutionJobWriter;
+import azkaban.execapp.ExecutionLogUploader;
 import azkaban.execapp.FlowRunnerManager;
+import azkaban.utils.DirectoryMaterializer;
 
 public class JmxFlowRunnerManager implements JmxFlowRunnerManagerMBean {
   private FlowRunnerManager manager;
@@ -79,4 +82,92 @@ public class JmxFlowRunnerManager implements JmxFlowRunnerManagerMBean {
   public int getTotalNumExecutedFlows() {
     return manager.getTotalNumExecutedFlows();
   }
+
+  @Override
+  public int getJobWriteQueueDepth() {
+    ExecutionJobWriter writer = manager.getJobWriter();
+    return writer == null ? 0 : writer.getQueueDepth();
+  }
+
+  @Override
+  public String getJobWriteFlushLatency() {
+    ExecutionJobWriter writer = manager.getJobWriter();
+    return writer == null ? "disabled" : writer.getFlushLatency().toString();
+  }
+
+  @Override
+  public long getJobWriteDroppedRows() {
+    ExecutionJobWriter writer = manager.getJobWriter();
+    return writer == null ? 0 : writer.getDroppedRows();
+  }
+
+  @Override
+  public int getNumStreamingJobLogs() {
+    ExecutionLogUploader uploader = manager.getLogUploader();
+    return uploader == null ? 0 : uploader.getOpenStreams();
+  }
+
+  @Override
+  public long getJobLogStreamedBytes() {
+    ExecutionLogUploader uploader = manager.getLogUploader();
+    return uploader == null ? 0 : uploader.getUploadedBytes();
+  }
+
+  @Override
+  public long getJobLogBrokenStreams() {
+    ExecutionLogUploader uploader = manager.getLogUploader();
+    return uploader == null ? 0 : uploader.getBrokenStreams();
+  }
+
+  @Override
+  public int getMaxJobThreads() {
+    return manager.getJobPool().getMaxJobs();
+  }
+
+  @Override
+  public int getNumRunningJobs() {
+    return manager.getJobPool().getNumRunningJobs();
+  }
+
+  @Override
+  public int getNumQueuedJobs() {
+    return manager.getJobPool().getNumQueuedJobs();
+  }
+
+  @Override
+  public long getProjectCacheBytes() {
+    return manager.getArtifactCache().getTotalBytes();
+  }
+
+  @Override
+  public int getNumCachedProjects() {
+    return manager.getArtifactCache().getNumEntries();
+  }
+
+  @Override
+  public long getProjectCacheHits() {
+    return manager.getArtifactCache().getHits();
+  }
+
+  @Override
+  public long getProjectCacheMisses() {
+    return manager.getArtifactCache().getMisses();
+  }
+
+  @Override
+  public long getNumExecutionDirsSetUp() {
+    return manager.getExecutionDirMaterializer().getNumMaterialized();
+  }
+
+  @Override
+  public long getAvgExecutionDirSetupTimeMs() {
+    DirectoryMaterializer materializer = manager.getExecutionDirMaterializer();
+    long count = materializer.getNumMaterialized();
+    return count == 0 ? 0 : materializer.getTotalTimeMs() / count;
+  }
+
+  @Override
+  public long getMaxExecutionDirSetupTimeMs() {
+    return manager.getExecutionDirMaterializer().getMaxTimeMs();
+  }
 }
\ No newline at end of file
@@ -52,4 +52,52 @@ public interface JmxFlowRunnerManagerMBean {
   @DisplayName("OPERATION: getTotalNumExecutedFlows")
   public int getTotalNumExecutedFlows();
 
+  @DisplayName("OPERATION: getJobWriteQueueDepth")
+  public int getJobWriteQueueDepth();
+
+  @DisplayName("OPERATION: getJobWriteFlushLatency")
+  public String getJobWriteFlushLatency();
+
+  @DisplayName("OPERATION: getJobWriteDroppedRows")
+  public long getJobWriteDroppedRows();
+
+  @DisplayName("OPERATION: getNumStreamingJobLogs")
+  public int getNumStreamingJobLogs();
+
+  @DisplayName("OPERATION: getJobLogStreamedBytes")
+  public long getJobLogStreamedBytes();
+
+  @DisplayName("OPERATION: getJobLogBrokenStreams")
+  public long getJobLogBrokenStreams();
+
+  @DisplayName("OPERATION: getMaxJobThreads")
+  public int getMaxJobThreads();
+
+  @DisplayName("OPERATION: getNumRunningJobs")
+  public int getNumRunningJobs();
+
+  @DisplayName("OPERATION: getNumQueuedJobs")
+  public int getNumQueuedJobs();
+
+  @DisplayName("OPERATION: getProjectCacheBytes")
+  public long getProjectCacheBytes();
+
+  @DisplayName("OPERATION: getNumCachedProjects")
+  public int getNumCachedProjects();
+
+  @DisplayName("OPERATION: getProjectCacheHits")
+  public long getProjectCacheHits();
+
+  @DisplayName("OPERATION: getProjectCacheMisses")
+  public long getProjectCacheMisses();
+
+  @DisplayName("OPERATION: getNumExecutionDirsSetUp")
+  public long getNumExecutionDirsSetUp();
+
+  @DisplayName("OPERATION: getAvgExecutionDirSetupTimeMs")
+  public long getAvgExecutionDirSetupTimeMs();
+
+  @DisplayName("OPERATION: getMaxExecutionDirSetupTimeMs")
+  public long getMaxExecutionDirSetupTimeMs();
+
 }
\ No newline at end of file
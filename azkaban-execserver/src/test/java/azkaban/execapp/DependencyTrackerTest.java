@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutableFlowBase;
+import azkaban.executor.ExecutableNode;
+import azkaban.executor.Status;
+import azkaban.flow.Edge;
+import azkaban.flow.Flow;
+import azkaban.flow.Node;
+import azkaban.flow.SpecialJobTypes;
+import azkaban.project.Project;
+
+public class DependencyTrackerTest {
+  private final Project project = new Project(1, "test");
+  private final Map<String, Flow> flows = new HashMap<String, Flow>();
+
+  /* Test a node is a candidate once all of its dependencies finished */
+  @Test
+  public void testFanIn() throws Exception {
+    Flow flow = createFlow("flow");
+    addEdge(flow, "a", "d");
+    addEdge(flow, "b", "d");
+    addEdge(flow, "c", "d");
+    ExecutableFlow exFlow = createExecutableFlow(flow);
+    DependencyTracker tracker = new DependencyTracker(exFlow);
+
+    ExecutableNode d = exFlow.getExecutableNode("d");
+    Assert.assertEquals(3, tracker.getNumPending(d));
+    Assert.assertTrue(tracker.isReady(exFlow.getExecutableNode("a")));
+
+    Set<ExecutableNode> candidates = new HashSet<ExecutableNode>();
+    finish(tracker, exFlow.getExecutableNode("a"), candidates);
+    // finishing twice only counts once
+    finish(tracker, exFlow.getExecutableNode("a"), candidates);
+    finish(tracker, exFlow.getExecutableNode("b"), candidates);
+    Assert.assertTrue(candidates.isEmpty());
+    Assert.assertFalse(tracker.isReady(d));
+
+    finish(tracker, exFlow.getExecutableNode("c"), candidates);
+    Assert.assertEquals(1, candidates.size());
+    Assert.assertTrue(candidates.contains(d));
+    Assert.assertTrue(tracker.isReady(d));
+  }
+
+  /* Test the nodes of embedded flows are tracked */
+  @Test
+  public void testEmbeddedFlow() throws Exception {
+    Flow subFlow = createFlow("sub");
+    addEdge(subFlow, "x", "y");
+    Flow flow = createFlow("flow");
+    Node embedded = new Node("embedded");
+    embedded.setType(SpecialJobTypes.EMBEDDED_FLOW_TYPE);
+    embedded.setEmbeddedFlowId("sub");
+    flow.addNode(embedded);
+    addEdge(flow, "start", "embedded");
+    addEdge(flow, "embedded", "end");
+    ExecutableFlow exFlow = createExecutableFlow(flow);
+    DependencyTracker tracker = new DependencyTracker(exFlow);
+
+    Assert.assertEquals(5, tracker.getNumNodes());
+    ExecutableFlowBase exEmbedded =
+        (ExecutableFlowBase) exFlow.getExecutableNode("embedded");
+    ExecutableNode y = exEmbedded.getExecutableNode("y");
+    Assert.assertEquals(1, tracker.getNumPending(y));
+
+    List<ExecutableNode> candidates = new ArrayList<ExecutableNode>();
+    finish(tracker, exEmbedded.getExecutableNode("x"), candidates);
+    finish(tracker, exEmbedded, candidates);
+    Assert.assertEquals(2, candidates.size());
+    Assert.assertTrue(candidates.contains(y));
+    Assert.assertTrue(candidates.contains(exFlow.getExecutableNode("end")));
+  }
+
+  /* Test the counts follow nodes reset to run again */
+  @Test
+  public void testRecount() throws Exception {
+    Flow flow = createFlow("flow");
+    addEdge(flow, "a", "b");
+    ExecutableFlow exFlow = createExecutableFlow(flow);
+    ExecutableNode a = exFlow.getExecutableNode("a");
+    a.setStatus(Status.SUCCEEDED);
+    DependencyTracker tracker = new DependencyTracker(exFlow);
+    Assert.assertTrue(tracker.isReady(exFlow.getExecutableNode("b")));
+
+    a.setStatus(Status.FAILED);
+    a.resetForRetry();
+    tracker.recount();
+    Assert.assertFalse(tracker.isReady(exFlow.getExecutableNode("b")));
+  }
+
+  /* Test every node of a wide layered flow becomes a candidate once */
+  @Test
+  public void testLargeFlow() throws Exception {
+    int layers = 40;
+    int width = 100;
+    Flow flow = createFlow("flow");
+    for (int layer = 1; layer < layers; ++layer) {
+      for (int i = 0; i < width; ++i) {
+        for (int j = 0; j < width; ++j) {
+          addEdge(flow, (layer - 1) + "-" + j, layer + "-" + i);
+        }
+      }
+    }
+    ExecutableFlow exFlow = createExecutableFlow(flow);
+    DependencyTracker tracker = new DependencyTracker(exFlow);
+    Assert.assertEquals(layers * width, tracker.getNumNodes());
+
+    LinkedList<ExecutableNode> ready = new LinkedList<ExecutableNode>();
+    for (int i = 0; i < width; ++i) {
+      ready.add(exFlow.getExecutableNode("0-" + i));
+    }
+    int finished = 0;
+    while (!ready.isEmpty()) {
+      ExecutableNode node = ready.poll();
+      Assert.assertTrue(tracker.isReady(node));
+      for (String inNodeId : node.getInNodes()) {
+        Assert.assertEquals(Status.SUCCEEDED,
+            exFlow.getExecutableNode(inNodeId).getStatus());
+      }
+      node.setStatus(Status.SUCCEEDED);
+      ++finished;
+
+      List<ExecutableNode> candidates = new ArrayList<ExecutableNode>();
+      tracker.nodeFinished(node, candidates);
+      ready.addAll(candidates);
+    }
+    Assert.assertEquals(layers * width, finished);
+  }
+
+  private void finish(DependencyTracker tracker, ExecutableNode node,
+      Collection<ExecutableNode> candidates) {
+    node.setStatus(Status.SUCCEEDED);
+    tracker.nodeFinished(node, candidates);
+  }
+
+  private Flow createFlow(String id) {
+    Flow flow = new Flow(id);
+    flows.put(id, flow);
+    return flow;
+  }
+
+  private void addEdge(Flow flow, String from, String to) {
+    for (String id : new String[] { from, to }) {
+      if (flow.getNode(id) == null) {
+        Node node = new Node(id);
+        node.setType("command");
+        flow.addNode(node);
+      }
+    }
+    flow.addEdge(new Edge(from, to));
+  }
+
+  private ExecutableFlow createExecutableFlow(Flow flow) {
+    project.setFlows(flows);
+    return new ExecutableFlow(project, flow);
+  }
+}
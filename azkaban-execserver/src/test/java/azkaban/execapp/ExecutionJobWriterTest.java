@@ -0,0 +1,166 @@
+package azkaban.execapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutableNode;
+import azkaban.executor.ExecutableNodeRecord;
+import azkaban.executor.ExecutorManagerException;
+import azkaban.executor.MockExecutorLoader;
+import azkaban.executor.Status;
+import azkaban.utils.Props;
+import azkaban.utils.TestUtils;
+
+public class ExecutionJobWriterTest {
+  private RecordingLoader loader;
+  private ExecutableFlow flow;
+
+  /* Loader recording the batches it is asked to write */
+  private static class RecordingLoader extends MockExecutorLoader {
+    private final List<List<ExecutableNodeRecord>> uploadBatches =
+        new ArrayList<List<ExecutableNodeRecord>>();
+    private final List<List<ExecutableNodeRecord>> updateBatches =
+        new ArrayList<List<ExecutableNodeRecord>>();
+    private boolean failBatches = false;
+    private int brokenExecId = -1;
+
+    @Override
+    public void writeExecutableNodes(List<ExecutableNodeRecord> uploads,
+        List<ExecutableNodeRecord> updates) throws ExecutorManagerException {
+      if (!uploads.isEmpty() && uploads.get(0).getExecId() == brokenExecId) {
+        throw new IllegalStateException("broken");
+      }
+      if (failBatches && uploads.size() + updates.size() > 1) {
+        throw new ExecutorManagerException("batch failed");
+      }
+      uploadBatches.add(uploads);
+      updateBatches.add(updates);
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    loader = new RecordingLoader();
+    flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    flow.setExecutionId(1);
+  }
+
+  /* Test updates of a row are coalesced to the latest one */
+  @Test
+  public void testCoalesceUpdates() throws Exception {
+    ExecutionJobWriter writer = new ExecutionJobWriter(loader, 60000, 100);
+    ExecutableNode node = flow.getExecutableNodes().get(0);
+    writer.uploadExecutableNode(node, null);
+    node.setStatus(Status.RUNNING);
+    writer.updateExecutableNode(node);
+    node.setStatus(Status.SUCCEEDED);
+    writer.updateExecutableNode(node);
+    Assert.assertEquals(1, writer.getQueueDepth());
+
+    writer.flush(flow.getExecutionId());
+    Assert.assertEquals(0, writer.getQueueDepth());
+    Assert.assertEquals(1, loader.uploadBatches.size());
+    Assert.assertEquals(1, loader.uploadBatches.get(0).size());
+    Assert.assertEquals(1, loader.updateBatches.get(0).size());
+    Assert.assertEquals(Status.SUCCEEDED, loader.updateBatches.get(0).get(0)
+        .getStatus());
+    Assert.assertEquals(1, writer.getFlushLatency().getCount());
+  }
+
+  /* Test records keep the attempt they were queued with */
+  @Test
+  public void testRecordsAreSnapshots() throws Exception {
+    ExecutionJobWriter writer = new ExecutionJobWriter(loader, 60000, 100);
+    ExecutableNode node = flow.getExecutableNodes().get(0);
+    node.setStatus(Status.FAILED);
+    writer.updateExecutableNode(node);
+    node.resetForRetry();
+    writer.uploadExecutableNode(node, null);
+    Assert.assertEquals(2, writer.getQueueDepth());
+
+    writer.flushAll();
+    Assert.assertEquals(0, loader.updateBatches.get(0).get(0).getAttempt());
+    Assert.assertEquals(Status.FAILED, loader.updateBatches.get(0).get(0)
+        .getStatus());
+    Assert.assertEquals(1, loader.uploadBatches.get(0).get(0).getAttempt());
+  }
+
+  /* Test input props changed after the upload is queued aren't written */
+  @Test
+  public void testPropsAreSnapshots() throws Exception {
+    ExecutionJobWriter writer = new ExecutionJobWriter(loader, 60000, 100);
+    Props parent = Props.of("parent.key", "parent");
+    Props props = new Props(parent);
+    props.put("key", "queued");
+    writer.uploadExecutableNode(flow.getExecutableNodes().get(0), props);
+    props.put("key", "changed");
+    props.put("added", "later");
+
+    writer.flushAll();
+    Props written = loader.uploadBatches.get(0).get(0).getProps();
+    Assert.assertEquals("queued", written.get("key"));
+    Assert.assertNull(written.get("added"));
+    Assert.assertEquals("parent", written.get("parent.key"));
+  }
+
+  /* Test a flow failing with a runtime error doesn't lose other flows' rows */
+  @Test
+  public void testRuntimeFailureDropsOnlyThatFlow() throws Exception {
+    ExecutionJobWriter writer = new ExecutionJobWriter(loader, 60000, 100);
+    ExecutableFlow other = TestUtils.createExecutableFlow("exectest1", "exec1");
+    other.setExecutionId(2);
+    loader.brokenExecId = flow.getExecutionId();
+    for (ExecutableNode node : flow.getExecutableNodes()) {
+      writer.uploadExecutableNode(node, null);
+    }
+    writer.uploadExecutableNode(other.getExecutableNodes().get(0), null);
+
+    writer.flushAll();
+    Assert.assertEquals(0, writer.getQueueDepth());
+    Assert.assertEquals(1, writer.getWrittenRows());
+    Assert.assertEquals(flow.getExecutableNodes().size(),
+        writer.getDroppedRows());
+    Assert.assertEquals(other.getExecutionId(), loader.uploadBatches.get(0)
+        .get(0).getExecId());
+  }
+
+  /* Test a failed batch is retried row by row */
+  @Test
+  public void testFailedBatchRetriedPerRow() throws Exception {
+    ExecutionJobWriter writer = new ExecutionJobWriter(loader, 60000, 100);
+    loader.failBatches = true;
+    for (ExecutableNode node : flow.getExecutableNodes()) {
+      writer.uploadExecutableNode(node, null);
+    }
+    writer.flush(flow.getExecutionId());
+    Assert.assertEquals(flow.getExecutableNodes().size(),
+        loader.uploadBatches.size());
+    Assert.assertEquals(flow.getExecutableNodes().size(),
+        writer.getWrittenRows());
+    Assert.assertEquals(0, writer.getDroppedRows());
+  }
+
+  /* Test the background thread flushes once the batch size is reached */
+  @Test
+  public void testBackgroundFlush() throws Exception {
+    ExecutionJobWriter writer = new ExecutionJobWriter(loader, 60000, 2);
+    writer.start();
+    try {
+      writer.uploadExecutableNode(flow.getExecutableNodes().get(0), null);
+      writer.uploadExecutableNode(flow.getExecutableNodes().get(1), null);
+      long deadline = System.currentTimeMillis() + 5000;
+      while (writer.getWrittenRows() < 2
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals(2, writer.getWrittenRows());
+    } finally {
+      writer.shutdown();
+    }
+  }
+}
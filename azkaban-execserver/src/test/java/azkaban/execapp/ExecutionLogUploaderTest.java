@@ -0,0 +1,172 @@
+package azkaban.execapp;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import azkaban.executor.ExecutionLogChunk;
+import azkaban.executor.ExecutorManagerException;
+import azkaban.executor.MockExecutorLoader;
+
+public class ExecutionLogUploaderTest {
+  private RecordingLoader loader;
+
+  /* Loader recording the chunks appended, in order */
+  private static class RecordingLoader extends MockExecutorLoader {
+    private final List<ExecutionLogChunk> chunks =
+        new ArrayList<ExecutionLogChunk>();
+    private int batches = 0;
+    private boolean fail = false;
+
+    @Override
+    public void appendLogChunks(List<ExecutionLogChunk> chunks)
+        throws ExecutorManagerException {
+      if (fail) {
+        throw new ExecutorManagerException("append failed");
+      }
+      this.chunks.addAll(chunks);
+      batches++;
+    }
+
+    private String getLog(String name) throws Exception {
+      ByteArrayOutputStream log = new ByteArrayOutputStream();
+      for (ExecutionLogChunk chunk : chunks) {
+        if (chunk.getName().equals(name)) {
+          Assert.assertEquals(log.size(), chunk.getStartByte());
+          log.write(chunk.getData());
+        }
+      }
+      return log.toString("UTF-8");
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    loader = new RecordingLoader();
+  }
+
+  private Logger createLogger(String name,
+      ExecutionLogUploader.LogStream stream) {
+    Logger logger = Logger.getLogger(System.currentTimeMillis() + "." + name);
+    logger.addAppender(stream);
+    logger.setAdditivity(false);
+    return logger;
+  }
+
+  /* Test the chunks of a log are contiguous across flushes */
+  @Test
+  public void testStreamedInOrder() throws Exception {
+    ExecutionLogUploader uploader =
+        new ExecutionLogUploader(loader, 60000, 1024 * 1024, 1024);
+    ExecutionLogUploader.LogStream stream =
+        uploader.open(1, "job1", 0, new PatternLayout("%m%n"), 1024 * 1024);
+    Logger logger = createLogger("job1", stream);
+
+    logger.info("first");
+    uploader.flushAll();
+    logger.info("second");
+    logger.info("third");
+    uploader.flushAll();
+    logger.info("last");
+    logger.removeAppender(stream);
+    Assert.assertTrue(uploader.finish(stream));
+
+    Assert.assertEquals(3, loader.batches);
+    Assert.assertEquals("first\nsecond\nthird\nlast\n", loader.getLog("job1"));
+    Assert.assertEquals(0, uploader.getOpenStreams());
+  }
+
+  /* Test only the streams past the flush size or the interval are uploaded */
+  @Test
+  public void testFlushDue() throws Exception {
+    ExecutionLogUploader uploader =
+        new ExecutionLogUploader(loader, 60000, 10, 1024);
+    ExecutionLogUploader.LogStream small =
+        uploader.open(1, "job1", 0, new PatternLayout("%m%n"), 1024 * 1024);
+    ExecutionLogUploader.LogStream large =
+        uploader.open(1, "job2", 0, new PatternLayout("%m%n"), 1024 * 1024);
+    createLogger("job1", small).info("short");
+    createLogger("job2", large).info("more than ten bytes");
+
+    long waitMs = uploader.flushDue();
+    Assert.assertTrue(waitMs > 0 && waitMs <= 60000);
+    Assert.assertEquals("", loader.getLog("job1"));
+    Assert.assertEquals("more than ten bytes\n", loader.getLog("job2"));
+
+    ExecutionLogUploader aged =
+        new ExecutionLogUploader(loader, 0, 1024, 1024);
+    ExecutionLogUploader.LogStream stream =
+        aged.open(1, "job3", 0, new PatternLayout("%m%n"), 1024 * 1024);
+    createLogger("job3", stream).info("short");
+    aged.flushDue();
+    Assert.assertEquals("short\n", loader.getLog("job3"));
+  }
+
+  /* Test large buffers are split into chunks */
+  @Test
+  public void testLargeLogChunked() throws Exception {
+    ExecutionLogUploader uploader =
+        new ExecutionLogUploader(loader, 60000, 1024 * 1024, 1024 * 1024);
+    ExecutionLogUploader.LogStream stream =
+        uploader.open(1, "job1", 0, new PatternLayout("%m%n"), 1024 * 1024);
+    Logger logger = createLogger("job1", stream);
+
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < 1000; ++i) {
+      line.append('x');
+    }
+    for (int i = 0; i < 120; ++i) {
+      logger.info(line);
+    }
+    logger.removeAppender(stream);
+    Assert.assertTrue(uploader.finish(stream));
+
+    Assert.assertEquals(3, loader.chunks.size());
+    Assert.assertEquals(120 * 1001, loader.getLog("job1").length());
+    Assert.assertEquals(120 * 1001, uploader.getUploadedBytes());
+  }
+
+  /* Test streams that fail to upload or overflow are reported as broken */
+  @Test
+  public void testBrokenStreams() throws Exception {
+    ExecutionLogUploader uploader =
+        new ExecutionLogUploader(loader, 60000, 1024 * 1024, 10);
+    ExecutionLogUploader.LogStream overflowed =
+        uploader.open(1, "job1", 0, new PatternLayout("%m%n"), 1024 * 1024);
+    ExecutionLogUploader.LogStream failed =
+        uploader.open(1, "job2", 0, new PatternLayout("%m%n"), 1024 * 1024);
+    createLogger("job1", overflowed).info("more than ten bytes");
+    createLogger("job2", failed).info("short");
+
+    loader.fail = true;
+    uploader.flushAll();
+    Assert.assertFalse(uploader.finish(overflowed));
+    Assert.assertFalse(uploader.finish(failed));
+    Assert.assertEquals(2, uploader.getBrokenStreams());
+    Assert.assertEquals(0, loader.chunks.size());
+  }
+
+  /* Test logs larger than their limit stop streaming */
+  @Test
+  public void testLogLimit() throws Exception {
+    ExecutionLogUploader uploader =
+        new ExecutionLogUploader(loader, 60000, 1024 * 1024, 1024);
+    ExecutionLogUploader.LogStream stream =
+        uploader.open(1, "job1", 0, new PatternLayout("%m%n"), 10);
+    Logger logger = createLogger("job1", stream);
+
+    logger.info("first");
+    uploader.flushAll();
+    logger.info("second");
+    logger.removeAppender(stream);
+    Assert.assertFalse(uploader.finish(stream));
+    Assert.assertEquals(1, uploader.getBrokenStreams());
+    Assert.assertEquals("first\n", loader.getLog("job1"));
+  }
+}
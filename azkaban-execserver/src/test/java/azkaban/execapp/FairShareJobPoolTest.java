@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.execapp.FairShareJobPool.FlowExecutor;
+
+public class FairShareJobPoolTest {
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @After
+  public void tearDown() {
+    release.countDown();
+  }
+
+  /* Job blocking its thread until the test releases it */
+  private Runnable blockingJob(final CountDownLatch latch) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+
+  private void submit(FlowExecutor flow, int jobs, CountDownLatch latch) {
+    for (int i = 0; i < jobs; ++i) {
+      flow.submit(blockingJob(latch));
+    }
+  }
+
+  private static void waitForJobs(FairShareJobPool pool, int running,
+      int queued) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while ((pool.getNumRunningJobs() != running || pool
+        .getNumQueuedJobs() != queued)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(running, pool.getNumRunningJobs());
+    Assert.assertEquals(queued, pool.getNumQueuedJobs());
+  }
+
+  /* Test a job waiting on another flow frees its place for that flow */
+  @Test
+  public void testWaitingJob() throws Exception {
+    FairShareJobPool pool = new FairShareJobPool(1, 1);
+    FlowExecutor pipelined = pool.createFlowExecutor(1, 1, 1, 1);
+    FlowExecutor upstream = pool.createFlowExecutor(2, 1, 1, 1);
+    final CountDownLatch upstreamDone = new CountDownLatch(1);
+    final CountDownLatch waited = new CountDownLatch(1);
+    pipelined.submit(new Runnable() {
+      @Override
+      public void run() {
+        FairShareJobPool.beginWait();
+        try {
+          upstreamDone.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          FairShareJobPool.endWait();
+        }
+        waited.countDown();
+      }
+    });
+    upstream.submit(new Runnable() {
+      @Override
+      public void run() {
+        upstreamDone.countDown();
+      }
+    });
+
+    Assert.assertTrue(waited.await(5, TimeUnit.SECONDS));
+    waitForJobs(pool, 0, 0);
+    // outside of a pool it does nothing
+    FairShareJobPool.beginWait();
+    FairShareJobPool.endWait();
+  }
+
+  /* Test the flow limits and the pool limit */
+  @Test
+  public void testLimits() throws Exception {
+    FairShareJobPool pool = new FairShareJobPool(3, 0);
+    FlowExecutor narrow = pool.createFlowExecutor(1, 1, 2, 1);
+    FlowExecutor wide = pool.createFlowExecutor(2, 2, 10, 1);
+    submit(narrow, 4, release);
+    submit(wide, 4, release);
+
+    Assert.assertEquals(3, pool.getNumRunningJobs());
+    Assert.assertEquals(5, pool.getNumQueuedJobs());
+    Assert.assertEquals(2, narrow.getNumRunningJobs());
+    Assert.assertEquals(1, wide.getNumRunningJobs());
+
+    release.countDown();
+    waitForJobs(pool, 0, 0);
+  }
+
+  /* Test freed threads go to the flow with the fewest jobs for its weight */
+  @Test
+  public void testWeightedShare() throws Exception {
+    FairShareJobPool pool = new FairShareJobPool(4, 0);
+    // holds every thread while the other flows queue their jobs
+    CountDownLatch gate = new CountDownLatch(1);
+    FlowExecutor first = pool.createFlowExecutor(1, 1, 10, 1);
+    submit(first, 4, gate);
+    FlowExecutor light = pool.createFlowExecutor(2, 2, 10, 1);
+    FlowExecutor heavy = pool.createFlowExecutor(3, 3, 10, 3);
+    submit(light, 10, release);
+    submit(heavy, 10, release);
+    Assert.assertEquals(20, pool.getNumQueuedJobs());
+
+    gate.countDown();
+    waitForJobs(pool, 4, 16);
+    Assert.assertEquals(0, first.getNumRunningJobs());
+    Assert.assertEquals(1, light.getNumRunningJobs());
+    Assert.assertEquals(3, heavy.getNumRunningJobs());
+  }
+
+  /* Test the jobs of a project are limited across its flows */
+  @Test
+  public void testProjectLimit() throws Exception {
+    FairShareJobPool pool = new FairShareJobPool(10, 2);
+    FlowExecutor flow1 = pool.createFlowExecutor(1, 1, 10, 1);
+    FlowExecutor flow2 = pool.createFlowExecutor(2, 1, 10, 1);
+    FlowExecutor other = pool.createFlowExecutor(3, 2, 10, 1);
+    submit(flow1, 3, release);
+    submit(flow2, 3, release);
+    submit(other, 3, release);
+
+    Assert.assertEquals(4, pool.getNumRunningJobs());
+    Assert.assertEquals(2, flow1.getNumRunningJobs()
+        + flow2.getNumRunningJobs());
+    Assert.assertEquals(2, other.getNumRunningJobs());
+  }
+
+  /* Test a shut down flow finishes its jobs and leaves the pool */
+  @Test
+  public void testShutdown() throws Exception {
+    FairShareJobPool pool = new FairShareJobPool(1, 0);
+    FlowExecutor flow = pool.createFlowExecutor(1, 1, 10, 1);
+    submit(flow, 2, release);
+    flow.shutdown();
+
+    Assert.assertTrue(flow.isShutdown());
+    Assert.assertFalse(flow.isTerminated());
+    try {
+      flow.submit(blockingJob(release));
+      Assert.fail("Jobs submitted after shutdown should be rejected");
+    } catch (RejectedExecutionException e) {
+    }
+
+    release.countDown();
+    Assert.assertTrue(flow.awaitTermination(5, TimeUnit.SECONDS));
+    Assert.assertEquals(0, pool.getNumFlows());
+
+    FlowExecutor killed = pool.createFlowExecutor(2, 1, 10, 1);
+    CountDownLatch gate = new CountDownLatch(1);
+    submit(killed, 3, gate);
+    Assert.assertEquals(2, killed.shutdownNow().size());
+    gate.countDown();
+    Assert.assertTrue(killed.awaitTermination(5, TimeUnit.SECONDS));
+    Assert.assertEquals(0, pool.getNumQueuedJobs());
+  }
+
+  /* Test a shut down pool drops the queued jobs and its threads exit */
+  @Test
+  public void testPoolShutdown() throws Exception {
+    FairShareJobPool pool = new FairShareJobPool(1, 0);
+    FlowExecutor flow = pool.createFlowExecutor(1, 1, 10, 1);
+    submit(flow, 3, release);
+    waitForJobs(pool, 1, 2);
+
+    Assert.assertEquals(2, pool.shutdown().size());
+    Assert.assertTrue(flow.isShutdown());
+    Assert.assertFalse(pool.awaitTermination(100, TimeUnit.MILLISECONDS));
+
+    release.countDown();
+    Assert.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+    Assert.assertEquals(0, pool.getNumFlows());
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package azkaban.execapp;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FlowUpdateSignalTest {
+
+  /* Waits on the signal in a thread, recording how long it was held */
+  private Thread startWaiter(final FlowUpdateSignal signal,
+      final long sequence, final long waitTimeMs, final AtomicBoolean updated,
+      final AtomicLong waited) {
+    Thread waiter = new Thread() {
+      @Override
+      public void run() {
+        long startTime = System.currentTimeMillis();
+        try {
+          updated.set(signal.await(sequence, waitTimeMs));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        waited.set(System.currentTimeMillis() - startTime);
+      }
+    };
+    waiter.start();
+    return waiter;
+  }
+
+  /* Test a waiting update call returns as soon as a flow is updated */
+  @Test
+  public void testAwaitReturnsOnUpdate() throws Exception {
+    FlowUpdateSignal signal = new FlowUpdateSignal();
+    AtomicBoolean updated = new AtomicBoolean();
+    AtomicLong waited = new AtomicLong();
+    Thread waiter =
+        startWaiter(signal, signal.getSequence(), 30000, updated, waited);
+
+    Thread.sleep(200);
+    Assert.assertTrue(waiter.isAlive());
+    signal.signal();
+    waiter.join(5000);
+
+    Assert.assertFalse(waiter.isAlive());
+    Assert.assertTrue(updated.get());
+    Assert.assertTrue(waited.get() < 5000);
+  }
+
+  /* Test an update signalled after the sequence was read is not missed */
+  @Test
+  public void testAwaitSeesEarlierUpdate() throws Exception {
+    FlowUpdateSignal signal = new FlowUpdateSignal();
+    long sequence = signal.getSequence();
+    signal.signal();
+
+    long startTime = System.currentTimeMillis();
+    Assert.assertTrue(signal.await(sequence, 30000));
+    Assert.assertTrue(System.currentTimeMillis() - startTime < 1000);
+    Assert.assertEquals(sequence + 1, signal.getSequence());
+  }
+
+  /* Test the wait runs out when no flow is updated */
+  @Test
+  public void testAwaitTimesOut() throws Exception {
+    FlowUpdateSignal signal = new FlowUpdateSignal();
+
+    long startTime = System.currentTimeMillis();
+    Assert.assertFalse(signal.await(signal.getSequence(), 300));
+    long waited = System.currentTimeMillis() - startTime;
+    Assert.assertTrue(waited >= 300);
+    Assert.assertTrue(waited < 5000);
+  }
+
+  /* Test update calls are held for at most a minute */
+  @Test
+  public void testUpdateWaitTimeCap() {
+    Assert.assertEquals(0, ExecutorServlet.getUpdateWaitTime(0));
+    Assert.assertEquals(0, ExecutorServlet.getUpdateWaitTime(-1));
+    Assert.assertEquals(5000, ExecutorServlet.getUpdateWaitTime(5000));
+    Assert.assertEquals(60000, ExecutorServlet.getUpdateWaitTime(60000));
+    Assert.assertEquals(60000,
+        ExecutorServlet.getUpdateWaitTime(10 * 60 * 1000));
+  }
+}
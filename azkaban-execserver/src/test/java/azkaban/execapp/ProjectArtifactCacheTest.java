@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import azkaban.flow.CommonJobProperties;
+import azkaban.project.ProjectFileHandler;
+import azkaban.project.ProjectLoader;
+import azkaban.utils.DirectoryMaterializer;
+import azkaban.utils.Md5Hasher;
+import azkaban.utils.Utils;
+
+public class ProjectArtifactCacheTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private ZipLoader loader;
+  private File cacheDir;
+
+  @Before
+  public void setUp() throws Exception {
+    loader = new ZipLoader(temp.newFolder("loader"));
+    cacheDir = new File(temp.getRoot(), "cache");
+    File zip1 = createZip("first", "echo 1");
+    loader.zips.put(1, zip1);
+    // same zip as version 1
+    loader.zips.put(2, zip1);
+    loader.zips.put(3, createZip("second", "echo 3"));
+  }
+
+  private File createZip(String name, String content) throws IOException {
+    File folder = temp.newFolder(name);
+    FileUtils.writeStringToFile(new File(folder, "test.job"), content);
+    File zip = new File(temp.getRoot(), name + ".zip");
+    Utils.zipFolderContent(folder, zip);
+    return zip;
+  }
+
+  /* Test versions with the same zip share one download */
+  @Test
+  public void testSharedFiles() throws Exception {
+    ProjectArtifactCache cache =
+        new ProjectArtifactCache(cacheDir, 1024 * 1024, loader.create());
+    File first = cache.get(1, 1);
+    File second = cache.get(1, 2);
+    File third = cache.get(1, 3);
+
+    Assert.assertEquals(first, second);
+    Assert.assertFalse(first.equals(third));
+    Assert.assertEquals("echo 1",
+        FileUtils.readFileToString(new File(first, "test.job")));
+    Assert.assertEquals(2, loader.downloads.get());
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(2, cache.getMisses());
+    Assert.assertEquals(2, cache.getNumEntries());
+  }
+
+  /* Test concurrent executions of a new version wait for one download */
+  @Test
+  public void testConcurrentGets() throws Exception {
+    final ProjectArtifactCache cache =
+        new ProjectArtifactCache(cacheDir, 1024 * 1024, loader.create());
+    ExecutorService threads = Executors.newFixedThreadPool(8);
+    List<Future<File>> dirs = new ArrayList<Future<File>>();
+    for (int i = 0; i < 8; ++i) {
+      final int version = i % 2 + 1;
+      dirs.add(threads.submit(new Callable<File>() {
+        @Override
+        public File call() throws Exception {
+          return cache.get(1, version);
+        }
+      }));
+    }
+    for (Future<File> dir : dirs) {
+      Assert.assertEquals(dirs.get(0).get(), dir.get());
+    }
+    threads.shutdown();
+    Assert.assertEquals(1, loader.downloads.get());
+  }
+
+  /* Test the least recently used files not in use are removed */
+  @Test
+  public void testEvict() throws Exception {
+    ProjectArtifactCache cache =
+        new ProjectArtifactCache(cacheDir, 1, 0, loader.create());
+    File first = cache.get(1, 1);
+    File second = cache.get(1, 3);
+
+    Assert.assertEquals(1,
+        cache.evict(Collections.singleton(second.getName())));
+    Assert.assertFalse(first.exists());
+    Assert.assertTrue(second.exists());
+    Assert.assertEquals(0,
+        cache.evict(Collections.singleton(second.getName())));
+
+    // the files left are found after a restart
+    cache = new ProjectArtifactCache(cacheDir, 1024 * 1024, loader.create());
+    Assert.assertEquals(1, cache.getNumEntries());
+    Assert.assertEquals(second, cache.get(1, 3));
+    Assert.assertEquals(2, loader.downloads.get());
+  }
+
+  /* Test a version is linked to its cached files */
+  @Test
+  public void testInstallVersion() throws Exception {
+    ProjectArtifactCache cache =
+        new ProjectArtifactCache(cacheDir, 1024 * 1024, loader.create());
+    File projectDir = temp.newFolder("projects");
+    ProjectVersion version = new ProjectVersion(1, 2);
+    version.install(cache, projectDir, Logger.getLogger(getClass()));
+
+    File installedDir = new File(projectDir, "1.2");
+    Assert.assertTrue(new File(installedDir, "test.job").exists());
+    Assert.assertEquals(cache.get(1, 1).getName(), version.getArtifactKey());
+
+    version.deleteDirectory();
+    Assert.assertFalse(installedDir.exists());
+    Assert.assertTrue(cache.get(1, 1).exists());
+    Assert.assertEquals(1, loader.downloads.get());
+  }
+
+  /* Test the init parameters are written to the execution, not the cache */
+  @Test
+  public void testInitParameter() throws Exception {
+    File folder = temp.newFolder("init");
+    FileUtils.writeStringToFile(new File(folder, "flow/"
+        + CommonJobProperties.INIT_PARAMETER_SHELL), "echo day=1");
+    FileUtils.writeStringToFile(new File(folder, "flow/"
+        + CommonJobProperties.INIT_PARAMETER_PROPERTIES), "day=0");
+    File zip = new File(temp.getRoot(), "init.zip");
+    Utils.zipFolderContent(folder, zip);
+    loader.zips.put(4, zip);
+
+    ProjectArtifactCache cache =
+        new ProjectArtifactCache(cacheDir, 1024 * 1024, loader.create());
+    ProjectVersion version = new ProjectVersion(1, 4);
+    version.setupProjectFiles(cache, temp.newFolder("projects"),
+        Logger.getLogger(getClass()));
+    File execDir = temp.newFolder("execution");
+    version.materializeDirectory(execDir, new DirectoryMaterializer(
+        DirectoryMaterializer.Mode.SYMLINK));
+    version.processInitParameter(execDir);
+
+    Assert.assertEquals("day=1", FileUtils.readFileToString(
+        new File(execDir, "flow/" + CommonJobProperties.INIT_PARAMETER_PROPERTIES))
+        .trim());
+    Assert.assertEquals("day=0", FileUtils.readFileToString(
+        new File(cache.get(1, 4), "flow/"
+            + CommonJobProperties.INIT_PARAMETER_PROPERTIES)));
+  }
+
+  /*
+   * Serves the zips of the versions, implementing the two calls the cache
+   * makes
+   */
+  private static class ZipLoader implements InvocationHandler {
+    private final File dir;
+    private final Map<Integer, File> zips = new HashMap<Integer, File>();
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    private ZipLoader(File dir) {
+      this.dir = dir;
+    }
+
+    private ProjectLoader create() {
+      return (ProjectLoader) Proxy.newProxyInstance(getClass()
+          .getClassLoader(), new Class<?>[] { ProjectLoader.class }, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable {
+      int projectId = (Integer) args[0];
+      int version = (Integer) args[1];
+      File zip = zips.get(version);
+      ProjectFileHandler handler =
+          new ProjectFileHandler(projectId, version, 0, "test", "zip",
+              zip.getName(), 1, Md5Hasher.md5Hash(zip));
+      if (method.getName().equals("getUploadedFile")) {
+        downloads.incrementAndGet();
+        File local = File.createTempFile("download", ".zip", dir);
+        FileUtils.copyFile(zip, local);
+        handler.setLocalFile(local);
+      } else if (!method.getName().equals("fetchProjectFileMetaData")) {
+        throw new UnsupportedOperationException(method.getName());
+      }
+      return handler;
+    }
+  }
+}
@@ -0,0 +1,7 @@
+CREATE TABLE execution_id_blocks (
+	id TINYINT NOT NULL,
+	next_id INT NOT NULL,
+	PRIMARY KEY (id)
+);
+
+INSERT INTO execution_id_blocks (id, next_id) VALUES (1, 1);
\ No newline at end of file
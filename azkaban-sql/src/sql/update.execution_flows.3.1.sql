@@ -0,0 +1,4 @@
+CREATE INDEX ex_flows_flow_id ON execution_flows(flow_id);
+CREATE INDEX ex_flows_submit_user ON execution_flows(submit_user);
+CREATE INDEX ex_flows_status ON execution_flows(status);
+CREATE INDEX ex_flows_flow_status ON execution_flows(project_id, flow_id, status);
@@ -0,0 +1,2 @@
+ALTER TABLE execution_flows ADD COLUMN archive_time BIGINT DEFAULT NULL;
+CREATE INDEX ex_flows_archive ON execution_flows(archive_time, end_time);
@@ -0,0 +1 @@
+CREATE INDEX ex_log_range ON execution_logs(exec_id, name, attempt, end_byte);
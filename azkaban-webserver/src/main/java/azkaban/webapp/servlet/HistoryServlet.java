@@ -17,6 +17,7 @@
 package azkaban.webapp.servlet;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -27,7 +28,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.joda.time.format.DateTimeFormat;
 
-import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutionSummary;
 import azkaban.executor.ExecutorManagerAdapter;
 import azkaban.executor.ExecutorManagerException;
 import azkaban.project.Project;
@@ -92,14 +93,18 @@ public class HistoryServlet extends LoginAbstractAzkabanServlet {
     Page page =
         newPage(req, resp, session,
             "azkaban/webapp/servlet/velocity/historypage.vm");
-    int pageNum = getIntParam(req, "page", 1);
     int pageSize = getIntParam(req, "size", 16);
     page.add("vmutils", vmHelper);
 
-    if (pageNum < 0) {
-      pageNum = 1;
+    // the pages seek instead of skipping rows: before is the last exec id of
+    // the previous page, trail the before of each page ahead of that one
+    int before = getIntParam(req, "before", 0);
+    List<Integer> trail = new ArrayList<Integer>();
+    if (before > 0) {
+      trail = parseTrail(getParam(req, "trail", ""));
     }
-    List<ExecutableFlow> history = null;
+    int pageNum = before > 0 ? trail.size() + 2 : 1;
+    List<ExecutionSummary> history = null;
     if (hasParam(req, "advfilter")) {
       String projContain = getParam(req, "projcontain");
       String flowContain = getParam(req, "flowcontain");
@@ -117,9 +122,11 @@ public class HistoryServlet extends LoginAbstractAzkabanServlet {
               .parseDateTime(end).getMillis();
       try {
         history =
-            executorManager.getExecutableFlows(projContain, flowContain,
-                userContain, status, beginTime, endTime, (pageNum - 1)
-                    * pageSize, pageSize);
+            before > 0 ? executorManager.getExecutionSummariesBefore(
+                projContain, flowContain, userContain, status, beginTime,
+                endTime, before, pageSize) : executorManager
+                .getExecutionSummaries(projContain, flowContain, userContain,
+                    status, beginTime, endTime, 0, pageSize);
       } catch (ExecutorManagerException e) {
         page.add("error", e.getMessage());
       }
@@ -127,16 +134,17 @@ public class HistoryServlet extends LoginAbstractAzkabanServlet {
       String searchTerm = getParam(req, "searchterm");
       try {
         history =
-            executorManager.getExecutableFlows(searchTerm, (pageNum - 1)
-                * pageSize, pageSize);
+            before > 0 ? executorManager.getExecutionSummariesBefore(
+                searchTerm, before, pageSize) : executorManager
+                .getExecutionSummaries(searchTerm, 0, pageSize);
       } catch (ExecutorManagerException e) {
         page.add("error", e.getMessage());
       }
     } else {
       try {
         history =
-            executorManager.getExecutableFlows((pageNum - 1) * pageSize,
-                pageSize);
+            before > 0 ? executorManager.getExecutionSummariesBefore(before,
+                pageSize) : executorManager.getExecutionSummaries(0, pageSize);
       } catch (ExecutorManagerException e) {
         e.printStackTrace();
       }
@@ -144,6 +152,19 @@ public class HistoryServlet extends LoginAbstractAzkabanServlet {
     page.add("flowHistory", history);
     page.add("size", pageSize);
     page.add("page", pageNum);
+    // without previousBefore, the previous link goes to the first page
+    if (!trail.isEmpty()) {
+      page.add("previousBefore", trail.get(trail.size() - 1));
+      page.add("previousTrail", joinTrail(trail.subList(0, trail.size() - 1)));
+    }
+    if (history != null && history.size() == pageSize) {
+      List<Integer> nextTrail = new ArrayList<Integer>(trail);
+      if (before > 0) {
+        nextTrail.add(before);
+      }
+      page.add("nextBefore", history.get(history.size() - 1).getExecutionId());
+      page.add("nextTrail", joinTrail(nextTrail));
+    }
     // keep the search terms so that we can navigate to later pages
     if (hasParam(req, "searchterm") && !getParam(req, "searchterm").equals("")) {
       page.add("search", "true");
@@ -160,36 +181,34 @@ public class HistoryServlet extends LoginAbstractAzkabanServlet {
       page.add("end", getParam(req, "end"));
     }
 
-    if (pageNum == 1) {
-      page.add("previous", new PageSelection(1, pageSize, true, false));
-    } else {
-      page.add("previous", new PageSelection(pageNum - 1, pageSize, false,
-          false));
-    }
-    page.add("next", new PageSelection(pageNum + 1, pageSize, false, false));
-    // Now for the 5 other values.
-    int pageStartValue = 1;
-    if (pageNum > 3) {
-      pageStartValue = pageNum - 2;
-    }
+    page.render();
+  }
 
-    page.add("page1", new PageSelection(pageStartValue, pageSize, false,
-        pageStartValue == pageNum));
-    pageStartValue++;
-    page.add("page2", new PageSelection(pageStartValue, pageSize, false,
-        pageStartValue == pageNum));
-    pageStartValue++;
-    page.add("page3", new PageSelection(pageStartValue, pageSize, false,
-        pageStartValue == pageNum));
-    pageStartValue++;
-    page.add("page4", new PageSelection(pageStartValue, pageSize, false,
-        pageStartValue == pageNum));
-    pageStartValue++;
-    page.add("page5", new PageSelection(pageStartValue, pageSize, false,
-        pageStartValue == pageNum));
-    pageStartValue++;
+  private static List<Integer> parseTrail(String trail) {
+    List<Integer> execIds = new ArrayList<Integer>();
+    for (String execId : trail.split(",")) {
+      if (execId.isEmpty()) {
+        continue;
+      }
+      try {
+        execIds.add(Integer.parseInt(execId));
+      } catch (NumberFormatException e) {
+        // a malformed link starts over from the first page
+        return new ArrayList<Integer>();
+      }
+    }
+    return execIds;
+  }
 
-    page.render();
+  private static String joinTrail(List<Integer> trail) {
+    StringBuilder joined = new StringBuilder();
+    for (int execId : trail) {
+      if (joined.length() > 0) {
+        joined.append(',');
+      }
+      joined.append(execId);
+    }
+    return joined.toString();
   }
 
   private void handleHistoryTimelinePage(HttpServletRequest req,
@@ -200,40 +219,6 @@ public class HistoryServlet extends LoginAbstractAzkabanServlet {
       HttpServletResponse resp, Session session) {
   }
 
-  public class PageSelection {
-    private int page;
-    private int size;
-    private boolean disabled;
-    private boolean selected;
-
-    public PageSelection(int page, int size, boolean disabled, boolean selected) {
-      this.page = page;
-      this.size = size;
-      this.disabled = disabled;
-      this.setSelected(selected);
-    }
-
-    public int getPage() {
-      return page;
-    }
-
-    public int getSize() {
-      return size;
-    }
-
-    public boolean getDisabled() {
-      return disabled;
-    }
-
-    public boolean isSelected() {
-      return selected;
-    }
-
-    public void setSelected(boolean selected) {
-      this.selected = selected;
-    }
-  }
-
   @Override
   protected void handlePost(HttpServletRequest req, HttpServletResponse resp,
       Session session) throws ServletException, IOException {
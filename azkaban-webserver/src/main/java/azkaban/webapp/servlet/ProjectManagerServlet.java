@@ -358,10 +358,10 @@ public class ProjectManagerServlet extends LoginAbstractAzkabanServlet {
                                                       HashMap<String, Object> ret, HttpServletRequest req)
             throws ServletException {
         String flowId = getParam(req, "flow");
-        List<ExecutableFlow> exFlows = null;
+        List<ExecutionSummary> exFlows = null;
         try {
             exFlows =
-                    executorManager.getExecutableFlows(project.getId(), flowId, 0, 1,
+                    executorManager.getExecutionSummaries(project.getId(), flowId, 0, 1,
                             Status.SUCCEEDED);
         } catch (ExecutorManagerException e) {
             ret.put("error", "Error retrieving executable flows");
@@ -386,11 +386,11 @@ public class ProjectManagerServlet extends LoginAbstractAzkabanServlet {
         int from = Integer.valueOf(getParam(req, "start"));
         int length = Integer.valueOf(getParam(req, "length"));
 
-        ArrayList<ExecutableFlow> exFlows = new ArrayList<ExecutableFlow>();
+        ArrayList<ExecutionSummary> exFlows = new ArrayList<ExecutionSummary>();
         int total = 0;
         try {
             total =
-                    executorManager.getExecutableFlows(project.getId(), flowId, from,
+                    executorManager.getExecutionSummaries(project.getId(), flowId, from,
                             length, exFlows);
         } catch (ExecutorManagerException e) {
             ret.put("error", "Error retrieving executable flows");
@@ -402,7 +402,7 @@ public class ProjectManagerServlet extends LoginAbstractAzkabanServlet {
         ret.put("length", length);
 
         ArrayList<Object> history = new ArrayList<Object>();
-        for (ExecutableFlow flow : exFlows) {
+        for (ExecutionSummary flow : exFlows) {
             HashMap<String, Object> flowInfo = new HashMap<String, Object>();
             flowInfo.put("execId", flow.getExecutionId());
             flowInfo.put("flowId", flow.getFlowId());
@@ -1730,6 +1730,10 @@ public class ProjectManagerServlet extends LoginAbstractAzkabanServlet {
                     ret.put("error",
                             errorMsgs.length() > 4000 ? errorMsgs.substring(0, 4000)
                                     : errorMsgs.toString());
+                } else {
+                    // warm the executors before the new version first runs
+                    executorManager.prefetchProjectVersion(project.getId(),
+                            project.getVersion());
                 }
                 if (warnMsgs.length() > 0) {
                     ret.put(
@@ -70,9 +70,16 @@ public class StatsServlet extends LoginAbstractAzkabanServlet {
   private void handleAJAXAction(HttpServletRequest req, HttpServletResponse resp, Session session)
       throws ServletException, IOException {
     HashMap<String, Object> ret = new HashMap<String, Object>();
-    int executorId = getIntParam(req, ConnectorParams.EXECUTOR_ID_PARAM);
     String actionName = getParam(req, ConnectorParams.ACTION_PARAM);
 
+    // dispatch metrics are tracked by the web server itself
+    if (actionName.equals(ConnectorParams.STATS_GET_DISPATCHMETRICS)) {
+      handleGetDispatchMetrics(ret, session.getUser());
+      writeJSON(resp, ret);
+      return;
+    }
+
+    int executorId = getIntParam(req, ConnectorParams.EXECUTOR_ID_PARAM);
     if (actionName.equals(ConnectorParams.STATS_GET_METRICHISTORY)) {
       handleGetMetricHistory(executorId, req, ret, session.getUser());
     } else if (actionName.equals(ConnectorParams.STATS_GET_ALLMETRICSNAME)) {
@@ -92,6 +99,20 @@ public class StatsServlet extends LoginAbstractAzkabanServlet {
     writeJSON(resp, ret);
   }
 
+  /**
+   * Get dispatch pipeline latencies and errors tracked by the executor manager
+   *
+   * @param ret
+   * @param user
+   */
+  private void handleGetDispatchMetrics(HashMap<String, Object> ret, User user) {
+    if (!hasPermission(user, Permission.Type.METRICS)) {
+      ret.put("error", "User " + user.getUserId() + " has no permission.");
+      return;
+    }
+    ret.put("data", execManager.getDispatchMetrics().toObject());
+  }
+
   /**
    * Get all metrics tracked by the given executor
    *